@@ -0,0 +1,366 @@
+package com.antverdovsky.wikideg;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.sep.AbstractSeparation;
+import com.antverdovsky.wikideg.sep.GraphSeparation;
+import com.antverdovsky.wikideg.sep.Separation;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Runs a search for each pair of start and end articles read from a file of
+ * queries, all within a single process. Several searches run at once, and
+ * all of them share the fetchers and caches of the process, so the links
+ * which one search has fetched are reused by every later search. The result
+ * of each search is written as soon as the search finishes, so the results
+ * are written in the order in which the searches finish rather than in the
+ * order of the queries.
+ * Each line of the queries holds the start and end titles, separated by a
+ * tab or by a comma. Titles which hold a comma must be quoted when they are
+ * separated by a comma. Blank lines and lines starting with '#' are skipped.
+ */
+public class BatchQueries {
+	/**
+	 * The formats in which the results may be written.
+	 */
+	public enum Format {
+		CSV,  // A header line, then comma separated values on each line
+		JSON; // A JSON object on each line
+	}
+	
+	// Default number of searches which run at once
+	public static final int DEFAULT_IN_FLIGHT = 8;
+	
+	// Header line of the CSV results
+	private static final String CSV_HEADER =
+			"start,end,status,degrees,millis,path,embedded,error";
+	
+	// Separator of the titles of a path in the CSV results. Titles never
+	// hold a '|', since it is not allowed in the titles of Wikipedia.
+	private static final String CSV_PATH_SEPARATOR = "|";
+	
+	// Statuses of a finished query
+	private static final String FOUND = "found";
+	private static final String NONE = "none";
+	private static final String ERROR = "error";
+	
+	private IntGraph graph;         // Local graph, or null to fetch links
+	private int maxInFlight;        // Maximum number of searches at once
+	private Format format;          // Format of the results
+	
+	private AtomicInteger queries;  // Number of queries which were run
+	private AtomicInteger found;    // Number of queries which found a path
+	private AtomicInteger failed;   // Number of queries which failed
+	
+	/**
+	 * Creates a new batch of queries.
+	 * @param graph The local graph over which the paths are found, or null
+	 *              if the links are fetched through the fetchers of the
+	 *              Separation class.
+	 * @param maxInFlight The maximum number of searches which run at once.
+	 * @param format The format in which the results are written.
+	 * @throws IllegalArgumentException If maxInFlight is not positive.
+	 */
+	public BatchQueries(IntGraph graph, int maxInFlight, Format format) {
+		if (maxInFlight <= 0) throw new IllegalArgumentException(
+				"Searches in flight must be positive: " + maxInFlight);
+		
+		this.graph = graph;
+		this.maxInFlight = maxInFlight;
+		this.format = format;
+		
+		this.queries = new AtomicInteger();
+		this.found = new AtomicInteger();
+		this.failed = new AtomicInteger();
+	}
+	
+	/**
+	 * Runs a search for each query read from the specified input, and writes
+	 * the result of each search to the specified output as soon as it
+	 * finishes. The queries are read only as fast as the searches finish, so
+	 * any number of queries may be streamed through the batch.
+	 * @param input The input from which the queries are read.
+	 * @param output The output to which the results are written. The output
+	 *               is flushed after each result.
+	 * @throws IOException If the queries could not be read, or the results
+	 *                     could not be written.
+	 */
+	public void run(Reader input, Writer output) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(this.maxInFlight);
+		Semaphore inFlight = new Semaphore(this.maxInFlight);
+		AtomicReference<IOException> failure =
+				new AtomicReference<IOException>();
+		
+		try {
+			if (this.format == Format.CSV)
+				BatchQueries.writeLine(output, CSV_HEADER);
+			
+			BufferedReader reader = new BufferedReader(input);
+			String line;
+			while (failure.get() == null &&
+					(line = reader.readLine()) != null) {
+				if (line.isBlank() || line.startsWith("#")) continue;
+				
+				// Wait until a search finishes before starting another one
+				inFlight.acquire();
+				String query = line;
+				pool.execute(() -> {
+					try {
+						BatchQueries.writeLine(output, this.search(query));
+					} catch (IOException e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+			
+			// Wait until every search has finished
+			inFlight.acquire(this.maxInFlight);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("The batch was interrupted.");
+		} finally {
+			pool.shutdown();
+		}
+		
+		if (failure.get() != null) throw failure.get();
+	}
+	
+	/**
+	 * Returns the number of queries which were run.
+	 * @return The number of queries.
+	 */
+	public int getQueries() {
+		return this.queries.get();
+	}
+	
+	/**
+	 * Returns the number of queries which found a path.
+	 * @return The number of queries.
+	 */
+	public int getFound() {
+		return this.found.get();
+	}
+	
+	/**
+	 * Returns the number of queries which failed, either because the query
+	 * could not be read or because the search failed.
+	 * @return The number of queries.
+	 */
+	public int getFailed() {
+		return this.failed.get();
+	}
+	
+	/**
+	 * Splits the specified line of the queries into its start and end
+	 * titles. If the line holds a tab, the titles are separated by the tab.
+	 * Otherwise the line is read as comma separated values, where a title
+	 * may be quoted and a quote within a quoted title is doubled.
+	 * @param line The line.
+	 * @return The start and end titles, or null if the line does not hold
+	 *         exactly two titles.
+	 */
+	static String[] parseQuery(String line) {
+		List<String> fields = new ArrayList<String>(2);
+		if (line.indexOf('\t') >= 0) {
+			for (String field : line.split("\t", -1)) fields.add(field);
+		} else {
+			StringBuilder field = new StringBuilder();
+			boolean isQuoted = false;
+			for (int i = 0; i < line.length(); ++i) {
+				char c = line.charAt(i);
+				if (isQuoted && c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						++i;
+					} else isQuoted = false;
+				} else if (!isQuoted && c == '"' &&
+						field.toString().isBlank()) {
+					field.setLength(0);
+					isQuoted = true;
+				} else if (!isQuoted && c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else field.append(c);
+			}
+			
+			if (isQuoted) return null;
+			fields.add(field.toString());
+		}
+		
+		if (fields.size() != 2) return null;
+		String start = fields.get(0).strip();
+		String end = fields.get(1).strip();
+		if (start.isEmpty() || end.isEmpty()) return null;
+		
+		return new String[] { start, end };
+	}
+	
+	/**
+	 * Runs the search of the specified line of the queries.
+	 * @param line The line.
+	 * @return The result of the search, formatted as a line of the output.
+	 */
+	private String search(String line) {
+		this.queries.incrementAndGet();
+		
+		String[] query = BatchQueries.parseQuery(line);
+		if (query == null) {
+			this.failed.incrementAndGet();
+			return this.format(line, "", null, 0, "Not a query: " + line);
+		}
+		
+		// Find the path, over the local graph if one is used
+		AbstractSeparation separation = null;
+		String error = null;
+		long startTime = System.nanoTime();
+		try {
+			if (this.graph != null) separation =
+					new GraphSeparation(this.graph, query[0], query[1]);
+			else separation = new Separation(query[0], query[1]);
+		} catch (IOException | RuntimeException e) {
+			error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(
+				System.nanoTime() - startTime);
+		
+		if (error != null) this.failed.incrementAndGet();
+		else if (separation.getPathExists()) this.found.incrementAndGet();
+		return this.format(query[0], query[1], separation, millis, error);
+	}
+	
+	/**
+	 * Formats the result of a search as a line of the output.
+	 * @param start The start title of the query.
+	 * @param end The end title of the query.
+	 * @param separation The separation which was found, or null if the
+	 *                   search failed.
+	 * @param millis The time taken by the search, in milliseconds.
+	 * @param error The reason the search failed, or null if it did not.
+	 * @return The line of the output.
+	 */
+	private String format(String start, String end,
+			AbstractSeparation separation, long millis, String error) {
+		if (this.format == Format.JSON) {
+			return BatchQueries.toJson(start, end, separation, millis, 
+					error).toString();
+		}
+		
+		boolean pathExists = separation != null && separation.getPathExists();
+		int degrees = pathExists ? separation.getNumDegrees() : -1;
+		List<String> path = pathExists ? separation.getPath() :
+			new ArrayList<String>();
+		List<String> embedded = pathExists ? separation.getEmbeddedPath() :
+			new ArrayList<String>();
+		
+		return String.join(",", BatchQueries.quote(start),
+				BatchQueries.quote(end), 
+				BatchQueries.getStatus(separation, error), 
+				String.valueOf(degrees),
+				String.valueOf(millis),
+				BatchQueries.quote(String.join(CSV_PATH_SEPARATOR, path)),
+				BatchQueries.quote(String.join(CSV_PATH_SEPARATOR, embedded)),
+				BatchQueries.quote((error != null) ? error : ""));
+	}
+	
+	/**
+	 * Returns the result of a search as a JSON object.
+	 * @param start The start title of the query.
+	 * @param end The end title of the query.
+	 * @param separation The separation which was found, or null if the
+	 *                   search failed.
+	 * @param millis The time taken by the search, in milliseconds.
+	 * @param error The reason the search failed, or null if it did not.
+	 * @return The JSON object.
+	 */
+	static JsonObject toJson(String start, String end, 
+			AbstractSeparation separation, long millis, String error) {
+		boolean pathExists = separation != null && separation.getPathExists();
+		
+		JsonObject result = new JsonObject();
+		result.addProperty("start", start);
+		result.addProperty("end", end);
+		result.addProperty("status", 
+				BatchQueries.getStatus(separation, error));
+		result.addProperty("degrees", 
+				pathExists ? separation.getNumDegrees() : -1);
+		result.addProperty("millis", millis);
+		result.add("path", BatchQueries.toJson(pathExists ? 
+				separation.getPath() : new ArrayList<String>()));
+		result.add("embedded", BatchQueries.toJson(pathExists ? 
+				separation.getEmbeddedPath() : new ArrayList<String>()));
+		if (error != null) result.addProperty("error", error);
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the status of a finished search.
+	 * @param separation The separation which was found, or null if the
+	 *                   search failed.
+	 * @param error The reason the search failed, or null if it did not.
+	 * @return The status.
+	 */
+	private static String getStatus(AbstractSeparation separation, 
+			String error) {
+		if (error != null) return ERROR;
+		return separation.getPathExists() ? FOUND : NONE;
+	}
+	
+	/**
+	 * Returns a JSON array of the specified titles.
+	 * @param titles The titles.
+	 * @return The JSON array.
+	 */
+	private static JsonArray toJson(List<String> titles) {
+		JsonArray array = new JsonArray();
+		for (String title : titles) array.add(title);
+		
+		return array;
+	}
+	
+	/**
+	 * Quotes the specified value as a comma separated value, if it holds a
+	 * comma, a quote or a line break.
+	 * @param value The value.
+	 * @return The quoted value.
+	 */
+	private static String quote(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 &&
+				value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+			return value;
+		
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+	
+	/**
+	 * Writes the specified line to the output and flushes the output, so
+	 * that the line is written as a whole even if several searches finish at
+	 * once.
+	 * @param output The output.
+	 * @param line The line.
+	 * @throws IOException If the line could not be written.
+	 */
+	private static void writeLine(Writer output, String line)
+			throws IOException {
+		synchronized (output) {
+			output.write(line);
+			output.write('\n');
+			output.flush();
+		}
+	}
+}
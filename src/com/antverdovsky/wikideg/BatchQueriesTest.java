@@ -0,0 +1,157 @@
+package com.antverdovsky.wikideg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.graph.ArrayGraph;
+import com.antverdovsky.wikideg.sep.TestFetchers;
+
+/**
+ * Basic Testing of the BatchQueries class.
+ */
+public class BatchQueriesTest {
+	// Queries of the tests, in every form in which they may be written
+	private static final String QUERIES = 
+			"# Queries of the tests\n" +
+			"Lembarg\tGitHub\n" +
+			"\n" +
+			"\"Washington, D.C.\",Lembarg\n" +
+			"GitHub,Lembarg\n" +
+			"Lembarg,Lembarg\n" +
+			"Nowhere\tGitHub\n" +
+			"Lembarg\n";
+	
+	// Expected results of the queries in CSV, without the time taken
+	private static final String[] RESULTS = new String[] {
+			"\"Washington, D.C.\",Lembarg,none,-1,,,,",
+			"GitHub,Lembarg,none,-1,,,,",
+			"Lembarg,,error,-1,,,,Not a query: Lembarg",
+			"Lembarg,GitHub,found,3,,Lembarg|Poland|IPhone|GitHub," +
+					"Poland|IPhone|GitHub,",
+			"Lembarg,Lembarg,found,0,,Lembarg,,",
+			"Nowhere,GitHub,none,-1,,,,",
+			"start,end,status,degrees,millis,path,embedded,error"
+	};
+	
+	private ArrayGraph graph; // Graph of the tests
+	
+	@Rule
+	public TestFetchers fetchers = new TestFetchers();
+	
+	@Before
+	/**
+	 * Builds the graph of the tests.
+	 */
+	public void setUp() {
+		HashMap<String, List<String>> links = 
+				new HashMap<String, List<String>>();
+		links.put("Lembarg", Arrays.asList("Poland", "Lviv"));
+		links.put("Poland", Arrays.asList("IPhone", "Lembarg"));
+		links.put("Lviv", Arrays.asList("Poland"));
+		links.put("IPhone", Arrays.asList("GitHub"));
+		links.put("Washington, D.C.", Arrays.asList("GitHub"));
+		this.graph = new ArrayGraph(links);
+	}
+	
+	/**
+	 * Runs the queries of the tests and returns the lines of the results,
+	 * without the time taken by each search, sorted.
+	 * @param batch The batch which runs the queries.
+	 * @return The lines of the results.
+	 * @throws IOException If the batch could not be run.
+	 */
+	private static String[] run(BatchQueries batch) throws IOException {
+		StringWriter output = new StringWriter();
+		batch.run(new StringReader(QUERIES), output);
+		
+		String[] lines = output.toString().split("\n");
+		for (int i = 0; i < lines.length; ++i)
+			lines[i] = lines[i].replaceFirst(
+					",(found|none|error),(-?[0-9]+),[0-9]+,", ",$1,$2,,");
+		
+		Arrays.sort(lines);
+		return lines;
+	}
+	
+	@Test
+	/**
+	 * Tests that the titles of the queries are read from each form in which
+	 * they may be written.
+	 */
+	public void testParseQuery() {
+		assertArrayEquals(new String[] { "Lembarg", "GitHub" }, 
+				BatchQueries.parseQuery("Lembarg\tGitHub"));
+		assertArrayEquals(new String[] { "Washington, D.C.", "A \"B\"" }, 
+				BatchQueries.parseQuery(
+						"\"Washington, D.C.\", \"A \"\"B\"\"\""));
+		assertArrayEquals(new String[] { "Lembarg", "GitHub" }, 
+				BatchQueries.parseQuery(" Lembarg , GitHub "));
+		
+		assertNull(BatchQueries.parseQuery("Lembarg"));
+		assertNull(BatchQueries.parseQuery("Lembarg,"));
+		assertNull(BatchQueries.parseQuery("Lembarg\tGitHub\tIPhone"));
+		assertNull(BatchQueries.parseQuery("\"Lembarg,GitHub"));
+	}
+	
+	@Test
+	/**
+	 * Tests running the queries over a local graph, with more queries than
+	 * searches which may run at once.
+	 * @throws IOException If the batch could not be run.
+	 */
+	public void testGraph() throws IOException {
+		BatchQueries batch = new BatchQueries(this.graph, 2, 
+				BatchQueries.Format.CSV);
+		assertArrayEquals(RESULTS, BatchQueriesTest.run(batch));
+		
+		assertEquals(6, batch.getQueries());
+		assertEquals(2, batch.getFound());
+		assertEquals(1, batch.getFailed());
+	}
+	
+	@Test
+	/**
+	 * Tests running the queries through the fetchers of the Separation
+	 * class, which gives the same results as the local graph.
+	 * @throws IOException If the batch could not be run.
+	 */
+	public void testFetchers() throws IOException {
+		this.fetchers.useGraph(this.graph);
+		
+		BatchQueries batch = new BatchQueries(null, 4, 
+				BatchQueries.Format.CSV);
+		assertArrayEquals(RESULTS, BatchQueriesTest.run(batch));
+		assertEquals(2, batch.getFound());
+	}
+	
+	@Test
+	/**
+	 * Tests that the results are written as a JSON object on each line.
+	 * @throws IOException If the batch could not be run.
+	 */
+	public void testJson() throws IOException {
+		BatchQueries batch = new BatchQueries(this.graph, 1, 
+				BatchQueries.Format.JSON);
+		StringWriter output = new StringWriter();
+		batch.run(new StringReader("Lembarg\tGitHub\n"), output);
+		
+		String result = output.toString().replaceFirst(
+				"\"millis\":[0-9]+", "\"millis\":0");
+		assertEquals("{\"start\":\"Lembarg\",\"end\":\"GitHub\"," +
+				"\"status\":\"found\",\"degrees\":3,\"millis\":0," +
+				"\"path\":[\"Lembarg\",\"Poland\",\"IPhone\",\"GitHub\"]," +
+				"\"embedded\":[\"Poland\",\"IPhone\",\"GitHub\"]}\n", result);
+	}
+}
@@ -1,11 +1,46 @@
 package com.antverdovsky.wikideg;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Stack;
+import java.util.concurrent.ThreadLocalRandom;
 
+import com.antverdovsky.wikideg.graph.LandmarkIndex;
+import com.antverdovsky.wikideg.graph.LinkGraph;
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.AnchorCache;
+import com.antverdovsky.wikideg.linkfetch.BacklinksFetcher;
+import com.antverdovsky.wikideg.linkfetch.CachingLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.CoalescingLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.DiskLinkCache;
+import com.antverdovsky.wikideg.linkfetch.ExportLinksFetcher;
+import com.antverdovsky.wikideg.linkfetch.GraphLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkCache;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.linkfetch.OfflineLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.StubLinkFetcher;
+import com.antverdovsky.wikideg.sep.AbstractSeparation;
+import com.antverdovsky.wikideg.sep.GraphSeparation;
+import com.antverdovsky.wikideg.sep.ReverseTreeCache;
 import com.antverdovsky.wikideg.sep.Separation;
+import com.antverdovsky.wikideg.sep.ShortestPathsSeparation;
+import com.antverdovsky.wikideg.sep.SingleSourceSeparation;
 import com.antverdovsky.wikideg.util.Logger;
+import com.antverdovsky.wikideg.util.URLFetch;
 import com.antverdovsky.wikideg.util.Utilities;
 
 /**
@@ -17,6 +52,51 @@ public class Main {
 	private static boolean doDisplayTimeArg = false;
 	private static boolean doDisplayDebugArg = false;
 	private static boolean doDisplayHelp = false;
+	private static boolean doUseOffline = false;
+	
+	// Directory of the disk link cache, or null if it is not to be used, and
+	// the options of the disk link cache
+	private static Path cacheDir = Paths.get(System.getProperty("user.home"),
+			".wiki-degrees", "cache");
+	private static Duration cacheTtl = DiskLinkCache.DEFAULT_TTL;
+	private static long cacheMaxBytes = DiskLinkCache.DEFAULT_MAX_BYTES;
+	private static DiskLinkCache diskCache = null;
+	
+	// File of the local link graph, or null if links are fetched instead
+	private static Path graphFile = null;
+	private static LinkGraph graph = null;
+	
+	// File of the landmark index of the local graph, or null if none is used
+	private static Path landmarksFile = null;
+	
+	// Coalescing fetchers of the links and backlinks, kept for their stats
+	private static CoalescingLinkFetcher linksCoalescer = null;
+	private static CoalescingLinkFetcher backlinksCoalescer = null;
+	
+	// File of the queries of a batch ("-" for stdin), or null to read a
+	// single query from stdin, and the options of the batch
+	private static String batchFile = null;
+	private static int maxSearches = BatchQueries.DEFAULT_IN_FLIGHT;
+	private static BatchQueries.Format batchFormat = BatchQueries.Format.CSV;
+	
+	// Port of the server, or -1 if no server is run, and the options of the
+	// server
+	private static int serverPort = -1;
+	private static int serverQueued = PathServer.DEFAULT_QUEUED;
+	private static Duration serverTimeout = PathServer.DEFAULT_TIMEOUT;
+	
+	// File of the local graph served by a stub of Wikipedia, or null if the
+	// links are downloaded, and the latency of each request to the stub
+	private static Path stubFile = null;
+	private static long stubLatency = 50;
+	
+	// File of the end articles of a search from one start article to many,
+	// or null if a single end article is read from stdin
+	private static Path targetsFile = null;
+	
+	// Number of shortest paths listed between the start and end articles,
+	// or zero if a single path is found
+	private static int pathsLimit = 0;
 	
 	/**
 	 * Prints out the help information.
@@ -26,6 +106,46 @@ public class Main {
 		System.out.println("\t-h : Prints out these help instructions.");
 		System.out.println("\t-t : Prints out time taken to compute a path");
 		System.out.println("\t-d : Prints out debug information");
+		System.out.println("\t-c=N : Fetches links for at most N tasks at " +
+				"once (default " + Separation.getMaxConcurrency() + ")");
+		System.out.println("\t-cache=DIR : Keeps fetched links in the " +
+				"directory (default " + Main.cacheDir + ")");
+		System.out.println("\t-cache-ttl=HOURS : Fetches links again once " +
+				"they are older than HOURS hours (default " + 
+				DiskLinkCache.DEFAULT_TTL.toHours() + ")");
+		System.out.println("\t-cache-size=MB : Deletes the least recently " +
+				"used links once the cache exceeds MB megabytes (default " + 
+				DiskLinkCache.DEFAULT_MAX_BYTES / (1024 * 1024) + ")");
+		System.out.println("\t-nocache : Does not keep fetched links on " +
+				"disk");
+		System.out.println("\t-offline : Uses only links kept on disk, " +
+				"without downloading anything");
+		System.out.println("\t-graph=FILE : Reads links from a graph " +
+				"imported from the Wikipedia dumps");
+		System.out.println("\t-landmarks=FILE : Bounds the searches of the " +
+				"graph by its landmark index");
+		System.out.println("\t-batch=FILE : Finds the path of each start " +
+				"and end pair in the file (- for stdin)");
+		System.out.println("\t-jobs=N : Runs at most N searches of a batch " +
+				"or server at once (default " + 
+				BatchQueries.DEFAULT_IN_FLIGHT + ")");
+		System.out.println("\t-format=csv|json : Writes the results of a " +
+				"batch as CSV or JSON lines (default csv)");
+		System.out.println("\t-serve=PORT : Serves paths at " +
+				"http://localhost:PORT/path?from=START&to=END");
+		System.out.println("\t-queue=N : Turns requests away once N are " +
+				"waiting (default " + PathServer.DEFAULT_QUEUED + ")");
+		System.out.println("\t-timeout=MS : Gives up on a request after MS " +
+				"milliseconds (default " + 
+				PathServer.DEFAULT_TIMEOUT.toMillis() + ")");
+		System.out.println("\t-stub=FILE : Serves the links of a local " +
+				"graph as though they were downloaded");
+		System.out.println("\t-latency=MS : Waits MS milliseconds on each " +
+				"request to the stub (default 50)");
+		System.out.println("\t-targets=FILE : Finds the path from the " +
+				"start article to each article in the file");
+		System.out.println("\t-paths=N : Lists up to N of the shortest " +
+				"paths from the start to the end article");
 		
 		System.out.println("\nUsage: ");
 		System.out.println("\tEnter any two Wikipedia article titles or " +
@@ -44,6 +164,266 @@ public class Main {
 		System.out.println("\n\n");
 	}
 	
+	/**
+	 * Sets up the links and backlinks fetchers of the searches. Links are 
+	 * served from the shared memory cache first, then from the disk cache,
+	 * and are only downloaded if they are in neither. Concurrent fetches of
+	 * the same article past the memory cache are coalesced into one. If the
+	 * disk cache cannot be opened, it is not used.
+	 * If a local graph is used, links are only read from the graph, and its
+	 * landmark index is read if one is used. If a stub is used, links are
+	 * read from the graph of the stub, waiting on each request as though the
+	 * links were downloaded.
+	 * @throws IOException If the local graph or its landmark index could not
+	 *                     be opened.
+	 */
+	private static void setUpFetchers() throws IOException {
+		if (Main.graphFile != null) {
+			Main.graph = new LinkGraph(Main.graphFile);
+			Separation.setLinksFetcher(new GraphLinkFetcher(Main.graph,
+					LinkDirection.LINKS));
+			Separation.setBacklinksFetcher(new GraphLinkFetcher(Main.graph,
+					LinkDirection.BACKLINKS));
+			URLFetch.setIsOffline(true);
+			
+			if (Main.landmarksFile != null) {
+				LandmarkIndex index = LandmarkIndex.read(Main.graph, 
+						Main.landmarksFile);
+				GraphSeparation.setLandmarkIndex(index);
+				if (Logger.getIsEnabled()) {
+					for (int i = 0; i < index.size(); ++i) 
+						Logger.logLine(index.describe(i));
+				}
+			}
+			return;
+		}
+		
+		AbstractLinkFetcher links = new ExportLinksFetcher();
+		AbstractLinkFetcher backlinks = new BacklinksFetcher();
+		
+		// The stub serves the links of a local graph as slowly as they are
+		// downloaded. Its links must not end up in the disk cache.
+		if (Main.stubFile != null) {
+			LinkGraph stub = new LinkGraph(Main.stubFile);
+			links = new StubLinkFetcher(new GraphLinkFetcher(stub, 
+					LinkDirection.LINKS), links.getBatchSize(), 
+					Main.stubLatency);
+			backlinks = new StubLinkFetcher(new GraphLinkFetcher(stub, 
+					LinkDirection.BACKLINKS), backlinks.getBatchSize(), 
+					Main.stubLatency);
+			URLFetch.setIsOffline(true);
+			Main.cacheDir = null;
+		}
+		
+		// While offline, nothing is downloaded at all
+		if (Main.doUseOffline) {
+			links = new OfflineLinkFetcher(links.getBatchSize());
+			backlinks = new OfflineLinkFetcher(backlinks.getBatchSize());
+			URLFetch.setIsOffline(true);
+		}
+		
+		if (Main.cacheDir != null) {
+			try {
+				Main.diskCache = new DiskLinkCache(Main.cacheDir, 
+						Main.cacheTtl, Main.cacheMaxBytes);
+				
+				links = new CachingLinkFetcher(links, LinkDirection.LINKS, 
+						Main.diskCache);
+				backlinks = new CachingLinkFetcher(backlinks, 
+						LinkDirection.BACKLINKS, Main.diskCache);
+			} catch (IOException e) {
+				System.out.println("Unable to open the link cache in " + 
+						Main.cacheDir + ", continuing without it.");
+			}
+		}
+		
+		Main.linksCoalescer = new CoalescingLinkFetcher(links);
+		Main.backlinksCoalescer = new CoalescingLinkFetcher(backlinks);
+		Separation.setLinksFetcher(new CachingLinkFetcher(
+				Main.linksCoalescer, LinkDirection.LINKS));
+		Separation.setBacklinksFetcher(new CachingLinkFetcher(
+				Main.backlinksCoalescer, LinkDirection.BACKLINKS));
+	}
+	
+	/**
+	 * Returns the title of a random article, from the local graph if one is
+	 * used, or from Wikipedia otherwise.
+	 * @return The article title.
+	 * @throws IOException If the random article title could not be fetched.
+	 */
+	private static String getRandomArticle() throws IOException {
+		if (Main.graph == null) return Utilities.getRandomArticle();
+		if (Main.graph.size() == 0) throw new IOException("Empty graph.");
+		
+		int node = ThreadLocalRandom.current().nextInt(Main.graph.size());
+		return Main.graph.getTitle(node);
+	}
+	
+	/**
+	 * Logs the statistics of the caches and the coalescing fetchers.
+	 */
+	private static void logStats() {
+		Logger.logLine(LinkCache.getShared().toString());
+		Logger.logLine(AnchorCache.getShared().toString());
+		Logger.logLine(ReverseTreeCache.getShared().toString());
+		if (Main.diskCache != null) 
+			Logger.logLine(Main.diskCache.toString());
+		if (Main.linksCoalescer != null) {
+			Logger.logLine("Coalesced fetches: " + 
+					Main.linksCoalescer.getCoalesced() + " links, " + 
+					Main.backlinksCoalescer.getCoalesced() + " backlinks");
+		}
+	}
+	
+	/**
+	 * Runs the searches of the batch of queries, writing the result of each
+	 * search to stdout as it finishes.
+	 */
+	private static void runBatch() {
+		BatchQueries batch = new BatchQueries(Main.graph, Main.maxSearches,
+				Main.batchFormat);
+		Writer output = new BufferedWriter(new OutputStreamWriter(
+				System.out, StandardCharsets.UTF_8));
+		
+		long startTime = System.currentTimeMillis();
+		try (Reader input = Main.batchFile.equals("-") ? 
+				new InputStreamReader(System.in, StandardCharsets.UTF_8) :
+				Files.newBufferedReader(Paths.get(Main.batchFile))) {
+			batch.run(input, output);
+		} catch (IOException e) {
+			System.err.println("Unable to run the batch " + Main.batchFile +
+					": " + e.getMessage());
+		}
+		long endTime = System.currentTimeMillis();
+		Main.logStats();
+		
+		// The results are written to stdout, so the totals go to stderr
+		if (Main.doDisplayTimeArg) {
+			System.err.println("Ran " + batch.getQueries() + " queries (" +
+					batch.getFound() + " found, " + batch.getFailed() + 
+					" failed) in " + (endTime - startTime) + "ms.");
+		}
+	}
+	
+	/**
+	 * Runs the server until the process is killed.
+	 */
+	private static void runServer() {
+		PathServer server;
+		try {
+			server = new PathServer(new InetSocketAddress(Main.serverPort), 
+					Main.graph, Main.maxSearches, Main.serverQueued, 
+					Main.serverTimeout);
+		} catch (IOException e) {
+			System.out.println("Unable to listen on port " + 
+					Main.serverPort + ": " + e.getMessage());
+			return;
+		}
+		
+		// The server keeps the process alive once this method returns
+		server.start();
+		System.out.println("Serving paths at http://localhost:" + 
+				server.getPort() + "/path?from=START&to=END");
+	}
+	
+	/**
+	 * Finds the path from the specified start article to each of the
+	 * articles of the targets file, which lists one article per line, and
+	 * prints out the degrees and path of each.
+	 * @param start The title of the start article.
+	 */
+	private static void runTargets(String start) {
+		List<String> targets = new ArrayList<String>();
+		try {
+			for (String line : Files.readAllLines(Main.targetsFile, 
+					StandardCharsets.UTF_8)) {
+				line = line.strip();
+				if (!line.isEmpty() && !line.startsWith("#")) 
+					targets.add(line);
+			}
+		} catch (IOException e) {
+			System.out.println("Unable to read the targets " + 
+					Main.targetsFile + ": " + e.getMessage());
+			return;
+		}
+		
+		System.out.println("Searching for paths from \"" + start + 
+				"\" to " + targets.size() + " article(s)");
+		SingleSourceSeparation separations;
+		long startTime = System.currentTimeMillis();
+		try {
+			separations = new SingleSourceSeparation(start, targets);
+		} catch (IOException e) {
+			System.out.println("Unable to fetch the links of " + start + 
+					": " + e.getMessage());
+			return;
+		}
+		long endTime = System.currentTimeMillis();
+		Main.logStats();
+		
+		for (Map.Entry<String, AbstractSeparation> target : 
+				separations.getSeparations().entrySet()) {
+			AbstractSeparation separation = target.getValue();
+			if (!separation.getPathExists()) {
+				System.out.println(target.getKey() + ": no path");
+			} else {
+				System.out.println(target.getKey() + ": " + 
+						separation.getNumDegrees() + " (" + 
+						String.join(" -> ", separation.getPath()) + ")");
+			}
+		}
+		
+		if (Main.doDisplayTimeArg) {
+			System.out.println("Time taken: " + (endTime - startTime) + 
+					"ms.");
+		}
+	}
+	
+	/**
+	 * Finds every shortest path from the specified start article to the
+	 * specified end article, and prints out up to the limit of them, along
+	 * with the number of paths in total.
+	 * @param start The title of the start article.
+	 * @param end The title of the end article.
+	 */
+	private static void runPaths(String start, String end) {
+		System.out.println("Searching for the shortest paths between \"" + 
+				start + "\" and \"" + end + "\"");
+		ShortestPathsSeparation separation;
+		long startTime = System.currentTimeMillis();
+		try {
+			separation = new ShortestPathsSeparation(start, end);
+		} catch (IOException e) {
+			System.out.println("Unable to fetch the links of " + start + 
+					" or " + end + ": " + e.getMessage());
+			return;
+		}
+		long endTime = System.currentTimeMillis();
+		Main.logStats();
+		
+		if (!separation.getPathExists()) {
+			System.out.println("Unable to find a path from " + 
+					start + " to " + end);
+		} else {
+			System.out.println("Degrees of Separation: " + 
+					separation.getNumDegrees());
+			System.out.println("Shortest Paths: " + 
+					separation.getNumPaths());
+			
+			int i = 0;
+			for (AbstractSeparation path : 
+					separation.getPaths(Main.pathsLimit)) {
+				System.out.println("\t" + (++i) + ". " + 
+						String.join(" -> ", path.getPath()));
+			}
+		}
+		
+		if (Main.doDisplayTimeArg) {
+			System.out.println("Time taken: " + (endTime - startTime) + 
+					"ms.");
+		}
+	}
+	
 	/**
 	 * Main execution method.
 	 * @param args The program arguments.
@@ -54,13 +434,95 @@ public class Main {
 			if (s.equalsIgnoreCase("-d")) Main.doDisplayDebugArg = true;
 			if (s.equalsIgnoreCase("-t")) Main.doDisplayTimeArg = true;
 			if (s.equalsIgnoreCase("-h")) Main.doDisplayHelp = true;
+			if (s.equalsIgnoreCase("-offline")) Main.doUseOffline = true;
+			if (s.equalsIgnoreCase("-nocache")) Main.cacheDir = null;
+			if (s.toLowerCase().startsWith("-cache=")) 
+				Main.cacheDir = Paths.get(s.substring(7));
+			if (s.toLowerCase().startsWith("-graph=")) 
+				Main.graphFile = Paths.get(s.substring(7));
+			if (s.toLowerCase().startsWith("-landmarks=")) 
+				Main.landmarksFile = Paths.get(s.substring(11));
+			if (s.toLowerCase().startsWith("-batch=")) 
+				Main.batchFile = s.substring(7);
+			if (s.equalsIgnoreCase("-format=json")) 
+				Main.batchFormat = BatchQueries.Format.JSON;
+			if (s.equalsIgnoreCase("-format=csv")) 
+				Main.batchFormat = BatchQueries.Format.CSV;
+			
+			if (s.toLowerCase().startsWith("-stub=")) 
+				Main.stubFile = Paths.get(s.substring(6));
+			if (s.toLowerCase().startsWith("-targets=")) 
+				Main.targetsFile = Paths.get(s.substring(9));
+			
+			try {
+				if (s.toLowerCase().startsWith("-serve=")) 
+					Main.serverPort = Integer.parseInt(s.substring(7));
+				if (s.toLowerCase().startsWith("-queue=")) 
+					Main.serverQueued = Integer.parseInt(s.substring(7));
+				if (s.toLowerCase().startsWith("-timeout=")) {
+					Main.serverTimeout = Duration.ofMillis(
+							Long.parseLong(s.substring(9)));
+				}
+				if (s.toLowerCase().startsWith("-cache-ttl=")) {
+					Main.cacheTtl = Duration.ofHours(
+							Long.parseLong(s.substring(11)));
+				}
+				if (s.toLowerCase().startsWith("-cache-size=")) {
+					long megabytes = Long.parseLong(s.substring(12));
+					Main.cacheMaxBytes = Math.max(0, Math.min(megabytes, 
+							Long.MAX_VALUE >> 20)) << 20;
+				}
+				if (s.toLowerCase().startsWith("-latency=")) 
+					Main.stubLatency = Long.parseLong(s.substring(9));
+				if (s.toLowerCase().startsWith("-paths=")) 
+					Main.pathsLimit = Integer.parseInt(s.substring(7));
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid number: " + s);
+			}
+			
+			if (s.toLowerCase().startsWith("-jobs=")) {
+				try {
+					Main.maxSearches = Integer.parseInt(s.substring(6));
+					if (Main.maxSearches <= 0) 
+						throw new IllegalArgumentException();
+				} catch (IllegalArgumentException e) {
+					System.out.println("Invalid number of jobs: " + s);
+					Main.maxSearches = BatchQueries.DEFAULT_IN_FLIGHT;
+				}
+			}
+			
+			if (s.toLowerCase().startsWith("-c=")) {
+				try {
+					Separation.setMaxConcurrency(
+							Integer.parseInt(s.substring(3)));
+				} catch (IllegalArgumentException e) {
+					System.out.println("Invalid concurrency: " + s);
+				}
+			}
 		}
 		
 		// Print out the help, if applicable
 		if (Main.doDisplayHelp) Main.printHelp();
 		
-		// Initialize the Debug Logger
+		// Initialize the Debug Logger and the link fetchers
 		Logger.setIsEnabled(Main.doDisplayDebugArg);
+		try {
+			Main.setUpFetchers();
+		} catch (IOException e) {
+			System.out.println("Unable to open the graph: " + 
+					e.getMessage());
+			return;
+		}
+		
+		// Run the server or the batch of queries instead of a single query,
+		// if applicable
+		if (Main.serverPort >= 0) {
+			Main.runServer();
+			return;
+		} else if (Main.batchFile != null) {
+			Main.runBatch();
+			return;
+		}
 		
 		// Scanner for reading from stdin
 		Scanner scanner = new Scanner(System.in);
@@ -72,34 +534,53 @@ public class Main {
 		// Get the starting and ending article names
 		System.out.print("Enter starting article name: ");
 		if (scanner.hasNextLine()) start = scanner.nextLine();
-		System.out.print("Enter ending article name: ");
-		if (scanner.hasNextLine()) end = scanner.nextLine();
+		if (Main.targetsFile == null) {
+			System.out.print("Enter ending article name: ");
+			if (scanner.hasNextLine()) end = scanner.nextLine();
+		}
 		scanner.close();
 		
 		// If the user used the "%r" title for either article, fetch a random
 		// article to replace it.
 		try {
-			if (start.equals("%r")) start = Utilities.getRandomArticle();
-			if (end.equals("%r")) end = Utilities.getRandomArticle();
+			if (start.equals("%r")) start = Main.getRandomArticle();
+			if (end.equals("%r")) end = Main.getRandomArticle();
 		} catch (IOException e) {
 			System.out.println("Unknown exception occured.");
 			return;
 		}
+		
+		// Search from the start to every article of the targets file instead
+		// of a single end article, if applicable
+		if (Main.targetsFile != null) {
+			Main.runTargets(start);
+			return;
+		}
+
+		// List the shortest paths instead of a single path, if applicable
+		if (Main.pathsLimit > 0) {
+			Main.runPaths(start, end);
+			return;
+		}
 
 		// Print the starting and ending article titles
 		System.out.println("Searching for path between \"" + 
 				start + "\" and \"" + end + "\"");
-		Separation separation = null;
+		AbstractSeparation separation = null;
 		
-		// Try to find the path between the start and end
+		// Try to find the path between the start and end, over the local
+		// graph without fetching anything if one is used
 		double startTime = System.currentTimeMillis(); 
 		try { 
-			separation = new Separation(start, end); 
+			if (Main.graph != null)
+				separation = new GraphSeparation(Main.graph, start, end);
+			else separation = new Separation(start, end); 
 		} catch (IOException e) {
 			System.out.println("Unknown exception occured.");
 			return;
 		}
 		double endTime = System.currentTimeMillis();
+		Main.logStats();
 		
 		if (separation == null || !separation.getPathExists()) {
 			System.out.println("Unable to find a path from " + 
@@ -0,0 +1,352 @@
+package com.antverdovsky.wikideg;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.sep.AbstractSeparation;
+import com.antverdovsky.wikideg.sep.GraphSeparation;
+import com.antverdovsky.wikideg.sep.Separation;
+import com.antverdovsky.wikideg.util.SearchTimeoutException;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long running HTTP server which finds the path between two articles for
+ * each request of "/path?from=START&to=END", and answers with the result
+ * as a JSON object. Every search of the server shares the fetchers, caches
+ * and fetch budget of the process, so a search which has queued many
+ * fetches takes turns with the others rather than holding every slot.
+ * At most a fixed number of searches run at once, and at most a fixed
+ * number of requests wait for their turn. Any request beyond those is
+ * answered at once with "503 Service Unavailable", rather than waiting
+ * behind a queue which it has no hope of getting through. Each search has a
+ * deadline, which starts once its request has been admitted, so the time a
+ * request waits in the queue counts against its deadline. A request which
+ * runs out of time, whether it is still waiting or already searching, is
+ * answered with "504 Gateway Timeout".
+ * The counters of the server are served at "/stats".
+ */
+public class PathServer {
+	// Default number of requests which may wait for a search to finish
+	public static final int DEFAULT_QUEUED = 64;
+	
+	// Default time which a request may take, from its admission
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+	
+	// Seconds after which a rejected client is asked to retry
+	private static final String RETRY_AFTER = "1";
+	
+	private HttpServer server;       // Server of the requests
+	private ExecutorService pool;    // Threads which handle the requests
+	private IntGraph graph;          // Local graph, or null to fetch links
+	private int maxRunning;          // Maximum number of searches at once
+	private int maxQueued;           // Maximum number of waiting requests
+	private Duration timeout;        // Maximum time taken by a request
+	
+	private Semaphore admitted;      // Requests running or waiting
+	private Semaphore running;       // Searches running
+	
+	private AtomicLong served;       // Requests which were answered
+	private AtomicLong rejected;     // Requests which were turned away
+	private AtomicLong timedOut;     // Requests which ran out of time
+	
+	/**
+	 * Creates a new server, which does not accept requests until it is
+	 * started.
+	 * @param address The address on which the server listens. A port of 0
+	 *                picks any free port.
+	 * @param graph The local graph over which the paths are found, or null
+	 *              if the links are fetched through the fetchers of the
+	 *              Separation class.
+	 * @param maxRunning The maximum number of searches which run at once.
+	 * @param maxQueued The maximum number of requests which wait for a
+	 *                  search to finish before they are turned away.
+	 * @param timeout The maximum time which a request may take, from the
+	 *                time it is admitted.
+	 * @throws IllegalArgumentException If maxRunning is not positive or
+	 *                                  maxQueued is negative.
+	 * @throws IOException If the server could not listen on the address.
+	 */
+	public PathServer(InetSocketAddress address, IntGraph graph,
+			int maxRunning, int maxQueued, Duration timeout)
+					throws IOException {
+		if (maxRunning <= 0) throw new IllegalArgumentException(
+				"Searches at once must be positive: " + maxRunning);
+		if (maxQueued < 0) throw new IllegalArgumentException(
+				"Queued requests must not be negative: " + maxQueued);
+		
+		this.graph = graph;
+		this.maxRunning = maxRunning;
+		this.maxQueued = maxQueued;
+		this.timeout = timeout;
+		
+		this.admitted = new Semaphore(maxRunning + maxQueued);
+		this.running = new Semaphore(maxRunning, true);
+		
+		this.served = new AtomicLong();
+		this.rejected = new AtomicLong();
+		this.timedOut = new AtomicLong();
+		
+		// The number of threads is bound by the admission of the requests,
+		// since a request which is turned away is answered at once
+		this.pool = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "http");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.server = HttpServer.create(address, 0);
+		this.server.setExecutor(this.pool);
+		this.server.createContext("/path", this::handlePath);
+		this.server.createContext("/stats", this::handleStats);
+	}
+	
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		this.server.start();
+	}
+	
+	/**
+	 * Stops accepting requests, and closes the server once the requests
+	 * which are being answered have been answered, or once the specified
+	 * delay has passed.
+	 * @param delaySeconds The maximum time to wait, in seconds.
+	 */
+	public void stop(int delaySeconds) {
+		this.server.stop(delaySeconds);
+		this.pool.shutdown();
+	}
+	
+	/**
+	 * Returns the port on which the server listens.
+	 * @return The port.
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+	
+	/**
+	 * Returns the number of requests which were answered, including those
+	 * whose search failed.
+	 * @return The number of requests.
+	 */
+	public long getServed() {
+		return this.served.get();
+	}
+	
+	/**
+	 * Returns the number of requests which were turned away, since too many
+	 * requests were already waiting.
+	 * @return The number of requests.
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+	
+	/**
+	 * Returns the number of requests which ran out of time, either while
+	 * they waited or while they searched.
+	 * @return The number of requests.
+	 */
+	public long getTimedOut() {
+		return this.timedOut.get();
+	}
+	
+	/**
+	 * Answers a request for the path between two articles.
+	 * @param exchange The exchange of the request.
+	 * @throws IOException If the answer could not be sent.
+	 */
+	private void handlePath(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				PathServer.sendError(exchange, 405, "Only GET is allowed.");
+				return;
+			}
+			
+			HashMap<String, String> params;
+			try {
+				params = PathServer.parseQuery(
+						exchange.getRequestURI().getRawQuery());
+			} catch (IllegalArgumentException e) {
+				PathServer.sendError(exchange, 400, "Malformed query.");
+				return;
+			}
+			
+			String from = params.get("from");
+			String to = params.get("to");
+			if (from == null || from.isBlank() ||
+					to == null || to.isBlank()) {
+				PathServer.sendError(exchange, 400,
+						"Both \"from\" and \"to\" are required.");
+				return;
+			}
+			
+			// Turn the request away at once if the queue is full
+			if (!this.admitted.tryAcquire()) {
+				this.rejected.incrementAndGet();
+				exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER);
+				PathServer.sendError(exchange, 503, "The server is busy.");
+				return;
+			}
+			
+			try {
+				this.search(exchange, from.strip(), to.strip());
+			} finally {
+				this.admitted.release();
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * Waits for a search to finish, if too many are running, then finds the
+	 * path between the specified articles and sends it as the answer.
+	 * @param exchange The exchange of the request.
+	 * @param from The title of the start article.
+	 * @param to The title of the end article.
+	 * @throws IOException If the answer could not be sent.
+	 */
+	private void search(HttpExchange exchange, String from, String to)
+			throws IOException {
+		long startTime = System.nanoTime();
+		try {
+			if (!this.running.tryAcquire(this.timeout.toNanos(),
+					TimeUnit.NANOSECONDS)) {
+				this.timedOut.incrementAndGet();
+				PathServer.sendError(exchange, 504, "The request timed " +
+						"out while it waited for a search to finish.");
+				return;
+			}
+		} catch (InterruptedException e) {
+			PathServer.sendError(exchange, 503, "The server is stopping.");
+			return;
+		}
+		
+		AbstractSeparation separation = null;
+		String error = null;
+		int status = 200;
+		try {
+			Duration remaining = this.timeout.minusNanos(
+					System.nanoTime() - startTime);
+			if (this.graph != null)
+				separation = new GraphSeparation(this.graph, from, to,
+						remaining);
+			else separation = new Separation(from, to, remaining);
+		} catch (SearchTimeoutException e) {
+			this.timedOut.incrementAndGet();
+			error = e.getMessage();
+			status = 504;
+		} catch (IOException e) {
+			error = e.getMessage();
+			status = 502;
+		} catch (RuntimeException e) {
+			error = e.toString();
+			status = 500;
+		} finally {
+			this.running.release();
+		}
+		
+		long millis = TimeUnit.NANOSECONDS.toMillis(
+				System.nanoTime() - startTime);
+		PathServer.send(exchange, status, BatchQueries.toJson(from, to,
+				separation, millis, error));
+		this.served.incrementAndGet();
+	}
+	
+	/**
+	 * Answers a request for the counters of the server.
+	 * @param exchange The exchange of the request.
+	 * @throws IOException If the answer could not be sent.
+	 */
+	private void handleStats(HttpExchange exchange) throws IOException {
+		try {
+			int running = this.maxRunning - this.running.availablePermits();
+			int admitted = this.maxRunning + this.maxQueued -
+					this.admitted.availablePermits();
+			
+			JsonObject stats = new JsonObject();
+			stats.addProperty("running", running);
+			stats.addProperty("queued", Math.max(0, admitted - running));
+			stats.addProperty("served", this.getServed());
+			stats.addProperty("rejected", this.getRejected());
+			stats.addProperty("timedOut", this.getTimedOut());
+			PathServer.send(exchange, 200, stats);
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * Splits the specified query string into its decoded parameters.
+	 * @param query The raw query string of a request, or null if it has
+	 *              none.
+	 * @return The value of each parameter, by name. If a parameter is
+	 *         repeated, the last value is kept.
+	 * @throws IllegalArgumentException If a parameter is not encoded
+	 *                                  properly.
+	 */
+	static HashMap<String, String> parseQuery(String query) {
+		HashMap<String, String> params = new HashMap<String, String>();
+		if (query == null) return params;
+		
+		for (String param : query.split("&")) {
+			int equals = param.indexOf('=');
+			if (equals < 0) continue;
+			
+			params.put(URLDecoder.decode(param.substring(0, equals),
+					StandardCharsets.UTF_8),
+					URLDecoder.decode(param.substring(equals + 1),
+							StandardCharsets.UTF_8));
+		}
+		
+		return params;
+	}
+	
+	/**
+	 * Sends an answer which only holds the specified error.
+	 * @param exchange The exchange of the request.
+	 * @param status The HTTP status of the answer.
+	 * @param error The error.
+	 * @throws IOException If the answer could not be sent.
+	 */
+	private static void sendError(HttpExchange exchange, int status,
+			String error) throws IOException {
+		JsonObject body = new JsonObject();
+		body.addProperty("error", error);
+		PathServer.send(exchange, status, body);
+	}
+	
+	/**
+	 * Sends the specified JSON object as the answer to a request.
+	 * @param exchange The exchange of the request.
+	 * @param status The HTTP status of the answer.
+	 * @param body The JSON object.
+	 * @throws IOException If the answer could not be sent.
+	 */
+	private static void send(HttpExchange exchange, int status,
+			JsonObject body) throws IOException {
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				"application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
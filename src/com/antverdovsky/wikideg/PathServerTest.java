@@ -0,0 +1,204 @@
+package com.antverdovsky.wikideg;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.graph.ArrayGraph;
+import com.antverdovsky.wikideg.linkfetch.GraphLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.linkfetch.StubLinkFetcher;
+import com.antverdovsky.wikideg.sep.TestFetchers;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Basic Testing of the PathServer class, against a stub of Wikipedia.
+ */
+public class PathServerTest {
+	private static final HttpClient CLIENT = HttpClient.newHttpClient();
+	
+	private PathServer server; // Server of the test
+	
+	@Rule
+	public TestFetchers fetchers = new TestFetchers();
+	
+	@Before
+	/**
+	 * Replaces the fetchers of the Separation class with a stub, which
+	 * waits on each request for a tenth of a second.
+	 */
+	public void setUp() {
+		HashMap<String, List<String>> links = 
+				new HashMap<String, List<String>>();
+		links.put("Lembarg", Arrays.asList("Poland", "Lviv"));
+		links.put("Poland", Arrays.asList("IPhone", "Lembarg"));
+		links.put("Lviv", Arrays.asList("Poland"));
+		links.put("IPhone", Arrays.asList("Washington, D.C."));
+		links.put("Washington, D.C.", Arrays.asList("GitHub"));
+		ArrayGraph graph = new ArrayGraph(links);
+		
+		this.fetchers.use(new StubLinkFetcher(new GraphLinkFetcher(graph,
+				LinkDirection.LINKS), 1, 100), new StubLinkFetcher(
+				new GraphLinkFetcher(graph, LinkDirection.BACKLINKS), 1,
+				100));
+	}
+	
+	@After
+	/**
+	 * Stops the server.
+	 */
+	public void tearDown() {
+		if (this.server != null) this.server.stop(0);
+	}
+	
+	/**
+	 * Starts a server on any free port.
+	 * @param maxRunning The maximum number of searches at once.
+	 * @param maxQueued The maximum number of waiting requests.
+	 * @param timeout The maximum time taken by a request.
+	 * @throws IOException If the server could not be started.
+	 */
+	private void start(int maxRunning, int maxQueued, Duration timeout) 
+			throws IOException {
+		this.server = new PathServer(new InetSocketAddress("localhost", 0), 
+				null, maxRunning, maxQueued, timeout);
+		this.server.start();
+	}
+	
+	/**
+	 * Sends a request for the path between the specified articles.
+	 * @param from The title of the start article.
+	 * @param to The title of the end article.
+	 * @return The future response.
+	 */
+	private CompletableFuture<HttpResponse<String>> request(String from, 
+			String to) {
+		URI uri = URI.create("http://localhost:" + this.server.getPort() + 
+				"/path?from=" + 
+				URLEncoder.encode(from, StandardCharsets.UTF_8) + "&to=" + 
+				URLEncoder.encode(to, StandardCharsets.UTF_8));
+		return CLIENT.sendAsync(HttpRequest.newBuilder(uri).build(), 
+				HttpResponse.BodyHandlers.ofString());
+	}
+	
+	/**
+	 * Returns the body of the specified response as a JSON object.
+	 * @param response The response.
+	 * @return The JSON object.
+	 */
+	private static JsonObject toJson(HttpResponse<String> response) {
+		return new JsonParser().parse(response.body()).getAsJsonObject();
+	}
+	
+	@Test
+	/**
+	 * Tests that a path is found, and that a request without both titles is
+	 * refused.
+	 * @throws Exception If the requests failed.
+	 */
+	public void testPath() throws Exception {
+		this.start(2, 2, Duration.ofSeconds(30));
+		
+		HttpResponse<String> response = this.request("Lembarg", 
+				"Washington, D.C.").get();
+		assertEquals(200, response.statusCode());
+		JsonObject result = PathServerTest.toJson(response);
+		assertEquals("found", result.get("status").getAsString());
+		assertEquals(3, result.get("degrees").getAsInt());
+		
+		response = this.request("", "GitHub").get();
+		assertEquals(400, response.statusCode());
+		assertEquals(1, this.server.getServed());
+	}
+	
+	/**
+	 * Waits until the server has the specified number of requests running
+	 * and waiting.
+	 * @param running The number of requests running.
+	 * @param queued The number of requests waiting.
+	 * @throws Exception If the counters could not be requested.
+	 */
+	private void awaitStats(int running, int queued) throws Exception {
+		URI uri = URI.create("http://localhost:" + this.server.getPort() + 
+				"/stats");
+		while (true) {
+			JsonObject stats = PathServerTest.toJson(CLIENT.send(
+					HttpRequest.newBuilder(uri).build(), 
+					HttpResponse.BodyHandlers.ofString()));
+			if (stats.get("running").getAsInt() == running &&
+					stats.get("queued").getAsInt() == queued) return;
+			
+			Thread.sleep(5);
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that a request beyond those which run and those which may wait
+	 * is turned away at once, while the others are answered.
+	 * @throws Exception If the requests failed.
+	 */
+	public void testAdmission() throws Exception {
+		this.start(1, 1, Duration.ofSeconds(30));
+		
+		CompletableFuture<HttpResponse<String>> running = 
+				this.request("Lembarg", "GitHub");
+		this.awaitStats(1, 0);
+		CompletableFuture<HttpResponse<String>> queued = 
+				this.request("Lviv", "GitHub");
+		this.awaitStats(1, 1);
+		
+		HttpResponse<String> rejected = this.request("Poland", 
+				"GitHub").get();
+		assertEquals(503, rejected.statusCode());
+		assertEquals("1", rejected.headers().firstValue("Retry-After")
+				.orElse(""));
+		
+		assertEquals(200, running.get().statusCode());
+		assertEquals(200, queued.get().statusCode());
+		assertEquals(1, this.server.getRejected());
+		assertEquals(2, this.server.getServed());
+	}
+	
+	@Test
+	/**
+	 * Tests that a search which does not finish before its deadline is
+	 * abandoned, and that a request which runs out of time while it waits
+	 * for the search is answered in the same way.
+	 * @throws Exception If the requests failed.
+	 */
+	public void testTimeout() throws Exception {
+		this.start(1, 1, Duration.ofMillis(250));
+		
+		CompletableFuture<HttpResponse<String>> running = 
+				this.request("Lembarg", "GitHub");
+		this.awaitStats(1, 0);
+		CompletableFuture<HttpResponse<String>> queued = 
+				this.request("Lviv", "GitHub");
+		
+		HttpResponse<String> response = running.get();
+		assertEquals(504, response.statusCode());
+		assertEquals("error", PathServerTest.toJson(response)
+				.get("status").getAsString());
+		assertEquals(504, queued.get().statusCode());
+		assertEquals(2, this.server.getTimedOut());
+	}
+}
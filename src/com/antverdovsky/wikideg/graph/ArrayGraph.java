@@ -0,0 +1,261 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.IntList;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Graph of the links between articles which is held in memory, in the same
+ * compressed sparse row form as a {@link LinkGraph}. Titles which are equal,
+ * ignoring their case, are the same article. The graph is built from links
+ * which were fetched, or read from a file of links.
+ */
+public class ArrayGraph implements IntGraph {
+	private ArrayList<String> titles;     // Title of each article
+	private HashMap<String, Integer> ids; // Article of each title key
+	private int[][] offsets;              // Links offsets, by direction
+	private int[][] targets;              // Links targets, by direction
+
+	/**
+	 * Creates a new graph of the specified links.
+	 * @param links The links of each article, by the title of the article.
+	 */
+	public ArrayGraph(Map<String, ? extends Collection<String>> links) {
+		this.titles = new ArrayList<String>();
+		this.ids = new HashMap<String, Integer>();
+
+		IntList from = new IntList();
+		IntList to = new IntList();
+		for (Map.Entry<String, ? extends Collection<String>> entry :
+				links.entrySet()) {
+			int source = this.intern(entry.getKey());
+			for (String link : entry.getValue()) {
+				from.add(source);
+				to.add(this.intern(link));
+			}
+		}
+
+		this.build(from, to);
+	}
+
+	/**
+	 * Creates a new graph from the titles and links which were read.
+	 * @param titles The title of each article.
+	 * @param ids The article of each title key.
+	 * @param from The article of each link.
+	 * @param to The article which each link leads to.
+	 */
+	private ArrayGraph(ArrayList<String> titles, HashMap<String, Integer> ids,
+			IntList from, IntList to) {
+		this.titles = titles;
+		this.ids = ids;
+		this.build(from, to);
+	}
+
+	/**
+	 * Reads the graph from the specified file of links. Each line of the
+	 * file holds the title of an article and the title of an article it
+	 * links to, separated by a tab. Empty lines, and lines which start with
+	 * a '#', are skipped.
+	 * @param file The file.
+	 * @return The graph.
+	 * @throws IOException If the file could not be read, or has a line
+	 *                     which is not a link.
+	 */
+	public static ArrayGraph read(Path file) throws IOException {
+		ArrayList<String> titles = new ArrayList<String>();
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		IntList from = new IntList();
+		IntList to = new IntList();
+
+		try (BufferedReader reader = Files.newBufferedReader(file,
+				StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) continue;
+
+				int tab = line.indexOf('\t');
+				if (tab < 0) throw new IOException("Not a link: " + line);
+				from.add(ArrayGraph.intern(titles, ids,
+						line.substring(0, tab)));
+				to.add(ArrayGraph.intern(titles, ids,
+						line.substring(tab + 1)));
+			}
+		}
+
+		return new ArrayGraph(titles, ids, from, to);
+	}
+
+	@Override
+	/**
+	 * Returns the number of articles in the graph.
+	 * @return The number of articles.
+	 */
+	public int size() {
+		return this.titles.size();
+	}
+
+	@Override
+	/**
+	 * Returns the number of links between the articles of the graph.
+	 * @return The number of links.
+	 */
+	public long getLinkCount() {
+		return this.targets[0].length;
+	}
+
+	@Override
+	/**
+	 * Returns the number of the article with the specified title, ignoring
+	 * the case of the title.
+	 * @param title The title.
+	 * @return The number of the article, or NOT_FOUND if no article has the
+	 *         title.
+	 */
+	public int find(String title) {
+		Integer id = this.ids.get(TitleSet.key(title));
+		return (id == null) ? NOT_FOUND : id;
+	}
+
+	@Override
+	/**
+	 * Returns the title of the specified article.
+	 * @param node The number of the article.
+	 * @return The title.
+	 */
+	public String getTitle(int node) {
+		return this.titles.get(node);
+	}
+
+	@Override
+	/**
+	 * Returns the position of the first link of the specified article.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The position of the first link.
+	 */
+	public long getLinksStart(LinkDirection direction, int node) {
+		return this.offsets[direction.ordinal()][node];
+	}
+
+	@Override
+	/**
+	 * Returns the position one past the last link of the specified article.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The position one past the last link.
+	 */
+	public long getLinksEnd(LinkDirection direction, int node) {
+		return this.offsets[direction.ordinal()][node + 1];
+	}
+
+	@Override
+	/**
+	 * Returns the article which the link at the specified position leads
+	 * to, or comes from for backlinks.
+	 * @param direction The direction of the link.
+	 * @param position The position of the link.
+	 * @return The number of the article.
+	 */
+	public int getLink(LinkDirection direction, long position) {
+		return this.targets[direction.ordinal()][(int)position];
+	}
+
+	/**
+	 * Builds the links and the backlinks of the articles.
+	 * @param from The article of each link.
+	 * @param to The article which each link leads to.
+	 */
+	private void build(IntList from, IntList to) {
+		this.offsets = new int[2][];
+		this.targets = new int[2][];
+
+		int[] sources = from.toArray();
+		int[] sinks = to.toArray();
+		int[][] links = ArrayGraph.group(this.size(), sources, sinks);
+		this.offsets[LinkDirection.LINKS.ordinal()] = links[0];
+		this.targets[LinkDirection.LINKS.ordinal()] = links[1];
+
+		int[][] backlinks = ArrayGraph.group(this.size(), sinks, sources);
+		this.offsets[LinkDirection.BACKLINKS.ordinal()] = backlinks[0];
+		this.targets[LinkDirection.BACKLINKS.ordinal()] = backlinks[1];
+	}
+
+	/**
+	 * Groups the specified links by their article, removing any links which
+	 * are repeated or lead back to their own article.
+	 * @param nodes The number of articles.
+	 * @param from The article of each link.
+	 * @param to The article which each link leads to.
+	 * @return The offsets of the links of each article, followed by the
+	 *         sorted targets of the links.
+	 */
+	private static int[][] group(int nodes, int[] from, int[] to) {
+		int[] offsets = new int[nodes + 1];
+		for (int source : from) ++offsets[source + 1];
+		for (int node = 0; node < nodes; ++node)
+			offsets[node + 1] += offsets[node];
+
+		int[] targets = new int[from.length];
+		int[] next = Arrays.copyOf(offsets, nodes);
+		for (int i = 0; i < from.length; ++i)
+			targets[next[from[i]]++] = to[i];
+
+		// Sort the links of each article, and compact away the repeats
+		int size = 0;
+		int[] compact = new int[nodes + 1];
+		for (int node = 0; node < nodes; ++node) {
+			Arrays.sort(targets, offsets[node], offsets[node + 1]);
+			compact[node] = size;
+
+			for (int i = offsets[node]; i < offsets[node + 1]; ++i) {
+				if (targets[i] == node) continue;
+				if (size > compact[node] && targets[size - 1] == targets[i])
+					continue;
+				targets[size++] = targets[i];
+			}
+		}
+		compact[nodes] = size;
+
+		return new int[][] { compact, Arrays.copyOf(targets, size) };
+	}
+
+	/**
+	 * Returns the number of the article with the specified title, adding the
+	 * article to the graph if it is not in the graph yet.
+	 * @param title The title.
+	 * @return The number of the article.
+	 */
+	private int intern(String title) {
+		return ArrayGraph.intern(this.titles, this.ids, title);
+	}
+
+	/**
+	 * Returns the number of the article with the specified title, adding the
+	 * article to the specified titles if it is not in them yet.
+	 * @param titles The title of each article.
+	 * @param ids The article of each title key.
+	 * @param title The title.
+	 * @return The number of the article.
+	 */
+	private static int intern(List<String> titles,
+			HashMap<String, Integer> ids, String title) {
+		Integer id = ids.putIfAbsent(TitleSet.key(title), titles.size());
+		if (id != null) return id;
+
+		titles.add(title);
+		return titles.size() - 1;
+	}
+}
@@ -0,0 +1,522 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.IntIntMap;
+import com.antverdovsky.wikideg.util.IntList;
+
+/**
+ * Imports the SQL dumps of the page, pagelinks and redirect tables of a
+ * Wikipedia database into a {@link LinkGraph} file, so that paths can be
+ * computed without downloading anything. The dumps are streamed and parsed
+ * in parallel. Only articles of the main namespace are imported, and links
+ * to redirects are resolved to the articles they redirect to. Dumps of newer
+ * databases, whose pagelinks refer to the linktarget table rather than to
+ * titles, also need the dump of the linktarget table.
+ * The links are held in memory while the graph is built, which takes about
+ * twelve bytes per link.
+ */
+public class DumpImporter {
+	private static final int NAMESPACE = 0; // Namespace of the articles
+	
+	private Path page;                      // Dump of the page table
+	private Path pagelinks;                 // Dump of the pagelinks table
+	private Path redirect;                  // Dump of the redirect table
+	private Path linktarget;                // Dump of the linktarget table
+	private SqlDumpReader reader;           // Reader of the dumps
+	
+	// Articles of the main namespace, by page id and title
+	private IntList articleIds = new IntList();
+	private ArrayList<String> articleTitles = new ArrayList<String>();
+	
+	// Redirects of the main namespace, by page id and title
+	private IntList redirectIds = new IntList();
+	private ArrayList<String> redirectTitles = new ArrayList<String>();
+	
+	// Target title of each redirect, and title of each link target, by id
+	private HashMap<Integer, String> redirectTargets =
+			new HashMap<Integer, String>();
+	private HashMap<Integer, String> linkTargets =
+			new HashMap<Integer, String>();
+	
+	// Links, as chunks of article numbers packed into longs
+	private List<long[]> links = new ArrayList<long[]>();
+	
+	// Number of articles, redirects and links which were imported
+	private int numArticles = 0;
+	private int numRedirects = 0;
+	private long numLinks = 0;
+	
+	/**
+	 * Creates a new importer of the specified dumps.
+	 * @param page The dump of the page table.
+	 * @param pagelinks The dump of the pagelinks table.
+	 * @param redirect The dump of the redirect table.
+	 * @param linktarget The dump of the linktarget table, or null if the
+	 *                   pagelinks table holds the titles of its links.
+	 * @param pool The pool on which the dumps are parsed.
+	 */
+	public DumpImporter(Path page, Path pagelinks, Path redirect,
+			Path linktarget, ExecutorService pool) {
+		this.page = page;
+		this.pagelinks = pagelinks;
+		this.redirect = redirect;
+		this.linktarget = linktarget;
+		this.reader = new SqlDumpReader(pool, 64);
+	}
+	
+	/**
+	 * Imports the dumps into the specified graph file.
+	 * @param file The graph file.
+	 * @throws IOException If a dump could not be read, or the graph could
+	 *                     not be written.
+	 */
+	public void write(Path file) throws IOException {
+		// The titles, redirects and link targets do not depend on each
+		// other, and are read at the same time.
+		List<Path> dumps = new ArrayList<Path>(Arrays.asList(
+				this.page, this.redirect));
+		List<SqlDumpReader.RowSink> sinks =
+				new ArrayList<SqlDumpReader.RowSink>(Arrays.asList(
+						this::addPages, this::addRedirects));
+		if (this.linktarget != null) {
+			dumps.add(this.linktarget);
+			sinks.add(this::addLinkTargets);
+		}
+		this.readAll(dumps, sinks);
+		
+		// Number the articles in order of their page ids, so that the same
+		// dumps always give the same graph
+		int nodes = this.articleIds.size();
+		int[] pageIds = this.articleIds.toArray();
+		int[] byId = IntStream.range(0, nodes).boxed()
+				.sorted((a, b) -> Integer.compare(pageIds[a], pageIds[b]))
+				.mapToInt(Integer::intValue).toArray();
+		
+		String[] titles = new String[nodes];
+		IntIntMap nodeOf = new IntIntMap(nodes);
+		HashMap<String, Integer> resolved = new HashMap<String, Integer>();
+		for (int node = 0; node < nodes; ++node) {
+			titles[node] = this.articleTitles.get(byId[node]);
+			nodeOf.put(pageIds[byId[node]], node);
+			resolved.put(titles[node], node);
+		}
+		this.articleIds = null;
+		this.articleTitles = null;
+		
+		// Redirects lead straight to the article they redirect to
+		List<String> aliases = new ArrayList<String>();
+		IntList aliasNodes = new IntList();
+		for (int i = 0; i < this.redirectIds.size(); ++i) {
+			String target = this.redirectTargets.get(this.redirectIds.get(i));
+			Integer node = (target == null) ? null : resolved.get(target);
+			if (node == null) continue;
+			
+			aliases.add(this.redirectTitles.get(i));
+			aliasNodes.add(node);
+		}
+		for (int i = 0; i < aliases.size(); ++i)
+			resolved.putIfAbsent(aliases.get(i), aliasNodes.get(i));
+		this.redirectIds = null;
+		this.redirectTitles = null;
+		this.redirectTargets = null;
+		
+		IntIntMap targetOf = new IntIntMap();
+		for (Integer id : this.linkTargets.keySet()) {
+			Integer node = resolved.get(this.linkTargets.get(id));
+			if (node != null) targetOf.put(id, node);
+		}
+		this.linkTargets = null;
+		
+		this.reader.read(this.pagelinks, (columns, rows) ->
+				this.addLinks(columns, rows, nodeOf, resolved, targetOf));
+		this.numArticles = titles.length;
+		this.numRedirects = aliases.size();
+		this.numLinks = this.countLinks();
+		
+		long[] offsets = this.groupLinks(nodes);
+		int[] targets = this.fillLinks(offsets);
+		
+		try (GraphWriter writer = new GraphWriter(file, nodes)) {
+			DumpImporter.writeLinks(writer, offsets, targets);
+			writer.finish(titles, aliases.toArray(new String[0]),
+					aliasNodes.toArray());
+		}
+	}
+	
+	/**
+	 * Returns the number of articles which were imported.
+	 * @return The number of articles.
+	 */
+	public int getNumArticles() {
+		return this.numArticles;
+	}
+	
+	/**
+	 * Returns the number of redirects which were imported.
+	 * @return The number of redirects to imported articles.
+	 */
+	public int getNumRedirects() {
+		return this.numRedirects;
+	}
+	
+	/**
+	 * Returns the number of links which were imported.
+	 * @return The number of links, including any repeated links.
+	 */
+	public long getNumLinks() {
+		return this.numLinks;
+	}
+	
+	/**
+	 * Imports the dumps named by the arguments into a graph file.
+	 * @param args The program arguments.
+	 */
+	public static void main(String[] args) {
+		Path page = null, pagelinks = null, redirect = null;
+		Path linktarget = null, out = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		
+		for (String s : args) {
+			String value = s.substring(s.indexOf('=') + 1);
+			if (s.startsWith("-page=")) page = Paths.get(value);
+			if (s.startsWith("-pagelinks=")) pagelinks = Paths.get(value);
+			if (s.startsWith("-redirect=")) redirect = Paths.get(value);
+			if (s.startsWith("-linktarget=")) linktarget = Paths.get(value);
+			if (s.startsWith("-out=")) out = Paths.get(value);
+			if (s.startsWith("-threads=")) threads = Integer.parseInt(value);
+		}
+		
+		if (page == null || pagelinks == null || redirect == null ||
+				out == null) {
+			System.out.println("Usage: DumpImporter -page=FILE " +
+					"-pagelinks=FILE -redirect=FILE [-linktarget=FILE] " +
+					"-out=FILE [-threads=N]");
+			return;
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long startTime = System.currentTimeMillis();
+		try {
+			DumpImporter importer = new DumpImporter(page, pagelinks, 
+					redirect, linktarget, pool);
+			importer.write(out);
+			System.out.println("Wrote " + importer.getNumArticles() + 
+					" articles, " + importer.getNumRedirects() + 
+					" redirects and " + importer.getNumLinks() + " links to " + 
+					out + " in " + (System.currentTimeMillis() - startTime) + 
+					"ms.");
+		} catch (IOException e) {
+			System.out.println("Unable to import the dumps: " +
+					e.getMessage());
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Writes the links and the backlinks of the specified links to the
+	 * graph. The links of each article must be sorted.
+	 * @param writer The writer of the graph.
+	 * @param offsets The offset of the links of each article.
+	 * @param targets The targets of the links.
+	 * @throws IOException If the links could not be written.
+	 */
+	static void writeLinks(GraphWriter writer, long[] offsets,
+			int[] targets) throws IOException {
+		int nodes = offsets.length - 1;
+		writer.begin(LinkDirection.LINKS);
+		for (int node = 0; node < nodes; ++node) {
+			for (int i = (int)offsets[node]; i < offsets[node + 1]; ++i)
+				writer.addLink(node, targets[i]);
+		}
+		
+		// Backlinks, by counting and then placing the distinct links of
+		// each article. Articles are visited in order, so the backlinks of
+		// each article are sorted.
+		long[] backOffsets = new long[nodes + 1];
+		for (int node = 0; node < nodes; ++node) {
+			for (int i = (int)offsets[node]; i < offsets[node + 1]; ++i)
+				if (i == offsets[node] || targets[i] != targets[i - 1])
+					++backOffsets[targets[i] + 1];
+		}
+		for (int node = 0; node < nodes; ++node)
+			backOffsets[node + 1] += backOffsets[node];
+		
+		int[] sources = new int[(int)backOffsets[nodes]];
+		long[] next = Arrays.copyOf(backOffsets, nodes);
+		for (int node = 0; node < nodes; ++node) {
+			for (int i = (int)offsets[node]; i < offsets[node + 1]; ++i)
+				if (i == offsets[node] || targets[i] != targets[i - 1])
+					sources[(int)next[targets[i]]++] = node;
+		}
+		
+		writer.begin(LinkDirection.BACKLINKS);
+		for (int node = 0; node < nodes; ++node) {
+			for (int i = (int)backOffsets[node]; i < backOffsets[node + 1];
+					++i) writer.addLink(node, sources[i]);
+		}
+	}
+	
+	/**
+	 * Receives the rows of the page table.
+	 * @param columns The names of the columns.
+	 * @param rows The rows.
+	 */
+	private void addPages(String[] columns, List<Object[]> rows) {
+		int id = DumpImporter.column(columns, "page_id");
+		int namespace = DumpImporter.column(columns, "page_namespace");
+		int title = DumpImporter.column(columns, "page_title");
+		int isRedirect = DumpImporter.column(columns, "page_is_redirect");
+		
+		synchronized (this) {
+			for (Object[] row : rows) {
+				if (DumpImporter.toInt(row[namespace]) != NAMESPACE) continue;
+				
+				int pageId = DumpImporter.toInt(row[id]);
+				String name = DumpImporter.toTitle(row[title]);
+				if (DumpImporter.toInt(row[isRedirect]) != 0) {
+					this.redirectIds.add(pageId);
+					this.redirectTitles.add(name);
+				} else {
+					this.articleIds.add(pageId);
+					this.articleTitles.add(name);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Receives the rows of the redirect table.
+	 * @param columns The names of the columns.
+	 * @param rows The rows.
+	 */
+	private void addRedirects(String[] columns, List<Object[]> rows) {
+		int from = DumpImporter.column(columns, "rd_from");
+		int namespace = DumpImporter.column(columns, "rd_namespace");
+		int title = DumpImporter.column(columns, "rd_title");
+		int interwiki = DumpImporter.column(columns, "rd_interwiki");
+		
+		synchronized (this.redirectTargets) {
+			for (Object[] row : rows) {
+				if (DumpImporter.toInt(row[namespace]) != NAMESPACE) continue;
+				if (row[interwiki] != null && !row[interwiki].equals(""))
+					continue;
+				
+				this.redirectTargets.put(DumpImporter.toInt(row[from]),
+						DumpImporter.toTitle(row[title]));
+			}
+		}
+	}
+	
+	/**
+	 * Receives the rows of the linktarget table.
+	 * @param columns The names of the columns.
+	 * @param rows The rows.
+	 */
+	private void addLinkTargets(String[] columns, List<Object[]> rows) {
+		int id = DumpImporter.column(columns, "lt_id");
+		int namespace = DumpImporter.column(columns, "lt_namespace");
+		int title = DumpImporter.column(columns, "lt_title");
+		
+		synchronized (this.linkTargets) {
+			for (Object[] row : rows) {
+				if (DumpImporter.toInt(row[namespace]) != NAMESPACE) continue;
+				
+				this.linkTargets.put(DumpImporter.toInt(row[id]),
+						DumpImporter.toTitle(row[title]));
+			}
+		}
+	}
+	
+	/**
+	 * Receives the rows of the pagelinks table, keeping the links between
+	 * articles of the main namespace.
+	 * @param columns The names of the columns.
+	 * @param rows The rows.
+	 * @param nodeOf The article number of each page id.
+	 * @param resolved The article number of each title.
+	 * @param targetOf The article number of each link target id.
+	 * @throws IOException If the table refers to link targets, but the dump
+	 *                     of the linktarget table was not given.
+	 */
+	private void addLinks(String[] columns, List<Object[]> rows,
+			IntIntMap nodeOf, HashMap<String, Integer> resolved,
+			IntIntMap targetOf) throws IOException {
+		int from = DumpImporter.column(columns, "pl_from");
+		int title = DumpImporter.indexOf(columns, "pl_title");
+		int namespace = DumpImporter.indexOf(columns, "pl_namespace");
+		int target = DumpImporter.indexOf(columns, "pl_target_id");
+		if (title < 0 && this.linktarget == null) throw new IOException(
+				"The pagelinks table needs the linktarget table.");
+		
+		long[] chunk = new long[rows.size()];
+		int size = 0;
+		for (Object[] row : rows) {
+			int source = nodeOf.get(DumpImporter.toInt(row[from]));
+			if (source == IntIntMap.MISSING) continue;
+			
+			int sink = IntIntMap.MISSING;
+			if (title >= 0) {
+				if (DumpImporter.toInt(row[namespace]) != NAMESPACE) continue;
+				
+				Integer node = resolved.get(DumpImporter.toTitle(row[title]));
+				if (node != null) sink = node;
+			} else {
+				sink = targetOf.get(DumpImporter.toInt(row[target]));
+			}
+			
+			if (sink != IntIntMap.MISSING && sink != source)
+				chunk[size++] = ((long)source << 32) | sink;
+		}
+		
+		synchronized (this.links) {
+			this.links.add(Arrays.copyOf(chunk, size));
+		}
+	}
+	
+	/**
+	 * Counts the links which were read.
+	 * @return The number of links.
+	 */
+	private long countLinks() {
+		long count = 0;
+		for (long[] chunk : this.links) count += chunk.length;
+		
+		return count;
+	}
+	
+	/**
+	 * Counts the links of each article.
+	 * @param nodes The number of articles.
+	 * @return The offset of the links of each article, followed by the
+	 *         number of links.
+	 * @throws IOException If there are too many links to be held in memory.
+	 */
+	private long[] groupLinks(int nodes) throws IOException {
+		if (this.countLinks() > Integer.MAX_VALUE - 8) throw new IOException(
+				"Too many links to import in memory.");
+		
+		long[] offsets = new long[nodes + 1];
+		for (long[] chunk : this.links)
+			for (long link : chunk) ++offsets[(int)(link >>> 32) + 1];
+		for (int node = 0; node < nodes; ++node)
+			offsets[node + 1] += offsets[node];
+		
+		return offsets;
+	}
+	
+	/**
+	 * Places the links which were read into the links of their articles,
+	 * and sorts the links of each article, releasing the links as they were
+	 * read.
+	 * @param offsets The offset of the links of each article.
+	 * @return The targets of the links.
+	 */
+	private int[] fillLinks(long[] offsets) {
+		int nodes = offsets.length - 1;
+		int[] targets = new int[(int)offsets[nodes]];
+		long[] next = Arrays.copyOf(offsets, nodes);
+		
+		for (int i = 0; i < this.links.size(); ++i) {
+			for (long link : this.links.get(i))
+				targets[(int)next[(int)(link >>> 32)]++] = (int)link;
+			this.links.set(i, null);
+		}
+		this.links = null;
+		
+		IntStream.range(0, nodes).parallel().forEach(node -> Arrays.sort(
+				targets, (int)offsets[node], (int)offsets[node + 1]));
+		return targets;
+	}
+	
+	/**
+	 * Reads each of the specified dumps into its sink, at the same time.
+	 * @param dumps The dumps.
+	 * @param sinks The sink of each dump.
+	 * @throws IOException If any dump could not be read.
+	 */
+	private void readAll(List<Path> dumps, List<SqlDumpReader.RowSink> sinks)
+			throws IOException {
+		IOException[] failures = new IOException[dumps.size()];
+		Thread[] threads = new Thread[dumps.size()];
+		for (int i = 0; i < dumps.size(); ++i) {
+			int dump = i;
+			threads[i] = new Thread(() -> {
+				try {
+					this.reader.read(dumps.get(dump), sinks.get(dump));
+				} catch (IOException e) {
+					failures[dump] = e;
+				}
+			});
+			threads[i].start();
+		}
+		
+		for (int i = 0; i < threads.length; ++i) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading dumps.", e);
+			}
+			if (failures[i] != null) throw failures[i];
+		}
+	}
+	
+	/**
+	 * Returns the index of the column with the specified name.
+	 * @param columns The names of the columns.
+	 * @param name The name.
+	 * @return The index of the column, or -1 if there is no such column.
+	 */
+	private static int indexOf(String[] columns, String name) {
+		for (int i = 0; i < columns.length; ++i)
+			if (columns[i].equals(name)) return i;
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns the index of the column with the specified name.
+	 * @param columns The names of the columns.
+	 * @param name The name.
+	 * @return The index of the column.
+	 * @throws IllegalArgumentException If there is no such column.
+	 */
+	private static int column(String[] columns, String name) {
+		int i = DumpImporter.indexOf(columns, name);
+		if (i < 0) throw new IllegalArgumentException(
+				"The dump has no column " + name);
+		
+		return i;
+	}
+	
+	/**
+	 * Returns the integer value of a column.
+	 * @param value The value.
+	 * @return The integer.
+	 */
+	private static int toInt(Object value) {
+		return ((Long)value).intValue();
+	}
+	
+	/**
+	 * Returns the title of an article, as it is stored in a column, in the
+	 * form in which it is displayed, with spaces rather than underscores.
+	 * @param value The value.
+	 * @return The title.
+	 */
+	private static String toTitle(Object value) {
+		return ((String)value).replace('_', ' ');
+	}
+}
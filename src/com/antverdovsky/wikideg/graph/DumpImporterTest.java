@@ -0,0 +1,167 @@
+package com.antverdovsky.wikideg.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.antverdovsky.wikideg.linkfetch.GraphLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Basic Testing of the DumpImporter, LinkGraph and GraphLinkFetcher classes.
+ */
+public class DumpImporterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private ExecutorService pool = Executors.newFixedThreadPool(4);
+	
+	@After
+	/**
+	 * Shuts down the pool of the importer.
+	 */
+	public void tearDown() {
+		this.pool.shutdown();
+	}
+	
+	/**
+	 * Writes a compressed dump of the specified table.
+	 * @param name The name of the dump file.
+	 * @param table The name of the table.
+	 * @param columns The names of the columns of the table.
+	 * @param values The values of the insert statements, one per statement.
+	 * @return The dump file.
+	 * @throws IOException If the dump could not be written.
+	 */
+	private Path dump(String name, String table, String[] columns,
+			String... values) throws IOException {
+		Path file = this.folder.getRoot().toPath().resolve(name);
+		try (OutputStream out = new GZIPOutputStream(
+				Files.newOutputStream(file));
+				Writer writer = new OutputStreamWriter(out,
+						StandardCharsets.UTF_8)) {
+			writer.write("-- MySQL dump\n\nDROP TABLE IF EXISTS `" + table +
+					"`;\nCREATE TABLE `" + table + "` (\n");
+			for (String column : columns)
+				writer.write("  `" + column + "` int(8) NOT NULL,\n");
+			writer.write("  PRIMARY KEY (`" + columns[0] + "`)\n" +
+					") ENGINE=InnoDB DEFAULT CHARSET=binary;\n");
+			for (String value : values) {
+				writer.write("INSERT INTO `" + table + "` VALUES " + value +
+						";\n");
+			}
+		}
+		
+		return file;
+	}
+	
+	/**
+	 * Writes the page and redirect dumps shared by the tests. Poland and
+	 * Warsaw are articles, Polska redirects to Poland, and Lviv is a talk
+	 * page which is not imported.
+	 * @return The page and redirect dumps.
+	 * @throws IOException If the dumps could not be written.
+	 */
+	private Path[] pagesAndRedirects() throws IOException {
+		Path page = this.dump("page.sql.gz", "page", new String[] {
+				"page_id", "page_namespace", "page_title", "page_is_redirect",
+				"page_random" },
+				"(10,0,'Poland',0,0.5),(12,0,'Warsaw',0,0.25)",
+				"(11,0,'Polska',1,0.1),(13,1,'Lviv',0,0.9)," +
+				"(14,0,'Lemberg_(\\'city\\')',0,0.3)");
+		Path redirect = this.dump("redirect.sql.gz", "redirect", new String[] {
+				"rd_from", "rd_namespace", "rd_title", "rd_interwiki",
+				"rd_fragment" }, "(11,0,'Poland','',NULL)");
+		
+		return new Path[] { page, redirect };
+	}
+	
+	@Test
+	/**
+	 * Tests that the links and backlinks of the pagelinks dump are imported
+	 * between articles, with redirects resolved and duplicates removed.
+	 */
+	public void testImport() throws IOException {
+		Path[] dumps = this.pagesAndRedirects();
+		Path pagelinks = this.dump("pagelinks.sql.gz", "pagelinks",
+				new String[] { "pl_from", "pl_namespace", "pl_title",
+						"pl_from_namespace" },
+				"(10,0,'Warsaw',0),(12,0,'Polska',0),(12,0,'Poland',0)",
+				"(14,0,'Warsaw',0),(14,0,'Poland',0),(13,0,'Poland',1)," +
+				"(14,1,'Poland',0),(10,0,'Missing',0)");
+		
+		Path file = this.folder.getRoot().toPath().resolve("wiki.graph");
+		DumpImporter importer = new DumpImporter(dumps[0], pagelinks, 
+				dumps[1], null, this.pool);
+		importer.write(file);
+		LinkGraph graph = new LinkGraph(file);
+		
+		assertEquals(3, importer.getNumArticles());
+		assertEquals(1, importer.getNumRedirects());
+		assertEquals(5, importer.getNumLinks());
+		assertEquals(3, graph.size());
+		assertEquals(4, graph.getLinkCount());
+		assertEquals("Lemberg ('city')", graph.getTitle(2));
+		assertEquals(0, graph.find("polska"));
+		assertEquals(1, graph.find("Warsaw"));
+		assertEquals(LinkGraph.NOT_FOUND, graph.find("Lviv"));
+		
+		GraphLinkFetcher links = new GraphLinkFetcher(graph,
+				LinkDirection.LINKS);
+		GraphLinkFetcher backlinks = new GraphLinkFetcher(graph,
+				LinkDirection.BACKLINKS);
+		TitleSet none = new TitleSet();
+		
+		assertEquals(Arrays.asList("Poland"),
+				links.getLinks("Warsaw", none));
+		assertEquals(Arrays.asList("Poland", "Warsaw"),
+				links.getLinks("lemberg ('city')", none));
+		assertEquals(Arrays.asList("Warsaw", "Lemberg ('city')"),
+				backlinks.getLinks("Polska", none));
+		assertEquals(Arrays.asList("Warsaw"), backlinks.getLinks("Poland",
+				new TitleSet(Arrays.asList("warsaw"))));
+		assertEquals(Arrays.asList(), links.getLinks("Lviv", none));
+	}
+	
+	@Test
+	/**
+	 * Tests that pagelinks which refer to the linktarget table are resolved
+	 * through its dump.
+	 */
+	public void testLinkTargets() throws IOException {
+		Path[] dumps = this.pagesAndRedirects();
+		Path linktarget = this.dump("linktarget.sql.gz", "linktarget",
+				new String[] { "lt_id", "lt_namespace", "lt_title" },
+				"(1,0,'Polska'),(2,0,'Warsaw'),(3,1,'Warsaw')");
+		Path pagelinks = this.dump("pagelinks.sql.gz", "pagelinks",
+				new String[] { "pl_from", "pl_from_namespace",
+						"pl_target_id" },
+				"(12,0,1),(10,0,2),(10,0,3),(14,0,2)");
+		
+		Path file = this.folder.getRoot().toPath().resolve("wiki.graph");
+		new DumpImporter(dumps[0], pagelinks, dumps[1], linktarget,
+				this.pool).write(file);
+		LinkGraph graph = new LinkGraph(file);
+		
+		assertEquals(3, graph.getLinkCount());
+		assertEquals(Arrays.asList("Poland", "Lemberg ('city')"),
+				new GraphLinkFetcher(graph, LinkDirection.BACKLINKS)
+						.getLinks("Warsaw", new TitleSet()));
+	}
+}
@@ -0,0 +1,610 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.IntList;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Imports files of links, such as those kept by a crawl of the fetchers,
+ * into a {@link LinkGraph} file. Each line of a file holds the title of an
+ * article and the title of an article it links to, separated by a tab, in
+ * the same form as is read by {@link ArrayGraph#read(Path)}. Empty lines,
+ * and lines which start with a '#', are skipped.
+ * The files are read in blocks, whose titles are numbered and whose links
+ * are parsed on a pool of threads. The links are gathered into a buffer of
+ * bounded size, which is sorted and written out as a run of links and a
+ * run of backlinks each time it fills up. The runs are then merged straight
+ * into the graph, so the links are never held in memory in their entirety,
+ * and only the titles are.
+ */
+public class EdgeListImporter {
+	// Number of bytes of the files which are parsed by each task
+	private static final int BLOCK_SIZE = 1 << 22;
+	
+	// Maximum number of runs which are merged at once
+	private static final int FAN_IN = 64;
+	
+	// Minimum number of links held by the buffer
+	private static final int MIN_BUFFER = 1024;
+	
+	/**
+	 * Receives the links which are merged from runs, in order.
+	 */
+	private interface LinkSink {
+		/**
+		 * Receives a single link.
+		 * @param link The link, whose article is packed into the high half
+		 *             and whose target is packed into the low half.
+		 * @throws IOException If the link could not be written.
+		 */
+		public void accept(long link) throws IOException;
+	}
+	
+	private ExecutorService pool;      // Parses the blocks of the files
+	private int blockSize;             // Size of each block of the files
+	private Path tempDir;              // Directory of the runs
+	
+	// Article number of each title key, and the next article number
+	private ConcurrentHashMap<String, Integer> ids =
+			new ConcurrentHashMap<String, Integer>();
+	private AtomicInteger nextId = new AtomicInteger();
+	
+	// Titles of the articles, and their numbers, as they were numbered
+	private ArrayList<String> titles = new ArrayList<String>();
+	private IntList titleIds = new IntList();
+	
+	// Links which were read but not yet written to a run
+	private long[] buffer;
+	private int size;
+	private long count;                // Number of links read
+	
+	// Runs of the links and of the backlinks
+	private List<Path> linkRuns = new ArrayList<Path>();
+	private List<Path> backlinkRuns = new ArrayList<Path>();
+	
+	/**
+	 * Creates a new importer which parses the files on the specified pool.
+	 * @param pool The pool.
+	 * @param maxMemory The number of bytes of the buffer of links, which
+	 *                  bounds the memory used by the links.
+	 * @param tempDir The directory in which the runs are written.
+	 */
+	public EdgeListImporter(ExecutorService pool, long maxMemory,
+			Path tempDir) {
+		this(pool, maxMemory, tempDir, BLOCK_SIZE);
+	}
+	
+	/**
+	 * Creates a new importer which parses the files on the specified pool,
+	 * in blocks of the specified size.
+	 * @param pool The pool.
+	 * @param maxMemory The number of bytes of the buffer of links, which
+	 *                  bounds the memory used by the links.
+	 * @param tempDir The directory in which the runs are written.
+	 * @param blockSize The number of bytes of each block.
+	 */
+	EdgeListImporter(ExecutorService pool, long maxMemory, Path tempDir,
+			int blockSize) {
+		this.pool = pool;
+		this.blockSize = blockSize;
+		this.tempDir = tempDir;
+		this.buffer = new long[(int)Math.max(MIN_BUFFER,
+				Math.min(maxMemory / 8, Integer.MAX_VALUE - 8))];
+	}
+	
+	/**
+	 * Imports the specified files of links into the specified graph file.
+	 * Files whose names end in ".gz" are decompressed as they are read.
+	 * @param files The files of links.
+	 * @param file The graph file.
+	 * @throws IOException If a file could not be read, or has a line which
+	 *                     is not a link, or if the graph could not be
+	 *                     written.
+	 */
+	public void write(List<Path> files, Path file) throws IOException {
+		Path runs = Files.createTempDirectory(this.tempDir, "runs");
+		try {
+			for (Path links : files) this.read(links, runs);
+			this.spill(runs);
+			
+			String[] titles = new String[this.nextId.get()];
+			for (int i = 0; i < this.titleIds.size(); ++i)
+				titles[this.titleIds.get(i)] = this.titles.get(i);
+			this.ids = null;
+			this.titles = null;
+			this.titleIds = null;
+			this.buffer = null;
+			
+			try (GraphWriter writer = new GraphWriter(file, titles.length)) {
+				writer.begin(LinkDirection.LINKS);
+				EdgeListImporter.merge(this.linkRuns, runs, link ->
+						writer.addLink((int)(link >>> 32), (int)link));
+				writer.begin(LinkDirection.BACKLINKS);
+				EdgeListImporter.merge(this.backlinkRuns, runs, link ->
+						writer.addLink((int)(link >>> 32), (int)link));
+				writer.finish(titles, new String[0], new int[0]);
+			}
+		} finally {
+			EdgeListImporter.delete(runs);
+		}
+	}
+	
+	/**
+	 * Returns the number of links which were read.
+	 * @return The number of links, including any repeated links and links
+	 *         back to their own article.
+	 */
+	public synchronized long getCount() {
+		return this.count;
+	}
+	
+	/**
+	 * Returns the number of articles which were read.
+	 * @return The number of articles.
+	 */
+	public int getArticles() {
+		return this.nextId.get();
+	}
+	
+	/**
+	 * Returns the number of runs of links which were written.
+	 * @return The number of runs.
+	 */
+	public synchronized int getRuns() {
+		return this.linkRuns.size();
+	}
+	
+	/**
+	 * Imports the files of links named by the arguments into a graph file,
+	 * reporting the rate at which links were imported and the peak memory
+	 * used by the import.
+	 * @param args The program arguments.
+	 */
+	public static void main(String[] args) {
+		List<Path> files = new ArrayList<Path>();
+		Path out = null;
+		Path temp = Paths.get(System.getProperty("java.io.tmpdir"));
+		int threads = Runtime.getRuntime().availableProcessors();
+		long memory = 1024;
+		
+		for (String s : args) {
+			String value = s.substring(s.indexOf('=') + 1);
+			if (s.startsWith("-in=")) files.add(Paths.get(value));
+			if (s.startsWith("-out=")) out = Paths.get(value);
+			if (s.startsWith("-temp=")) temp = Paths.get(value);
+			if (s.startsWith("-threads=")) threads = Integer.parseInt(value);
+			if (s.startsWith("-memory=")) memory = Long.parseLong(value);
+		}
+		
+		if (files.isEmpty() || out == null) {
+			System.out.println("Usage: EdgeListImporter -in=FILE " +
+					"[-in=FILE ...] -out=FILE [-temp=DIR] [-threads=N] " +
+					"[-memory=MB]");
+			return;
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		EdgeListImporter importer = new EdgeListImporter(pool,
+				memory << 20, temp);
+		long startTime = System.currentTimeMillis();
+		try {
+			importer.write(files, out);
+			
+			long time = Math.max(1, System.currentTimeMillis() - startTime);
+			System.out.println("Wrote " + importer.getCount() + " links " +
+					"between " + importer.getArticles() + " articles, from " +
+					importer.getRuns() + " runs, to " + out + " in " + time +
+					"ms (" + (importer.getCount() * 1000 / time) +
+					" links/s).");
+			
+			long peak = EdgeListImporter.getPeakMemory();
+			if (peak >= 0)
+				System.out.println("Peak memory: " + (peak >> 20) + " MB.");
+		} catch (IOException e) {
+			System.out.println("Unable to import the links: " +
+					e.getMessage());
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Reads the links of the specified file into runs, and waits until all
+	 * of them have been read.
+	 * @param file The file of links.
+	 * @param runs The directory of the runs.
+	 * @throws IOException If the file could not be read or parsed, or a run
+	 *                     could not be written.
+	 */
+	private void read(Path file, Path runs) throws IOException {
+		InputStream in = Files.newInputStream(file);
+		if (file.getFileName().toString().endsWith(".gz"))
+			in = new GZIPInputStream(in, 1 << 16);
+		
+		int maxPending = 2 * Runtime.getRuntime().availableProcessors();
+		Semaphore pending = new Semaphore(maxPending);
+		AtomicReference<IOException> failure =
+				new AtomicReference<IOException>();
+		
+		try (InputStream stream = in) {
+			byte[] block = new byte[this.blockSize];
+			int length = 0;
+			while (failure.get() == null) {
+				int n = stream.read(block, length, block.length - length);
+				if (n > 0) length += n;
+				if (n >= 0 && length < block.length) continue;
+				if (n < 0 && length == 0) break;
+				
+				// Cut the block after its last line, and carry the rest of
+				// the block over into the next one
+				int end = length;
+				if (n >= 0) {
+					while (end > 0 && block[end - 1] != '\n') --end;
+					if (end == 0) {
+						block = Arrays.copyOf(block, block.length * 2);
+						continue;
+					}
+				}
+				
+				byte[] next = new byte[Math.max(this.blockSize,
+						length - end)];
+				System.arraycopy(block, end, next, 0, length - end);
+				
+				byte[] lines = block;
+				int linesEnd = end;
+				EdgeListImporter.acquire(pending, 1);
+				this.pool.execute(() -> {
+					try {
+						this.parse(lines, linesEnd, runs);
+					} catch (IOException e) {
+						failure.compareAndSet(null, e);
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, new IOException(e));
+					} finally {
+						pending.release();
+					}
+				});
+				
+				block = next;
+				length -= end;
+				if (n < 0 && length == 0) break;
+			}
+		} finally {
+			// Wait for every block which was read to be parsed
+			EdgeListImporter.acquire(pending, maxPending);
+			pending.release(maxPending);
+		}
+		
+		if (failure.get() != null) throw failure.get();
+	}
+	
+	/**
+	 * Parses the lines of a block of a file of links, numbering the titles
+	 * and adding the links to the buffer.
+	 * @param block The block, which holds whole lines.
+	 * @param length The number of bytes of the block.
+	 * @param runs The directory of the runs.
+	 * @throws IOException If a line is not a link, or a run could not be
+	 *                     written.
+	 */
+	private void parse(byte[] block, int length, Path runs)
+			throws IOException {
+		ArrayList<String> titles = new ArrayList<String>();
+		IntList titleIds = new IntList();
+		long[] links = new long[1024];
+		int count = 0;
+		int lines = 0;
+		
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && block[end] != '\n') ++end;
+			int next = end + 1;
+			if (end > start && block[end - 1] == '\r') --end;
+			
+			if (end > start && block[start] != '#') {
+				int tab = start;
+				while (tab < end && block[tab] != '\t') ++tab;
+				if (tab == end) throw new IOException("Not a link: " +
+						new String(block, start, end - start,
+								StandardCharsets.UTF_8));
+				
+				int from = this.intern(new String(block, start, tab - start,
+						StandardCharsets.UTF_8), titles, titleIds);
+				int to = this.intern(new String(block, tab + 1,
+						end - tab - 1, StandardCharsets.UTF_8), titles,
+						titleIds);
+				++lines;
+				if (from != to) {
+					if (count == links.length)
+						links = Arrays.copyOf(links, count * 2);
+					links[count++] = ((long)from << 32) | to;
+				}
+			}
+			
+			start = next;
+		}
+		
+		synchronized (this) {
+			this.titles.addAll(titles);
+			for (int i = 0; i < titleIds.size(); ++i)
+				this.titleIds.add(titleIds.get(i));
+			this.count += lines;
+			
+			this.add(links, count, runs);
+		}
+	}
+	
+	/**
+	 * Returns the number of the article with the specified title, ignoring
+	 * the case of the title, and numbers the article if it has not been
+	 * numbered yet.
+	 * @param title The title.
+	 * @param titles Receives the title, if the article was numbered.
+	 * @param titleIds Receives the number, if the article was numbered.
+	 * @return The number of the article.
+	 */
+	private int intern(String title, List<String> titles, IntList titleIds) {
+		// Most titles were numbered already, and are found without locking
+		String key = TitleSet.key(title);
+		Integer id = this.ids.get(key);
+		if (id != null) return id;
+		
+		return this.ids.computeIfAbsent(key, k -> {
+			int next = this.nextId.getAndIncrement();
+			titles.add(title);
+			titleIds.add(next);
+			return next;
+		});
+	}
+	
+	/**
+	 * Adds the specified links to the buffer, writing out the buffer as a
+	 * run each time it fills up. Must be called while holding the lock of
+	 * this importer.
+	 * @param links The links.
+	 * @param count The number of links.
+	 * @param runs The directory of the runs.
+	 * @throws IOException If a run could not be written.
+	 */
+	private void add(long[] links, int count, Path runs) throws IOException {
+		int i = 0;
+		while (i < count) {
+			int n = Math.min(count - i, this.buffer.length - this.size);
+			System.arraycopy(links, i, this.buffer, this.size, n);
+			this.size += n;
+			i += n;
+			
+			if (this.size == this.buffer.length) this.spill(runs);
+		}
+	}
+	
+	/**
+	 * Sorts the buffer and writes it out as a run of links, then reverses
+	 * the links, sorts them again and writes them out as a run of backlinks.
+	 * The buffer is sorted on all of the cores, so they are kept busy while
+	 * the blocks wait for it to be emptied.
+	 * @param runs The directory of the runs.
+	 * @throws IOException If a run could not be written.
+	 */
+	private synchronized void spill(Path runs) throws IOException {
+		if (this.size == 0) return;
+		
+		Arrays.parallelSort(this.buffer, 0, this.size);
+		this.linkRuns.add(EdgeListImporter.writeRun(runs, this.buffer,
+				this.size));
+		
+		for (int i = 0; i < this.size; ++i) {
+			long link = this.buffer[i];
+			this.buffer[i] = (link << 32) | (link >>> 32);
+		}
+		Arrays.parallelSort(this.buffer, 0, this.size);
+		this.backlinkRuns.add(EdgeListImporter.writeRun(runs, this.buffer,
+				this.size));
+		
+		this.size = 0;
+	}
+	
+	/**
+	 * Writes the specified sorted links into a new run, skipping any links
+	 * which are repeated.
+	 * @param runs The directory of the runs.
+	 * @param links The links.
+	 * @param count The number of links.
+	 * @return The run.
+	 * @throws IOException If the run could not be written.
+	 */
+	private static Path writeRun(Path runs, long[] links, int count)
+			throws IOException {
+		Path run = Files.createTempFile(runs, "run", ".bin");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(run),
+						1 << 16))) {
+			for (int i = 0; i < count; ++i)
+				if (i == 0 || links[i] != links[i - 1]) out.writeLong(links[i]);
+		}
+		
+		return run;
+	}
+	
+	/**
+	 * Merges the specified runs into the sink, in order, deleting the runs
+	 * as they are merged. If there are too many runs to be merged at once,
+	 * they are first merged into fewer, larger runs.
+	 * @param runs The runs.
+	 * @param dir The directory of the runs.
+	 * @param sink The sink.
+	 * @throws IOException If a run could not be read or written, or the
+	 *                     sink failed.
+	 */
+	private static void merge(List<Path> runs, Path dir, LinkSink sink)
+			throws IOException {
+		List<Path> pending = new ArrayList<Path>(runs);
+		while (pending.size() > FAN_IN) {
+			List<Path> group = new ArrayList<Path>(pending.subList(0, FAN_IN));
+			pending.subList(0, FAN_IN).clear();
+			
+			Path run = Files.createTempFile(dir, "run", ".bin");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(run),
+							1 << 16))) {
+				EdgeListImporter.mergeGroup(group, out::writeLong);
+			}
+			pending.add(run);
+		}
+		
+		EdgeListImporter.mergeGroup(pending, sink);
+	}
+	
+	/**
+	 * Merges the specified runs into the sink, in order, deleting the runs
+	 * once they are merged.
+	 * @param runs The runs.
+	 * @param sink The sink.
+	 * @throws IOException If a run could not be read, or the sink failed.
+	 */
+	private static void mergeGroup(List<Path> runs, LinkSink sink)
+			throws IOException {
+		PriorityQueue<RunReader> heads = new PriorityQueue<RunReader>(
+				Math.max(1, runs.size()),
+				(a, b) -> Long.compare(a.current, b.current));
+		try {
+			for (Path run : runs) {
+				RunReader reader = new RunReader(run);
+				if (reader.next()) heads.add(reader);
+				else reader.close();
+			}
+			
+			long last = -1;
+			while (!heads.isEmpty()) {
+				RunReader reader = heads.poll();
+				if (reader.current != last) sink.accept(reader.current);
+				last = reader.current;
+				
+				if (reader.next()) heads.add(reader);
+				else reader.close();
+			}
+		} finally {
+			for (RunReader reader : heads) reader.close();
+		}
+		
+		for (Path run : runs) Files.deleteIfExists(run);
+	}
+	
+	/**
+	 * Deletes the specified directory of runs, and any runs left in it.
+	 * @param dir The directory.
+	 * @throws IOException If the directory could not be deleted.
+	 */
+	private static void delete(Path dir) throws IOException {
+		try (Stream<Path> runs = Files.list(dir)) {
+			for (Path run : (Iterable<Path>)runs::iterator)
+				Files.deleteIfExists(run);
+		}
+		Files.deleteIfExists(dir);
+	}
+	
+	/**
+	 * Returns the peak resident memory of this process, as reported by the
+	 * operating system.
+	 * @return The peak number of bytes, or -1 if it is not reported.
+	 */
+	private static long getPeakMemory() {
+		Path status = Paths.get("/proc/self/status");
+		try {
+			for (String line : Files.readAllLines(status)) {
+				if (!line.startsWith("VmHWM:")) continue;
+				
+				String kilobytes = line.substring(6).replace("kB", "").trim();
+				return Long.parseLong(kilobytes) << 10;
+			}
+		} catch (IOException | NumberFormatException e) {
+			// Not reported on this operating system
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Acquires the specified number of permits, without being interrupted.
+	 * @param semaphore The semaphore.
+	 * @param permits The number of permits.
+	 * @throws IOException If the thread was interrupted.
+	 */
+	private static void acquire(Semaphore semaphore, int permits)
+			throws IOException {
+		try {
+			semaphore.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading the links.", e);
+		}
+	}
+	
+	/**
+	 * Reads the links of a run, one at a time.
+	 */
+	private static class RunReader implements Closeable {
+		private DataInputStream in; // Stream of the run
+		private long remaining;     // Number of links not yet read
+		private long current;       // Link which was read last
+		
+		/**
+		 * Creates a new reader of the specified run.
+		 * @param run The run.
+		 * @throws IOException If the run could not be opened.
+		 */
+		private RunReader(Path run) throws IOException {
+			this.remaining = Files.size(run) / 8;
+			this.in = new DataInputStream(new BufferedInputStream(
+					Files.newInputStream(run), 1 << 16));
+		}
+		
+		/**
+		 * Reads the next link of the run.
+		 * @return True if a link was read. False if the end of the run was
+		 *         reached.
+		 * @throws IOException If the run could not be read.
+		 */
+		private boolean next() throws IOException {
+			if (this.remaining == 0) return false;
+			
+			this.current = this.in.readLong();
+			--this.remaining;
+			return true;
+		}
+		
+		@Override
+		/**
+		 * Closes the run.
+		 * @throws IOException If the run could not be closed.
+		 */
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+}
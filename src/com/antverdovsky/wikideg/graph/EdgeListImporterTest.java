@@ -0,0 +1,169 @@
+package com.antverdovsky.wikideg.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Basic Testing of the EdgeListImporter class.
+ */
+public class EdgeListImporterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private ExecutorService pool = Executors.newFixedThreadPool(4);
+	
+	@After
+	/**
+	 * Shuts down the pool of the importer.
+	 */
+	public void tearDown() {
+		this.pool.shutdown();
+	}
+	
+	/**
+	 * Writes the specified lines to a file, compressing the file if its name
+	 * ends in ".gz".
+	 * @param name The name of the file.
+	 * @param lines The lines.
+	 * @return The file.
+	 * @throws IOException If the file could not be written.
+	 */
+	private Path write(String name, List<String> lines) throws IOException {
+		Path file = this.folder.getRoot().toPath().resolve(name);
+		OutputStream out = Files.newOutputStream(file);
+		if (name.endsWith(".gz")) out = new GZIPOutputStream(out);
+		
+		try (Writer writer = new OutputStreamWriter(out,
+				StandardCharsets.UTF_8)) {
+			for (String line : lines) writer.write(line + "\r\n");
+		}
+		
+		return file;
+	}
+	
+	/**
+	 * Returns the title keys of the links of the specified article. Which
+	 * of the titles that differ only in case is kept depends on the order in
+	 * which the titles are read, so the keys are compared rather than the
+	 * titles.
+	 * @param graph The graph.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @return The title keys of the links, sorted.
+	 */
+	private static List<String> links(IntGraph graph, LinkDirection direction,
+			String title) {
+		int node = graph.find(title);
+		List<String> links = new ArrayList<String>();
+		for (long p = graph.getLinksStart(direction, node);
+				p < graph.getLinksEnd(direction, node); ++p) {
+			links.add(TitleSet.key(graph.getTitle(
+					graph.getLink(direction, p))));
+		}
+		
+		links.sort(null);
+		return links;
+	}
+	
+	@Test
+	/**
+	 * Tests importing files of links, with repeated links, links back to
+	 * their own article, titles which differ only in case and a line longer
+	 * than a block, into many runs which take more than one pass to merge.
+	 * The imported graph must equal the graph read into memory.
+	 * @throws IOException If the links could not be imported.
+	 */
+	public void testImport() throws IOException {
+		Random random = new Random(17);
+		List<String> first = new ArrayList<String>();
+		List<String> second = new ArrayList<String>();
+		first.add("# Links of a crawl");
+		for (int i = 0; i < 100000; ++i) {
+			int from = random.nextInt(3000);
+			int to = random.nextInt(from % 7 == 0 ? 20 : 3000);
+			String line = "Article " + from + "\t" +
+					((i % 3 == 0) ? "ARTICLE " : "Article ") + to;
+			((i % 2 == 0) ? first : second).add(line);
+			if (i % 1000 == 0) second.add("");
+		}
+		
+		char[] longTitle = new char[5000];
+		Arrays.fill(longTitle, '\u00e9');
+		first.add(new String(longTitle) + "\tArticle 1");
+		first.add("Article 1\t" + new String(longTitle));
+		
+		Path graphFile = this.folder.getRoot().toPath().resolve("crawl.graph");
+		EdgeListImporter importer = new EdgeListImporter(this.pool, 8 * 1024,
+				this.folder.newFolder().toPath(), 4096);
+		importer.write(Arrays.asList(this.write("first.tsv", first),
+				this.write("second.tsv.gz", second)), graphFile);
+		
+		List<String> all = new ArrayList<String>(first);
+		all.addAll(second);
+		ArrayGraph expected = ArrayGraph.read(this.write("all.tsv", all));
+		LinkGraph graph = new LinkGraph(graphFile);
+		
+		assertEquals(100002, importer.getCount());
+		assertEquals(expected.size(), importer.getArticles());
+		assertEquals(expected.size(), graph.size());
+		assertEquals(expected.getLinkCount(), graph.getLinkCount());
+		assertTrue(importer.getRuns() > 64);
+		
+		for (int node = 0; node < expected.size(); ++node) {
+			String title = expected.getTitle(node);
+			for (LinkDirection direction : LinkDirection.values()) {
+				assertEquals(EdgeListImporterTest.links(expected, direction,
+						title), EdgeListImporterTest.links(graph, direction,
+								title));
+			}
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that a line which is not a link fails the import, and leaves no
+	 * graph behind.
+	 * @throws IOException If the file could not be written.
+	 */
+	public void testMalformed() throws IOException {
+		Path file = this.write("bad.tsv", Arrays.asList("Poland\tWarsaw",
+				"Warsaw Vistula"));
+		Path graphFile = this.folder.getRoot().toPath().resolve("bad.graph");
+		Path temp = this.folder.newFolder().toPath();
+		
+		try {
+			new EdgeListImporter(this.pool, 1 << 20, temp).write(
+					Arrays.asList(file), graphFile);
+			fail("The import did not fail.");
+		} catch (IOException e) {
+			assertEquals("Not a link: Warsaw Vistula", e.getMessage());
+		}
+		
+		assertEquals(false, Files.exists(graphFile));
+		assertEquals(0, temp.toFile().list().length);
+	}
+}
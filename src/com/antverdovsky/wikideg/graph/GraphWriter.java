@@ -0,0 +1,319 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Writes the file of a {@link LinkGraph}. The links are streamed into the
+ * file, first in the forward and then in the backward direction, each in
+ * order of the article they belong to, so only the offsets of the articles
+ * are held in memory while the links are written. The titles are written
+ * last. The graph is written to a temporary file which is atomically moved
+ * over the graph file once it is complete, so a failed import never leaves
+ * a partial graph behind.
+ * The layout of the file is a header, then the offsets and the targets of
+ * the links and of the backlinks, the strings of the titles, the position
+ * of the title of each article and finally the title index.
+ */
+public class GraphWriter implements Closeable {
+	private Path file;              // Graph file
+	private Path temp;              // Temporary file which is written
+	private FileChannel channel;    // Channel of the temporary file
+	private ByteBuffer buffer;      // Bytes not yet written to the channel
+	private long position;          // Position of the start of the buffer
+	
+	private int nodes;              // Number of articles
+	private int direction;          // Links being written, -1 before any
+	private long[] sections;        // Position of the offsets, by direction
+	private long[] offsets;         // Offsets of the links being written
+	private long count;             // Number of links written
+	private int lastFrom;           // Article of the last link written
+	private int lastTo;             // Target of the last link written
+	
+	/**
+	 * Creates a new writer of the graph of the specified number of articles.
+	 * @param file The graph file.
+	 * @param nodes The number of articles, which are numbered from zero.
+	 * @throws IOException If the temporary file could not be created.
+	 */
+	public GraphWriter(Path file, int nodes) throws IOException {
+		this.file = file.toAbsolutePath();
+		Files.createDirectories(this.file.getParent());
+		this.temp = Files.createTempFile(this.file.getParent(),
+				this.file.getFileName().toString(), ".tmp");
+		this.channel = FileChannel.open(this.temp, StandardOpenOption.WRITE);
+		this.buffer = ByteBuffer.allocate(1 << 20);
+		this.position = LinkGraph.HEADER;
+		
+		this.nodes = nodes;
+		this.direction = -1;
+		this.sections = new long[2];
+	}
+	
+	/**
+	 * Starts writing the links of the specified direction. The links must be
+	 * written before the backlinks.
+	 * @param direction The direction.
+	 * @throws IOException If the previous links could not be written.
+	 */
+	public void begin(LinkDirection direction) throws IOException {
+		if (direction.ordinal() != this.direction + 1)
+			throw new IllegalStateException("Links are written first.");
+		if (this.direction >= 0) this.end();
+		
+		// The offsets are written once all of the links have been
+		this.direction = direction.ordinal();
+		this.sections[this.direction] = this.tell();
+		this.offsets = new long[this.nodes + 1];
+		this.count = 0;
+		this.lastFrom = 0;
+		this.lastTo = -1;
+		this.seek(this.position + 8L * (this.nodes + 1));
+	}
+	
+	/**
+	 * Writes the specified link. The links must be written in order of the
+	 * article they belong to, and then of their target. A link which is
+	 * equal to the link written before it is skipped.
+	 * @param from The number of the article of the link.
+	 * @param to The number of the article which the link leads to, or comes
+	 *           from for backlinks.
+	 * @throws IOException If the link could not be written.
+	 */
+	public void addLink(int from, int to) throws IOException {
+		if (from < this.lastFrom || (from == this.lastFrom &&
+				to < this.lastTo)) throw new IllegalArgumentException(
+						"Links are out of order: " + from + ", " + to);
+		if (from == this.lastFrom && to == this.lastTo) return;
+		
+		while (this.lastFrom < from) this.offsets[++this.lastFrom] =
+				this.count;
+		this.lastTo = to;
+		
+		this.reserve(4);
+		this.buffer.putInt(to);
+		++this.count;
+	}
+	
+	/**
+	 * Writes the titles of the articles and of the redirects, and moves the
+	 * complete graph into place. No redirect may have the title of an
+	 * article.
+	 * @param titles The title of each article.
+	 * @param aliases The titles of the redirects.
+	 * @param aliasNodes The article which each redirect redirects to.
+	 * @throws IOException If the graph could not be written.
+	 */
+	public void finish(String[] titles, String[] aliases, int[] aliasNodes)
+			throws IOException {
+		if (this.direction != LinkDirection.BACKLINKS.ordinal())
+			throw new IllegalStateException("Backlinks were not written.");
+		this.end();
+		
+		// Sort the entries of the index by key, then title. Entries below
+		// the number of articles are articles, the rest are redirects.
+		int entries = titles.length + aliases.length;
+		String[] all = Arrays.copyOf(titles, entries);
+		System.arraycopy(aliases, 0, all, titles.length, aliases.length);
+		String[] keys = new String[entries];
+		Integer[] order = new Integer[entries];
+		for (int i = 0; i < entries; ++i) {
+			keys[i] = TitleSet.key(all[i]);
+			order[i] = i;
+		}
+		Arrays.parallelSort(order, (a, b) -> {
+			int c = GraphWriter.compare(keys[a], keys[b]);
+			return (c != 0) ? c : GraphWriter.compare(all[a], all[b]);
+		});
+		
+		// Strings: the title and the key of each entry, unless they match
+		long strings = this.tell();
+		long[] titleAt = new long[entries];
+		long[] keyAt = new long[entries];
+		for (int i = 0; i < entries; ++i) {
+			String title = all[i];
+			titleAt[i] = this.putString(title);
+			keyAt[i] = keys[i].equals(title) ? titleAt[i] :
+					this.putString(keys[i]);
+		}
+		this.seek((this.tell() + 7) & ~7L);
+		
+		// Position of the title of each article
+		long titlesAt = this.tell();
+		for (int i = 0; i < titles.length; ++i) {
+			this.reserve(8);
+			this.buffer.putLong(titleAt[i]);
+		}
+		
+		// Index: position of the key and the title, and the article
+		long index = this.tell();
+		for (int i : order) {
+			this.reserve(LinkGraph.ENTRY);
+			this.buffer.putLong(keyAt[i]);
+			this.buffer.putLong(titleAt[i]);
+			this.buffer.putInt((i < titles.length) ? i :
+					aliasNodes[i - titles.length]);
+			this.buffer.putInt(0);
+		}
+		this.flush();
+		
+		ByteBuffer header = ByteBuffer.allocate(LinkGraph.HEADER);
+		header.putInt(LinkGraph.MAGIC);
+		header.putInt(this.nodes);
+		header.putInt(entries);
+		header.putInt(0);
+		header.putLong(this.sections[0]);
+		header.putLong(this.sections[1]);
+		header.putLong(titlesAt);
+		header.putLong(index);
+		header.putLong(strings);
+		header.putLong(this.position);
+		header.flip();
+		this.write(header, 0);
+		
+		this.channel.force(true);
+		this.channel.close();
+		try {
+			Files.move(this.temp, this.file, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(this.temp, this.file,
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	@Override
+	/**
+	 * Closes the writer, deleting the temporary file if the graph was not
+	 * finished.
+	 * @throws IOException If the temporary file could not be deleted.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+		Files.deleteIfExists(this.temp);
+	}
+	
+	/**
+	 * Ends the links of the current direction, by writing their offsets.
+	 * @throws IOException If the offsets could not be written.
+	 */
+	private void end() throws IOException {
+		while (this.lastFrom < this.nodes) this.offsets[++this.lastFrom] =
+				this.count;
+		long next = this.tell();
+		
+		ByteBuffer offsets = ByteBuffer.allocate(8 * (this.nodes + 1));
+		offsets.asLongBuffer().put(this.offsets);
+		this.flush();
+		this.write(offsets, this.sections[this.direction]);
+		
+		this.offsets = null;
+		this.seek((next + 7) & ~7L);
+	}
+	
+	/**
+	 * Writes the specified string, as its length in bytes followed by its
+	 * bytes in UTF-8.
+	 * @param s The string.
+	 * @return The position of the string.
+	 * @throws IOException If the string could not be written.
+	 */
+	private long putString(String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF)
+			throw new IOException("Title is too long: " + s);
+		
+		this.reserve(2 + bytes.length);
+		long at = this.tell();
+		this.buffer.putShort((short)bytes.length);
+		this.buffer.put(bytes);
+		
+		return at;
+	}
+	
+	/**
+	 * Returns the position in the file of the next byte which is written.
+	 * @return The position.
+	 */
+	private long tell() {
+		return this.position + this.buffer.position();
+	}
+	
+	/**
+	 * Makes room in the buffer for the specified number of bytes, writing
+	 * the buffer if it is too full.
+	 * @param n The number of bytes, which must fit in the buffer.
+	 * @throws IOException If the buffer could not be written.
+	 */
+	private void reserve(int n) throws IOException {
+		if (this.buffer.remaining() < n) this.flush();
+	}
+	
+	/**
+	 * Writes the buffer at its position in the file, and empties it.
+	 * @throws IOException If the buffer could not be written.
+	 */
+	private void flush() throws IOException {
+		this.buffer.flip();
+		int n = this.buffer.remaining();
+		this.write(this.buffer, this.position);
+		this.position += n;
+		this.buffer.clear();
+	}
+	
+	/**
+	 * Writes the buffer, and continues writing at the specified position.
+	 * @param position The position.
+	 * @throws IOException If the buffer could not be written.
+	 */
+	private void seek(long position) throws IOException {
+		this.flush();
+		this.position = position;
+	}
+	
+	/**
+	 * Writes all of the specified bytes at the specified position.
+	 * @param bytes The bytes.
+	 * @param position The position.
+	 * @throws IOException If the bytes could not be written.
+	 */
+	private void write(ByteBuffer bytes, long position) throws IOException {
+		while (bytes.hasRemaining())
+			position += this.channel.write(bytes, position);
+	}
+	
+	/**
+	 * Compares the specified strings by their code points, which is the
+	 * order of their bytes in UTF-8.
+	 * @param a The first string.
+	 * @param b The second string.
+	 * @return A negative number, zero or a positive number if the first
+	 *         string is less than, equal to or greater than the second.
+	 */
+	static int compare(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int x = a.codePointAt(i);
+			int y = b.codePointAt(j);
+			if (x != y) return x - y;
+			
+			i += Character.charCount(x);
+			j += Character.charCount(y);
+		}
+		
+		return (a.length() - i) - (b.length() - j);
+	}
+}
@@ -0,0 +1,80 @@
+package com.antverdovsky.wikideg.graph;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+
+/**
+ * Interface used by all graphs of the links between articles whose articles
+ * are numbered from zero. The links of each article, in either direction,
+ * are a contiguous run of positions, from the position returned by
+ * {@link #getLinksStart(LinkDirection, int)} up to, but not including, the
+ * position returned by {@link #getLinksEnd(LinkDirection, int)}. The links
+ * of each article are distinct and sorted.
+ */
+public interface IntGraph {
+	// Value returned by find when the title is not in the graph
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Returns the number of articles in the graph.
+	 * @return The number of articles.
+	 */
+	public int size();
+
+	/**
+	 * Returns the number of links between the articles of the graph.
+	 * @return The number of links.
+	 */
+	public long getLinkCount();
+
+	/**
+	 * Returns the number of the article with the specified title, ignoring
+	 * the case of the title.
+	 * @param title The title.
+	 * @return The number of the article, or NOT_FOUND if no article has the
+	 *         title.
+	 */
+	public int find(String title);
+
+	/**
+	 * Returns the title of the specified article.
+	 * @param node The number of the article.
+	 * @return The title.
+	 */
+	public String getTitle(int node);
+
+	/**
+	 * Returns the position of the first link of the specified article.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The position of the first link.
+	 */
+	public long getLinksStart(LinkDirection direction, int node);
+
+	/**
+	 * Returns the position one past the last link of the specified article.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The position one past the last link.
+	 */
+	public long getLinksEnd(LinkDirection direction, int node);
+
+	/**
+	 * Returns the article which the link at the specified position leads
+	 * to, or comes from for backlinks.
+	 * @param direction The direction of the link.
+	 * @param position The position of the link.
+	 * @return The number of the article.
+	 */
+	public int getLink(LinkDirection direction, long position);
+
+	/**
+	 * Returns the number of links of the specified article.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The number of links.
+	 */
+	public default int getDegree(LinkDirection direction, int node) {
+		return (int)(this.getLinksEnd(direction, node) -
+				this.getLinksStart(direction, node));
+	}
+}
@@ -0,0 +1,552 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+
+/**
+ * Index of the distances between every article of a graph and a few of its
+ * hub articles, its landmarks. For each landmark, the index holds the exact
+ * number of links from the landmark to each article and from each article
+ * to the landmark, one byte per article and direction. The distances of
+ * each article are stored together, so that a bound only reads the few
+ * bytes of two articles. By the triangle inequality, the distances to and
+ * from the landmarks give a lower bound on the distance between any two
+ * articles, and the paths through the landmarks give an upper bound,
+ * without expanding the graph at all.
+ * The landmarks are the articles with the most links and backlinks, since
+ * most shortest paths run through the hubs of the graph.
+ */
+public class LandmarkIndex {
+	static final int MAGIC = 0x574B4931; // "WKI1", start of the file
+	
+	// Default number of landmarks of an index
+	public static final int DEFAULT_LANDMARKS = 16;
+	
+	// Bound which is returned when the landmarks prove there is no path
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	
+	// Stored distance of an article which is not reached at all, and the
+	// largest distance which is stored exactly. Longer distances are stored
+	// as FAR, which is never used by the bounds.
+	private static final int NOT_REACHED = 0xFF;
+	private static final int FAR = 0xFE;
+	
+	private IntGraph graph;       // Graph of the index
+	private int[] landmarks;      // Article of each landmark
+	private byte[] distances;     // Distances of each article, in a row
+	private int[] maxDistances;   // Largest stored distance of each column
+	private long[] buildMillis;   // Time taken to build each landmark
+	
+	/**
+	 * Creates a new index from its distances.
+	 * @param graph The graph of the index.
+	 * @param landmarks The article of each landmark.
+	 * @param distances The distances of each article, in a row of twice as
+	 *                  many bytes as there are landmarks: the distance from
+	 *                  each landmark to the article, then the distance from
+	 *                  the article to each landmark.
+	 * @param buildMillis The time taken to build each landmark.
+	 */
+	private LandmarkIndex(IntGraph graph, int[] landmarks, byte[] distances,
+			long[] buildMillis) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.distances = distances;
+		this.buildMillis = buildMillis;
+		
+		int stride = 2 * landmarks.length;
+		this.maxDistances = new int[stride];
+		for (int row = 0; row < distances.length; row += stride) {
+			for (int i = 0; i < stride; ++i) {
+				this.maxDistances[i] = Math.max(this.maxDistances[i],
+						distances[row + i] & 0xFF);
+			}
+		}
+	}
+	
+	/**
+	 * Builds an index of the specified graph, whose landmarks are the
+	 * articles with the most links and backlinks. The breadth first
+	 * searches of the landmarks run in parallel on the common fork/join
+	 * pool.
+	 * @param graph The graph.
+	 * @param count The number of landmarks, which is cut down to the number
+	 *              of articles if the graph is smaller.
+	 * @return The index.
+	 * @throws IllegalArgumentException If count is negative, or if the
+	 *                                  distances would not fit in a single
+	 *                                  array.
+	 */
+	public static LandmarkIndex build(IntGraph graph, int count) {
+		if (count < 0) throw new IllegalArgumentException(
+				"Landmarks must not be negative: " + count);
+		
+		int[] landmarks = LandmarkIndex.selectHubs(graph, count);
+		byte[] distances = new byte[LandmarkIndex.getLength(graph.size(),
+				landmarks.length)];
+		Arrays.fill(distances, (byte)NOT_REACHED);
+		long[] buildMillis = new long[landmarks.length];
+		
+		// Each landmark is searched in both directions, by separate tasks,
+		// each of which writes its own column of the rows
+		long[] nanos = new long[2 * landmarks.length];
+		IntStream.range(0, 2 * landmarks.length).parallel().forEach(i -> {
+			long startTime = System.nanoTime();
+			LandmarkIndex.search(graph, landmarks[i % landmarks.length],
+					(i < landmarks.length) ? LinkDirection.LINKS :
+						LinkDirection.BACKLINKS,
+					distances, 2 * landmarks.length, i);
+			nanos[i] = System.nanoTime() - startTime;
+		});
+		for (int i = 0; i < landmarks.length; ++i) {
+			buildMillis[i] = (nanos[i] + nanos[landmarks.length + i]) /
+					1000000;
+		}
+		
+		return new LandmarkIndex(graph, landmarks, distances, buildMillis);
+	}
+	
+	/**
+	 * Reads the index of the specified graph from the specified file, which
+	 * was written by {@link #write(Path)}.
+	 * @param graph The graph of the index.
+	 * @param file The file.
+	 * @return The index.
+	 * @throws IOException If the file could not be read, is not an index,
+	 *                     or is the index of another graph.
+	 */
+	public static LandmarkIndex read(IntGraph graph, Path file)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(file), 1 << 16))) {
+			// Header: magic, articles, landmarks, then links of the graph
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a landmark index: " + file);
+			int nodes = in.readInt();
+			int count = in.readInt();
+			long links = in.readLong();
+			if (nodes != graph.size() || links != graph.getLinkCount()) {
+				throw new IOException("The landmark index " + file +
+						" is not of this graph.");
+			}
+			
+			int[] landmarks = new int[count];
+			long[] buildMillis = new long[count];
+			for (int i = 0; i < count; ++i) {
+				landmarks[i] = in.readInt();
+				buildMillis[i] = in.readLong();
+			}
+			
+			byte[] distances;
+			try {
+				distances = new byte[LandmarkIndex.getLength(nodes, count)];
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Not a landmark index: " + file);
+			}
+			in.readFully(distances);
+			
+			return new LandmarkIndex(graph, landmarks, distances, 
+					buildMillis);
+		}
+	}
+	
+	/**
+	 * Writes the index to the specified file. The index is written to a
+	 * temporary file first, which replaces the file once it is complete.
+	 * @param file The file.
+	 * @throws IOException If the file could not be written.
+	 */
+	public void write(Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temp),
+						1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(this.graph.size());
+			out.writeInt(this.landmarks.length);
+			out.writeLong(this.graph.getLinkCount());
+			
+			for (int i = 0; i < this.landmarks.length; ++i) {
+				out.writeInt(this.landmarks[i]);
+				out.writeLong(this.buildMillis[i]);
+			}
+			out.write(this.distances);
+		}
+		
+		try {
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Returns the graph of the index.
+	 * @return The graph.
+	 */
+	public IntGraph getGraph() {
+		return this.graph;
+	}
+	
+	/**
+	 * Returns the number of landmarks of the index.
+	 * @return The number of landmarks.
+	 */
+	public int size() {
+		return this.landmarks.length;
+	}
+	
+	/**
+	 * Returns the article of the specified landmark.
+	 * @param i The number of the landmark.
+	 * @return The number of the article.
+	 */
+	public int getLandmark(int i) {
+		return this.landmarks[i];
+	}
+	
+	/**
+	 * Returns the memory used by the distances of a single landmark.
+	 * @return The memory, in bytes.
+	 */
+	public long getLandmarkBytes() {
+		return 2L * this.graph.size();
+	}
+	
+	/**
+	 * Returns the time taken to build the distances of the specified
+	 * landmark, by a single thread.
+	 * @param i The number of the landmark.
+	 * @return The time, in milliseconds.
+	 */
+	public long getBuildMillis(int i) {
+		return this.buildMillis[i];
+	}
+	
+	/**
+	 * Returns a summary of the specified landmark: its title, the number of
+	 * articles it reaches and is reached from, the memory used by its
+	 * distances and the time taken to build them.
+	 * @param i The number of the landmark.
+	 * @return The summary.
+	 */
+	public String describe(int i) {
+		int stride = 2 * this.landmarks.length;
+		int reachedFrom = 0;
+		int reachedTo = 0;
+		for (int row = 0; row < this.distances.length; row += stride) {
+			if ((this.distances[row + i] & 0xFF) != NOT_REACHED)
+				++reachedFrom;
+			if ((this.distances[row + this.landmarks.length + i] & 0xFF) !=
+					NOT_REACHED) {
+				++reachedTo;
+			}
+		}
+		
+		return "Landmark " + i + " \"" +
+				this.graph.getTitle(this.landmarks[i]) + "\": reaches " +
+				reachedFrom + " and is reached from " + reachedTo +
+				" articles, " + this.getLandmarkBytes() / 1024 + " KB, " +
+				this.buildMillis[i] + "ms";
+	}
+	
+	/**
+	 * Returns the number of links from the specified landmark to the
+	 * specified article.
+	 * @param i The number of the landmark.
+	 * @param node The number of the article.
+	 * @return The distance, or UNREACHABLE if the article is not reached
+	 *         from the landmark or is too far from it to be stored.
+	 */
+	public int getDistanceFrom(int i, int node) {
+		return LandmarkIndex.decode(this.distances[
+				2 * this.landmarks.length * node + i]);
+	}
+	
+	/**
+	 * Returns the number of links from the specified article to the
+	 * specified landmark.
+	 * @param i The number of the landmark.
+	 * @param node The number of the article.
+	 * @return The distance, or UNREACHABLE if the landmark is not reached
+	 *         from the article or is too far from it to be stored.
+	 */
+	public int getDistanceTo(int i, int node) {
+		return LandmarkIndex.decode(this.distances[
+				2 * this.landmarks.length * node + this.landmarks.length + i]);
+	}
+	
+	/**
+	 * Returns a lower bound on the number of links from the start article
+	 * to the end article. For each landmark L, the distance from L to the
+	 * end is at most the distance from L to the start plus the distance
+	 * from the start to the end, and the distance from the start to L is at
+	 * most the distance from the start to the end plus the distance from
+	 * the end to L. If L reaches the start but not the end, or the end
+	 * reaches L but the start does not, the end is not reached from the
+	 * start at all.
+	 * @param start The number of the start article.
+	 * @param end The number of the end article.
+	 * @return The lower bound, or UNREACHABLE if the landmarks prove that
+	 *         there is no path.
+	 */
+	public int getLowerBound(int start, int end) {
+		if (start == end) return 0;
+		
+		int count = this.landmarks.length;
+		int startRow = 2 * count * start;
+		int endRow = 2 * count * end;
+		int bound = 1;
+		for (int i = 0; i < count; ++i) {
+			int fromStart = this.distances[startRow + i] & 0xFF;
+			int fromEnd = this.distances[endRow + i] & 0xFF;
+			if (fromStart < FAR) {
+				if (fromEnd == NOT_REACHED) return UNREACHABLE;
+				if (fromEnd < FAR)
+					bound = Math.max(bound, fromEnd - fromStart);
+			}
+			
+			int toStart = this.distances[startRow + count + i] & 0xFF;
+			int toEnd = this.distances[endRow + count + i] & 0xFF;
+			if (toEnd < FAR) {
+				if (toStart == NOT_REACHED) return UNREACHABLE;
+				if (toStart < FAR)
+					bound = Math.max(bound, toStart - toEnd);
+			}
+		}
+		
+		return bound;
+	}
+	
+	/**
+	 * Returns the largest lower bound on the number of links from any
+	 * article to the specified end article, as found from the largest
+	 * distances of the landmarks rather than from every article. A search
+	 * towards the end article which is still this many links short of its
+	 * bound cannot have any article pruned by the lower bounds.
+	 * @param end The number of the end article.
+	 * @return The largest lower bound, or UNREACHABLE if the lower bound of
+	 *         any article may be UNREACHABLE.
+	 */
+	public int getMaxLowerBoundTo(int end) {
+		int count = this.landmarks.length;
+		int endRow = 2 * count * end;
+		int bound = 1;
+		for (int i = 0; i < count; ++i) {
+			int fromEnd = this.distances[endRow + i] & 0xFF;
+			if (fromEnd == NOT_REACHED) return UNREACHABLE;
+			if (fromEnd < FAR) bound = Math.max(bound, fromEnd);
+			
+			int toEnd = this.distances[endRow + count + i] & 0xFF;
+			int maxTo = this.maxDistances[count + i];
+			if (toEnd < FAR) {
+				if (maxTo == NOT_REACHED) return UNREACHABLE;
+				bound = Math.max(bound, Math.min(maxTo, FAR - 1) - toEnd);
+			}
+		}
+		
+		return bound;
+	}
+	
+	/**
+	 * Returns the largest lower bound on the number of links from the
+	 * specified start article to any article, as found from the largest
+	 * distances of the landmarks rather than from every article.
+	 * @param start The number of the start article.
+	 * @return The largest lower bound, or UNREACHABLE if the lower bound of
+	 *         any article may be UNREACHABLE.
+	 */
+	public int getMaxLowerBoundFrom(int start) {
+		int count = this.landmarks.length;
+		int startRow = 2 * count * start;
+		int bound = 1;
+		for (int i = 0; i < count; ++i) {
+			int fromStart = this.distances[startRow + i] & 0xFF;
+			int maxFrom = this.maxDistances[i];
+			if (fromStart < FAR) {
+				if (maxFrom == NOT_REACHED) return UNREACHABLE;
+				bound = Math.max(bound, Math.min(maxFrom, FAR - 1) -
+						fromStart);
+			}
+			
+			int toStart = this.distances[startRow + count + i] & 0xFF;
+			if (toStart == NOT_REACHED) return UNREACHABLE;
+			if (toStart < FAR) bound = Math.max(bound, toStart);
+		}
+		
+		return bound;
+	}
+	
+	/**
+	 * Returns an upper bound on the number of links from the start article
+	 * to the end article, which is the length of the shortest path through
+	 * any of the landmarks.
+	 * @param start The number of the start article.
+	 * @param end The number of the end article.
+	 * @return The upper bound, or UNREACHABLE if no path runs through any
+	 *         of the landmarks.
+	 */
+	public int getUpperBound(int start, int end) {
+		if (start == end) return 0;
+		
+		int count = this.landmarks.length;
+		int bound = UNREACHABLE;
+		for (int i = 0; i < count; ++i) {
+			int toLandmark = this.distances[2 * count * start + count + i] &
+					0xFF;
+			int fromLandmark = this.distances[2 * count * end + i] & 0xFF;
+			if (toLandmark < FAR && fromLandmark < FAR)
+				bound = Math.min(bound, toLandmark + fromLandmark);
+		}
+		
+		return bound;
+	}
+	
+	/**
+	 * Builds the index of the graph named by the arguments, and writes it
+	 * to a file, reporting the memory used by and the time taken to build
+	 * each landmark.
+	 * @param args The program arguments.
+	 */
+	public static void main(String[] args) {
+		Path graphFile = null;
+		Path out = null;
+		int count = DEFAULT_LANDMARKS;
+		
+		for (String s : args) {
+			String value = s.substring(s.indexOf('=') + 1);
+			if (s.startsWith("-graph=")) graphFile = Paths.get(value);
+			if (s.startsWith("-out=")) out = Paths.get(value);
+			if (s.startsWith("-landmarks=")) count = Integer.parseInt(value);
+		}
+		
+		if (graphFile == null || out == null) {
+			System.out.println("Usage: LandmarkIndex -graph=FILE -out=FILE " +
+					"[-landmarks=N]");
+			return;
+		}
+		
+		try {
+			LinkGraph graph = new LinkGraph(graphFile);
+			long startTime = System.currentTimeMillis();
+			LandmarkIndex index = LandmarkIndex.build(graph, count);
+			long time = System.currentTimeMillis() - startTime;
+			
+			for (int i = 0; i < index.size(); ++i)
+				System.out.println(index.describe(i));
+			index.write(out);
+			System.out.println("Wrote " + index.size() + " landmarks of " +
+					graph.size() + " articles to " + out + " in " + time +
+					"ms (" + index.size() * index.getLandmarkBytes() / 1024 +
+					" KB).");
+		} catch (IOException e) {
+			System.out.println("Unable to build the landmark index: " +
+					e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns the articles with the most links and backlinks.
+	 * @param graph The graph.
+	 * @param count The number of articles.
+	 * @return The articles, in order of their degree, from the highest.
+	 */
+	private static int[] selectHubs(IntGraph graph, int count) {
+		count = Math.min(count, graph.size());
+		PriorityQueue<long[]> hubs = new PriorityQueue<long[]>(count + 1,
+				(a, b) -> Long.compare(a[0], b[0]));
+		for (int node = 0; node < graph.size(); ++node) {
+			long degree = graph.getDegree(LinkDirection.LINKS, node) +
+					graph.getDegree(LinkDirection.BACKLINKS, node);
+			hubs.add(new long[] { degree, node });
+			if (hubs.size() > count) hubs.poll();
+		}
+		
+		int[] landmarks = new int[hubs.size()];
+		for (int i = landmarks.length - 1; i >= 0; --i)
+			landmarks[i] = (int)hubs.poll()[1];
+		return landmarks;
+	}
+	
+	/**
+	 * Returns the number of bytes of the distances of an index.
+	 * @param nodes The number of articles of the graph.
+	 * @param count The number of landmarks.
+	 * @return The number of bytes.
+	 * @throws IllegalArgumentException If the distances would not fit in a
+	 *                                  single array.
+	 */
+	private static int getLength(int nodes, int count) {
+		long length = 2L * count * nodes;
+		if (nodes < 0 || count < 0 || length > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many landmarks for " +
+					nodes + " articles: " + count);
+		}
+		
+		return (int)length;
+	}
+	
+	/**
+	 * Writes the distance of every article from the specified landmark
+	 * into a column of the rows of the distances, as found by a breadth
+	 * first search which follows the links in the specified direction.
+	 * @param graph The graph.
+	 * @param landmark The article of the landmark.
+	 * @param direction LINKS for the distances from the landmark, BACKLINKS
+	 *                  for the distances to it.
+	 * @param distances The rows of the distances, in which every distance
+	 *                  of the column is NOT_REACHED.
+	 * @param stride The length of a row.
+	 * @param column The column of the search.
+	 */
+	private static void search(IntGraph graph, int landmark,
+			LinkDirection direction, byte[] distances, int stride,
+			int column) {
+		distances[stride * landmark + column] = 0;
+		
+		int[] queue = new int[graph.size()];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = landmark;
+		while (head < tail) {
+			int node = queue[head++];
+			int distance = Math.min(FAR,
+					(distances[stride * node + column] & 0xFF) + 1);
+			
+			long end = graph.getLinksEnd(direction, node);
+			for (long p = graph.getLinksStart(direction, node); p < end;
+					++p) {
+				int link = graph.getLink(direction, p);
+				int at = stride * link + column;
+				if ((distances[at] & 0xFF) != NOT_REACHED) continue;
+				
+				distances[at] = (byte)distance;
+				queue[tail++] = link;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the distance which is stored as the specified byte.
+	 * @param distance The byte.
+	 * @return The distance, or UNREACHABLE if it is not stored exactly.
+	 */
+	private static int decode(byte distance) {
+		int value = distance & 0xFF;
+		return (value < FAR) ? value : UNREACHABLE;
+	}
+}
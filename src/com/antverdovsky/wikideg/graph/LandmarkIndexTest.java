@@ -0,0 +1,131 @@
+package com.antverdovsky.wikideg.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Basic Testing of the LandmarkIndex class.
+ */
+public class LandmarkIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	/**
+	 * Tests that the distances of the landmarks are exact, and that the
+	 * bounds of random pairs of articles hold the distance between them,
+	 * over graphs which are both sparse and dense.
+	 */
+	public void testBounds() {
+		Random random = new Random(5);
+		for (int maxLinks : new int[] { 2, 3, 8 }) {
+			ArrayGraph graph = TestGraphs.randomGraph(2000, maxLinks,
+					maxLinks);
+			LandmarkIndex index = LandmarkIndex.build(graph, 6);
+			assertEquals(6, index.size());
+			assertEquals(2L * graph.size(), index.getLandmarkBytes());
+			
+			int[] landmark = TestGraphs.distances(graph,
+					index.getLandmark(0));
+			for (int node = 0; node < graph.size(); ++node) {
+				assertEquals(landmark[node], (landmark[node] < 0) ? -1 :
+						index.getDistanceFrom(0, node));
+			}
+			
+			for (int i = 0; i < 40; ++i) {
+				int start = random.nextInt(graph.size());
+				int[] distances = TestGraphs.distances(graph, start);
+				for (int j = 0; j < 50; ++j) {
+					int end = random.nextInt(graph.size());
+					int lower = index.getLowerBound(start, end);
+					int upper = index.getUpperBound(start, end);
+					assertTrue(lower <= index.getMaxLowerBoundFrom(start));
+					assertTrue(lower <= index.getMaxLowerBoundTo(end));
+					
+					if (distances[end] < 0) {
+						assertEquals(LandmarkIndex.UNREACHABLE, upper);
+						continue;
+					}
+					
+					assertTrue(lower <= distances[end]);
+					assertTrue(distances[end] <= upper);
+				}
+			}
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that the bounds prove there is no path from an article which
+	 * reaches no landmark, to an article which reaches one.
+	 */
+	public void testUnreachable() {
+		HashMap<String, List<String>> links =
+				new HashMap<String, List<String>>();
+		links.put("Poland", Arrays.asList("Warsaw", "Vistula", "Lviv"));
+		links.put("Warsaw", Arrays.asList("Poland", "Vistula"));
+		links.put("Vistula", Arrays.asList("Poland", "Warsaw"));
+		links.put("Lviv", Arrays.asList("Krakow"));
+		links.put("Krakow", Arrays.asList("Lviv"));
+		ArrayGraph graph = new ArrayGraph(links);
+		LandmarkIndex index = LandmarkIndex.build(graph, 1);
+		
+		int poland = graph.find("Poland");
+		int lviv = graph.find("Lviv");
+		assertEquals(poland, index.getLandmark(0));
+		assertEquals(1, index.getUpperBound(poland, lviv));
+		assertEquals(1, index.getLowerBound(poland, lviv));
+		assertEquals(LandmarkIndex.UNREACHABLE,
+				index.getLowerBound(lviv, poland));
+		assertEquals(LandmarkIndex.UNREACHABLE,
+				index.getUpperBound(lviv, graph.find("Warsaw")));
+		assertEquals(0, index.getLowerBound(lviv, lviv));
+	}
+	
+	@Test
+	/**
+	 * Tests writing an index to a file and reading it back, and reading it
+	 * for another graph.
+	 * @throws IOException If the file could not be written or read.
+	 */
+	public void testReadWrite() throws IOException {
+		ArrayGraph graph = TestGraphs.randomGraph(500, 4, 1);
+		LandmarkIndex index = LandmarkIndex.build(graph, 4);
+		Path file = this.folder.getRoot().toPath().resolve("graph.landmarks");
+		index.write(file);
+		
+		LandmarkIndex read = LandmarkIndex.read(graph, file);
+		assertEquals(index.size(), read.size());
+		for (int i = 0; i < index.size(); ++i) {
+			assertEquals(index.getLandmark(i), read.getLandmark(i));
+			assertEquals(index.getBuildMillis(i), read.getBuildMillis(i));
+			assertEquals(index.describe(i), read.describe(i));
+			for (int node = 0; node < graph.size(); ++node) {
+				assertEquals(index.getDistanceFrom(i, node),
+						read.getDistanceFrom(i, node));
+				assertEquals(index.getDistanceTo(i, node),
+						read.getDistanceTo(i, node));
+			}
+		}
+		
+		try {
+			LandmarkIndex.read(TestGraphs.randomGraph(500, 4, 2),
+					file);
+			fail("Read the index of another graph.");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("not of this graph"));
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.TitleNormalizer;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Read only graph of the links between articles, memory mapped from a file
+ * written by a {@link GraphWriter}. The links and backlinks of each article
+ * are stored in compressed sparse row form: the articles are numbered from
+ * zero, and the links of each article are a contiguous run of the numbers of
+ * the articles it links to. Titles are found through an index which is
+ * sorted by the case folded key of each title, and which also holds the
+ * titles of redirects. Nothing is read into memory up front, and the graph
+ * may be read by any number of threads at once.
+ */
+public class LinkGraph implements IntGraph {
+	static final int MAGIC = 0x574B4731; // "WKG1", start of the file
+	static final int HEADER = 64;        // Size of the header of the file
+	static final int ENTRY = 24;         // Size of an entry of the index
+	
+	// The file is mapped in segments, since a single mapping may not be
+	// larger than two gigabytes. Segments are a multiple of eight bytes
+	// long, so no aligned integer is ever split between two of them.
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+	
+	private MappedByteBuffer[] segments; // Mappings of the file
+	
+	private int nodes;                   // Number of articles
+	private int entries;                 // Number of entries of the index
+	private long[] offsets;              // Links offsets, by direction
+	private long[] targets;              // Links targets, by direction
+	private long titles;                 // Title of each article
+	private long index;                  // Entries of the title index
+	
+	/**
+	 * Opens the graph stored in the specified file.
+	 * @param file The file.
+	 * @throws IOException If the file could not be read, or is not a graph.
+	 */
+	public LinkGraph(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER) throw new IOException("Not a graph: " + file);
+			
+			int count = (int)((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+			this.segments = new MappedByteBuffer[count];
+			for (int i = 0; i < count; ++i) {
+				long start = (long)i << SEGMENT_BITS;
+				this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, Math.min(size - start, SEGMENT_MASK + 1));
+			}
+			
+			// Header: magic, articles, entries, then position of sections
+			if (this.getInt(0) != MAGIC)
+				throw new IOException("Not a graph: " + file);
+			this.nodes = this.getInt(4);
+			this.entries = this.getInt(8);
+			this.offsets = new long[] { this.getLong(16), this.getLong(24) };
+			this.targets = new long[2];
+			for (int i = 0; i < 2; ++i)
+				this.targets[i] = this.offsets[i] + 8L * (this.nodes + 1);
+			this.titles = this.getLong(32);
+			this.index = this.getLong(40);
+			
+			if (this.getLong(56) != size)
+				throw new IOException("Truncated graph: " + file);
+		}
+	}
+	
+	@Override
+	/**
+	 * Returns the number of articles in the graph.
+	 * @return The number of articles.
+	 */
+	public int size() {
+		return this.nodes;
+	}
+	
+	@Override
+	/**
+	 * Returns the number of links between the articles of the graph.
+	 * @return The number of links.
+	 */
+	public long getLinkCount() {
+		return this.getLong(this.offsets[0] + 8L * this.nodes);
+	}
+	
+	@Override
+	/**
+	 * Returns the number of the article with the specified title. The title
+	 * is matched exactly if possible, and ignoring its case otherwise. The
+	 * titles of redirects are resolved to the articles they redirect to.
+	 * @param title The title.
+	 * @return The number of the article, or NOT_FOUND if no article has the
+	 *         title.
+	 */
+	public int find(String title) {
+		String normalized = TitleNormalizer.normalize(title);
+		if (normalized != null) title = normalized;
+		
+		byte[] exact = title.getBytes(StandardCharsets.UTF_8);
+		byte[] key = TitleSet.key(title).getBytes(StandardCharsets.UTF_8);
+		
+		// Find the first entry whose key is not less than the key
+		int low = 0;
+		int high = this.entries;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.compare(this.getLong(this.entry(middle)), key) < 0)
+				low = middle + 1;
+			else high = middle;
+		}
+		
+		// Prefer the entry whose title is exact, among those of the key
+		int found = NOT_FOUND;
+		for (int i = low; i < this.entries; ++i) {
+			long entry = this.entry(i);
+			if (this.compare(this.getLong(entry), key) != 0) break;
+			
+			int node = this.getInt(entry + 16);
+			if (this.compare(this.getLong(entry + 8), exact) == 0)
+				return node;
+			if (found == NOT_FOUND) found = node;
+		}
+		
+		return found;
+	}
+	
+	@Override
+	/**
+	 * Returns the title of the specified article.
+	 * @param node The number of the article.
+	 * @return The title.
+	 */
+	public String getTitle(int node) {
+		long position = this.getLong(this.titles + 8L * node);
+		int length = this.getShort(position);
+		
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; ++i)
+			bytes[i] = this.getByte(position + 2 + i);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	/**
+	 * Returns the position of the first link of the specified article. The
+	 * links of the article are those from this position up to, but not
+	 * including, the position returned by
+	 * {@link #getLinksEnd(LinkDirection, int)}.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The position of the first link.
+	 */
+	public long getLinksStart(LinkDirection direction, int node) {
+		return this.getLong(this.offsets[direction.ordinal()] + 8L * node);
+	}
+	
+	@Override
+	/**
+	 * Returns the position one past the last link of the specified article.
+	 * @param direction The direction of the links.
+	 * @param node The number of the article.
+	 * @return The position one past the last link.
+	 */
+	public long getLinksEnd(LinkDirection direction, int node) {
+		return this.getLinksStart(direction, node + 1);
+	}
+	
+	@Override
+	/**
+	 * Returns the article which the link at the specified position leads
+	 * to, or comes from for backlinks.
+	 * @param direction The direction of the link.
+	 * @param position The position of the link.
+	 * @return The number of the article.
+	 */
+	public int getLink(LinkDirection direction, long position) {
+		return this.getInt(this.targets[direction.ordinal()] + 4 * position);
+	}
+	
+	/**
+	 * Returns the position of the specified entry of the index. Each entry
+	 * holds the position of its key, of its title and its article number.
+	 * @param i The number of the entry.
+	 * @return The position of the entry.
+	 */
+	private long entry(int i) {
+		return this.index + (long)ENTRY * i;
+	}
+	
+	/**
+	 * Compares the string at the specified position of the file with the
+	 * specified bytes, as unsigned bytes.
+	 * @param position The position of the string.
+	 * @param bytes The bytes.
+	 * @return A negative number, zero or a positive number if the string is
+	 *         less than, equal to or greater than the bytes.
+	 */
+	private int compare(long position, byte[] bytes) {
+		int length = this.getShort(position);
+		int common = Math.min(length, bytes.length);
+		
+		for (int i = 0; i < common; ++i) {
+			int a = this.getByte(position + 2 + i) & 0xFF;
+			int b = bytes[i] & 0xFF;
+			if (a != b) return a - b;
+		}
+		
+		return length - bytes.length;
+	}
+	
+	/**
+	 * Returns the byte at the specified position of the file.
+	 * @param position The position.
+	 * @return The byte.
+	 */
+	private byte getByte(long position) {
+		return this.segments[(int)(position >>> SEGMENT_BITS)]
+				.get((int)(position & SEGMENT_MASK));
+	}
+	
+	/**
+	 * Returns the unsigned short at the specified position of the file. Since
+	 * strings are not aligned, its bytes may be in two segments.
+	 * @param position The position.
+	 * @return The short.
+	 */
+	private int getShort(long position) {
+		return ((this.getByte(position) & 0xFF) << 8) |
+				(this.getByte(position + 1) & 0xFF);
+	}
+	
+	/**
+	 * Returns the integer at the specified aligned position of the file.
+	 * @param position The position.
+	 * @return The integer.
+	 */
+	private int getInt(long position) {
+		return this.segments[(int)(position >>> SEGMENT_BITS)]
+				.getInt((int)(position & SEGMENT_MASK));
+	}
+	
+	/**
+	 * Returns the long at the specified aligned position of the file.
+	 * @param position The position.
+	 * @return The long.
+	 */
+	private long getLong(long position) {
+		return this.segments[(int)(position >>> SEGMENT_BITS)]
+				.getLong((int)(position & SEGMENT_MASK));
+	}
+}
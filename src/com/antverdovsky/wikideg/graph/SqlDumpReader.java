@@ -0,0 +1,363 @@
+package com.antverdovsky.wikideg.graph;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader of the SQL dumps of the tables of a Wikipedia database,
+ * such as "page.sql.gz". The dump is read one statement at a time, and the
+ * rows of each "INSERT" statement are parsed on a pool of threads while the
+ * next statements are read, so the dump is never held in memory in its
+ * entirety. The names of the columns of the table are read from its "CREATE
+ * TABLE" statement, so the reader works on dumps of any version of the
+ * database schema.
+ */
+public class SqlDumpReader {
+	/**
+	 * Receives the rows of a table, one statement at a time. The sink is
+	 * called from many threads at once.
+	 */
+	public interface RowSink {
+		/**
+		 * Receives the rows of a single statement of the dump. The value of
+		 * each column is a Long for integers, a String for strings and for
+		 * any other number, or null for NULL.
+		 * @param columns The names of the columns of the table.
+		 * @param rows The rows.
+		 * @throws IOException If the rows could not be processed.
+		 */
+		public void accept(String[] columns, List<Object[]> rows)
+				throws IOException;
+	}
+	
+	private static final byte[] INSERT = bytes("INSERT INTO ");
+	private static final byte[] CREATE = bytes("CREATE TABLE ");
+	private static final byte[] VALUES = bytes(" VALUES ");
+	
+	private ExecutorService pool; // Parses the statements
+	private int maxPending;       // Max statements read but not yet parsed
+	
+	/**
+	 * Creates a new reader which parses the statements of dumps on the
+	 * specified pool.
+	 * @param pool The pool.
+	 * @param maxPending The maximum number of statements which may be read
+	 *                   ahead of the statements which are being parsed,
+	 *                   which bounds the memory used by the reader.
+	 */
+	public SqlDumpReader(ExecutorService pool, int maxPending) {
+		this.pool = pool;
+		this.maxPending = maxPending;
+	}
+	
+	/**
+	 * Reads each of the rows of the specified dump into the sink, and waits
+	 * until all of them have been received. Dumps whose names end in ".gz"
+	 * are decompressed as they are read.
+	 * @param dump The dump file.
+	 * @param sink The sink.
+	 * @throws IOException If the dump could not be read or parsed, or if the
+	 *                     sink failed.
+	 */
+	public void read(Path dump, RowSink sink) throws IOException {
+		InputStream in = new BufferedInputStream(Files.newInputStream(dump),
+				1 << 16);
+		if (dump.getFileName().toString().endsWith(".gz"))
+			in = new GZIPInputStream(in, 1 << 16);
+		
+		Semaphore pending = new Semaphore(this.maxPending);
+		AtomicReference<IOException> failure =
+				new AtomicReference<IOException>();
+		String[] columns = null;
+		
+		try (LineReader lines = new LineReader(in)) {
+			byte[] line;
+			while ((line = lines.next()) != null && failure.get() == null) {
+				if (SqlDumpReader.startsWith(line, CREATE)) {
+					columns = SqlDumpReader.readColumns(lines);
+					continue;
+				}
+				if (!SqlDumpReader.startsWith(line, INSERT)) continue;
+				if (columns == null) throw new IOException(
+						"Rows of " + dump + " precede its table.");
+				
+				String[] statementColumns = columns;
+				byte[] statement = line;
+				SqlDumpReader.acquire(pending, 1);
+				this.pool.execute(() -> {
+					try {
+						sink.accept(statementColumns,
+								SqlDumpReader.parseRows(statement));
+					} catch (IOException e) {
+						failure.compareAndSet(null, e);
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, new IOException(e));
+					} finally {
+						pending.release();
+					}
+				});
+			}
+		} finally {
+			// Wait for every statement which was read to be parsed
+			SqlDumpReader.acquire(pending, this.maxPending);
+			pending.release(this.maxPending);
+		}
+		
+		if (failure.get() != null) throw failure.get();
+	}
+	
+	/**
+	 * Parses the rows of the specified "INSERT" statement.
+	 * @param statement The statement, which is a single line of the dump.
+	 * @return The rows of the statement.
+	 * @throws IOException If the statement is malformed.
+	 */
+	static List<Object[]> parseRows(byte[] statement) throws IOException {
+		int i = SqlDumpReader.indexOf(statement, VALUES);
+		if (i < 0) throw new IOException("Statement has no values.");
+		i += VALUES.length;
+		
+		List<Object[]> rows = new ArrayList<Object[]>();
+		ArrayList<Object> row = new ArrayList<Object>();
+		byte[] scratch = new byte[256];
+		
+		while (i < statement.length && statement[i] == '(') {
+			++i;
+			row.clear();
+			
+			while (true) {
+				byte b = statement[i];
+				if (b == '\'') {
+					// String, whose quotes and backslashes are escaped
+					int length = 0;
+					for (++i; statement[i] != '\''; ++i) {
+						byte c = statement[i];
+						if (c == '\\') c = SqlDumpReader.unescape(
+								statement[++i]);
+						
+						if (length == scratch.length)
+							scratch = Arrays.copyOf(scratch, length * 2);
+						scratch[length++] = c;
+					}
+					++i;
+					row.add(new String(scratch, 0, length,
+							StandardCharsets.UTF_8));
+				} else {
+					// Number, or NULL
+					int start = i;
+					while (statement[i] != ',' && statement[i] != ')') ++i;
+					row.add(SqlDumpReader.parseValue(statement, start, i));
+				}
+				
+				if (statement[i++] == ')') break;
+			}
+			
+			rows.add(row.toArray());
+			if (i < statement.length && statement[i] == ',') ++i;
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * Reads the names of the columns of a "CREATE TABLE" statement, whose
+	 * definitions each follow on their own line, until the end of the
+	 * statement.
+	 * @param lines The reader of the lines of the dump.
+	 * @return The names of the columns.
+	 * @throws IOException If the dump could not be read.
+	 */
+	private static String[] readColumns(LineReader lines) throws IOException {
+		List<String> columns = new ArrayList<String>();
+		
+		byte[] line;
+		while ((line = lines.next()) != null && line.length > 0 &&
+				line[0] != ')') {
+			String definition = new String(line, StandardCharsets.UTF_8)
+					.trim();
+			if (!definition.startsWith("`")) continue; // Key, or constraint
+			
+			columns.add(definition.substring(1, definition.indexOf('`', 1)));
+		}
+		
+		return columns.toArray(new String[columns.size()]);
+	}
+	
+	/**
+	 * Parses the unquoted value of a column.
+	 * @param statement The statement.
+	 * @param start The index of the first byte of the value.
+	 * @param end The index one past the last byte of the value.
+	 * @return The value, as a Long if it is an integer, null if it is NULL,
+	 *         or as a String otherwise.
+	 */
+	private static Object parseValue(byte[] statement, int start, int end) {
+		boolean isNegative = statement[start] == '-';
+		long value = 0;
+		int i = isNegative ? start + 1 : start;
+		for (; i < end; ++i) {
+			byte b = statement[i];
+			if (b < '0' || b > '9') break;
+			value = value * 10 + (b - '0');
+		}
+		
+		if (i == end && end > start) return isNegative ? -value : value;
+		String text = new String(statement, start, end - start,
+				StandardCharsets.US_ASCII);
+		return text.equals("NULL") ? null : text;
+	}
+	
+	/**
+	 * Returns the character which is escaped by a backslash in a string.
+	 * @param b The character which follows the backslash.
+	 * @return The escaped character.
+	 */
+	private static byte unescape(byte b) {
+		switch (b) {
+		case '0': return 0;
+		case 'b': return '\b';
+		case 'n': return '\n';
+		case 'r': return '\r';
+		case 't': return '\t';
+		case 'Z': return 26;
+		default: return b;
+		}
+	}
+	
+	/**
+	 * Checks if the specified line starts with the specified prefix.
+	 * @param line The line.
+	 * @param prefix The prefix.
+	 * @return True if the line starts with the prefix. False otherwise.
+	 */
+	private static boolean startsWith(byte[] line, byte[] prefix) {
+		if (line.length < prefix.length) return false;
+		for (int i = 0; i < prefix.length; ++i)
+			if (line[i] != prefix[i]) return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the index of the first occurrence of the specified pattern in
+	 * the specified line.
+	 * @param line The line.
+	 * @param pattern The pattern.
+	 * @return The index, or -1 if the line does not contain the pattern.
+	 */
+	private static int indexOf(byte[] line, byte[] pattern) {
+		outer:
+		for (int i = 0; i + pattern.length <= line.length; ++i) {
+			for (int j = 0; j < pattern.length; ++j)
+				if (line[i + j] != pattern[j]) continue outer;
+			
+			return i;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Acquires the specified number of permits, without being interrupted.
+	 * @param semaphore The semaphore.
+	 * @param permits The number of permits.
+	 * @throws IOException If the thread was interrupted.
+	 */
+	private static void acquire(Semaphore semaphore, int permits)
+			throws IOException {
+		try {
+			semaphore.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading the dump.", e);
+		}
+	}
+	
+	/**
+	 * Returns the ASCII bytes of the specified string.
+	 * @param s The string.
+	 * @return The bytes.
+	 */
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * Reads the lines of a stream as arrays of bytes, without decoding them.
+	 * The statements of a dump are single lines of up to a few megabytes.
+	 */
+	private static class LineReader implements AutoCloseable {
+		private InputStream in;   // Stream of the dump
+		private byte[] buffer;    // Bytes read from the stream
+		private int position;     // Index of the next unread byte
+		private int limit;        // Number of bytes in the buffer
+		
+		/**
+		 * Creates a new reader of the lines of the specified stream.
+		 * @param in The stream.
+		 */
+		private LineReader(InputStream in) {
+			this.in = in;
+			this.buffer = new byte[1 << 16];
+		}
+		
+		/**
+		 * Returns the next line of the stream, without its line terminator.
+		 * @return The line, or null if the end of the stream was reached.
+		 * @throws IOException If the stream could not be read.
+		 */
+		private byte[] next() throws IOException {
+			byte[] line = new byte[256];
+			int length = 0;
+			
+			while (true) {
+				if (this.position == this.limit) {
+					this.limit = this.in.read(this.buffer);
+					this.position = 0;
+					if (this.limit <= 0) {
+						this.limit = 0;
+						return length == 0 ? null :
+								Arrays.copyOf(line, length);
+					}
+				}
+				
+				// Copy up to the end of the line, or of the buffer
+				int end = this.position;
+				while (end < this.limit && this.buffer[end] != '\n') ++end;
+				
+				int n = end - this.position;
+				if (length + n > line.length) line = Arrays.copyOf(line,
+						Math.max(line.length * 2, length + n));
+				System.arraycopy(this.buffer, this.position, line, length, n);
+				length += n;
+				this.position = end;
+				
+				if (end < this.limit) {
+					++this.position; // Skip the line terminator
+					if (length > 0 && line[length - 1] == '\r') --length;
+					return Arrays.copyOf(line, length);
+				}
+			}
+		}
+		
+		@Override
+		/**
+		 * Closes the stream.
+		 * @throws IOException If the stream could not be closed.
+		 */
+		public void close() throws IOException {
+			this.in.close();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.antverdovsky.wikideg.graph;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+
+/**
+ * Random graphs, and the plain breadth first search against which the
+ * searches of the tests over them are checked.
+ */
+public class TestGraphs {
+	/**
+	 * Builds a random graph, in which each article links to a few others.
+	 * @param nodes The number of articles.
+	 * @param maxLinks The maximum number of links of each article.
+	 * @param seed The seed of the graph.
+	 * @return The graph.
+	 */
+	public static ArrayGraph randomGraph(int nodes, int maxLinks, long seed) {
+		Random random = new Random(seed);
+		HashMap<String, List<String>> links =
+				new HashMap<String, List<String>>();
+		for (int i = 0; i < nodes; ++i) {
+			List<String> list = new ArrayList<String>();
+			int count = random.nextInt(maxLinks + 1);
+			for (int j = 0; j < count; ++j)
+				list.add("Article " + random.nextInt(nodes));
+			links.put("Article " + i, list);
+		}
+		
+		return new ArrayGraph(links);
+	}
+	
+	/**
+	 * Returns the length of the shortest path from an article to every
+	 * other article, found by a plain breadth first search.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @return The length of the path to each article, or -1 for each
+	 *         article to which there is no path.
+	 */
+	public static int[] distances(IntGraph graph, int start) {
+		int[] distances = new int[graph.size()];
+		Arrays.fill(distances, -1);
+		distances[start] = 0;
+		
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			long stop = graph.getLinksEnd(LinkDirection.LINKS, node);
+			for (long p = graph.getLinksStart(LinkDirection.LINKS, node);
+					p < stop; ++p) {
+				int link = graph.getLink(LinkDirection.LINKS, p);
+				if (distances[link] >= 0) continue;
+				
+				distances[link] = distances[node] + 1;
+				queue.add(link);
+			}
+		}
+		
+		return distances;
+	}
+	
+	/**
+	 * Asserts that each article of the specified path links to the next.
+	 * @param graph The graph.
+	 * @param path The path.
+	 */
+	public static void assertLinked(IntGraph graph, Stack<String> path) {
+		for (int i = 0; i + 1 < path.size(); ++i) {
+			int from = graph.find(path.get(i));
+			int to = graph.find(path.get(i + 1));
+			
+			boolean isLinked = false;
+			long stop = graph.getLinksEnd(LinkDirection.LINKS, from);
+			for (long p = graph.getLinksStart(LinkDirection.LINKS, from);
+					p < stop; ++p) {
+				isLinked |= graph.getLink(LinkDirection.LINKS, p) == to;
+			}
+			assertTrue(path.get(i) + " -> " + path.get(i + 1), isLinked);
+		}
+	}
+}
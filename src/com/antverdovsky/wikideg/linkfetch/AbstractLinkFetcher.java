@@ -2,6 +2,11 @@ package com.antverdovsky.wikideg.linkfetch;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleSet;
 
 /**
  * Interface used by all link and backlink fetchers.
@@ -19,6 +24,92 @@ public interface AbstractLinkFetcher {
 	 *         Wikipedia article.
 	 * @throws IOException If the article data could not be fetched.
 	 */
-	public ArrayList<String> getLinks(String article, 
-			ArrayList<String> targets) throws IOException;
-}
\ No newline at end of file
+	public default ArrayList<String> getLinks(String article,
+			TitleSet targets) throws IOException {
+		return this.getLinks(article, targets, new CancellationToken());
+	}
+	
+	/**
+	 * Returns all (or some, if the target is found) of the links (or 
+	 * backlinks) of the article with the specified name, on behalf of the
+	 * search of the specified cancellation token. Once the token is
+	 * cancelled, every download of the fetcher is aborted and no further
+	 * pages are requested.
+	 * @param article The name of the article.
+	 * @param targets If any link extracted from the starting article is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list and the list is returned as is (short circuits the 
+	 *                algorithm). 
+	 * @param token The cancellation token of the search.
+	 * @return The set of all (or some) of the links or backlinks of the
+	 *         Wikipedia article.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException;
+	
+	/**
+	 * Returns all (or some, if a target is found) of the links (or 
+	 * backlinks) of each of the articles with the specified names.
+	 * @param articles The names of the articles.
+	 * @param targets If any link extracted from any of the articles is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list of that article and the map is returned as is 
+	 *                (short circuits the algorithm).
+	 * @return The map of the name of each article, as it was specified, to
+	 *         all (or some) of its links or backlinks. Articles whose links
+	 *         were not fetched, due to a target being found, are absent.
+	 * @throws IOException If the article data could not be fetched.
+	 */
+	public default HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets) throws IOException {
+		return this.getLinks(articles, targets, new CancellationToken());
+	}
+	
+	/**
+	 * Returns all (or some, if a target is found) of the links (or 
+	 * backlinks) of each of the articles with the specified names, on behalf
+	 * of the search of the specified cancellation token. Fetchers which can
+	 * request the links of many articles at once should override this
+	 * method, by default the articles are fetched one at a time.
+	 * @param articles The names of the articles.
+	 * @param targets If any link extracted from any of the articles is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list of that article and the map is returned as is 
+	 *                (short circuits the algorithm).
+	 * @param token The cancellation token of the search.
+	 * @return The map of the name of each article, as it was specified, to
+	 *         all (or some) of its links or backlinks. Articles whose links
+	 *         were not fetched, due to a target being found, are absent.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public default HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets,
+			CancellationToken token) throws IOException {
+		HashMap<String, ArrayList<String>> allLinks = 
+				new HashMap<String, ArrayList<String>>();
+		
+		for (String article : articles) {
+			ArrayList<String> links = this.getLinks(article, targets, token);
+			allLinks.put(article, links);
+			
+			// If the last link is a target, the fetcher short circuited
+			if (!links.isEmpty() && 
+					targets.contains(links.get(links.size() - 1)))
+				break;
+		}
+		
+		return allLinks;
+	}
+	
+	/**
+	 * Returns the maximum number of articles whose links this fetcher
+	 * requests at once, when given a list of articles.
+	 * @return The batch size of this fetcher.
+	 */
+	public default int getBatchSize() {
+		return 1;
+	}
+}
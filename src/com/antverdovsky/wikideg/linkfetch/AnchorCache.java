@@ -0,0 +1,232 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Bounded, least recently used cache of the anchor text of the links of
+ * articles, which is the text under which each link is displayed in its
+ * article. The anchors are recorded as the pages of articles are scanned
+ * for their links during a search, so that the embedded path of a search
+ * can be built without downloading the pages of the path again. Only the
+ * anchors of piped links, which differ from their targets, are kept.
+ * A single shared cache is used by every search in the process.
+ */
+public class AnchorCache {
+	// Default bound of the memory used by the shared cache, in bytes
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+	
+	// Estimated memory used by an entry and by a String, besides its chars
+	private static final int ENTRY_OVERHEAD = 128;
+	private static final int STRING_OVERHEAD = 48;
+	
+	// Anchor of a link which is known to be displayed under its own title
+	private static final String UNPIPED = "";
+	
+	private static final AnchorCache SHARED = new AnchorCache(
+			DEFAULT_MAX_BYTES);
+	
+	/**
+	 * The cached anchors of a single article.
+	 */
+	private static class Entry {
+		private HashMap<String, String> anchors; // Anchor of each target key
+		private boolean isComplete;              // Was the page scanned?
+		private long bytes;                      // Estimated memory used
+	}
+	
+	private LinkedHashMap<String, Entry> entries; // Entries, in access order
+	private long maxBytes;                        // Bound of memory used
+	private long bytes;                           // Estimated memory used
+	
+	private LongAdder hits;                       // Lookups which were found
+	private LongAdder misses;                     // Lookups which were not
+	
+	/**
+	 * Creates a new, empty cache.
+	 * @param maxBytes The bound of the estimated memory used by the cache,
+	 *                 in bytes.
+	 * @throws IllegalArgumentException If maxBytes is negative.
+	 */
+	public AnchorCache(long maxBytes) {
+		if (maxBytes < 0) throw new IllegalArgumentException(
+				"Maximum size must not be negative: " + maxBytes);
+		
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		this.maxBytes = maxBytes;
+		this.bytes = 0;
+		
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+	
+	/**
+	 * Returns the cache which is shared by every search in the process.
+	 * @return The shared cache.
+	 */
+	public static AnchorCache getShared() {
+		return AnchorCache.SHARED;
+	}
+	
+	/**
+	 * Returns the anchor text under which the specified target is linked in
+	 * the article with the specified title.
+	 * @param article The title of the article.
+	 * @param target The title of the target of the link.
+	 * @return The anchor text, the target itself if the link is not piped,
+	 *         or null if the anchor is not known.
+	 */
+	public String get(String article, String target) {
+		Entry entry;
+		synchronized (this) {
+			entry = this.entries.get(TitleSet.key(article));
+		}
+		
+		String anchor = (entry == null) ? null :
+				entry.anchors.get(TitleSet.key(target));
+		if (anchor == null && (entry == null || !entry.isComplete)) {
+			this.misses.increment();
+			return null;
+		}
+		
+		this.hits.increment();
+		return (anchor == null || anchor.equals(UNPIPED)) ? target : anchor;
+	}
+	
+	/**
+	 * Caches the anchors of the links of the article with the specified
+	 * title, evicting the least recently used entries until the cache fits
+	 * in its bound. The anchors of a page which was only scanned in part
+	 * are merged into those which are already cached.
+	 * @param article The title of the article.
+	 * @param anchors The anchor text of each link, by the title of its
+	 *                target. Links which are not piped may be left out if
+	 *                the page was scanned in full, or mapped to their own
+	 *                target.
+	 * @param isComplete True if the whole page was scanned. False if the
+	 *                   scan stopped part of the way through the page.
+	 */
+	public void put(String article, Map<String, String> anchors,
+			boolean isComplete) {
+		String key = TitleSet.key(article);
+		
+		Entry entry = new Entry();
+		entry.anchors = new HashMap<String, String>(anchors.size() * 2);
+		entry.isComplete = isComplete;
+		entry.bytes = ENTRY_OVERHEAD + AnchorCache.sizeOf(key);
+		for (Map.Entry<String, String> anchor : anchors.entrySet()) {
+			String target = TitleSet.key(anchor.getKey());
+			String text = anchor.getValue().equals(anchor.getKey()) ?
+					UNPIPED : anchor.getValue();
+			if (entry.anchors.putIfAbsent(target, text) == null) {
+				entry.bytes += AnchorCache.sizeOf(target) +
+						AnchorCache.sizeOf(text);
+			}
+		}
+		
+		synchronized (this) {
+			// A partial scan never replaces what is known of the page
+			Entry old = this.entries.get(key);
+			if (old != null && !isComplete) {
+				if (old.isComplete) return;
+				
+				for (Map.Entry<String, String> anchor :
+						old.anchors.entrySet()) {
+					if (entry.anchors.putIfAbsent(anchor.getKey(),
+							anchor.getValue()) == null) {
+						entry.bytes += AnchorCache.sizeOf(anchor.getKey()) +
+								AnchorCache.sizeOf(anchor.getValue());
+					}
+				}
+			}
+			
+			// An entry which could never fit would only flush the cache
+			if (entry.bytes > this.maxBytes) return;
+			
+			old = this.entries.put(key, entry);
+			if (old != null) this.bytes -= old.bytes;
+			this.bytes += entry.bytes;
+			
+			this.evict();
+		}
+	}
+	
+	/**
+	 * Returns the estimated memory used by the entries of the cache.
+	 * @return The estimated memory, in bytes.
+	 */
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+	
+	/**
+	 * Returns the number of articles whose anchors are cached.
+	 * @return The number of entries.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	/**
+	 * Removes every entry from the cache. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.bytes = 0;
+	}
+	
+	/**
+	 * Returns the number of lookups which found the anchor in the cache.
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	/**
+	 * Returns the number of lookups which did not find the anchor in the
+	 * cache.
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	@Override
+	/**
+	 * Returns a summary of the size and counters of the cache.
+	 * @return The summary.
+	 */
+	public String toString() {
+		return "Anchor Cache: " + this.size() + " entries (" +
+				this.getBytes() / 1024 + " KB), " + this.getHits() +
+				" hits, " + this.getMisses() + " misses";
+	}
+	
+	/**
+	 * Evicts the least recently used entries until the cache fits in its
+	 * bound. Must be called while holding the lock of the cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it =
+				this.entries.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			this.bytes -= it.next().getValue().bytes;
+			it.remove();
+		}
+	}
+	
+	/**
+	 * Returns the estimated memory used by the specified String.
+	 * @param s The String.
+	 * @return The estimated memory, in bytes.
+	 */
+	private static long sizeOf(String s) {
+		return STRING_OVERHEAD + 2L * s.length();
+	}
+}
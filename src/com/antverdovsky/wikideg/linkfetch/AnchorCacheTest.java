@@ -0,0 +1,132 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.util.DataParse;
+import com.antverdovsky.wikideg.util.TitleDictionary;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Basic Testing of the AnchorCache class, and of the anchors recorded by the
+ * DataParse class.
+ */
+public class AnchorCacheTest {
+	// Export data of an article, as returned by Special:Export
+	private static final String EXPORT =
+			"<mediawiki><page><title>Lembarg</title><revision>" +
+			"<text xml:space=\"preserve\">'''Lembarg''' is a village in " +
+			"the [[voivodeships_of Poland|Voivodeship]] near [[Lviv]], " +
+			"[[Poland]] and [[Poland|the Republic]]. See " +
+			"[[Encyclopaedia Britannica]].</text></revision></page>" +
+			"</mediawiki>";
+	
+	/**
+	 * Parses the export data, stopping at the specified targets, and caches
+	 * the anchors which were recorded.
+	 * @param cache The cache.
+	 * @param targets The titles at which the scan is to be stopped.
+	 * @return True if the whole export data was parsed.
+	 * @throws IOException If the export data could not be read.
+	 */
+	private static boolean parse(AnchorCache cache, String... targets) 
+			throws IOException {
+		TitleDictionary dictionary = new TitleDictionary();
+		TitleSet set = TitleSet.of(dictionary, new int[0]);
+		for (String target : targets) set.add(target);
+		
+		HashMap<String, String> anchors = new HashMap<String, String>();
+		boolean isComplete = DataParse.parseLinksExport(
+				new StringReader(EXPORT), new ArrayList<String>(), set, 
+				anchors);
+		cache.put("Lembarg", anchors, isComplete);
+		
+		return isComplete;
+	}
+	
+	@Test
+	/**
+	 * Tests that the anchors of a page which was scanned in full are found,
+	 * ignoring the case and the form in which the titles are written, and
+	 * that the first piped link to an article gives its anchor.
+	 * @throws IOException If the export data could not be read.
+	 */
+	public void testCompletePage() throws IOException {
+		AnchorCache cache = new AnchorCache(AnchorCache.DEFAULT_MAX_BYTES);
+		assertTrue(AnchorCacheTest.parse(cache));
+		
+		assertEquals("Voivodeship", 
+				cache.get("lembarg", "Voivodeships of Poland"));
+		assertEquals("the Republic", cache.get("Lembarg", "Poland"));
+		assertEquals("Lviv", cache.get("Lembarg", "Lviv"));
+		assertEquals("Anything", cache.get("Lembarg", "Anything"));
+		assertNull(cache.get("Warsaw", "Poland"));
+	}
+	
+	@Test
+	/**
+	 * Tests that a page whose scan stopped at a target only knows the
+	 * anchors of the links up to the target, and that a later partial scan
+	 * adds to them.
+	 * @throws IOException If the export data could not be read.
+	 */
+	public void testPartialPage() throws IOException {
+		AnchorCache cache = new AnchorCache(AnchorCache.DEFAULT_MAX_BYTES);
+		assertFalse(AnchorCacheTest.parse(cache, "Lviv"));
+		
+		assertEquals("Voivodeship", 
+				cache.get("Lembarg", "Voivodeships of Poland"));
+		assertEquals("Lviv", cache.get("Lembarg", "Lviv"));
+		assertNull(cache.get("Lembarg", "Poland"));
+		
+		assertFalse(AnchorCacheTest.parse(cache, "Encyclopaedia Britannica"));
+		assertEquals("Lviv", cache.get("Lembarg", "Lviv"));
+		assertEquals("the Republic", cache.get("Lembarg", "Poland"));
+		assertNull(cache.get("Lembarg", "Anything"));
+		
+		assertTrue(AnchorCacheTest.parse(cache));
+		assertFalse(AnchorCacheTest.parse(cache, "Lviv"));
+		assertEquals("Anything", cache.get("Lembarg", "Anything"));
+	}
+	
+	@Test
+	/**
+	 * Tests that the embedded name of an article is found whatever the case
+	 * and form in which its link is written.
+	 */
+	public void testEmbeddedArticle() {
+		assertEquals("Voivodeship", DataParse.parseEmbeddedArticle(EXPORT, 
+				"Voivodeships of Poland"));
+		assertEquals("the Republic", 
+				DataParse.parseEmbeddedArticle(EXPORT, "poland"));
+		assertEquals("Lviv", DataParse.parseEmbeddedArticle(EXPORT, "Lviv"));
+	}
+	
+	@Test
+	/**
+	 * Tests that the least recently used pages are evicted to keep the cache
+	 * within its bound.
+	 */
+	public void testEviction() {
+		AnchorCache cache = new AnchorCache(2000);
+		for (int i = 0; i < 20; ++i) {
+			HashMap<String, String> anchors = new HashMap<String, String>();
+			anchors.put("Poland", "Polska " + i);
+			cache.put("Article " + i, anchors, true);
+		}
+		
+		assertTrue(cache.getBytes() <= 2000);
+		assertTrue(cache.size() < 20);
+		assertEquals("Polska 19", cache.get("Article 19", "Poland"));
+		assertNull(cache.get("Article 0", "Poland"));
+	}
+}
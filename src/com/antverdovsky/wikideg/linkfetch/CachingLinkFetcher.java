@@ -0,0 +1,153 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Link fetcher which serves the links of articles from a {@link LinkStore},
+ * such as a {@link LinkCache} or a {@link DiskLinkCache}, and fetches only
+ * the links which are not stored through another fetcher.
+ * Only complete lists of links are cached. The partial lists which are cut
+ * short when a target is found are returned, but never cached.
+ */
+public class CachingLinkFetcher implements AbstractLinkFetcher {
+	private AbstractLinkFetcher fetcher; // Fetches links which are not cached
+	private LinkDirection direction;     // Direction of the fetched links
+	private LinkStore cache;             // Store of the complete links
+	
+	/**
+	 * Creates a new caching link fetcher which uses the shared cache.
+	 * @param fetcher The fetcher of the links which are not cached.
+	 * @param direction The direction of the links which the fetcher fetches.
+	 */
+	public CachingLinkFetcher(AbstractLinkFetcher fetcher, 
+			LinkDirection direction) {
+		this(fetcher, direction, LinkCache.getShared());
+	}
+	
+	/**
+	 * Creates a new caching link fetcher.
+	 * @param fetcher The fetcher of the links which are not cached.
+	 * @param direction The direction of the links which the fetcher fetches.
+	 * @param cache The store of the complete links.
+	 */
+	public CachingLinkFetcher(AbstractLinkFetcher fetcher, 
+			LinkDirection direction, LinkStore cache) {
+		this.fetcher = fetcher;
+		this.direction = direction;
+		this.cache = cache;
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if the target is found) of the links (or 
+	 * backlinks) of the article with the specified name. Cached links are
+	 * always returned in full.
+	 * @param article The name of the article.
+	 * @param targets If any link extracted from the starting article is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list and the list is returned as is (short circuits the 
+	 *                algorithm). 
+	 * @param token The cancellation token of the search.
+	 * @return The set of all (or some) of the links or backlinks of the
+	 *         Wikipedia article.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException {
+		ArrayList<String> links = this.cache.get(this.direction, article);
+		if (links != null) return links;
+		
+		links = this.fetcher.getLinks(article, targets, token);
+		if (!CachingLinkFetcher.isShortCircuited(links, targets))
+			this.cache.put(this.direction, article, links);
+		
+		return links;
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if a target is found) of the links (or 
+	 * backlinks) of each of the articles with the specified names. The 
+	 * articles whose links are not cached are fetched in a single call to
+	 * the underlying fetcher.
+	 * @param articles The names of the articles.
+	 * @param targets If any link extracted from any of the articles is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list of that article and the map is returned as is 
+	 *                (short circuits the algorithm).
+	 * @param token The cancellation token of the search.
+	 * @return The map of the name of each article, as it was specified, to
+	 *         all (or some) of its links or backlinks.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets, 
+			CancellationToken token) throws IOException {
+		HashMap<String, ArrayList<String>> allLinks = 
+				new HashMap<String, ArrayList<String>>();
+		List<String> uncached = new ArrayList<String>();
+		
+		for (String article : articles) {
+			ArrayList<String> links = this.cache.get(this.direction, article);
+			if (links != null) allLinks.put(article, links);
+			else uncached.add(article);
+		}
+		if (uncached.isEmpty()) return allLinks;
+		
+		HashMap<String, ArrayList<String>> fetched = 
+				this.fetcher.getLinks(uncached, targets, token);
+		allLinks.putAll(fetched);
+		
+		// If the fetcher short circuited, the links of any article of the
+		// batch may have been cut short (the links of a batch are spread 
+		// over many pages), so none of them may be cached.
+		for (ArrayList<String> links : fetched.values()) {
+			if (CachingLinkFetcher.isShortCircuited(links, targets))
+				return allLinks;
+		}
+		for (Entry<String, ArrayList<String>> links : fetched.entrySet())
+			this.cache.put(this.direction, links.getKey(), links.getValue());
+		
+		return allLinks;
+	}
+	
+	@Override
+	/**
+	 * Returns the maximum number of articles whose links the underlying 
+	 * fetcher requests at once, when given a list of articles.
+	 * @return The batch size of this fetcher.
+	 */
+	public int getBatchSize() {
+		return this.fetcher.getBatchSize();
+	}
+	
+	/**
+	 * Returns the store of this fetcher.
+	 * @return The store of the complete links.
+	 */
+	public LinkStore getCache() {
+		return this.cache;
+	}
+	
+	/**
+	 * Checks if the specified links may have been cut short by a fetcher
+	 * which found a target, which is the case if the last link is a target.
+	 * @param links The links.
+	 * @param targets The targets.
+	 * @return True if the links may be partial. False otherwise.
+	 */
+	private static boolean isShortCircuited(List<String> links, 
+			TitleSet targets) {
+		return !links.isEmpty() && 
+				targets.contains(links.get(links.size() - 1));
+	}
+}
@@ -0,0 +1,289 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.SearchCancelledException;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Link fetcher which coalesces concurrent fetches of the links of the same
+ * article. The first caller which asks for the links of an article fetches
+ * them through another fetcher, and every caller which asks for the same
+ * article while that fetch is in flight waits for its result instead of
+ * fetching the links again.
+ * Since each fetcher fetches the links of a single direction, the fetches
+ * are keyed by the title of the article alone.
+ * Links which were cut short by a target of the first caller, and fetches
+ * which failed (such as when the search of the first caller is cancelled),
+ * are of no use to the other callers, which then fetch the links 
+ * themselves.
+ */
+public class CoalescingLinkFetcher implements AbstractLinkFetcher {
+	/**
+	 * Result of a fetch which is shared with the callers that waited for it.
+	 */
+	private static class Flight {
+		private ArrayList<String> links; // The links, never modified
+		private boolean isPartial;       // Links may have been cut short
+		
+		/**
+		 * Creates a new fetch result.
+		 * @param links The fetched links, or null if they were not fetched.
+		 * @param isPartial Whether the links may have been cut short.
+		 */
+		private Flight(ArrayList<String> links, boolean isPartial) {
+			this.links = (links == null) ? null :
+					new ArrayList<String>(links);
+			this.isPartial = links == null || isPartial;
+		}
+	}
+	
+	private AbstractLinkFetcher fetcher; // Fetches the links of the leaders
+	private ConcurrentHashMap<String, CompletableFuture<Flight>> inFlight;
+	private LongAdder coalesced;         // Fetches served by another fetch
+	
+	/**
+	 * Creates a new coalescing link fetcher.
+	 * @param fetcher The fetcher of the links.
+	 */
+	public CoalescingLinkFetcher(AbstractLinkFetcher fetcher) {
+		this.fetcher = fetcher;
+		this.inFlight =
+				new ConcurrentHashMap<String, CompletableFuture<Flight>>();
+		this.coalesced = new LongAdder();
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if the target is found) of the links (or
+	 * backlinks) of the article with the specified name. If the links of
+	 * the article are already being fetched, the result of that fetch is
+	 * returned.
+	 * @param article The name of the article.
+	 * @param targets If any link extracted from the starting article is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list and the list is returned as is (short circuits the
+	 *                algorithm).
+	 * @param token The cancellation token of the search.
+	 * @return The set of all (or some) of the links or backlinks of the
+	 *         Wikipedia article.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException {
+		String key = TitleSet.key(article);
+		CompletableFuture<Flight> mine = new CompletableFuture<Flight>();
+		CompletableFuture<Flight> leader =
+				this.inFlight.putIfAbsent(key, mine);
+		
+		// Someone else is fetching the links, so wait for them
+		if (leader != null) {
+			Flight flight = CoalescingLinkFetcher.await(leader, token);
+			if (flight != null && !flight.isPartial) {
+				this.coalesced.increment();
+				return new ArrayList<String>(flight.links);
+			}
+			
+			return this.fetcher.getLinks(article, targets, token);
+		}
+		
+		try {
+			ArrayList<String> links =
+					this.fetcher.getLinks(article, targets, token);
+			mine.complete(new Flight(links,
+					CoalescingLinkFetcher.isShortCircuited(links, targets)));
+			return links;
+		} catch (IOException | RuntimeException e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.inFlight.remove(key, mine);
+		}
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if a target is found) of the links (or
+	 * backlinks) of each of the articles with the specified names. The
+	 * articles whose links are not already being fetched are fetched in a
+	 * single call to the underlying fetcher, before the results of the other
+	 * fetches are waited for.
+	 * @param articles The names of the articles.
+	 * @param targets If any link extracted from any of the articles is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list of that article and the map is returned as is
+	 *                (short circuits the algorithm).
+	 * @param token The cancellation token of the search.
+	 * @return The map of the name of each article, as it was specified, to
+	 *         all (or some) of its links or backlinks.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets,
+			CancellationToken token) throws IOException {
+		HashMap<String, ArrayList<String>> allLinks =
+				new HashMap<String, ArrayList<String>>();
+		
+		// Claim every article which is not being fetched yet. An article may
+		// appear twice in the batch, in which case it is claimed and fetched
+		// only once.
+		HashMap<String, CompletableFuture<Flight>> claimed =
+				new HashMap<String, CompletableFuture<Flight>>();
+		List<String> leading = new ArrayList<String>();
+		List<String> repeated = new ArrayList<String>();
+		List<String> waiting = new ArrayList<String>();
+		List<CompletableFuture<Flight>> leaders =
+				new ArrayList<CompletableFuture<Flight>>();
+		for (String article : articles) {
+			String key = TitleSet.key(article);
+			CompletableFuture<Flight> mine = claimed.get(key);
+			if (mine == null) {
+				mine = new CompletableFuture<Flight>();
+				CompletableFuture<Flight> leader =
+						this.inFlight.putIfAbsent(key, mine);
+				
+				if (leader != null) {
+					waiting.add(article);
+					leaders.add(leader);
+					continue;
+				}
+				claimed.put(key, mine);
+				leading.add(article);
+			} else {
+				repeated.add(article);
+			}
+		}
+		
+		// Fetch the claimed articles, and share their links. Every claim is
+		// settled before waiting on anyone else, so no two batches can ever
+		// wait on each other.
+		boolean isPartial = false;
+		try {
+			if (!leading.isEmpty()) {
+				HashMap<String, ArrayList<String>> fetched =
+						this.fetcher.getLinks(leading, targets, token);
+				allLinks.putAll(fetched);
+				
+				// As with caching, the links of the whole batch may have been
+				// cut short if any of them was
+				for (ArrayList<String> links : fetched.values()) {
+					if (CoalescingLinkFetcher.isShortCircuited(links, targets))
+						isPartial = true;
+				}
+				for (String article : leading) {
+					claimed.get(TitleSet.key(article)).complete(new Flight(
+							fetched.get(article), isPartial));
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			for (CompletableFuture<Flight> mine : claimed.values())
+				mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			for (String key : claimed.keySet())
+				this.inFlight.remove(key, claimed.get(key));
+		}
+		
+		// The repeated articles share the links of their first occurrence
+		for (String article : repeated) {
+			Flight flight = claimed.get(TitleSet.key(article)).join();
+			if (flight.links != null && !allLinks.containsKey(article))
+				allLinks.put(article, new ArrayList<String>(flight.links));
+		}
+		
+		// A target was found, so the map is returned as is
+		if (isPartial) return allLinks;
+		
+		// Wait for the articles which someone else is fetching, and fetch
+		// the links which they could not share.
+		List<String> unshared = new ArrayList<String>();
+		for (int i = 0; i < waiting.size(); ++i) {
+			Flight flight = CoalescingLinkFetcher.await(leaders.get(i), token);
+			if (flight != null && !flight.isPartial) {
+				this.coalesced.increment();
+				allLinks.put(waiting.get(i),
+						new ArrayList<String>(flight.links));
+			} else {
+				unshared.add(waiting.get(i));
+			}
+		}
+		if (!unshared.isEmpty())
+			allLinks.putAll(this.fetcher.getLinks(unshared, targets, token));
+		
+		return allLinks;
+	}
+	
+	@Override
+	/**
+	 * Returns the maximum number of articles whose links the underlying
+	 * fetcher requests at once, when given a list of articles.
+	 * @return The batch size of this fetcher.
+	 */
+	public int getBatchSize() {
+		return this.fetcher.getBatchSize();
+	}
+	
+	/**
+	 * Returns the number of fetches which were served by the result of a
+	 * concurrent fetch of the same article, rather than fetched again.
+	 * @return The number of coalesced fetches.
+	 */
+	public long getCoalesced() {
+		return this.coalesced.sum();
+	}
+	
+	/**
+	 * Waits for the specified fetch to finish, unless the specified token is
+	 * cancelled first.
+	 * @param leader The fetch.
+	 * @param token The cancellation token of the search which waits.
+	 * @return The result of the fetch, or null if the fetch failed.
+	 * @throws IOException If the token has been cancelled.
+	 */
+	private static Flight await(CompletableFuture<Flight> leader,
+			CancellationToken token) throws IOException {
+		// Cancelling a copy stops the wait without affecting the fetch
+		CompletableFuture<Flight> wait = leader.copy();
+		Closeable abort = () -> wait.cancel(false);
+		token.register(abort);
+		
+		try {
+			return wait.get();
+		} catch (CancellationException e) {
+			throw new SearchCancelledException("The search was cancelled.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			return null;
+		} finally {
+			token.unregister(abort);
+		}
+	}
+	
+	/**
+	 * Checks if the specified links may have been cut short by a fetcher
+	 * which found a target, which is the case if the last link is a target.
+	 * @param links The links.
+	 * @param targets The targets.
+	 * @return True if the links may be partial. False otherwise.
+	 */
+	private static boolean isShortCircuited(List<String> links,
+			TitleSet targets) {
+		return !links.isEmpty() &&
+				targets.contains(links.get(links.size() - 1));
+	}
+}
@@ -0,0 +1,174 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.SearchCancelledException;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Basic Testing of the CoalescingLinkFetcher class.
+ */
+public class CoalescingLinkFetcherTest {
+	/**
+	 * Fetcher which returns the same links for every article, short
+	 * circuiting when a target is found, once it has been released.
+	 */
+	private static class BlockingFetcher implements AbstractLinkFetcher {
+		private List<String> links = Arrays.asList("Poland", "Warsaw", "Oder");
+		private CountDownLatch started = new CountDownLatch(1);
+		private CountDownLatch released = new CountDownLatch(1);
+		private AtomicInteger fetches = new AtomicInteger();
+		
+		@Override
+		/**
+		 * Waits until released, then returns the fixed links, up to and
+		 * including the first target.
+		 * @param article The name of the article.
+		 * @param targets The targets.
+		 * @param token The cancellation token of the search.
+		 * @return The links.
+		 */
+		public ArrayList<String> getLinks(String article, TitleSet targets,
+				CancellationToken token) throws IOException {
+			this.fetches.incrementAndGet();
+			this.started.countDown();
+			try {
+				this.released.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			
+			ArrayList<String> found = new ArrayList<String>();
+			for (String link : this.links) {
+				found.add(link);
+				if (targets.contains(link)) break;
+			}
+			return found;
+		}
+	}
+	
+	/**
+	 * Starts a thread which fetches the links of the specified article, and
+	 * returns once the thread is waiting on the fetch which is in flight.
+	 * @param fetcher The fetcher.
+	 * @param article The name of the article.
+	 * @param targets The targets.
+	 * @param token The cancellation token of the search.
+	 * @param result Receives the links, or the exception which was thrown.
+	 * @return The thread.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	private static Thread startWaiter(CoalescingLinkFetcher fetcher,
+			String article, TitleSet targets, CancellationToken token,
+			Object[] result) throws InterruptedException {
+		Thread waiter = new Thread(() -> {
+			try {
+				result[0] = fetcher.getLinks(article, targets, token);
+			} catch (IOException e) {
+				result[0] = e;
+			}
+		});
+		waiter.start();
+		
+		while (waiter.getState() != Thread.State.WAITING) Thread.sleep(1);
+		return waiter;
+	}
+	
+	@Test
+	/**
+	 * Tests that a concurrent fetch of the same article waits for the fetch
+	 * in flight rather than fetching the links again.
+	 */
+	public void testCoalesced() throws Exception {
+		BlockingFetcher blocking = new BlockingFetcher();
+		CoalescingLinkFetcher fetcher = new CoalescingLinkFetcher(blocking);
+		TitleSet none = new TitleSet();
+		
+		Object[] leader = new Object[1];
+		Thread first = CoalescingLinkFetcherTest.startWaiter(fetcher,
+				"Lembarg", none, new CancellationToken(), leader);
+		blocking.started.await();
+		
+		Object[] follower = new Object[1];
+		Thread second = CoalescingLinkFetcherTest.startWaiter(fetcher,
+				"lembarg", none, new CancellationToken(), follower);
+		blocking.released.countDown();
+		first.join();
+		second.join();
+		
+		assertEquals(blocking.links, leader[0]);
+		assertEquals(blocking.links, follower[0]);
+		assertEquals(1, blocking.fetches.get());
+		assertEquals(1, fetcher.getCoalesced());
+	}
+	
+	@Test
+	/**
+	 * Tests that links which were cut short by the targets of another
+	 * caller are fetched again, and that cancelling the token of a waiting
+	 * caller stops it from waiting.
+	 */
+	public void testNotShared() throws Exception {
+		BlockingFetcher blocking = new BlockingFetcher();
+		CoalescingLinkFetcher fetcher = new CoalescingLinkFetcher(blocking);
+		
+		Object[] leader = new Object[1];
+		Thread first = CoalescingLinkFetcherTest.startWaiter(fetcher,
+				"Lembarg", new TitleSet(Arrays.asList("Warsaw")),
+				new CancellationToken(), leader);
+		blocking.started.await();
+		
+		// Stops waiting as soon as it is cancelled
+		CancellationToken token = new CancellationToken();
+		Object[] cancelled = new Object[1];
+		Thread second = CoalescingLinkFetcherTest.startWaiter(fetcher,
+				"Lembarg", new TitleSet(), token, cancelled);
+		token.cancel();
+		second.join();
+		assertTrue(cancelled[0] instanceof SearchCancelledException);
+		
+		// Refetches the links, since the leader stops at Warsaw
+		Object[] follower = new Object[1];
+		Thread third = CoalescingLinkFetcherTest.startWaiter(fetcher,
+				"Lembarg", new TitleSet(), new CancellationToken(), follower);
+		blocking.released.countDown();
+		first.join();
+		third.join();
+		
+		assertEquals(Arrays.asList("Poland", "Warsaw"), leader[0]);
+		assertEquals(blocking.links, follower[0]);
+		assertEquals(2, blocking.fetches.get());
+		assertEquals(0, fetcher.getCoalesced());
+	}
+	
+	@Test
+	/**
+	 * Tests that an article which appears several times in one batch, in
+	 * any case, is fetched once and its links returned under each name.
+	 */
+	public void testRepeatedInBatch() throws Exception {
+		BlockingFetcher blocking = new BlockingFetcher();
+		blocking.released.countDown();
+		CoalescingLinkFetcher fetcher = new CoalescingLinkFetcher(blocking);
+		
+		HashMap<String, ArrayList<String>> links = fetcher.getLinks(
+				Arrays.asList("Lembarg", "lembarg", "Lembarg"), 
+				new TitleSet(), new CancellationToken());
+		assertEquals(2, links.size());
+		assertEquals(blocking.links, links.get("Lembarg"));
+		assertEquals(blocking.links, links.get("lembarg"));
+		assertEquals(1, blocking.fetches.get());
+	}
+}
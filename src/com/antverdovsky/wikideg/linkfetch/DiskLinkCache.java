@@ -0,0 +1,496 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Persistent cache of the complete links and backlinks of articles, kept in
+ * a directory on disk so that it survives restarts of the program. The links
+ * of each article are stored in their own compressed file, which is memory
+ * mapped and decompressed straight from the mapping when it is read. Each
+ * file is written to a temporary file first and then atomically moved into
+ * place, so a crash never leaves a partially written entry behind. Entries
+ * expire once they are older than the time to live of the cache, and the
+ * least recently used entries are deleted once the cache grows larger than
+ * its size limit.
+ */
+public class DiskLinkCache implements LinkStore {
+	// Default time to live of an entry, and bound of the size of the cache
+	public static final Duration DEFAULT_TTL = Duration.ofDays(7);
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+	
+	private static final int MAGIC = 0x574B4C31; // "WKL1", start of entries
+	private static final String SUFFIX = ".links"; // Suffix of entry files
+	private static final String TEMP = ".tmp";     // Suffix of partial files
+	
+	// Bound of the size of the uncompressed links of an entry, and the most
+	// by which deflate may ever shrink data
+	private static final int MAX_RAW_BYTES = 64 * 1024 * 1024;
+	private static final int MAX_INFLATION = 1032;
+	
+	private Path directory;                 // Directory of the entry files
+	private Duration ttl;                   // Time to live of an entry
+	private long maxBytes;                  // Bound of the size of the cache
+	
+	private LinkedHashMap<Path, Long> index; // Size of each file, LRU order
+	private long bytes;                      // Total size of the files
+	
+	private LongAdder hits;                 // Lookups which were found
+	private LongAdder misses;               // Lookups which were not
+	private LongAdder evictions;            // Entries deleted, or expired
+	
+	/**
+	 * Opens the cache in the specified directory, creating the directory if
+	 * it does not exist. Any files left behind by an interrupted write are
+	 * deleted, and the least recently modified entries are deleted if the
+	 * cache is larger than its size limit.
+	 * @param directory The directory of the cache.
+	 * @param ttl The time to live of an entry.
+	 * @param maxBytes The bound of the total size of the entry files.
+	 * @throws IOException If the directory could not be created or read.
+	 */
+	public DiskLinkCache(Path directory, Duration ttl, long maxBytes)
+			throws IOException {
+		if (maxBytes < 0) throw new IllegalArgumentException(
+				"Maximum size must not be negative: " + maxBytes);
+		
+		this.directory = directory;
+		this.ttl = ttl;
+		this.maxBytes = maxBytes;
+		
+		this.index = new LinkedHashMap<Path, Long>(16, 0.75f, true);
+		this.bytes = 0;
+		
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+		
+		Files.createDirectories(directory);
+		this.load();
+	}
+	
+	@Override
+	/**
+	 * Returns the cached links of the article with the specified title,
+	 * unless they have expired.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @return A new list of the links of the article, or null if they are
+	 *         not cached, have expired or could not be read.
+	 */
+	public ArrayList<String> get(LinkDirection direction, String title) {
+		String key = DiskLinkCache.key(direction, title);
+		Path file = this.fileOf(key);
+		
+		ArrayList<String> links = null;
+		try {
+			links = this.read(file, key);
+		} catch (NoSuchFileException e) {
+			// Not cached, which is not an error
+		} catch (IOException | DataFormatException | RuntimeException e) {
+			this.delete(file); // Corrupt entries are not kept
+		}
+		
+		if (links == null) {
+			this.misses.increment();
+			return null;
+		}
+		
+		synchronized (this) {
+			// Refresh the order of the entry, or add it to the index if it
+			// was written by another process.
+			if (this.index.get(file) == null) {
+				try {
+					this.add(file, Files.size(file));
+				} catch (IOException e) {
+					// The entry was deleted by another process
+				}
+			}
+		}
+		
+		this.hits.increment();
+		return links;
+	}
+	
+	@Override
+	/**
+	 * Caches the links of the article with the specified title, deleting the
+	 * least recently used entries until the cache fits in its size limit. If
+	 * the links could not be written, they are simply not cached.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @param links All of the links of the article.
+	 */
+	public void put(LinkDirection direction, String title,
+			List<String> links) {
+		String key = DiskLinkCache.key(direction, title);
+		Path file = this.fileOf(key);
+		
+		long size;
+		try {
+			size = this.write(file, key, links);
+		} catch (IOException e) {
+			return;
+		}
+		
+		synchronized (this) {
+			this.add(file, size);
+		}
+	}
+	
+	/**
+	 * Returns the number of entries in the cache.
+	 * @return The number of entries.
+	 */
+	public synchronized int size() {
+		return this.index.size();
+	}
+	
+	/**
+	 * Returns the total size of the entry files of the cache.
+	 * @return The total size, in bytes.
+	 */
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+	
+	/**
+	 * Returns the number of lookups which found the links in the cache.
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	/**
+	 * Returns the number of lookups which did not find the links in the
+	 * cache, including the lookups of expired entries.
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	/**
+	 * Returns the number of entries which have been deleted, to keep the
+	 * cache within its size limit or since they have expired.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+	
+	@Override
+	/**
+	 * Returns a summary of the size and counters of the cache.
+	 * @return The summary.
+	 */
+	public String toString() {
+		return "Disk Link Cache: " + this.size() + " entries (" +
+				this.getBytes() / 1024 + " KB), " + this.getHits() +
+				" hits, " + this.getMisses() + " misses, " +
+				this.getEvictions() + " evictions";
+	}
+	
+	/**
+	 * Reads the links of the specified entry file. The file is memory mapped
+	 * and its compressed links are decompressed directly from the mapping.
+	 * @param file The entry file.
+	 * @param key The key of the entry.
+	 * @return The links, or null if the entry has expired.
+	 * @throws IOException If the file could not be read, or is not an entry
+	 *                     of the specified key.
+	 * @throws DataFormatException If the links of the file are corrupt.
+	 */
+	private ArrayList<String> read(Path file, String key)
+			throws IOException, DataFormatException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		
+		// Header: magic, time written, key, number of links, size of links
+		if (buffer.getInt() != MAGIC) throw new IOException("Not an entry.");
+		long writtenAt = buffer.getLong();
+		int keyLength = buffer.getInt();
+		if (keyLength < 0 || keyLength > buffer.remaining())
+			throw new DataFormatException("Invalid key length.");
+		byte[] keyBytes = new byte[keyLength];
+		buffer.get(keyBytes);
+		int count = buffer.getInt();
+		int rawLength = buffer.getInt();
+		
+		// The lengths are checked before anything is allocated, so that a
+		// corrupt header cannot exhaust the memory.
+		if (rawLength < 0 || rawLength > MAX_RAW_BYTES || rawLength > 
+				(long)(buffer.remaining()) * MAX_INFLATION)
+			throw new DataFormatException("Invalid size of links.");
+		if (count < 0 || count > rawLength + 1)
+			throw new DataFormatException("Invalid number of links.");
+		byte[] raw = new byte[rawLength];
+		
+		// Two keys may share a file name, in which case this is not a hit
+		if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8)))
+			return null;
+		
+		if (this.ttl != null && System.currentTimeMillis() - writtenAt >
+				this.ttl.toMillis()) {
+			this.delete(file);
+			return null;
+		}
+		
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(buffer);
+			int read = 0;
+			while (read < raw.length && !inflater.finished()) {
+				int n = inflater.inflate(raw, read, raw.length - read);
+				if (n == 0 && inflater.needsInput()) break;
+				read += n;
+			}
+			if (read != raw.length) throw new DataFormatException(
+					"Truncated entry.");
+		} finally {
+			inflater.end();
+		}
+		
+		// The links are separated by new lines, which no title may contain
+		ArrayList<String> links = new ArrayList<String>(count);
+		int start = 0;
+		for (int i = 0; i < count; ++i) {
+			int end = start;
+			while (end < raw.length && raw[end] != '\n') ++end;
+			links.add(new String(raw, start, end - start,
+					StandardCharsets.UTF_8));
+			start = end + 1;
+		}
+		
+		return links;
+	}
+	
+	/**
+	 * Writes the links to the specified entry file. The entry is written to
+	 * a temporary file, which is flushed to the disk and then atomically
+	 * moved over the entry file.
+	 * @param file The entry file.
+	 * @param key The key of the entry.
+	 * @param links The links.
+	 * @return The size of the entry file.
+	 * @throws IOException If the file could not be written, or the links
+	 *                     are too large to be cached.
+	 */
+	private long write(Path file, String key, List<String> links)
+			throws IOException {
+		// Join the links with new lines, and compress them
+		ByteArrayOutputStream joined = new ByteArrayOutputStream();
+		for (int i = 0; i < links.size(); ++i) {
+			if (i > 0) joined.write('\n');
+			joined.write(links.get(i).getBytes(StandardCharsets.UTF_8));
+		}
+		if (joined.size() > MAX_RAW_BYTES)
+			throw new IOException("Too many links to cache.");
+		byte[] raw = joined.toByteArray();
+		
+		Deflater deflater = new Deflater();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+				raw.length / 4 + 64);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] chunk = new byte[8192];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(chunk);
+				compressed.write(chunk, 0, n);
+			}
+		} finally {
+			deflater.end();
+		}
+		
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(28 + keyBytes.length);
+		header.putInt(MAGIC);
+		header.putLong(System.currentTimeMillis());
+		header.putInt(keyBytes.length);
+		header.put(keyBytes);
+		header.putInt(links.size());
+		header.putInt(raw.length);
+		header.flip();
+		
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(),
+				file.getFileName().toString(), TEMP);
+		try {
+			try (FileChannel channel = FileChannel.open(temp,
+					StandardOpenOption.WRITE)) {
+				ByteBuffer body = ByteBuffer.wrap(compressed.toByteArray());
+				while (header.hasRemaining()) channel.write(header);
+				while (body.hasRemaining()) channel.write(body);
+				channel.force(true);
+			}
+			
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		
+		return header.limit() + compressed.size();
+	}
+	
+	/**
+	 * Adds the specified entry file to the index, deleting the least recently
+	 * used entries until the cache fits in its size limit. Must be called
+	 * while holding the lock of the cache.
+	 * @param file The entry file.
+	 * @param size The size of the entry file.
+	 */
+	private void add(Path file, long size) {
+		Long old = this.index.put(file, size);
+		if (old != null) this.bytes -= old;
+		this.bytes += size;
+		
+		Iterator<Map.Entry<Path, Long>> it =
+				this.index.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			Map.Entry<Path, Long> eldest = it.next();
+			it.remove();
+			this.bytes -= eldest.getValue();
+			this.evictions.increment();
+			
+			try {
+				Files.deleteIfExists(eldest.getKey());
+			} catch (IOException e) {
+				// The file will be found again once the cache is reopened
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the specified entry file and removes it from the index.
+	 * @param file The entry file.
+	 */
+	private void delete(Path file) {
+		synchronized (this) {
+			Long size = this.index.remove(file);
+			if (size != null) this.bytes -= size;
+		}
+		this.evictions.increment();
+		
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// The entry will be deleted once it is read again
+		}
+	}
+	
+	/**
+	 * Builds the index of the cache from the entry files in its directory,
+	 * in the order in which they were last modified. Temporary files left
+	 * behind by interrupted writes are deleted.
+	 * @throws IOException If the directory could not be read.
+	 */
+	private void load() throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		try (DirectoryStream<Path> shards =
+				Files.newDirectoryStream(this.directory)) {
+			for (Path shard : shards) {
+				if (!Files.isDirectory(shard)) continue;
+				
+				try (DirectoryStream<Path> entries =
+						Files.newDirectoryStream(shard)) {
+					for (Path entry : entries) {
+						String name = entry.getFileName().toString();
+						if (name.endsWith(SUFFIX)) files.add(entry);
+						else if (name.endsWith(TEMP))
+							Files.deleteIfExists(entry);
+					}
+				}
+			}
+		}
+		
+		// Read the attributes of each file once, and sort by them
+		LinkedHashMap<Path, BasicFileAttributes> attributes =
+				new LinkedHashMap<Path, BasicFileAttributes>();
+		for (Path file : files) {
+			attributes.put(file, Files.readAttributes(file,
+					BasicFileAttributes.class));
+		}
+		files.sort(Comparator.comparing(
+				file -> attributes.get(file).lastModifiedTime()));
+		
+		synchronized (this) {
+			for (Path file : files)
+				this.add(file, attributes.get(file).size());
+		}
+	}
+	
+	/**
+	 * Returns the entry file of the specified key. The name of the file is
+	 * the hash of the key, and files are spread over 256 subdirectories by
+	 * the first byte of the hash.
+	 * @param key The key.
+	 * @return The entry file.
+	 */
+	private Path fileOf(String key) {
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-1").digest(
+					key.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // Required of every JVM
+		}
+		
+		StringBuilder name = new StringBuilder(2 * hash.length);
+		for (byte b : hash) {
+			name.append(Character.forDigit((b >> 4) & 0xF, 16));
+			name.append(Character.forDigit(b & 0xF, 16));
+		}
+		
+		return this.directory.resolve(name.substring(0, 2))
+				.resolve(name + SUFFIX);
+	}
+	
+	/**
+	 * Returns the key of the links of the article with the specified title.
+	 * Titles which are equal, ignoring their case, have the same key.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @return The key.
+	 */
+	private static String key(LinkDirection direction, String title) {
+		return direction.name() + "|" + TitleSet.key(title);
+	}
+}
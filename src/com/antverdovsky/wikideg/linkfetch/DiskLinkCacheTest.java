@@ -0,0 +1,131 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Basic Testing of the DiskLinkCache class.
+ */
+public class DiskLinkCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	/**
+	 * Tests that cached links survive reopening the cache, and that links 
+	 * older than the time to live are not served.
+	 */
+	public void testPersistence() throws IOException {
+		List<String> links = Arrays.asList("Poland", 
+				"Encyclop\u00e6dia Britannica", "");
+		
+		DiskLinkCache cache = new DiskLinkCache(this.folder.getRoot().toPath(),
+				DiskLinkCache.DEFAULT_TTL, DiskLinkCache.DEFAULT_MAX_BYTES);
+		cache.put(LinkDirection.LINKS, "Lembarg", links);
+		cache.put(LinkDirection.BACKLINKS, "Lembarg", Arrays.asList());
+		
+		cache = new DiskLinkCache(this.folder.getRoot().toPath(),
+				DiskLinkCache.DEFAULT_TTL, DiskLinkCache.DEFAULT_MAX_BYTES);
+		assertEquals(2, cache.size());
+		assertEquals(links, cache.get(LinkDirection.LINKS, "lembarg"));
+		assertEquals(Arrays.asList(), 
+				cache.get(LinkDirection.BACKLINKS, "Lembarg"));
+		assertNull(cache.get(LinkDirection.LINKS, "GitHub"));
+		
+		cache = new DiskLinkCache(this.folder.getRoot().toPath(),
+				Duration.ofMillis(-1), DiskLinkCache.DEFAULT_MAX_BYTES);
+		assertNull(cache.get(LinkDirection.LINKS, "Lembarg"));
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	/**
+	 * Tests that the least recently used entries are deleted once the cache
+	 * grows past its size limit.
+	 */
+	public void testEviction() throws IOException {
+		List<String> links = Arrays.asList("Poland", "Warsaw");
+		
+		DiskLinkCache cache = new DiskLinkCache(this.folder.getRoot().toPath(),
+				DiskLinkCache.DEFAULT_TTL, Long.MAX_VALUE);
+		cache.put(LinkDirection.LINKS, "A", links);
+		long entryBytes = cache.getBytes();
+		
+		cache = new DiskLinkCache(this.folder.getRoot().toPath(),
+				DiskLinkCache.DEFAULT_TTL, 2 * entryBytes);
+		cache.put(LinkDirection.LINKS, "B", links);
+		assertEquals(links, cache.get(LinkDirection.LINKS, "A"));
+		cache.put(LinkDirection.LINKS, "C", links); // Evicts B
+		
+		assertNull(cache.get(LinkDirection.LINKS, "B"));
+		assertEquals(links, cache.get(LinkDirection.LINKS, "A"));
+		assertEquals(links, cache.get(LinkDirection.LINKS, "C"));
+		assertEquals(1, cache.getEvictions());
+	}
+	
+	/**
+	 * Overwrites an integer of the specified entry file.
+	 * @param file The entry file.
+	 * @param position The position of the integer in the file.
+	 * @param value The new value of the integer.
+	 * @throws IOException If the file could not be written.
+	 */
+	private static void overwrite(Path file, long position, int value)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file, 
+				StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(4).putInt(value);
+			buffer.flip();
+			channel.write(buffer, position);
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that entries whose headers hold impossible lengths are treated
+	 * as corrupt, rather than allocated, and are deleted.
+	 */
+	public void testCorruptLengths() throws IOException {
+		List<String> links = Arrays.asList("Poland", "Warsaw");
+		Path root = this.folder.getRoot().toPath();
+		
+		// Header: magic (4), time (8), key length (4), key, count (4), size
+		// of links (4). The key of the entry is its direction and title.
+		for (int field = 0; field < 3; ++field) {
+			DiskLinkCache cache = new DiskLinkCache(root, 
+					DiskLinkCache.DEFAULT_TTL, DiskLinkCache.DEFAULT_MAX_BYTES);
+			cache.put(LinkDirection.LINKS, "Lembarg", links);
+			
+			Path file;
+			try (Stream<Path> files = Files.walk(root)) {
+				file = files.filter(Files::isRegularFile).findFirst().get();
+			}
+			int keyLength = ByteBuffer.wrap(Files.readAllBytes(file)).getInt(12);
+			if (field == 0) DiskLinkCacheTest.overwrite(file, 12, 
+					Integer.MAX_VALUE);
+			if (field == 1) DiskLinkCacheTest.overwrite(file, 16 + keyLength, 
+					Integer.MAX_VALUE);
+			if (field == 2) DiskLinkCacheTest.overwrite(file, 20 + keyLength, 
+					Integer.MAX_VALUE);
+			
+			assertNull(cache.get(LinkDirection.LINKS, "Lembarg"));
+			assertFalse(Files.exists(file));
+		}
+	}
+}
@@ -1,16 +1,22 @@
 package com.antverdovsky.wikideg.linkfetch;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashMap;
 
+import com.antverdovsky.wikideg.util.CancellationToken;
 import com.antverdovsky.wikideg.util.DataParse;
+import com.antverdovsky.wikideg.util.TitleSet;
 import com.antverdovsky.wikideg.util.URLFetch;
 
 /**
  * Uses the export data of a Wikipedia article to fetch the links contained on
  * the article page. This usually fails to fetch template and external links
  * so it may not always result in the shortest path being found, however, it
- * is a lot faster than the JSONLinksFetcher.
+ * is a lot faster than the JSONLinksFetcher. The anchor text of the links
+ * of each page is recorded in the shared {@link AnchorCache} as the page is
+ * scanned, so that the embedded path of a search needs no more downloads.
  */
 public class ExportLinksFetcher implements AbstractLinkFetcher {
 	@Override
@@ -22,20 +28,27 @@ public class ExportLinksFetcher implements AbstractLinkFetcher {
 	 *                to any of the targets, the target is appended to the
 	 *                list and the list is returned as is (short circuits the 
 	 *                algorithm). 
+	 * @param token The cancellation token of the search.
 	 * @return The set of all (or some) of the links or backlinks of the
 	 *         Wikipedia article.
-	 * @throws IOException If the article data could not be fetched.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
 	 */
-	public ArrayList<String> getLinks(String article, 
-			ArrayList<String> targets) throws IOException {
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException {
 		// Declare the List of all of the links
 		ArrayList<String> allLinks = new ArrayList<String>();
 
-		// Get the URL of the Wiki Request Page and fetch the export data
+		// Get the URL of the Wiki Request Page and scan the export data for
+		// links and their anchors as it is downloaded
+		HashMap<String, String> anchors = new HashMap<String, String>();
 		String url = URLFetch.getExportURL(article);
-		String export = URLFetch.getData(url);
-
-		DataParse.parseLinksExport(export, allLinks, targets);
+		boolean isComplete;
+		try (Reader export = URLFetch.getReader(url, token)) {
+			isComplete = DataParse.parseLinksExport(export, allLinks, targets,
+					anchors);
+		}
+		AnchorCache.getShared().put(article, anchors, isComplete);
 
 		return allLinks; // Return all of the links when done
 	}
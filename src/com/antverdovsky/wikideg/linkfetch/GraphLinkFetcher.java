@@ -0,0 +1,86 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.util.ArrayList;
+
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.graph.LinkGraph;
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.SearchCancelledException;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Link fetcher which reads the links of articles from a local graph, such
+ * as a memory mapped {@link LinkGraph}, rather than downloading them, so
+ * that paths are found without any network access.
+ */
+public class GraphLinkFetcher implements AbstractLinkFetcher {
+	// Number of articles whose links are read by each task of a search.
+	// Reading links is cheap, so many are read by each task.
+	private static final int BATCH_SIZE = 256;
+	
+	private IntGraph graph;          // Graph of the links
+	private LinkDirection direction; // Direction of the fetched links
+	
+	/**
+	 * Creates a new fetcher of the links of the specified graph.
+	 * @param graph The graph.
+	 * @param direction The direction of the links which are fetched.
+	 */
+	public GraphLinkFetcher(IntGraph graph, LinkDirection direction) {
+		this.graph = graph;
+		this.direction = direction;
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if the target is found) of the links (or
+	 * backlinks) of the article with the specified name. Articles which are
+	 * not in the graph have no links.
+	 * @param article The name of the article.
+	 * @param targets If any link extracted from the starting article is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list and the list is returned as is (short circuits the
+	 *                algorithm).
+	 * @param token The cancellation token of the search.
+	 * @return The set of all (or some) of the links or backlinks of the
+	 *         Wikipedia article.
+	 * @throws SearchCancelledException If the token has been cancelled.
+	 */
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws SearchCancelledException {
+		token.throwIfCancelled();
+		
+		int node = this.graph.find(article);
+		if (node == IntGraph.NOT_FOUND) return new ArrayList<String>();
+		
+		long start = this.graph.getLinksStart(this.direction, node);
+		long end = this.graph.getLinksEnd(this.direction, node);
+		ArrayList<String> links = new ArrayList<String>((int)(end - start));
+		for (long i = start; i < end; ++i) {
+			String link = this.graph.getTitle(
+					this.graph.getLink(this.direction, i));
+			links.add(link);
+			
+			if (targets.contains(link)) break;
+		}
+		
+		return links;
+	}
+	
+	@Override
+	/**
+	 * Returns the number of articles whose links are read by each task.
+	 * @return The batch size of this fetcher.
+	 */
+	public int getBatchSize() {
+		return BATCH_SIZE;
+	}
+	
+	/**
+	 * Returns the graph of this fetcher.
+	 * @return The graph.
+	 */
+	public IntGraph getGraph() {
+		return this.graph;
+	}
+}
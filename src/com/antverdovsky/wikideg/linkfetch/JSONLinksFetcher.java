@@ -1,9 +1,14 @@
 package com.antverdovsky.wikideg.linkfetch;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
+import com.antverdovsky.wikideg.util.CancellationToken;
 import com.antverdovsky.wikideg.util.DataParse;
+import com.antverdovsky.wikideg.util.TitleSet;
 import com.antverdovsky.wikideg.util.URLFetch;
 
 /**
@@ -22,31 +27,91 @@ public class JSONLinksFetcher implements AbstractLinkFetcher {
 	 *                to any of the targets, the target is appended to the
 	 *                list and the list is returned as is (short circuits the 
 	 *                algorithm). 
+	 * @param token The cancellation token of the search.
 	 * @return The set of all (or some) of the links or backlinks of the
 	 *         Wikipedia article.
-	 * @throws IOException If the article data could not be fetched.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
 	 */
-	public ArrayList<String> getLinks(String article, 
-			ArrayList<String> targets) throws IOException {
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException {
 		// Declare the List of all of the links
 		ArrayList<String> allLinks = new ArrayList<String>();
 
-		// Get the URL of the Wiki Request Page and fetch the first JSON file
-		String url = URLFetch.getLinksURL(article);
-		String json = URLFetch.getData(url);
-
 		// Continue fetching JSON files until we reach a file which contains
-		// no continue token.
-		String continueToken = "0|0|0";
-		while (!continueToken.isEmpty()) {
-			// Get the JSON data of the new URL (with the continue token)
-			url = URLFetch.getLinksURL(article, continueToken);
-			json = URLFetch.getData(url);
+		// no continue token. The first JSON file has no continue token.
+		String continueToken = "";
+		do {
+			// Get the URL of the Wiki Request Page (with the continue token)
+			String url = continueToken.isEmpty() ? 
+					URLFetch.getLinksURL(article) : 
+					URLFetch.getLinksURL(article, continueToken);
 
-			// Parse the JSON data from the URL and add it to the list
-			continueToken = DataParse.parseLinksJSON(json, allLinks, targets);
-		}
+			// Parse the JSON data from the URL as it is downloaded and add
+			// it to the list
+			try (Reader json = URLFetch.getReader(url, token)) {
+				continueToken = DataParse.parseLinksJSON(json, allLinks, 
+						targets);
+			}
+		} while (!continueToken.isEmpty());
 
 		return allLinks; // Return all of the links when done
 	}
-}
\ No newline at end of file
+	
+	@Override
+	/**
+	 * Returns all (or some, if a target is found) of the links of each of
+	 * the articles with the specified names. The articles are requested in
+	 * batches of up to {@link URLFetch#MAX_TITLES_PER_QUERY} titles per
+	 * query, following the continue token of each batch until all of the
+	 * links of the batch have been fetched.
+	 * @param articles The names of the articles.
+	 * @param targets If any link extracted from any of the articles is equal
+	 *                to any of the targets, the target is appended to the
+	 *                list of that article and the map is returned as is 
+	 *                (short circuits the algorithm).
+	 * @param token The cancellation token of the search.
+	 * @return The map of the name of each article, as it was specified, to
+	 *         all (or some) of its links.
+	 * @throws IOException If the article data could not be fetched, or if
+	 *                     the token has been cancelled.
+	 */
+	public HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets, 
+			CancellationToken token) throws IOException {
+		// Declare the map of all of the links of each article
+		HashMap<String, ArrayList<String>> allLinks = 
+				new HashMap<String, ArrayList<String>>();
+		
+		for (int from = 0; from < articles.size(); 
+				from += URLFetch.MAX_TITLES_PER_QUERY) { // Foreach batch
+			int to = Math.min(articles.size(), 
+					from + URLFetch.MAX_TITLES_PER_QUERY);
+			List<String> batch = articles.subList(from, to);
+			
+			// Continue fetching JSON files until we reach a file which 
+			// contains no continue token, or a target has been found.
+			String continueToken = "";
+			do {
+				String url = URLFetch.getLinksURL(batch, continueToken);
+				try (Reader json = URLFetch.getReader(url, token)) {
+					continueToken = DataParse.parseLinksJSON(json, allLinks, 
+							targets);
+				}
+				if (continueToken == null) return allLinks;
+			} while (!continueToken.isEmpty());
+		}
+		
+		return allLinks; // Return all of the links when done
+	}
+	
+	@Override
+	/**
+	 * Returns the maximum number of articles whose links this fetcher
+	 * requests at once, when given a list of articles.
+	 * @return The batch size of this fetcher.
+	 */
+	public int getBatchSize() {
+		return URLFetch.MAX_TITLES_PER_QUERY;
+	}
+}
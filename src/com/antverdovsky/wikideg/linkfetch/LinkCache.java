@@ -0,0 +1,246 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Bounded, least recently used cache of the complete links and backlinks of
+ * articles. The size of the cache is bounded by an estimate of the memory
+ * its entries use, rather than by their number, since the links of a hub
+ * article may be thousands of times larger than those of any other article.
+ * A single shared cache is used by every search in the process.
+ */
+public class LinkCache implements LinkStore {
+	// Default bound of the memory used by the shared cache, in bytes
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	
+	// Estimated memory used by an entry and by a String, besides its chars
+	private static final int ENTRY_OVERHEAD = 96;
+	private static final int STRING_OVERHEAD = 48;
+	
+	private static final LinkCache SHARED = new LinkCache(DEFAULT_MAX_BYTES);
+	
+	/**
+	 * The cached links of a single article.
+	 */
+	private static class Entry {
+		private String[] links;   // The links of the article
+		private long bytes;       // Estimated memory used by the entry
+	}
+	
+	private LinkedHashMap<String, Entry> entries; // Entries, in access order
+	private long maxBytes;                        // Bound of memory used
+	private long bytes;                           // Estimated memory used
+	
+	private LongAdder hits;                       // Lookups which were found
+	private LongAdder misses;                     // Lookups which were not
+	private LongAdder evictions;                  // Entries evicted
+	
+	/**
+	 * Creates a new, empty cache.
+	 * @param maxBytes The bound of the estimated memory used by the cache, 
+	 *                 in bytes.
+	 * @throws IllegalArgumentException If maxBytes is negative.
+	 */
+	public LinkCache(long maxBytes) {
+		if (maxBytes < 0) throw new IllegalArgumentException(
+				"Maximum size must not be negative: " + maxBytes);
+		
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		this.maxBytes = maxBytes;
+		this.bytes = 0;
+		
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+	
+	/**
+	 * Returns the cache which is shared by every search in the process.
+	 * @return The shared cache.
+	 */
+	public static LinkCache getShared() {
+		return LinkCache.SHARED;
+	}
+	
+	@Override
+	/**
+	 * Returns the cached links of the article with the specified title.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @return A new list of the links of the article, or null if they are
+	 *         not cached.
+	 */
+	public ArrayList<String> get(LinkDirection direction, String title) {
+		String key = LinkCache.key(direction, title);
+		
+		Entry entry;
+		synchronized (this) {
+			entry = this.entries.get(key);
+		}
+		
+		if (entry == null) {
+			this.misses.increment();
+			return null;
+		}
+		
+		this.hits.increment();
+		return new ArrayList<String>(Arrays.asList(entry.links));
+	}
+	
+	@Override
+	/**
+	 * Caches the links of the article with the specified title, evicting the
+	 * least recently used entries until the cache fits in its bound. The 
+	 * links must be all of the links of the article, never a partial list.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @param links All of the links of the article.
+	 */
+	public void put(LinkDirection direction, String title, 
+			List<String> links) {
+		String key = LinkCache.key(direction, title);
+		
+		Entry entry = new Entry();
+		entry.links = links.toArray(new String[links.size()]);
+		entry.bytes = ENTRY_OVERHEAD + LinkCache.sizeOf(key);
+		for (String link : entry.links) entry.bytes += LinkCache.sizeOf(link);
+		
+		synchronized (this) {
+			// An entry which could never fit would only flush the cache
+			if (entry.bytes > this.maxBytes) return;
+			
+			Entry old = this.entries.put(key, entry);
+			if (old != null) this.bytes -= old.bytes;
+			this.bytes += entry.bytes;
+			
+			this.evict();
+		}
+	}
+	
+	/**
+	 * Sets the bound of the estimated memory used by the cache, evicting the
+	 * least recently used entries until the cache fits in it.
+	 * @param maxBytes The bound, in bytes.
+	 * @throws IllegalArgumentException If maxBytes is negative.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		if (maxBytes < 0) throw new IllegalArgumentException(
+				"Maximum size must not be negative: " + maxBytes);
+		
+		this.maxBytes = maxBytes;
+		this.evict();
+	}
+	
+	/**
+	 * Returns the bound of the estimated memory used by the cache.
+	 * @return The bound, in bytes.
+	 */
+	public synchronized long getMaxBytes() {
+		return this.maxBytes;
+	}
+	
+	/**
+	 * Returns the estimated memory used by the entries of the cache.
+	 * @return The estimated memory, in bytes.
+	 */
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+	
+	/**
+	 * Returns the number of articles whose links are cached.
+	 * @return The number of entries.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	/**
+	 * Removes every entry from the cache. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.bytes = 0;
+	}
+	
+	/**
+	 * Returns the number of lookups which found the links in the cache.
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	/**
+	 * Returns the number of lookups which did not find the links in the 
+	 * cache.
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	/**
+	 * Returns the number of entries which have been evicted from the cache
+	 * to keep it within its bound.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+	
+	@Override
+	/**
+	 * Returns a summary of the size and counters of the cache.
+	 * @return The summary.
+	 */
+	public String toString() {
+		return "Link Cache: " + this.size() + " entries (" + 
+				this.getBytes() / 1024 + " KB), " + this.getHits() + 
+				" hits, " + this.getMisses() + " misses, " + 
+				this.getEvictions() + " evictions";
+	}
+	
+	/**
+	 * Evicts the least recently used entries until the cache fits in its 
+	 * bound. Must be called while holding the lock of the cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it = 
+				this.entries.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			this.bytes -= it.next().getValue().bytes;
+			it.remove();
+			this.evictions.increment();
+		}
+	}
+	
+	/**
+	 * Returns the key of the links of the article with the specified title.
+	 * Titles which are equal, ignoring their case, have the same key.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @return The key.
+	 */
+	private static String key(LinkDirection direction, String title) {
+		// The '|' character may never appear in a title
+		return direction.ordinal() + "|" + TitleSet.key(title);
+	}
+	
+	/**
+	 * Returns the estimated memory used by the specified String.
+	 * @param s The String.
+	 * @return The estimated memory, in bytes.
+	 */
+	private static long sizeOf(String s) {
+		return STRING_OVERHEAD + 2L * s.length();
+	}
+}
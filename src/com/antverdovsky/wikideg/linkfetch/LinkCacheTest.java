@@ -0,0 +1,104 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Basic Testing of the LinkCache and CachingLinkFetcher classes.
+ */
+public class LinkCacheTest {
+	/**
+	 * Fetcher which returns the same links for every article, short 
+	 * circuiting when a target is found, and counts its fetches.
+	 */
+	private static class FixedLinksFetcher implements AbstractLinkFetcher {
+		private List<String> links = Arrays.asList("Poland", "Warsaw", "Oder");
+		private int fetches = 0;
+		
+		@Override
+		/**
+		 * Returns the fixed links, up to and including the first target.
+		 * @param article The name of the article.
+		 * @param targets The targets.
+		 * @param token The cancellation token of the search.
+		 * @return The links.
+		 */
+		public ArrayList<String> getLinks(String article, TitleSet targets,
+				CancellationToken token) {
+			++this.fetches;
+			
+			ArrayList<String> found = new ArrayList<String>();
+			for (String link : this.links) {
+				found.add(link);
+				if (targets.contains(link)) break;
+			}
+			return found;
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that the least recently used entries are evicted once the cache
+	 * grows past its bound, and that the counters are kept.
+	 */
+	public void testEviction() {
+		List<String> links = Arrays.asList("Poland", "Warsaw");
+		
+		LinkCache cache = new LinkCache(Long.MAX_VALUE);
+		cache.put(LinkDirection.LINKS, "A", links);
+		long entryBytes = cache.getBytes();
+		cache.setMaxBytes(2 * entryBytes);
+		
+		cache.put(LinkDirection.LINKS, "B", links);
+		assertNotNull(cache.get(LinkDirection.LINKS, "a")); // A is now newer
+		cache.put(LinkDirection.LINKS, "C", links);         // Evicts B
+		
+		assertNull(cache.get(LinkDirection.LINKS, "B"));
+		assertEquals(links, cache.get(LinkDirection.LINKS, "A"));
+		assertEquals(links, cache.get(LinkDirection.LINKS, "C"));
+		assertNull(cache.get(LinkDirection.BACKLINKS, "C"));
+		
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+	}
+	
+	@Test
+	/**
+	 * Tests that complete links are served from the cache, and that links
+	 * which were cut short by a target are never cached.
+	 */
+	public void testCachingFetcher() throws IOException {
+		FixedLinksFetcher fixed = new FixedLinksFetcher();
+		CachingLinkFetcher fetcher = new CachingLinkFetcher(fixed, 
+				LinkDirection.LINKS, new LinkCache(1024 * 1024));
+		
+		TitleSet none = new TitleSet();
+		TitleSet warsaw = new TitleSet(Arrays.asList("Warsaw"));
+		
+		// Cut short, so it must be fetched again
+		assertEquals(2, fetcher.getLinks("Lembarg", warsaw).size());
+		assertEquals(3, fetcher.getLinks("Lembarg", none).size());
+		assertEquals(2, fixed.fetches);
+		
+		// Complete, so both are served from the cache
+		HashMap<String, ArrayList<String>> batch = fetcher.getLinks(
+				Arrays.asList("Lembarg", "lembarg"), warsaw);
+		assertEquals(3, batch.get("Lembarg").size());
+		assertEquals(3, batch.get("lembarg").size());
+		assertEquals(2, fixed.fetches);
+	}
+}
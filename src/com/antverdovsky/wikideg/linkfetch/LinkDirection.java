@@ -0,0 +1,9 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+/**
+ * The direction in which the links of an article are followed.
+ */
+public enum LinkDirection {
+	LINKS,     // The articles which the article links to
+	BACKLINKS; // The articles which link to the article
+}
@@ -0,0 +1,29 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interface used by all stores of the complete links and backlinks of 
+ * articles, from which a {@link CachingLinkFetcher} serves links.
+ */
+public interface LinkStore {
+	/**
+	 * Returns the stored links of the article with the specified title.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @return A new list of the links of the article, or null if they are
+	 *         not stored.
+	 */
+	public ArrayList<String> get(LinkDirection direction, String title);
+	
+	/**
+	 * Stores the links of the article with the specified title. The links
+	 * must be all of the links of the article, never a partial list.
+	 * @param direction The direction of the links.
+	 * @param title The title of the article.
+	 * @param links All of the links of the article.
+	 */
+	public void put(LinkDirection direction, String title, 
+			List<String> links);
+}
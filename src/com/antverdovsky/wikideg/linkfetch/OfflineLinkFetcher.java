@@ -0,0 +1,68 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Link fetcher which never downloads anything. It is placed behind a 
+ * {@link CachingLinkFetcher} so that links are served only from its store,
+ * which makes repeated runs over the same store reproducible.
+ */
+public class OfflineLinkFetcher implements AbstractLinkFetcher {
+	private int batchSize; // Batch size of the fetcher this one replaces
+	
+	/**
+	 * Creates a new offline link fetcher.
+	 * @param batchSize The batch size of the fetcher which this fetcher
+	 *                  replaces, so that the batches of the search stay the
+	 *                  same as when it is online.
+	 */
+	public OfflineLinkFetcher(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	
+	@Override
+	/**
+	 * Always fails, since the links of the article are not stored.
+	 * @param article The name of the article.
+	 * @param targets The targets.
+	 * @param token The cancellation token of the search.
+	 * @return Never returns.
+	 * @throws IOException Always.
+	 */
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException {
+		throw new IOException("Links of \"" + article + "\" are not " +
+				"cached, and the fetcher is offline.");
+	}
+	
+	@Override
+	/**
+	 * Returns an empty map, since the links of none of the articles are 
+	 * stored. The links of the other articles of a batch are still served
+	 * from the store by the caching fetcher.
+	 * @param articles The names of the articles.
+	 * @param targets The targets.
+	 * @param token The cancellation token of the search.
+	 * @return An empty map.
+	 */
+	public HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets, 
+			CancellationToken token) {
+		return new HashMap<String, ArrayList<String>>();
+	}
+	
+	@Override
+	/**
+	 * Returns the batch size of the fetcher which this fetcher replaces.
+	 * @return The batch size of this fetcher.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+}
@@ -0,0 +1,120 @@
+package com.antverdovsky.wikideg.linkfetch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Link fetcher which stands in for Wikipedia, so that the searches can be
+ * load tested without any network access. The links are served by another
+ * fetcher, usually one which reads a local graph, after waiting for a fixed
+ * latency on each request, so that the searches spend their time waiting on
+ * requests as they do when they are online. A request which is waiting is
+ * abandoned as soon as its search is cancelled.
+ */
+public class StubLinkFetcher implements AbstractLinkFetcher {
+	// Interval at which a waiting request checks for cancellation
+	private static final long POLL_MILLIS = 5;
+	
+	private AbstractLinkFetcher fetcher; // Fetcher which serves the links
+	private int batchSize;               // Articles per request
+	private long latencyMillis;          // Wait of each request
+	
+	/**
+	 * Creates a new stub link fetcher.
+	 * @param fetcher The fetcher which serves the links.
+	 * @param batchSize The batch size of the fetcher which this fetcher
+	 *                  stands in for, so that the batches of the search stay
+	 *                  the same as when it is online.
+	 * @param latencyMillis The time which each request waits, in
+	 *                      milliseconds.
+	 */
+	public StubLinkFetcher(AbstractLinkFetcher fetcher, int batchSize,
+			long latencyMillis) {
+		this.fetcher = fetcher;
+		this.batchSize = batchSize;
+		this.latencyMillis = latencyMillis;
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if the target is found) of the links (or
+	 * backlinks) of the article with the specified name, once the latency of
+	 * a request has passed.
+	 * @param article The name of the article.
+	 * @param targets The targets, at which the links are cut short.
+	 * @param token The cancellation token of the search.
+	 * @return The set of all (or some) of the links or backlinks of the
+	 *         Wikipedia article.
+	 * @throws IOException If the links could not be served, or if the token
+	 *                     has been cancelled.
+	 */
+	public ArrayList<String> getLinks(String article, TitleSet targets,
+			CancellationToken token) throws IOException {
+		this.await(token);
+		return this.fetcher.getLinks(article, targets, token);
+	}
+	
+	@Override
+	/**
+	 * Returns all (or some, if a target is found) of the links (or
+	 * backlinks) of each of the articles with the specified names, once the
+	 * latency of a single request has passed.
+	 * @param articles The names of the articles.
+	 * @param targets The targets, at which the links are cut short.
+	 * @param token The cancellation token of the search.
+	 * @return The map of the name of each article to all (or some) of its
+	 *         links or backlinks.
+	 * @throws IOException If the links could not be served, or if the token
+	 *                     has been cancelled.
+	 */
+	public HashMap<String, ArrayList<String>> getLinks(
+			List<String> articles, TitleSet targets,
+			CancellationToken token) throws IOException {
+		this.await(token);
+		return this.fetcher.getLinks(articles, targets, token);
+	}
+	
+	@Override
+	/**
+	 * Returns the batch size of the fetcher which this fetcher stands in
+	 * for.
+	 * @return The batch size of this fetcher.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+	
+	/**
+	 * Waits for the latency of a request to pass, or for the search to be
+	 * cancelled.
+	 * @param token The cancellation token of the search.
+	 * @throws IOException If the token has been cancelled, or if the thread
+	 *                     was interrupted.
+	 */
+	private void await(CancellationToken token) throws IOException {
+		long end = System.nanoTime() +
+				TimeUnit.MILLISECONDS.toNanos(this.latencyMillis);
+		
+		long remaining;
+		while ((remaining = end - System.nanoTime()) > 0) {
+			token.throwIfCancelled();
+			try {
+				Thread.sleep(Math.min(POLL_MILLIS,
+						TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("The request was " +
+						"interrupted.");
+			}
+		}
+		
+		token.throwIfCancelled();
+	}
+}
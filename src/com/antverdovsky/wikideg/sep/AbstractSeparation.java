@@ -0,0 +1,35 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.util.Stack;
+
+/**
+ * Interface used by all computed separations between two articles.
+ */
+public interface AbstractSeparation {
+	/**
+	 * Returns the number of degrees of separation between two articles.
+	 * @return The degrees of separation.
+	 */
+	public int getNumDegrees();
+	
+	/**
+	 * Returns the embedded path between two articles. The embedded path 
+	 * holds the name under which each article of the path, other than the
+	 * start article, is embedded in the article before it.
+	 * @return The embedded path.
+	 */
+	public Stack<String> getEmbeddedPath();
+	
+	/**
+	 * Returns the path between two articles, from the start article up to 
+	 * and including the end article.
+	 * @return The path.
+	 */
+	public Stack<String> getPath();
+	
+	/**
+	 * Returns whether or not a path was found.
+	 * @return True if a path was found. False otherwise.
+	 */
+	public boolean getPathExists();
+}
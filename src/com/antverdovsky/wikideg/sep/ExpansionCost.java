@@ -0,0 +1,105 @@
+package com.antverdovsky.wikideg.sep;
+
+/**
+ * Model of the cost of expanding one side of a search by one level, which
+ * is used to choose the side which is cheaper to grow. The cost of a level
+ * is measured in round trips, with every BYTES_PER_ROUND_TRIP bytes which
+ * are downloaded costing as much as a round trip does.
+ * The round trips and bytes per article of a side are learned from each of
+ * the levels which the side has expanded so far, so they account for the
+ * articles which were served from caches, and for the articles whose links
+ * took many pages to download. Before much is known of a side, the model
+ * leans on a prior of one round trip per batch of its fetcher.
+ */
+public class ExpansionCost {
+	// Number of downloaded bytes which cost as much as a round trip
+	private static final double BYTES_PER_ROUND_TRIP = 64 * 1024;
+	
+	// Cost of an article which needs no download at all, such as an article
+	// which is cached, so that the smaller side is grown when nothing is
+	// downloaded by either side.
+	private static final double ARTICLE_COST = 1e-4;
+	
+	// Weight of the prior, as a number of articles
+	private static final double PRIOR_ARTICLES = 4;
+	
+	private double priorRequests; // Prior round trips per article
+	private long articles;        // Articles expanded so far
+	private long requests;        // Round trips made so far
+	private long bytes;           // Bytes downloaded so far
+	
+	/**
+	 * Creates a new model of the cost of a side whose fetcher fetches the
+	 * links of the specified number of articles at once.
+	 * @param batchSize The batch size of the fetcher of the side.
+	 */
+	public ExpansionCost(int batchSize) {
+		this.priorRequests = 1.0 / Math.max(1, batchSize);
+	}
+	
+	/**
+	 * Records the cost of a level which was expanded.
+	 * @param articles The number of articles which were expanded.
+	 * @param requests The number of round trips which were made.
+	 * @param bytes The number of bytes which were downloaded.
+	 */
+	public synchronized void record(long articles, long requests,
+			long bytes) {
+		this.articles += articles;
+		this.requests += requests;
+		this.bytes += bytes;
+	}
+	
+	/**
+	 * Returns the expected number of round trips needed to expand a single
+	 * article.
+	 * @return The round trips per article.
+	 */
+	public synchronized double getRequestsPerArticle() {
+		return (this.requests + PRIOR_ARTICLES * this.priorRequests) /
+				(this.articles + PRIOR_ARTICLES);
+	}
+	
+	/**
+	 * Returns the expected number of bytes downloaded to expand a single
+	 * article.
+	 * @return The bytes per article.
+	 */
+	public synchronized double getBytesPerArticle() {
+		return this.bytes / (this.articles + PRIOR_ARTICLES);
+	}
+	
+	/**
+	 * Predicts the cost of expanding the specified number of articles.
+	 * @param articles The number of articles.
+	 * @return The predicted cost, in round trips.
+	 */
+	public double predict(int articles) {
+		return articles * (this.getRequestsPerArticle() +
+				this.getBytesPerArticle() / BYTES_PER_ROUND_TRIP +
+				ARTICLE_COST);
+	}
+	
+	/**
+	 * Returns the cost of a level which made the specified number of round
+	 * trips and downloaded the specified number of bytes.
+	 * @param articles The number of articles which were expanded.
+	 * @param requests The number of round trips.
+	 * @param bytes The number of bytes.
+	 * @return The cost, in round trips.
+	 */
+	public static double getCost(long articles, long requests, long bytes) {
+		return requests + bytes / BYTES_PER_ROUND_TRIP +
+				articles * ARTICLE_COST;
+	}
+	
+	@Override
+	/**
+	 * Returns the expected round trips and bytes per article.
+	 * @return The expected costs of an article.
+	 */
+	public String toString() {
+		return String.format("%.3f round trips and %.0f bytes per article",
+				this.getRequestsPerArticle(), this.getBytesPerArticle());
+	}
+}
@@ -0,0 +1,56 @@
+package com.antverdovsky.wikideg.sep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the ExpansionCost class.
+ */
+public class ExpansionCostTest {
+	@Test
+	/**
+	 * Tests that, before anything is recorded, a side whose fetcher fetches
+	 * many articles at once is predicted to be cheaper per article.
+	 */
+	public void testPrior() {
+		ExpansionCost links = new ExpansionCost(1);
+		ExpansionCost backlinks = new ExpansionCost(50);
+		
+		assertEquals(1.0, links.getRequestsPerArticle(), 1e-9);
+		assertEquals(0.02, backlinks.getRequestsPerArticle(), 1e-9);
+		assertTrue(backlinks.predict(100) < links.predict(100));
+	}
+	
+	@Test
+	/**
+	 * Tests that the observed costs outweigh the prior once enough articles
+	 * have been expanded, so that a side whose articles took many pages to
+	 * download is predicted to be the more expensive one.
+	 */
+	public void testLearnsFromLevels() {
+		ExpansionCost links = new ExpansionCost(1);
+		ExpansionCost backlinks = new ExpansionCost(50);
+		links.record(1000, 1000, 1000 * 20000);
+		backlinks.record(1000, 4000, 1000 * 80000);
+		
+		assertEquals(4.0, backlinks.getRequestsPerArticle(), 0.05);
+		assertTrue(links.predict(100) < backlinks.predict(100));
+	}
+	
+	@Test
+	/**
+	 * Tests that the smaller side is predicted to be cheaper when neither
+	 * side downloads anything, such as when every article is cached.
+	 */
+	public void testNothingDownloaded() {
+		ExpansionCost links = new ExpansionCost(1);
+		ExpansionCost backlinks = new ExpansionCost(1);
+		links.record(100000, 0, 0);
+		backlinks.record(100000, 0, 0);
+		
+		assertTrue(links.predict(10) < backlinks.predict(11));
+		assertTrue(links.predict(11) > backlinks.predict(10));
+	}
+}
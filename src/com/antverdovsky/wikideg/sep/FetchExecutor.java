@@ -0,0 +1,214 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shared pool on which the link fetching tasks of every search are run. The
+ * number of threads of the pool is the fetch budget of the whole process,
+ * and it is shared fairly between the searches which are running at once:
+ * each search queues its tasks separately, and a thread which becomes free
+ * takes the next task of the next search in turn. A deep search which has
+ * queued thousands of tasks thus never holds up a search which has only a
+ * few. The threads are created once and are reused by every level of every
+ * search, and a task which is slow to finish never holds up any task behind
+ * it, since any free thread takes the next task.
+ */
+class FetchExecutor {
+	// Default maximum number of fetching tasks which run at once. Fetching
+	// links is bound by I/O, so this is far above the number of processors.
+	static final int DEFAULT_CONCURRENCY = 128;
+
+	// Time after which an idle thread dies off
+	private static final long IDLE_MILLIS = 60 * 1000;
+
+	/**
+	 * The tasks which a single search has queued and which no thread has
+	 * taken yet.
+	 */
+	private static class Queue {
+		private Object owner;                // Search which owns the tasks
+		private ArrayDeque<Runnable> tasks;  // Tasks, in the order queued
+	}
+
+	private static int concurrency = DEFAULT_CONCURRENCY; // Max tasks at once
+	private static int threads = 0;  // Threads which are alive
+	private static int idle = 0;     // Threads waiting for a task
+	private static int pending = 0;  // Tasks which no thread has taken yet
+
+	// Queue of each search which has pending tasks, and the same queues in
+	// the order in which they take their turns
+	private static HashMap<Object, Queue> queues = new HashMap<Object, Queue>();
+	private static ArrayDeque<Queue> turns = new ArrayDeque<Queue>();
+
+	/**
+	 * Sets the maximum number of fetching tasks which may run at once. If
+	 * the maximum is lowered, threads die off as they finish their tasks
+	 * until no more than the maximum are alive.
+	 * @param n The maximum number of tasks, which must be positive.
+	 * @throws IllegalArgumentException If n is not positive.
+	 */
+	static synchronized void setConcurrency(int n) {
+		if (n <= 0) throw new IllegalArgumentException(
+				"Concurrency must be positive: " + n);
+
+		// Only a lowered maximum wakes the idle threads, so that those over
+		// the maximum die off
+		FetchExecutor.concurrency = n;
+		FetchExecutor.startThreads();
+		if (FetchExecutor.threads > n) FetchExecutor.class.notifyAll();
+	}
+
+	/**
+	 * Returns the maximum number of fetching tasks which may run at once.
+	 * @return The maximum number of tasks.
+	 */
+	static synchronized int getConcurrency() {
+		return FetchExecutor.concurrency;
+	}
+
+	/**
+	 * Runs each of the specified tasks on the shared pool, on behalf of the
+	 * specified search, and waits until all of them have finished. The tasks
+	 * of a search are run in the order in which they are given, taking turns
+	 * with the tasks of every other search. A task must not itself call this
+	 * method, since it would hold a thread of the pool while it waits.
+	 * @param owner The search on whose behalf the tasks are run, which may
+	 *              be any object that identifies the search.
+	 * @param tasks The tasks to be run.
+	 * @throws RuntimeException If any of the tasks threw, in which case the
+	 *                          first exception which was thrown is rethrown
+	 *                          once every task has finished.
+	 */
+	static void runAll(Object owner, List<? extends Runnable> tasks) {
+		if (tasks.isEmpty()) return;
+
+		CountDownLatch done = new CountDownLatch(tasks.size());
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		synchronized (FetchExecutor.class) {
+			Queue queue = FetchExecutor.queues.get(owner);
+			if (queue == null) {
+				queue = new Queue();
+				queue.owner = owner;
+				queue.tasks = new ArrayDeque<Runnable>();
+				FetchExecutor.queues.put(owner, queue);
+				FetchExecutor.turns.add(queue);
+			}
+
+			for (Runnable task : tasks) {
+				queue.tasks.add(() -> {
+					try {
+						task.run();
+					} catch (RuntimeException | Error e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				});
+			}
+
+			// Wake one idle thread for each task, rather than every idle thread
+			int wake = Math.min(tasks.size(), FetchExecutor.idle);
+			FetchExecutor.pending += tasks.size();
+			FetchExecutor.startThreads();
+			while (wake-- > 0) FetchExecutor.class.notify();
+		}
+
+		// Wait for every task, even if this thread is interrupted, since the
+		// tasks still write to the state of the search
+		boolean isInterrupted = false;
+		while (done.getCount() > 0) {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				isInterrupted = true;
+			}
+		}
+		if (isInterrupted) Thread.currentThread().interrupt();
+
+		Throwable e = failure.get();
+		if (e instanceof RuntimeException) throw (RuntimeException)e;
+		if (e instanceof Error) throw (Error)e;
+	}
+
+	/**
+	 * Starts a thread for each pending task which no idle thread can take,
+	 * without going over the maximum. Must be called while holding the lock
+	 * of the class.
+	 */
+	private static void startThreads() {
+		int needed = FetchExecutor.pending - FetchExecutor.idle;
+		while (needed-- > 0 &&
+				FetchExecutor.threads < FetchExecutor.concurrency) {
+			++FetchExecutor.threads;
+			++FetchExecutor.idle;
+
+			Thread thread = new Thread(FetchExecutor::work, "fetch");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Takes the next task of the search whose turn it is. The search then
+	 * goes to the back of the turns if it has any tasks left. Must be called
+	 * while holding the lock of the class, and only if a task is pending.
+	 * @return The task.
+	 */
+	private static Runnable take() {
+		Queue queue = FetchExecutor.turns.poll();
+		Runnable task = queue.tasks.poll();
+		if (queue.tasks.isEmpty()) FetchExecutor.queues.remove(queue.owner);
+		else FetchExecutor.turns.add(queue);
+
+		--FetchExecutor.pending;
+		return task;
+	}
+
+	/**
+	 * Runs pending tasks on the current thread, until the thread has been
+	 * idle for too long or there are more threads than the maximum.
+	 */
+	private static void work() {
+		// A new thread is counted as idle until it starts, so that no other
+		// thread is started for the task it is about to take
+		synchronized (FetchExecutor.class) {
+			--FetchExecutor.idle;
+		}
+
+		while (true) {
+			Runnable task;
+			synchronized (FetchExecutor.class) {
+				long idleSince = System.nanoTime();
+				while (FetchExecutor.pending == 0 &&
+						FetchExecutor.threads <= FetchExecutor.concurrency &&
+						System.nanoTime() - idleSince <
+						TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS)) {
+					++FetchExecutor.idle;
+					try {
+						FetchExecutor.class.wait(IDLE_MILLIS);
+					} catch (InterruptedException e) {
+						// Idle threads only die off once they time out
+					} finally {
+						--FetchExecutor.idle;
+					}
+				}
+
+				if (FetchExecutor.pending == 0 ||
+						FetchExecutor.threads > FetchExecutor.concurrency) {
+					--FetchExecutor.threads;
+					return;
+				}
+
+				task = FetchExecutor.take();
+			}
+
+			task.run();
+		}
+	}
+}
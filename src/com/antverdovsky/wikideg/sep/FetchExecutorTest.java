@@ -0,0 +1,123 @@
+package com.antverdovsky.wikideg.sep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Basic Testing of the FetchExecutor class.
+ */
+public class FetchExecutorTest {
+	@After
+	/**
+	 * Restores the concurrency of the executor.
+	 */
+	public void tearDown() {
+		FetchExecutor.setConcurrency(FetchExecutor.DEFAULT_CONCURRENCY);
+	}
+	
+	/**
+	 * Returns the specified number of tasks which each sleep for the
+	 * specified time and then count themselves.
+	 * @param n The number of tasks.
+	 * @param millis The time which each task sleeps, in milliseconds.
+	 * @param count The count of the tasks which have finished.
+	 * @return The tasks.
+	 */
+	private static List<Runnable> tasks(int n, long millis, 
+			AtomicInteger count) {
+		List<Runnable> tasks = new ArrayList<Runnable>(n);
+		for (int i = 0; i < n; ++i) {
+			tasks.add(() -> {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				count.incrementAndGet();
+			});
+		}
+		
+		return tasks;
+	}
+	
+	@Test
+	/**
+	 * Tests that a search which queues a few tasks behind a search which has
+	 * queued many takes turns with it, rather than waiting for all of its
+	 * tasks to finish. The only thread of the pool is held by the first task
+	 * of the deep search until the tasks of both searches are queued, so
+	 * that the order in which the tasks run is known.
+	 * @throws InterruptedException If the test was interrupted.
+	 */
+	public void testFairness() throws InterruptedException {
+		FetchExecutor.setConcurrency(1);
+		
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = Collections.synchronizedList(
+				new ArrayList<String>());
+		List<Runnable> deepTasks = new ArrayList<Runnable>();
+		deepTasks.add(() -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			order.add("deep");
+		});
+		for (int i = 1; i < 60; ++i) deepTasks.add(() -> order.add("deep"));
+		List<Runnable> shallowTasks = new ArrayList<Runnable>();
+		for (int i = 0; i < 4; ++i) shallowTasks.add(() -> order.add("shallow"));
+		
+		Thread deepSearch = new Thread(() -> 
+				FetchExecutor.runAll("deep", deepTasks));
+		deepSearch.start();
+		started.await();
+		
+		// The shallow search waits once its tasks are queued
+		Thread shallowSearch = new Thread(() -> 
+				FetchExecutor.runAll("shallow", shallowTasks));
+		shallowSearch.start();
+		while (shallowSearch.getState() != Thread.State.WAITING) 
+			Thread.yield();
+		
+		release.countDown();
+		deepSearch.join();
+		shallowSearch.join();
+		
+		assertEquals(64, order.size());
+		assertEquals(Arrays.asList("deep", "deep", "shallow", "deep", 
+				"shallow", "deep", "shallow", "deep", "shallow"), 
+				order.subList(0, 9));
+	}
+	
+	@Test
+	/**
+	 * Tests that a task which throws does not stop the other tasks, and that
+	 * its exception is thrown once every task has finished.
+	 */
+	public void testFailure() {
+		AtomicInteger count = new AtomicInteger();
+		List<Runnable> tasks = FetchExecutorTest.tasks(3, 10, count);
+		tasks.add(0, () -> { throw new IllegalStateException("Failed"); });
+		
+		try {
+			FetchExecutor.runAll("search", tasks);
+			fail("The exception of the task was not thrown.");
+		} catch (IllegalStateException e) {
+			assertEquals("Failed", e.getMessage());
+		}
+		assertEquals(3, count.get());
+	}
+}
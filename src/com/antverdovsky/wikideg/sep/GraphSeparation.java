@@ -0,0 +1,615 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.time.Duration;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.graph.LandmarkIndex;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.IntList;
+import com.antverdovsky.wikideg.util.Logger;
+import com.antverdovsky.wikideg.util.SearchTimeoutException;
+
+/**
+ * Computes and stores the separation between two articles of a local graph,
+ * such as one imported from the Wikipedia dumps. This is a fast path for
+ * {@link Separation}, which finds paths of the same length without fetching
+ * anything.
+ * The search is a bidirectional breadth first search over the numbers of
+ * the articles, whose visited sets are bitsets. Each level is expanded in
+ * parallel on the common fork/join pool. While the frontier of a side is
+ * small, it is expanded top down, by following the links of each article of
+ * the frontier. Once the frontier holds a large share of the links which
+ * are left, it is expanded bottom up instead, by looking for a parent in the
+ * frontier for each article which has not been visited yet, which stops at
+ * the first parent that is found.
+ * If a {@link LandmarkIndex} of the graph is set, the bounds it gives are
+ * used to prune the search: an article which is visited is not expanded
+ * any further if the lower bound on the rest of the path through it would
+ * make the path longer than the upper bound on the whole path. Since the
+ * articles of a shortest path are never pruned, the paths which are found
+ * are just as short.
+ */
+public class GraphSeparation implements AbstractSeparation {
+	// Switch to bottom up once the links of the frontier are more than one
+	// in ALPHA of the links left, and back to top down once the frontier
+	// holds fewer than one in BETA of the articles.
+	private static final int ALPHA = 14;
+	private static final int BETA = 24;
+	
+	// Number of articles expanded by a single task of a level
+	private static final int GRAIN = 1024;
+	
+	private static final int NONE = -1; // No meeting node has been found
+	
+	// Index used by every new search of its graph, or null if none is used
+	private static volatile LandmarkIndex landmarks = null;
+	
+	/**
+	 * One side of the search, which visits the articles from its own end.
+	 */
+	private class Side {
+		private LinkDirection direction; // Followed by top down expansion
+		private LinkDirection reverse;   // Followed by bottom up expansion
+		private AtomicLongArray visited; // Bitset of the visited articles
+		private int[] parents;           // Parent of each visited article
+		private int[] frontier;          // Articles visited at last level
+		private long frontierLinks;      // Links of the frontier
+		private long unexplored;         // Links of unvisited articles
+		private int level;               // Level of the frontier
+		private boolean isBottomUp;      // Expanded bottom up?
+		
+		/**
+		 * Creates a new side which starts at the specified article.
+		 * @param direction The direction of the links which it follows.
+		 * @param root The article at which the side starts.
+		 */
+		private Side(LinkDirection direction, int root) {
+			int nodes = GraphSeparation.this.graph.size();
+			
+			this.direction = direction;
+			this.reverse = (direction == LinkDirection.LINKS) ?
+					LinkDirection.BACKLINKS : LinkDirection.LINKS;
+			this.visited = new AtomicLongArray((nodes + 63) >>> 6);
+			this.parents = new int[nodes];
+			
+			this.frontier = new int[] { root };
+			this.frontierLinks = GraphSeparation.this.graph.getDegree(
+					direction, root);
+			this.unexplored = GraphSeparation.this.graph.getLinkCount() -
+					this.frontierLinks;
+			this.level = 0;
+			this.isBottomUp = false;
+			
+			this.visit(root, root);
+		}
+		
+		/**
+		 * Marks the specified article as visited, unless it already was.
+		 * @param node The article.
+		 * @param parent The article from which it was reached.
+		 * @return True if the article was marked. False if it had already
+		 *         been visited.
+		 */
+		private boolean visit(int node, int parent) {
+			int word = node >>> 6;
+			long bit = 1L << node;
+			while (true) {
+				long bits = this.visited.get(word);
+				if ((bits & bit) != 0) return false;
+				if (this.visited.compareAndSet(word, bits, bits | bit)) break;
+			}
+			
+			this.parents[node] = parent;
+			return true;
+		}
+		
+		/**
+		 * Checks if the specified article has been visited.
+		 * @param node The article.
+		 * @return True if the article has been visited. False otherwise.
+		 */
+		private boolean isVisited(int node) {
+			return (this.visited.get(node >>> 6) & (1L << node)) != 0;
+		}
+	}
+	
+	/**
+	 * Task which expands a range of a level of one side. Top down, the
+	 * range is of the frontier. Bottom up, it is of all of the articles.
+	 */
+	private class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private Side side;                     // The side being expanded
+		private Side other;                    // The other side
+		private long[] frontier;               // Bitset, bottom up only
+		private int from;                      // Start of the range
+		private int to;                        // End of the range
+		private ConcurrentLinkedQueue<IntList> found; // Newly visited
+		private LongAdder links;               // Links of newly visited
+		
+		/**
+		 * Creates a new task which expands the specified range.
+		 * @param side The side being expanded.
+		 * @param other The other side.
+		 * @param frontier The bitset of the frontier if the side is expanded
+		 *                 bottom up, or null otherwise.
+		 * @param from The start of the range.
+		 * @param to The end of the range, exclusive.
+		 * @param found Receives the articles which are visited.
+		 * @param links Receives the number of links of the articles which
+		 *              are visited.
+		 */
+		private LevelTask(Side side, Side other, long[] frontier, int from,
+				int to, ConcurrentLinkedQueue<IntList> found,
+				LongAdder links) {
+			this.side = side;
+			this.other = other;
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+			this.found = found;
+			this.links = links;
+		}
+		
+		@Override
+		/**
+		 * Expands the range, splitting it in half while it is larger than
+		 * the grain of a task.
+		 */
+		protected void compute() {
+			if (this.to - this.from > GRAIN) {
+				int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(
+						new LevelTask(this.side, this.other, this.frontier,
+								this.from, middle, this.found, this.links),
+						new LevelTask(this.side, this.other, this.frontier,
+								middle, this.to, this.found, this.links));
+				return;
+			}
+			
+			IntList visited = new IntList();
+			if (this.frontier == null) this.expandTopDown(visited);
+			else this.expandBottomUp(visited);
+			
+			if (!visited.isEmpty()) this.found.add(visited);
+		}
+		
+		/**
+		 * Visits the links of the articles of the range of the frontier.
+		 * @param visited Receives the articles which are visited.
+		 */
+		private void expandTopDown(IntList visited) {
+			IntGraph graph = GraphSeparation.this.graph;
+			LinkDirection direction = this.side.direction;
+			long links = 0;
+			
+			for (int i = this.from; i < this.to; ++i) {
+				if (GraphSeparation.this.meeting.get() != NONE) break;
+				
+				int node = this.side.frontier[i];
+				long end = graph.getLinksEnd(direction, node);
+				for (long p = graph.getLinksStart(direction, node); p < end;
+						++p) {
+					int link = graph.getLink(direction, p);
+					if (!this.side.visit(link, node)) continue;
+					
+					if (!GraphSeparation.this.isPruned(this.side, link)) {
+						visited.add(link);
+						links += graph.getDegree(direction, link);
+					}
+					if (this.other.isVisited(link)) {
+						GraphSeparation.this.meeting.compareAndSet(NONE, link);
+						break;
+					}
+				}
+			}
+			
+			this.links.add(links);
+		}
+		
+		/**
+		 * Looks for a parent in the frontier for each article of the range
+		 * which has not been visited yet.
+		 * @param visited Receives the articles which are visited.
+		 */
+		private void expandBottomUp(IntList visited) {
+			IntGraph graph = GraphSeparation.this.graph;
+			LinkDirection reverse = this.side.reverse;
+			long links = 0;
+			
+			for (int node = this.from; node < this.to; ++node) {
+				if (GraphSeparation.this.meeting.get() != NONE) break;
+				if (this.side.isVisited(node)) continue;
+				
+				long end = graph.getLinksEnd(reverse, node);
+				for (long p = graph.getLinksStart(reverse, node); p < end;
+						++p) {
+					int parent = graph.getLink(reverse, p);
+					if ((this.frontier[parent >>> 6] & (1L << parent)) == 0)
+						continue;
+					
+					this.side.visit(node, parent);
+					if (!GraphSeparation.this.isPruned(this.side, node)) {
+						visited.add(node);
+						links += graph.getDegree(this.side.direction, node);
+					}
+					if (this.other.isVisited(node)) {
+						GraphSeparation.this.meeting.compareAndSet(NONE,
+								node);
+					}
+					break;
+				}
+			}
+			
+			this.links.add(links);
+		}
+	}
+	
+	private int numDegrees;             // Degrees of Separation
+	private Stack<String> path;         // Path by article names
+	private Stack<String> embeddedPath; // Path by embedded article names
+	private boolean pathExists;         // Does a path exist?
+	
+	private IntGraph graph;             // Graph which is searched
+	private AtomicInteger meeting;      // Article where the sides met
+	
+	private LandmarkIndex index;        // Index of the graph, or null
+	private int startNode;              // Article where the path starts
+	private int endNode;                // Article where the path ends
+	private int maxDegrees;             // Bound on the length of the path
+	private int forwardLimit;           // Largest lower bound to the end
+	private int backwardLimit;          // Largest lower bound from the start
+	
+	private Duration timeout;           // Time allowed, or null if unlimited
+	private long startTime;             // Time at which the search started
+	private boolean isTimedOut;         // Did the search run out of time?
+	
+	/**
+	 * Sets the landmark index which is used by every new search of the
+	 * graph of the index. Searches of any other graph do not use it.
+	 * @param index The index, or null if no index is to be used.
+	 */
+	public static void setLandmarkIndex(LandmarkIndex index) {
+		GraphSeparation.landmarks = index;
+	}
+	
+	/**
+	 * Returns the landmark index which is used by every new search of the
+	 * graph of the index.
+	 * @return The index, or null if no index is used.
+	 */
+	public static LandmarkIndex getLandmarkIndex() {
+		return GraphSeparation.landmarks;
+	}
+	
+	/**
+	 * Returns whether or not the end article is at most the specified number
+	 * of degrees of separation from the start article. If the landmark index
+	 * of the graph is set, its bounds usually answer at once. Otherwise, a
+	 * search which never goes past the number of degrees is run.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @param maxDegrees The number of degrees.
+	 * @return True if there is a path of at most the number of degrees.
+	 *         False otherwise.
+	 */
+	public static boolean isWithin(IntGraph graph, String start, String end,
+			int maxDegrees) {
+		LandmarkIndex index = GraphSeparation.landmarks;
+		int startNode = graph.find(start);
+		int endNode = graph.find(end);
+		if (startNode == IntGraph.NOT_FOUND || endNode == IntGraph.NOT_FOUND)
+			return false;
+		
+		if (index != null && index.getGraph() == graph) {
+			int lower = index.getLowerBound(startNode, endNode);
+			if (lower == LandmarkIndex.UNREACHABLE || lower > maxDegrees)
+				return false;
+			int upper = index.getUpperBound(startNode, endNode);
+			if (upper != LandmarkIndex.UNREACHABLE && upper <= maxDegrees)
+				return true;
+		}
+		
+		return new GraphSeparation(graph, start, end, maxDegrees)
+				.getPathExists();
+	}
+	
+	/**
+	 * Creates a new Separation class and computes the path from the starting
+	 * article to the ending article over the specified graph.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @param end The end article.
+	 */
+	public GraphSeparation(IntGraph graph, String start, String end) {
+		this(graph, start, end, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Creates a new Separation class and computes the path from the starting
+	 * article to the ending article over the specified graph, if there is a
+	 * path of at most the specified number of degrees of separation.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @param maxDegrees The maximum number of degrees of separation. No path
+	 *                   is found if every path is longer.
+	 */
+	public GraphSeparation(IntGraph graph, String start, String end,
+			int maxDegrees) {
+		this(graph, start, end, maxDegrees, null);
+	}
+	
+	/**
+	 * Creates a new Separation class and computes the path from the starting
+	 * article to the ending article over the specified graph, giving up once
+	 * the specified time has passed. The time is checked before each level
+	 * of the search is expanded.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @param timeout The time which the search may take, or null if the
+	 *                search may take as long as it needs.
+	 * @throws SearchTimeoutException If the path was not found in time.
+	 */
+	public GraphSeparation(IntGraph graph, String start, String end,
+			Duration timeout) throws SearchTimeoutException {
+		this(graph, start, end, Integer.MAX_VALUE, timeout);
+		
+		if (this.isTimedOut) {
+			throw new SearchTimeoutException("The search timed out after " + 
+					timeout.toMillis() + "ms.");
+		}
+	}
+	
+	/**
+	 * Creates a new Separation class and computes the path from the starting
+	 * article to the ending article over the specified graph, if there is a
+	 * path of at most the specified number of degrees of separation, and it
+	 * is found in the specified time.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @param maxDegrees The maximum number of degrees of separation.
+	 * @param timeout The time which the search may take, or null if the
+	 *                search may take as long as it needs.
+	 */
+	private GraphSeparation(IntGraph graph, String start, String end,
+			int maxDegrees, Duration timeout) {
+		this.timeout = timeout;
+		this.startTime = System.nanoTime();
+		this.isTimedOut = false;
+		
+		this.numDegrees = 0;
+		this.path = new Stack<String>();
+		this.embeddedPath = new Stack<String>();
+		this.pathExists = false;
+		
+		this.graph = graph;
+		this.meeting = new AtomicInteger(NONE);
+		
+		this.startNode = graph.find(start);
+		this.endNode = graph.find(end);
+		this.maxDegrees = maxDegrees;
+		if (this.startNode == IntGraph.NOT_FOUND || 
+				this.endNode == IntGraph.NOT_FOUND) {
+			Logger.logLine("\tThe start or end article is not in the graph! " +
+					"Unable to complete the path.");
+			return;
+		}
+		
+		// Bound the length of the path by the landmarks, if the graph has
+		// an index
+		LandmarkIndex index = GraphSeparation.landmarks;
+		if (index != null && index.getGraph() == graph) {
+			this.index = index;
+			int lower = index.getLowerBound(this.startNode, this.endNode);
+			int upper = index.getUpperBound(this.startNode, this.endNode);
+			Logger.logLine("\tThe landmarks bound the path to " + lower + 
+					" to " + upper + " degrees.");
+			
+			if (lower == LandmarkIndex.UNREACHABLE || 
+					lower > this.maxDegrees) {
+				Logger.logLine("\tThe landmarks prove there is no path " +
+						"short enough! Unable to complete the path.");
+				return;
+			}
+			this.maxDegrees = Math.min(this.maxDegrees, upper);
+			this.forwardLimit = index.getMaxLowerBoundTo(this.endNode);
+			this.backwardLimit = index.getMaxLowerBoundFrom(this.startNode);
+		}
+		
+		Side forward = new Side(LinkDirection.LINKS, this.startNode);
+		Side backward = new Side(LinkDirection.BACKLINKS, this.endNode);
+		if (this.startNode == this.endNode) this.meeting.set(this.startNode);
+		
+		// Grow the side whose frontier has fewer links, until they meet
+		while (this.meeting.get() == NONE) {
+			if (forward.frontier.length == 0 ||
+					backward.frontier.length == 0) {
+				Logger.logLine("\tOne side of the graph cannot be grown " +
+						"any further! Unable to complete the path.");
+				return;
+			}
+			if (forward.level + backward.level >= this.maxDegrees) {
+				Logger.logLine("\tNo path of at most " + this.maxDegrees + 
+						" degrees exists! Unable to complete the path.");
+				return;
+			}
+			if (this.timeout != null && System.nanoTime() - this.startTime >=
+					this.timeout.toNanos()) {
+				Logger.logLine("\tThe search ran out of time! Unable to " +
+						"complete the path.");
+				this.isTimedOut = true;
+				return;
+			}
+			
+			if (forward.frontierLinks <= backward.frontierLinks)
+				this.expand(forward, backward);
+			else this.expand(backward, forward);
+		}
+		
+		this.numDegrees = forward.level + backward.level;
+		this.buildPath(forward, backward, start, end);
+		this.pathExists = true;
+	}
+	
+	@Override
+	/**
+	 * Returns the number of degrees of separation between two articles.
+	 * @return The degrees of separation.
+	 */
+	public int getNumDegrees() {
+		return this.numDegrees;
+	}
+	
+	@Override
+	/**
+	 * Returns the embedded path between two articles. Since the local graph
+	 * holds no anchor text, each article is embedded under its own title.
+	 * @return The embedded path.
+	 */
+	public Stack<String> getEmbeddedPath() {
+		return this.embeddedPath;
+	}
+	
+	@Override
+	/**
+	 * Returns the path between two articles.
+	 * @return The path.
+	 */
+	public Stack<String> getPath() {
+		return this.path;
+	}
+	
+	@Override
+	/**
+	 * Returns whether or not a path was found.
+	 * @return True if a path was found. False otherwise.
+	 */
+	public boolean getPathExists() {
+		return this.pathExists;
+	}
+	
+	/**
+	 * Expands the frontier of the specified side by one level, choosing
+	 * between top down and bottom up expansion by the size of the frontier.
+	 * @param side The side to be expanded.
+	 * @param other The other side.
+	 */
+	private void expand(Side side, Side other) {
+		int nodes = this.graph.size();
+		if (!side.isBottomUp && side.frontierLinks > side.unexplored / ALPHA)
+			side.isBottomUp = true;
+		else if (side.isBottomUp && side.frontier.length < nodes / BETA)
+			side.isBottomUp = false;
+		
+		long[] bits = null;
+		int size = side.frontier.length;
+		if (side.isBottomUp) {
+			bits = new long[(nodes + 63) >>> 6];
+			for (int node : side.frontier) bits[node >>> 6] |= 1L << node;
+			size = nodes;
+		}
+		
+		ConcurrentLinkedQueue<IntList> found =
+				new ConcurrentLinkedQueue<IntList>();
+		LongAdder links = new LongAdder();
+		ForkJoinPool.commonPool().invoke(new LevelTask(side, other, bits,
+				0, size, found, links));
+		
+		// Concatenate the articles visited by each task into the frontier
+		int count = 0;
+		for (IntList list : found) count += list.size();
+		int[] frontier = new int[count];
+		int i = 0;
+		for (IntList list : found)
+			for (int j = 0; j < list.size(); ++j) frontier[i++] = list.get(j);
+		
+		side.frontier = frontier;
+		side.frontierLinks = links.sum();
+		side.unexplored -= side.frontierLinks;
+		++side.level;
+		
+		Logger.logLine("\tExpanded the " + side.direction + " side " +
+				(side.isBottomUp ? "bottom up" : "top down") + " to level " +
+				side.level + ", visiting " + count + " articles.");
+	}
+	
+	/**
+	 * Checks if the specified article, which has just been visited by the
+	 * specified side, can be left out of the frontier of the side. It can
+	 * if the lower bound on the length of any path through it is longer than
+	 * the bound on the length of the path.
+	 * @param side The side which visited the article.
+	 * @param node The article.
+	 * @return True if the article is pruned. False otherwise.
+	 */
+	private boolean isPruned(Side side, int node) {
+		if (this.index == null) return false;
+		
+		// Skip the lookup while no article of the level can be pruned
+		boolean isForward = side.direction == LinkDirection.LINKS;
+		int limit = isForward ? this.forwardLimit : this.backwardLimit;
+		if (limit != LandmarkIndex.UNREACHABLE &&
+				(long)side.level + 1 + limit <= this.maxDegrees) {
+			return false;
+		}
+		
+		// Skip the lookup of an article with too few links to be worth it
+		if (this.graph.getDegree(side.direction, node) < this.index.size())
+			return false;
+		
+		int lower = isForward ?
+				this.index.getLowerBound(node, this.endNode) :
+				this.index.getLowerBound(this.startNode, node);
+		return lower == LandmarkIndex.UNREACHABLE ||
+				(long)side.level + 1 + lower > this.maxDegrees;
+	}
+	
+	/**
+	 * Builds the path through the article where the two sides met. The
+	 * start and end of the path are the titles of the start and end
+	 * articles, as they were specified.
+	 * @param forward The side of the start article.
+	 * @param backward The side of the end article.
+	 * @param start The start article.
+	 * @param end The end article.
+	 */
+	private void buildPath(Side forward, Side backward, String start,
+			String end) {
+		int middle = this.meeting.get();
+		
+		// Back trace the predecessors, up to the start article
+		Stack<String> backtrace = new Stack<String>();
+		for (int node = middle; forward.parents[node] != node;
+				node = forward.parents[node]) {
+			backtrace.push(this.graph.getTitle(node));
+		}
+		this.path.push(start);
+		while (!backtrace.isEmpty()) this.path.push(backtrace.pop());
+		
+		// Follow the successors, up to the end article
+		for (int node = middle; backward.parents[node] != node;
+				node = backward.parents[node]) {
+			this.path.push(this.graph.getTitle(backward.parents[node]));
+		}
+		
+		// The ends are the articles as they were specified
+		if (this.path.size() > 1) {
+			this.path.pop();
+			this.path.push(end);
+		}
+		for (int j = 1; j < this.path.size(); ++j)
+			this.embeddedPath.push(this.path.get(j));
+	}
+}
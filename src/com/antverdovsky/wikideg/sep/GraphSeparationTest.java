@@ -0,0 +1,305 @@
+package com.antverdovsky.wikideg.sep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.antverdovsky.wikideg.graph.ArrayGraph;
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.graph.LandmarkIndex;
+import com.antverdovsky.wikideg.graph.TestGraphs;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.SearchTimeoutException;
+
+/**
+ * Basic Testing of the GraphSeparation and ArrayGraph classes.
+ */
+public class GraphSeparationTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Rule
+	public TestFetchers fetchers = new TestFetchers();
+	
+	/**
+	 * Graph which counts the lookups of the links of its articles.
+	 */
+	private static class CountingGraph implements IntGraph {
+		private IntGraph graph;  // The graph whose links are counted
+		private long lookups;    // Number of lookups of links
+		
+		/**
+		 * Creates a new counting graph.
+		 * @param graph The graph whose links are counted.
+		 */
+		private CountingGraph(IntGraph graph) {
+			this.graph = graph;
+			this.lookups = 0;
+		}
+		
+		@Override
+		/**
+		 * Returns the number of articles of the graph.
+		 */
+		public int size() {
+			return this.graph.size();
+		}
+		
+		@Override
+		/**
+		 * Returns the number of links of the graph.
+		 */
+		public long getLinkCount() {
+			return this.graph.getLinkCount();
+		}
+		
+		@Override
+		/**
+		 * Returns the number of the article with the specified title.
+		 */
+		public int find(String title) {
+			return this.graph.find(title);
+		}
+		
+		@Override
+		/**
+		 * Returns the title of the specified article.
+		 */
+		public String getTitle(int node) {
+			return this.graph.getTitle(node);
+		}
+		
+		@Override
+		/**
+		 * Counts the lookup, and returns the position of the first link of
+		 * the specified article.
+		 */
+		public synchronized long getLinksStart(LinkDirection direction, 
+				int node) {
+			++this.lookups;
+			return this.graph.getLinksStart(direction, node);
+		}
+		
+		@Override
+		/**
+		 * Counts the lookup, and returns the position after the last link
+		 * of the specified article.
+		 */
+		public synchronized long getLinksEnd(LinkDirection direction, 
+				int node) {
+			++this.lookups;
+			return this.graph.getLinksEnd(direction, node);
+		}
+		
+		@Override
+		/**
+		 * Counts the lookup, and returns the link at the specified position.
+		 */
+		public synchronized int getLink(LinkDirection direction, 
+				long position) {
+			++this.lookups;
+			return this.graph.getLink(direction, position);
+		}
+	}
+	
+	@After
+	/**
+	 * Clears the landmark index of the GraphSeparation class.
+	 */
+	public void tearDown() {
+		GraphSeparation.setLandmarkIndex(null);
+	}
+	
+	@Test
+	/**
+	 * Tests that the paths found over random graphs, of which some are
+	 * sparse enough to be searched top down only and some are dense enough
+	 * to be searched bottom up, are as short as the paths found by a plain
+	 * breadth first search and by the Separation class.
+	 * @throws IOException If the Separation class failed to fetch links.
+	 */
+	public void testRandomGraphs() throws IOException {
+		Random random = new Random(42);
+		
+		for (int maxLinks : new int[] { 2, 3, 16 }) {
+			ArrayGraph graph = TestGraphs.randomGraph(3000, maxLinks,
+					maxLinks);
+			this.fetchers.useGraph(graph);
+			
+			for (int i = 0; i < 40; ++i) {
+				int start = random.nextInt(graph.size());
+				int end = random.nextInt(graph.size());
+				String startTitle = graph.getTitle(start);
+				String endTitle = graph.getTitle(end);
+				
+				int distance = TestGraphs.distances(graph, start)[end];
+				GraphSeparation separation = new GraphSeparation(graph,
+						startTitle, endTitle);
+				Separation expected = new Separation(startTitle, endTitle);
+				
+				assertEquals(distance >= 0, separation.getPathExists());
+				assertEquals(expected.getPathExists(),
+						separation.getPathExists());
+				if (distance < 0) continue;
+				
+				assertEquals(distance, separation.getNumDegrees());
+				assertEquals(expected.getNumDegrees(),
+						separation.getNumDegrees());
+				
+				Stack<String> path = separation.getPath();
+				assertEquals(distance + 1, path.size());
+				assertEquals(startTitle, path.firstElement());
+				assertEquals(endTitle, path.lastElement());
+				assertEquals(distance, separation.getEmbeddedPath().size());
+				TestGraphs.assertLinked(graph, path);
+			}
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that the paths found over random graphs with a landmark index,
+	 * which prunes the searches, are as short as the paths found by a plain
+	 * breadth first search, that the searches and the landmarks answer
+	 * whether a path is at most a number of degrees, and that a pair which
+	 * the landmarks prove to be unreachable is not searched at all.
+	 */
+	public void testLandmarks() {
+		Random random = new Random(3);
+		
+		for (int maxLinks : new int[] { 2, 3, 16 }) {
+			ArrayGraph graph = TestGraphs.randomGraph(3000, maxLinks,
+					maxLinks);
+			GraphSeparation.setLandmarkIndex(LandmarkIndex.build(graph, 8));
+			
+			for (int i = 0; i < 40; ++i) {
+				int start = random.nextInt(graph.size());
+				int end = random.nextInt(graph.size());
+				String startTitle = graph.getTitle(start);
+				String endTitle = graph.getTitle(end);
+				
+				int distance = TestGraphs.distances(graph, start)[end];
+				GraphSeparation separation = new GraphSeparation(graph,
+						startTitle, endTitle);
+				assertEquals(distance >= 0, separation.getPathExists());
+				for (int k = 0; k < 8; ++k) {
+					assertEquals(distance >= 0 && distance <= k,
+							GraphSeparation.isWithin(graph, startTitle,
+									endTitle, k));
+				}
+				if (distance < 0) continue;
+				
+				assertEquals(distance, separation.getNumDegrees());
+				Stack<String> path = separation.getPath();
+				assertEquals(distance + 1, path.size());
+				TestGraphs.assertLinked(graph, path);
+				
+				// A bound below the distance leaves no path at all
+				assertFalse(new GraphSeparation(graph, startTitle, endTitle,
+						distance - 1).getPathExists());
+				assertEquals(distance, new GraphSeparation(graph, startTitle,
+						endTitle, distance).getNumDegrees());
+			}
+		}
+		
+		// A pair which the landmarks prove to be unreachable is answered
+		// without expanding the graph, even with the default bound
+		CountingGraph graph = new CountingGraph(TestGraphs.randomGraph(3000, 
+				2, 2));
+		LandmarkIndex index = LandmarkIndex.build(graph, 8);
+		GraphSeparation.setLandmarkIndex(index);
+		int start = 0, end = 0;
+		while (index.getLowerBound(start, end) != LandmarkIndex.UNREACHABLE) {
+			start = random.nextInt(graph.size());
+			end = random.nextInt(graph.size());
+		}
+		
+		graph.lookups = 0;
+		assertFalse(new GraphSeparation(graph, graph.getTitle(start),
+				graph.getTitle(end)).getPathExists());
+		assertFalse(GraphSeparation.isWithin(graph, graph.getTitle(start),
+				graph.getTitle(end), Integer.MAX_VALUE));
+		assertEquals(0, graph.lookups);
+	}
+	
+	@Test
+	/**
+	 * Tests that a search which runs out of time gives up, and that one
+	 * with enough time finds the same path as one without a deadline.
+	 * @throws SearchTimeoutException If the search with enough time ran
+	 *                                out of it.
+	 */
+	public void testTimeout() throws SearchTimeoutException {
+		ArrayGraph graph = TestGraphs.randomGraph(3000, 3, 3);
+		int end = 1;
+		while (TestGraphs.distances(graph, 0)[end] < 2) ++end;
+		String endTitle = graph.getTitle(end);
+		
+		try {
+			new GraphSeparation(graph, graph.getTitle(0), endTitle,
+					Duration.ZERO);
+			fail("The search did not time out.");
+		} catch (SearchTimeoutException e) {
+			// Expected
+		}
+		
+		GraphSeparation separation = new GraphSeparation(graph,
+				graph.getTitle(0), endTitle, Duration.ofSeconds(30));
+		assertEquals(new GraphSeparation(graph, graph.getTitle(0),
+				endTitle).getPath(), separation.getPath());
+	}
+	
+	@Test
+	/**
+	 * Tests reading a graph from a file of links, and searching it with
+	 * titles which differ in case from those in the file.
+	 * @throws IOException If the file could not be written or read.
+	 */
+	public void testReadGraph() throws IOException {
+		Path file = this.folder.getRoot().toPath().resolve("links.tsv");
+		Files.write(file, Arrays.asList(
+				"# Links of a few articles",
+				"Poland\tWarsaw",
+				"Warsaw\tVistula",
+				"",
+				"Vistula\tBaltic Sea",
+				"Poland\tBaltic Sea",
+				"Krak\u00f3w\tVistula"), StandardCharsets.UTF_8);
+		
+		ArrayGraph graph = ArrayGraph.read(file);
+		assertEquals(5, graph.size());
+		assertEquals(5, graph.getLinkCount());
+		assertEquals("Krak\u00f3w", graph.getTitle(graph.find("krak\u00f3w")));
+		
+		GraphSeparation separation = new GraphSeparation(graph, "poland",
+				"Vistula");
+		assertTrue(separation.getPathExists());
+		assertEquals(2, separation.getNumDegrees());
+		assertEquals(Arrays.asList("poland", "Warsaw", "Vistula"),
+				separation.getPath());
+		
+		separation = new GraphSeparation(graph, "Poland", "poland");
+		assertTrue(separation.getPathExists());
+		assertEquals(0, separation.getNumDegrees());
+		
+		assertFalse(new GraphSeparation(graph, "Baltic Sea", "Poland")
+				.getPathExists());
+		assertFalse(new GraphSeparation(graph, "Poland", "Lviv")
+				.getPathExists());
+	}
+}
@@ -0,0 +1,89 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleDictionary;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Fetches all of the links of a whole level of a search, in batches which
+ * are run on the shared fetch executor, and interns the fetched links as
+ * IDs. Unlike the levels of a Separation, which leave out the articles
+ * whose links could not be fetched, a level is only returned if every one
+ * of its batches was fetched.
+ */
+class LevelFetcher {
+	/**
+	 * Fetches the links of each of the specified articles, in parallel.
+	 * @param fetcher The fetcher of the links.
+	 * @param dictionary The dictionary in which all titles are interned.
+	 * @param ids The IDs of the articles.
+	 * @param token The cancellation token of the search, which also owns
+	 *              the tasks of the level on the fetch executor.
+	 * @return The IDs of the links of each article, by its ID.
+	 * @throws IOException If the links of any batch could not be fetched,
+	 *                     in which case the first exception which was
+	 *                     thrown is rethrown once every batch has finished.
+	 */
+	static Map<Integer, int[]> fetch(AbstractLinkFetcher fetcher,
+			TitleDictionary dictionary, int[] ids, CancellationToken token)
+			throws IOException {
+		ConcurrentHashMap<Integer, int[]> links =
+				new ConcurrentHashMap<Integer, int[]>();
+		AtomicReference<IOException> failure =
+				new AtomicReference<IOException>();
+		TitleSet none = TitleSet.of(dictionary, new int[0]);
+		
+		int batchSize = fetcher.getBatchSize();
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int from = 0; from < ids.length; from += batchSize) {
+			List<String> batch = new ArrayList<String>(batchSize);
+			for (int i = from; i < Math.min(ids.length, from + batchSize); ++i)
+				batch.add(dictionary.getTitle(ids[i]));
+			
+			tasks.add(() -> {
+				HashMap<String, ArrayList<String>> fetched;
+				try {
+					fetched = fetcher.getLinks(batch, none, token);
+				} catch (IOException e) {
+					failure.compareAndSet(null, e);
+					return;
+				}
+				
+				for (Map.Entry<String, ArrayList<String>> linksOf :
+						fetched.entrySet()) {
+					links.put(dictionary.intern(linksOf.getKey()),
+							LevelFetcher.internAll(dictionary,
+									linksOf.getValue()));
+				}
+			});
+		}
+		
+		FetchExecutor.runAll(token, tasks);
+		if (failure.get() != null) throw failure.get();
+		
+		return links;
+	}
+	
+	/**
+	 * Interns each of the specified titles in the dictionary.
+	 * @param dictionary The dictionary.
+	 * @param titles The titles.
+	 * @return The IDs of the titles.
+	 */
+	static int[] internAll(TitleDictionary dictionary, List<String> titles) {
+		int[] ids = new int[titles.size()];
+		for (int i = 0; i < ids.length; ++i)
+			ids[i] = dictionary.intern(titles.get(i));
+		
+		return ids;
+	}
+}
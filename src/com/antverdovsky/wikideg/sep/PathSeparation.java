@@ -0,0 +1,83 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.util.List;
+import java.util.Stack;
+
+import com.antverdovsky.wikideg.linkfetch.AnchorCache;
+
+/**
+ * Separation between two articles along a path which has already been
+ * found, such as one of the paths found by a search from one article to
+ * many. The embedded names of the articles of the path are those recorded
+ * in the shared {@link AnchorCache} while the path was searched for. The
+ * articles whose embedded names were not recorded are embedded under their
+ * own names, so that nothing is downloaded for them.
+ */
+public class PathSeparation implements AbstractSeparation {
+	private Stack<String> path;         // Path by article names
+	private Stack<String> embeddedPath; // Path by embedded article names
+	
+	/**
+	 * Creates a new separation between two articles between which no path
+	 * was found.
+	 */
+	public PathSeparation() {
+		this.path = new Stack<String>();
+		this.embeddedPath = new Stack<String>();
+	}
+	
+	/**
+	 * Creates a new separation along the specified path.
+	 * @param path The path, from the start article up to and including the
+	 *             end article.
+	 */
+	public PathSeparation(List<String> path) {
+		this();
+		
+		for (int i = 0; i < path.size(); ++i) {
+			this.path.push(path.get(i));
+			if (i == 0) continue;
+			
+			String embedded = AnchorCache.getShared().get(path.get(i - 1),
+					path.get(i));
+			this.embeddedPath.push((embedded != null) ? embedded :
+				path.get(i));
+		}
+	}
+	
+	@Override
+	/**
+	 * Returns the number of degrees of separation between two articles.
+	 * @return The degrees of separation, or zero if no path was found.
+	 */
+	public int getNumDegrees() {
+		return Math.max(0, this.path.size() - 1);
+	}
+	
+	@Override
+	/**
+	 * Returns the embedded path between two articles.
+	 * @return The embedded path.
+	 */
+	public Stack<String> getEmbeddedPath() {
+		return this.embeddedPath;
+	}
+	
+	@Override
+	/**
+	 * Returns the path between two articles.
+	 * @return The path.
+	 */
+	public Stack<String> getPath() {
+		return this.path;
+	}
+	
+	@Override
+	/**
+	 * Returns whether or not a path was found.
+	 * @return True if a path was found. False otherwise.
+	 */
+	public boolean getPathExists() {
+		return !this.path.isEmpty();
+	}
+}
@@ -0,0 +1,336 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Bounded, least recently used cache of the backward trees which searches
+ * have grown from their end articles. A backward tree holds every article
+ * within a number of levels of backlinks of its end article, along with
+ * the successor of each article towards the end article. Most searches end
+ * at a few popular articles, so a search which ends at one of them starts
+ * from the cached tree rather than fetching the same backlinks once more,
+ * and only grows its forward side unless the tree is too shallow. A search
+ * which grows the tree by another level replaces it with the deeper tree.
+ * Only levels which were fetched in full are ever cached, and a tree is
+ * only used by searches whose backlinks fetcher is the one which grew it.
+ * A single shared cache is used by every search in the process.
+ */
+public class ReverseTreeCache {
+	// Default bound of the memory used by the shared cache, in bytes
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	
+	// Fraction of the bound which a single tree may use, so that the levels
+	// of one huge tree never flush every other tree from the cache
+	private static final int MAX_TREE_SHARE = 4;
+	
+	// Estimated memory used by a tree, and by each of its articles besides
+	// the chars of its title
+	private static final int TREE_OVERHEAD = 128;
+	private static final int NODE_OVERHEAD = 56;
+	
+	private static final ReverseTreeCache SHARED = new ReverseTreeCache(
+			DEFAULT_MAX_BYTES);
+	
+	/**
+	 * Immutable backward tree of a single end article. The articles of the
+	 * tree are numbered level by level, so the end article is article 0 and
+	 * the articles of each level directly follow those of the level before.
+	 */
+	public static class Tree {
+		private AbstractLinkFetcher fetcher; // Fetcher which grew the tree
+		private String[] titles;             // Title of each article
+		private int[] successors;            // Successor of each article
+		private int[] levelEnds;             // End of each level
+		private long[] levelBytes;           // Memory used up to each level
+		
+		/**
+		 * Creates a new backward tree.
+		 * @param fetcher The backlinks fetcher which grew the tree.
+		 * @param titles The title of each article, level by level, starting
+		 *               with the end article.
+		 * @param successors The number of the successor of each article,
+		 *                   which is in the level before that of the
+		 *                   article. The end article is its own successor.
+		 * @param levelEnds The number of articles up to the end of each
+		 *                  level, starting with level 0, which only holds
+		 *                  the end article.
+		 */
+		Tree(AbstractLinkFetcher fetcher, String[] titles, int[] successors,
+				int[] levelEnds) {
+			this.fetcher = fetcher;
+			this.titles = titles;
+			this.successors = successors;
+			this.levelEnds = levelEnds;
+			
+			this.levelBytes = new long[levelEnds.length];
+			long bytes = TREE_OVERHEAD;
+			for (int level = 0, i = 0; level < levelEnds.length; ++level) {
+				for (; i < levelEnds[level]; ++i)
+					bytes += NODE_OVERHEAD + 2L * titles[i].length();
+				this.levelBytes[level] = bytes;
+			}
+		}
+		
+		/**
+		 * Returns the number of levels of backlinks held by the tree.
+		 * @return The depth of the tree.
+		 */
+		public int getDepth() {
+			return this.levelEnds.length - 1;
+		}
+		
+		/**
+		 * Returns whether or not the tree holds every article from which the
+		 * end article can be reached, since its last level is empty.
+		 * @return True if the tree is complete. False otherwise.
+		 */
+		public boolean getIsComplete() {
+			return this.getLevelStart(this.getDepth()) ==
+					this.getLevelEnd(this.getDepth());
+		}
+		
+		/**
+		 * Returns the number of articles in the tree.
+		 * @return The number of articles.
+		 */
+		public int size() {
+			return this.titles.length;
+		}
+		
+		/**
+		 * Returns the title of the specified article.
+		 * @param node The number of the article.
+		 * @return The title.
+		 */
+		public String getTitle(int node) {
+			return this.titles[node];
+		}
+		
+		/**
+		 * Returns the successor of the specified article, which links to the
+		 * next article on the path to the end article.
+		 * @param node The number of the article.
+		 * @return The number of the successor.
+		 */
+		public int getSuccessor(int node) {
+			return this.successors[node];
+		}
+		
+		/**
+		 * Returns the number of the first article of the specified level.
+		 * @param level The level.
+		 * @return The number of the first article.
+		 */
+		public int getLevelStart(int level) {
+			return (level == 0) ? 0 : this.levelEnds[level - 1];
+		}
+		
+		/**
+		 * Returns the number past the last article of the specified level.
+		 * @param level The level.
+		 * @return The number past the last article.
+		 */
+		public int getLevelEnd(int level) {
+			return this.levelEnds[level];
+		}
+		
+		/**
+		 * Returns the estimated memory used by the tree.
+		 * @return The estimated memory, in bytes.
+		 */
+		public long getBytes() {
+			return this.levelBytes[this.getDepth()];
+		}
+		
+		/**
+		 * Returns the tree cut down to the specified number of levels.
+		 * @param depth The number of levels to keep.
+		 * @return The cut down tree, or this tree if it is no deeper.
+		 */
+		private Tree truncate(int depth) {
+			if (depth >= this.getDepth()) return this;
+			
+			int nodes = this.levelEnds[depth];
+			String[] titles = new String[nodes];
+			int[] successors = new int[nodes];
+			System.arraycopy(this.titles, 0, titles, 0, nodes);
+			System.arraycopy(this.successors, 0, successors, 0, nodes);
+			int[] levelEnds = new int[depth + 1];
+			System.arraycopy(this.levelEnds, 0, levelEnds, 0, depth + 1);
+			
+			return new Tree(this.fetcher, titles, successors, levelEnds);
+		}
+	}
+	
+	private LinkedHashMap<String, Tree> trees; // Trees, in access order
+	private long maxBytes;                     // Bound of memory used
+	private long bytes;                        // Estimated memory used
+	
+	private LongAdder hits;                    // Lookups which were found
+	private LongAdder misses;                  // Lookups which were not
+	private LongAdder evictions;               // Trees which were evicted
+	
+	/**
+	 * Creates a new, empty cache.
+	 * @param maxBytes The bound of the estimated memory used by the cache,
+	 *                 in bytes.
+	 * @throws IllegalArgumentException If maxBytes is negative.
+	 */
+	public ReverseTreeCache(long maxBytes) {
+		if (maxBytes < 0) throw new IllegalArgumentException(
+				"Maximum size must not be negative: " + maxBytes);
+		
+		this.trees = new LinkedHashMap<String, Tree>(16, 0.75f, true);
+		this.maxBytes = maxBytes;
+		this.bytes = 0;
+		
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+	
+	/**
+	 * Returns the cache which is shared by every search in the process.
+	 * @return The shared cache.
+	 */
+	public static ReverseTreeCache getShared() {
+		return ReverseTreeCache.SHARED;
+	}
+	
+	/**
+	 * Returns the cached backward tree of the specified end article.
+	 * @param end The title of the end article.
+	 * @param fetcher The backlinks fetcher of the search. A tree which was
+	 *                grown by any other fetcher is never returned, since its
+	 *                backlinks may differ.
+	 * @return The tree, or null if no tree is cached.
+	 */
+	public Tree get(String end, AbstractLinkFetcher fetcher) {
+		Tree tree;
+		synchronized (this) {
+			tree = this.trees.get(TitleSet.key(end));
+		}
+		
+		if (tree == null || tree.fetcher != fetcher) {
+			this.misses.increment();
+			return null;
+		}
+		
+		this.hits.increment();
+		return tree;
+	}
+	
+	/**
+	 * Caches the specified backward tree, unless a tree of the same end
+	 * article which is at least as deep is already cached. A tree which is
+	 * too large is cut down to the levels which fit, and the least recently
+	 * used trees are evicted until the cache fits in its bound.
+	 * @param tree The tree, which must hold at least one level of backlinks.
+	 */
+	public void put(Tree tree) {
+		// Keep as many levels as fit in the share of a single tree
+		int depth = tree.getDepth();
+		while (depth > 0 && tree.levelBytes[depth] >
+				this.maxBytes / MAX_TREE_SHARE) {
+			--depth;
+		}
+		if (depth == 0) return;
+		tree = tree.truncate(depth);
+		
+		String key = TitleSet.key(tree.getTitle(0));
+		synchronized (this) {
+			Tree old = this.trees.get(key);
+			if (old != null && old.fetcher == tree.fetcher &&
+					old.getDepth() >= tree.getDepth()) {
+				return;
+			}
+			
+			old = this.trees.put(key, tree);
+			if (old != null) this.bytes -= old.getBytes();
+			this.bytes += tree.getBytes();
+			
+			this.evict();
+		}
+	}
+	
+	/**
+	 * Returns the estimated memory used by the trees of the cache.
+	 * @return The estimated memory, in bytes.
+	 */
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+	
+	/**
+	 * Returns the number of end articles whose trees are cached.
+	 * @return The number of trees.
+	 */
+	public synchronized int size() {
+		return this.trees.size();
+	}
+	
+	/**
+	 * Removes every tree from the cache. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		this.trees.clear();
+		this.bytes = 0;
+	}
+	
+	/**
+	 * Returns the number of lookups which found a tree in the cache.
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	/**
+	 * Returns the number of lookups which did not find a tree in the cache.
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	/**
+	 * Returns the number of trees which were evicted to keep the cache
+	 * within its bound.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+	
+	@Override
+	/**
+	 * Returns a summary of the size and counters of the cache.
+	 * @return The summary.
+	 */
+	public String toString() {
+		return "Reverse Tree Cache: " + this.size() + " trees (" +
+				this.getBytes() / 1024 + " KB), " + this.getHits() +
+				" hits, " + this.getMisses() + " misses, " +
+				this.getEvictions() + " evictions";
+	}
+	
+	/**
+	 * Evicts the least recently used trees until the cache fits in its
+	 * bound. Must be called while holding the lock of the cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Tree>> it =
+				this.trees.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			this.bytes -= it.next().getValue().getBytes();
+			it.remove();
+			this.evictions.increment();
+		}
+	}
+}
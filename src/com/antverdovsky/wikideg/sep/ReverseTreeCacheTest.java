@@ -0,0 +1,249 @@
+package com.antverdovsky.wikideg.sep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.graph.ArrayGraph;
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.graph.TestGraphs;
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.GraphLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Basic Testing of the ReverseTreeCache class, and of the searches which
+ * start from its trees.
+ */
+public class ReverseTreeCacheTest {
+	/**
+	 * Fetcher which counts the articles whose links it fetches.
+	 */
+	private static class CountingFetcher implements AbstractLinkFetcher {
+		private AbstractLinkFetcher fetcher; // Fetcher which serves the links
+		private AtomicInteger articles;      // Articles fetched
+		
+		/**
+		 * Creates a new counting fetcher.
+		 * @param fetcher The fetcher which serves the links.
+		 */
+		private CountingFetcher(AbstractLinkFetcher fetcher) {
+			this.fetcher = fetcher;
+			this.articles = new AtomicInteger();
+		}
+		
+		@Override
+		/**
+		 * Returns the links of the article, from the fetcher.
+		 */
+		public ArrayList<String> getLinks(String article, TitleSet targets,
+				CancellationToken token) throws IOException {
+			this.articles.incrementAndGet();
+			return this.fetcher.getLinks(article, targets, token);
+		}
+		
+		@Override
+		/**
+		 * Returns the links of the articles, from the fetcher.
+		 */
+		public HashMap<String, ArrayList<String>> getLinks(
+				List<String> articles, TitleSet targets,
+				CancellationToken token) throws IOException {
+			this.articles.addAndGet(articles.size());
+			return this.fetcher.getLinks(articles, targets, token);
+		}
+		
+		@Override
+		/**
+		 * Returns the batch size of the fetcher.
+		 */
+		public int getBatchSize() {
+			return this.fetcher.getBatchSize();
+		}
+	}
+	
+	@Rule
+	public TestFetchers fetchers = new TestFetchers();
+	
+	/**
+	 * Sets the fetchers of the Separation class to read from the specified
+	 * graph.
+	 * @param graph The graph.
+	 * @return The counting fetcher of the backlinks.
+	 */
+	private CountingFetcher useGraph(IntGraph graph) {
+		CountingFetcher backlinks = new CountingFetcher(
+				new GraphLinkFetcher(graph, LinkDirection.BACKLINKS));
+		this.fetchers.use(new GraphLinkFetcher(graph, LinkDirection.LINKS),
+				backlinks);
+		return backlinks;
+	}
+	
+	/**
+	 * Builds a tree of the specified end article, with one article on each
+	 * of the specified number of levels.
+	 * @param fetcher The fetcher which grew the tree.
+	 * @param end The title of the end article.
+	 * @param depth The number of levels.
+	 * @return The tree.
+	 */
+	private static ReverseTreeCache.Tree chain(AbstractLinkFetcher fetcher,
+			String end, int depth) {
+		String[] titles = new String[depth + 1];
+		int[] successors = new int[depth + 1];
+		int[] levelEnds = new int[depth + 1];
+		for (int i = 0; i <= depth; ++i) {
+			titles[i] = (i == 0) ? end : end + " " + i;
+			successors[i] = Math.max(0, i - 1);
+			levelEnds[i] = i + 1;
+		}
+		
+		return new ReverseTreeCache.Tree(fetcher, titles, successors,
+				levelEnds);
+	}
+	
+	@Test
+	/**
+	 * Tests that the paths found over a random graph, to a few end articles
+	 * which are searched for again and again, are as short as the paths
+	 * found by a plain breadth first search once the searches start from
+	 * the cached trees of the end articles.
+	 * @throws IOException If the Separation class failed to fetch links.
+	 */
+	public void testRandomGraph() throws IOException {
+		Random random = new Random(11);
+		ArrayGraph graph = TestGraphs.randomGraph(3000, 3, 3);
+		this.useGraph(graph);
+		long hits = ReverseTreeCache.getShared().getHits();
+		
+		int[] ends = { random.nextInt(graph.size()),
+				random.nextInt(graph.size()), random.nextInt(graph.size()) };
+		for (int i = 0; i < 60; ++i) {
+			int start = random.nextInt(graph.size());
+			int end = ends[i % ends.length];
+			String startTitle = graph.getTitle(start);
+			String endTitle = graph.getTitle(end);
+			
+			int distance = TestGraphs.distances(graph, start)[end];
+			Separation separation = new Separation(startTitle, endTitle);
+			assertEquals(distance >= 0, separation.getPathExists());
+			if (distance < 0) continue;
+			
+			assertEquals(distance, separation.getNumDegrees());
+			Stack<String> path = separation.getPath();
+			assertEquals(distance + 1, path.size());
+			assertEquals(startTitle, path.firstElement());
+			assertEquals(endTitle, path.lastElement());
+			TestGraphs.assertLinked(graph, path);
+		}
+		
+		assertTrue(ReverseTreeCache.getShared().getHits() > hits);
+	}
+	
+	@Test
+	/**
+	 * Tests that a search whose start article is in the cached tree of its
+	 * end article fetches no backlinks at all, and that a search which
+	 * grows the tree caches the deeper tree.
+	 * @throws IOException If the Separation class failed to fetch links.
+	 */
+	public void testReuse() throws IOException {
+		HashMap<String, List<String>> links =
+				new HashMap<String, List<String>>();
+		links.put("Poland", Arrays.asList("Warsaw"));
+		links.put("Warsaw", Arrays.asList("Vistula"));
+		links.put("Vistula", Arrays.asList("Baltic Sea"));
+		links.put("Baltic Sea", Arrays.asList("Gdansk"));
+		links.put("Lviv", Arrays.asList("Vistula"));
+		CountingFetcher backlinks = this.useGraph(new ArrayGraph(links));
+		
+		Separation separation = new Separation("Poland", "Gdansk");
+		assertEquals(4, separation.getNumDegrees());
+		ReverseTreeCache.Tree tree = ReverseTreeCache.getShared().get(
+				"gdansk", backlinks);
+		assertNotNull(tree);
+		assertTrue(tree.getDepth() >= 1);
+		assertEquals("Gdansk", tree.getTitle(0));
+		assertEquals("Baltic Sea", tree.getTitle(1));
+		
+		// The start article is in the tree, so nothing is fetched
+		int fetched = backlinks.articles.get();
+		separation = new Separation("baltic sea", "GDANSK");
+		assertEquals(Arrays.asList("baltic sea", "GDANSK"),
+				separation.getPath());
+		assertEquals(fetched, backlinks.articles.get());
+		
+		// Any other search goes on from the levels of the tree
+		separation = new Separation("Lviv", "Gdansk");
+		assertEquals(Arrays.asList("Lviv", "Vistula", "Baltic Sea",
+				"Gdansk"), separation.getPath());
+		separation = new Separation("Poland", "Gdansk");
+		assertEquals(4, separation.getNumDegrees());
+		
+		// A tree grown by another fetcher is never used
+		assertNull(ReverseTreeCache.getShared().get("Gdansk",
+				backlinks.fetcher));
+	}
+	
+	@Test
+	/**
+	 * Tests the replacement of the trees by deeper trees only, the trees
+	 * which are cut down to fit and the eviction of the least recently
+	 * used trees.
+	 */
+	public void testPut() {
+		AbstractLinkFetcher fetcher = new GraphLinkFetcher(
+				new ArrayGraph(new HashMap<String, List<String>>()),
+				LinkDirection.BACKLINKS);
+		ReverseTreeCache.Tree small = ReverseTreeCacheTest.chain(fetcher,
+				"Gdansk", 2);
+		ReverseTreeCache cache = new ReverseTreeCache(small.getBytes() * 8);
+		
+		cache.put(small);
+		assertEquals(2, cache.get("GDANSK", fetcher).getDepth());
+		cache.put(ReverseTreeCacheTest.chain(fetcher, "Gdansk", 1));
+		assertEquals(2, cache.get("Gdansk", fetcher).getDepth());
+		cache.put(ReverseTreeCacheTest.chain(fetcher, "Gdansk", 3));
+		assertEquals(3, cache.get("Gdansk", fetcher).getDepth());
+		assertEquals("Gdansk 3", cache.get("Gdansk", fetcher).getTitle(3));
+		assertEquals(2, cache.get("Gdansk", fetcher).getSuccessor(3));
+		
+		// A tree is cut down to a quarter of the bound
+		ReverseTreeCache.Tree deep = ReverseTreeCacheTest.chain(fetcher,
+				"Warsaw", 100);
+		cache.put(deep);
+		ReverseTreeCache.Tree cut = cache.get("Warsaw", fetcher);
+		assertTrue(cut.getDepth() < deep.getDepth());
+		assertTrue(cut.getBytes() <= small.getBytes() * 2);
+		assertEquals(cut.getLevelEnd(cut.getDepth()), cut.size());
+		assertFalse(cut.getIsComplete());
+		
+		// The least recently used trees are evicted to fit
+		for (int i = 0; i < 8; ++i)
+			cache.put(ReverseTreeCacheTest.chain(fetcher, "Lviv " + i, 2));
+		assertTrue(cache.getBytes() <= small.getBytes() * 8);
+		assertTrue(cache.getEvictions() > 0);
+		assertNull(cache.get("Gdansk", fetcher));
+		assertNotNull(cache.get("Lviv 7", fetcher));
+		
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+	}
+}
@@ -1,125 +1,136 @@
 package com.antverdovsky.wikideg.sep;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Stack;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.AnchorCache;
 import com.antverdovsky.wikideg.linkfetch.BacklinksFetcher;
+import com.antverdovsky.wikideg.linkfetch.CachingLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.CoalescingLinkFetcher;
 import com.antverdovsky.wikideg.linkfetch.ExportLinksFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.CancellationToken;
 import com.antverdovsky.wikideg.util.DataParse;
+import com.antverdovsky.wikideg.util.IntIntMap;
+import com.antverdovsky.wikideg.util.IntList;
 import com.antverdovsky.wikideg.util.Logger;
+import com.antverdovsky.wikideg.util.SearchCancelledException;
+import com.antverdovsky.wikideg.util.SearchTimeoutException;
+import com.antverdovsky.wikideg.util.TitleDictionary;
+import com.antverdovsky.wikideg.util.TitleSet;
 import com.antverdovsky.wikideg.util.URLFetch;
-import com.antverdovsky.wikideg.util.Utilities;
 
 /**
- * Class which fetches all of the links or backlinks of a particular set of
- * articles. It can be instantiated using threads to allow multiple threads
- * to fetch different links at the same time. 
+ * Computes and stores the separation between two articles.
  */
-class ThreadedLinkFetcher implements Runnable {
-	// Flag indicating whether all instances should perform their task. This
-	// will be set to true by any instance of this class once that instance
-	// fetches a target link.
-	static volatile boolean isDone = false;
+public class Separation implements AbstractSeparation {
+	// Fetchers for Links and Backlinks, which are used by every new search.
+	// By default, both serve the links of articles from the shared cache,
+	// and download the links of an article only once at a time.
+	private static volatile AbstractLinkFetcher linksFetcher = 
+			new CachingLinkFetcher(new CoalescingLinkFetcher(
+					new ExportLinksFetcher()), LinkDirection.LINKS);
+	private static volatile AbstractLinkFetcher backlinksFetcher = 
+			new CachingLinkFetcher(new CoalescingLinkFetcher(
+					new BacklinksFetcher()), LinkDirection.BACKLINKS);
+	
+	private int numDegrees;               // Degrees of Separation
+	private Stack<String> path;           // Path by article names
+	private Stack<String> embeddedPath;   // Path by embedded article names
+	private boolean pathExists;           // Does a path exist?
+	
+	private String startArticle;          // The article where the path starts
+	private String endArticle;            // The article where the path ends
+	
+	private TitleDictionary dictionary;   // Interns titles as integer IDs
+	private int startId;                  // The ID of the start article
+	private int endId;                    // The ID of the end article
+	
+	private int[] links;                  // Link IDs built from start node
+	private int[] backlinks;              // Backlink IDs built from end node
+	
+	private IntIntMap predecessors; // Predecessor ID of each visited link
+	private IntIntMap successors;   // Successor ID of each visited backlink
+	
+	private ReverseTreeCache.Tree reverseTree; // Cached tree of the end node
+	private List<int[]> backwardLevels;  // Levels of backlinks fetched in full
+	private boolean isTreeRecorded;      // Were all levels fetched in full?
 	
-	private List<String> writeTo;   // Where to add fetched links (concurrent)
-	private List<String> task;      // List for which links are to be fetched
-	private List<String> targets;   // The graph's other side nodes
+	private AtomicInteger meeting;   // ID of the node where the sides met
+	private CancellationToken token; // Cancelled once the two sides meet
+	private volatile CancellationToken embedToken; // Embedded path downloads
 	
-	private ConcurrentHashMap<String, String> map; // Predecessor/Successor 
-	private AbstractLinkFetcher linkFetcher;       // Fetcher to be used
+	private Duration timeout;            // Time allowed, or null if unlimited
+	private volatile boolean isTimedOut; // Has the deadline passed?
+	
+	private AbstractLinkFetcher forwardFetcher;  // Links of this search
+	private AbstractLinkFetcher backwardFetcher; // Backlinks of this search
+	private ExpansionCost forwardCost;           // Cost of growing links
+	private ExpansionCost backwardCost;          // Cost of growing backlinks
 	
 	/**
-	 * Creates a new thread graph grower instance.
-	 * @param writeTo The concurrent list into which the graph grower is to
-	 *                write all of the links it fetches.
-	 * @param task The list of links for which we are going to fetch their
-	 *             links.
-	 * @param linkFetcher The Link Fetcher to be used when fetching all of the
-	 *                    links.
-	 * @param targets The other links list. If any fetched link is contained
-	 *                in this list as well, the isDone flag will be set to
-	 *                true since a common node has been found.
-	 * @param map The predecessor or successor hash map.
+	 * Sets the fetcher used by every new search to fetch the links of 
+	 * articles. Searches which are already running are not affected.
+	 * @param fetcher The links fetcher.
 	 */
-	public ThreadedLinkFetcher(List<String> writeTo, List<String> task, 
-			AbstractLinkFetcher linkFetcher, List<String> targets,
-			ConcurrentHashMap<String, String> map) {
-		this.writeTo = writeTo;
-		this.task = task;
-		this.linkFetcher = linkFetcher;
-		this.targets = targets;
-		this.map = map;
+	public static void setLinksFetcher(AbstractLinkFetcher fetcher) {
+		Separation.linksFetcher = fetcher;
 	}
 	
 	/**
-	 * Continually fetches the links of each link in the task list. As each
-	 * new link is fetched, its predecessor or successor is added to the
-	 * predecessor or successor hash map and the link is added to the
-	 * concurrent write to list. If any of the links fetched are contained in
-	 * the targets list, this method is halted for all instances of this.
+	 * Returns the fetcher used by every new search to fetch the links of
+	 * articles.
+	 * @return The links fetcher.
 	 */
-	public void run() {
-		Iterator<String> it = this.task.iterator();
-		
-		// While the isDone flag is not set to true and we have more elements
-		// in the task list that need processing.
-		while (!ThreadedLinkFetcher.isDone && it.hasNext()) {
-			String link = it.next(); // Fetch the next link from the task list
-			
-			// Get the (back)links of the link fetched 
-			ArrayList<String> linksOf = new ArrayList<String>();
-			try { 
-				linksOf = linkFetcher.getLinks(link, 
-						new ArrayList<String>(targets)); 
-			} catch (IOException e) { 
-				continue;
-			}
-
-			// For each link fetched, add it to the predecessor/successor map
-			// and write it to the write to list.
-			for (String linkOf : linksOf) {
-				this.map.putIfAbsent(linkOf.toLowerCase(), link);
-				this.writeTo.add(linkOf);
-			}
-
-			// Check if any elements of targets were found. If so, halt 
-			// execution for every instance of this class.
-			List<String> common = Utilities.retainAllIgnoreCase(
-					linksOf, this.targets);
-			if (!common.isEmpty()) ThreadedLinkFetcher.isDone = true;
-		}
+	public static AbstractLinkFetcher getLinksFetcher() {
+		return Separation.linksFetcher;
 	}
-}
-
-/**
- * Computes and stores the separation between two articles.
- */
-public class Separation {
-	// Fetchers for Links and Backlinks.
-	private static ExportLinksFetcher linksFetcher = new ExportLinksFetcher();
-	private static BacklinksFetcher backlinksFetcher = new BacklinksFetcher();
 	
-	private int numDegrees;               // Degrees of Separation
-	private Stack<String> path;           // Path by article names
-	private Stack<String> embeddedPath;   // Path by embedded article names
-	private boolean pathExists;           // Does a path exist?
+	/**
+	 * Sets the fetcher used by every new search to fetch the backlinks of 
+	 * articles. Searches which are already running are not affected.
+	 * @param fetcher The backlinks fetcher.
+	 */
+	public static void setBacklinksFetcher(AbstractLinkFetcher fetcher) {
+		Separation.backlinksFetcher = fetcher;
+	}
 	
-	private String startArticle;          // The article where the path starts
-	private String endArticle;            // The article where the path ends
+	/**
+	 * Returns the fetcher used by every new search to fetch the backlinks of
+	 * articles.
+	 * @return The backlinks fetcher.
+	 */
+	public static AbstractLinkFetcher getBacklinksFetcher() {
+		return Separation.backlinksFetcher;
+	}
 	
-	private List<String> links;           // Links built from start node
-	private List<String> backlinks;       // Backlinks built from end node
+	/**
+	 * Sets the maximum number of links fetching tasks which may run at once,
+	 * across every search. The default is 128.
+	 * @param n The maximum number of tasks, which must be positive.
+	 * @throws IllegalArgumentException If n is not positive.
+	 */
+	public static void setMaxConcurrency(int n) {
+		FetchExecutor.setConcurrency(n);
+	}
 	
-	private ConcurrentHashMap<String, String> 
-			predecessors; // Predecessors of each link in the links set
-	private ConcurrentHashMap<String, String>        
-			successors;   // Successors of each backlink in the backlinks set
+	/**
+	 * Returns the maximum number of links fetching tasks which may run at
+	 * once, across every search.
+	 * @return The maximum number of tasks.
+	 */
+	public static int getMaxConcurrency() {
+		return FetchExecutor.getConcurrency();
+	}
 	
 	/**
 	 * Creates a new Separation class and computes the path from the starting
@@ -130,6 +141,24 @@ public class Separation {
 	 *                     backlinks for any articles.
 	 */
 	public Separation(String start, String end) throws IOException {
+		this(start, end, null);
+	}
+	
+	/**
+	 * Creates a new Separation class and computes the path from the starting
+	 * article to the ending article, giving up once the specified time has
+	 * passed. At the deadline, the token of the search is cancelled, which
+	 * aborts each of its downloads which are still in flight.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @param timeout The time which the search may take, or null if the
+	 *                search may take as long as it needs.
+	 * @throws SearchTimeoutException If the path was not found in time.
+	 * @throws IOException If there is an error fetching the links or
+	 *                     backlinks for any articles.
+	 */
+	public Separation(String start, String end, Duration timeout) 
+			throws IOException {
 		this.startArticle = start;
 		this.endArticle = end;
 		
@@ -138,47 +167,59 @@ public class Separation {
 		this.embeddedPath = new Stack<String>();
 		this.pathExists = false;
 		
-		this.links = Collections.synchronizedList(
-				new ArrayList<String>());
-		this.backlinks = Collections.synchronizedList(
-				new ArrayList<String>());
-		this.predecessors = new ConcurrentHashMap<String, String>();
-		this.successors = new ConcurrentHashMap<String, String>();
-		
-		// Try to find a zero degree of separation path
-		this.pathExists = this.getSeparation0();
-		if (this.pathExists) return;
-		
-		// Try to find a one degree of separation path
-		this.pathExists = this.getSeparation1();
-		if (this.pathExists) return;
-		
-		// If the starting article contains no embedded links, no path is
-		// possible.
-		if (this.links.isEmpty()) {
-			Logger.logLine("\tNo links exist on the starting page! Unable " +
-					"to complete the path.");
-			
-			return;
+		this.dictionary = new TitleDictionary();
+		this.startId = this.dictionary.intern(start);
+		this.endId = this.dictionary.intern(end);
+		
+		this.links = new int[0];
+		this.backlinks = new int[0];
+		this.predecessors = new IntIntMap();
+		this.successors = new IntIntMap();
+		this.meeting = new AtomicInteger(TitleDictionary.NOT_FOUND);
+		this.token = new CancellationToken();
+		this.timeout = timeout;
+		this.isTimedOut = false;
+		
+		this.forwardFetcher = Separation.linksFetcher;
+		this.backwardFetcher = Separation.backlinksFetcher;
+		this.forwardCost = new ExpansionCost(
+				this.forwardFetcher.getBatchSize());
+		this.backwardCost = new ExpansionCost(
+				this.backwardFetcher.getBatchSize());
+		
+		// The start and end articles are visited by their own sides. They
+		// are their own predecessor and successor, respectively.
+		this.predecessors.put(this.startId, this.startId);
+		this.successors.put(this.endId, this.endId);
+		
+		// Start from the backward tree which an earlier search grew from the
+		// end article, if it is cached
+		this.reverseTree = ReverseTreeCache.getShared().get(end, 
+				this.backwardFetcher);
+		this.backwardLevels = new ArrayList<int[]>();
+		this.backwardLevels.add(new int[] { this.endId });
+		this.isTreeRecorded = true;
+		
+		// Cancel the search once its deadline has passed
+		CompletableFuture<Void> deadline = null;
+		if (timeout != null) {
+			deadline = CompletableFuture.runAsync(this::expire, 
+					CompletableFuture.delayedExecutor(timeout.toNanos(), 
+							TimeUnit.NANOSECONDS));
 		}
 		
-		// Try to find a two degree of separation path
-		this.pathExists = this.getSeparation2();
-		if (this.pathExists) return;
-		
-		// If the ending article contains no backlinks that link to it, no
-		// path is possible.
-		if (this.backlinks.isEmpty()) {
-			Logger.logLine("\tNo backlinks exist on the ending page! Unable" +
-					" to complete the path.");
-			
-			return;
+		try {
+			this.pathExists = this.search();
+		} catch (SearchCancelledException e) {
+			this.throwIfTimedOut();
+			throw e;
+		} finally {
+			if (deadline != null) deadline.cancel(false);
+			this.storeReverseTree();
 		}
-		
-		// Try to find a three or more degree of separation path
-		this.pathExists = this.getSeparation3();
 	}
 	
+	@Override
 	/**
 	 * Returns the number of degrees of separation between two articles.
 	 * @return The degrees of separation.
@@ -187,6 +228,7 @@ public class Separation {
 		return this.numDegrees;
 	}
 	
+	@Override
 	/**
 	 * Returns the embedded path between two articles.
 	 * @return The embedded path.
@@ -195,6 +237,7 @@ public class Separation {
 		return this.embeddedPath;
 	}
 	
+	@Override
 	/**
 	 * Returns the path between two articles.
 	 * @return The path.
@@ -203,6 +246,7 @@ public class Separation {
 		return this.path;
 	}
 	
+	@Override
 	/**
 	 * Returns whether or not a path was found.
 	 * @return True if a path was found. False otherwise.
@@ -217,23 +261,233 @@ public class Separation {
 	 * path will contain the names of each node in the specified path as it is
 	 * present in the predecessor node, since Wikipedia sometimes uses a 
 	 * different article name when it is embedded in an article.
+	 * The names were usually recorded while the search scanned the pages of
+	 * the path. The pages which were not scanned, such as those which were
+	 * only reached through backlinks, are downloaded all at once. The 
+	 * downloads have a token of their own, since the token of the search has
+	 * already been cancelled once the two sides met, but they are aborted
+	 * along with the search once its deadline has passed.
+	 * @throws SearchTimeoutException If the deadline of the search passed
+	 *                                before the path was embedded.
 	 * @throws IOException If there is an error fetching the export for any
 	 *                     of the articles in the path.
 	 */
 	public void computeEmbeddedPath() throws IOException {
+		// The deadline may pass before the token is published, in which case
+		// the token is cancelled here rather than by the deadline
+		CancellationToken token = new CancellationToken();
+		this.embedToken = token;
+		if (this.isTimedOut) token.cancel();
+		
+		int hops = this.path.size() - 1;
+		String[] embedded = new String[hops];
+		IOException[] failures = new IOException[hops];
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		
 		// Foreach article in the standard path
-		for (int i = 0; i < path.size() - 1; ++i) {
+		for (int i = 0; i < hops; ++i) {
 			// Get the current article title and the next article title
-			String current = path.get(i);
-			String next = path.get(i + 1);
+			String current = this.path.get(i);
+			String next = this.path.get(i + 1);
 			
-			// Get the full export data of the current article
-			String url = URLFetch.getExportURL(current);
-			String data = URLFetch.getData(url);
+			embedded[i] = AnchorCache.getShared().get(current, next);
+			if (embedded[i] != null) continue;
+			
+			// Get the name of the next article as it appears in the export
+			// data of the current article, as the data is downloaded
+			int hop = i;
+			tasks.add(() -> {
+				String url = URLFetch.getExportURL(current);
+				try (Reader export = URLFetch.getReader(url, token)) {
+					embedded[hop] = DataParse.parseEmbeddedArticle(export, 
+							next);
+				} catch (IOException e) {
+					failures[hop] = e;
+				}
+			});
+		}
+		
+		Logger.logLine("Embedded " + (hops - tasks.size()) + " of " + hops + 
+				" article(s) from the anchors recorded by the search, " +
+				"fetching the rest.");
+		FetchExecutor.runAll(this.token, tasks);
+		if (token.isCancelled()) {
+			this.throwIfTimedOut();
+			token.throwIfCancelled();
+		}
+		
+		// While offline the export cannot be fetched, so the next article is
+		// embedded under its own name.
+		for (int i = 0; i < hops; ++i) {
+			if (failures[i] != null) {
+				if (!URLFetch.getIsOffline()) throw failures[i];
+				
+				embedded[i] = this.path.get(i + 1);
+			}
 			
-			// Get the name of the next article as it appears in the current
-			// article and push it onto the stack.
-			this.embeddedPath.push(DataParse.parseEmbeddedArticle(data, next));
+			this.embeddedPath.push(embedded[i]);
+		}
+	}
+	
+	/**
+	 * Searches for the path from the start article to the end article, one
+	 * degree of separation at a time.
+	 * @return True if a path was found. False otherwise.
+	 * @throws IOException If there is an error fetching the links or
+	 *                     backlinks for any articles.
+	 */
+	private boolean search() throws IOException {
+		// Try to find a zero degree of separation path
+		if (this.getSeparation0()) return true;
+		
+		// Go on from the levels of the cached backward tree, if there is one
+		if (this.reverseTree != null) return this.searchFromTree();
+		
+		// Try to find a one degree of separation path
+		if (this.getSeparation1()) return true;
+		
+		// If the starting article contains no embedded links, no path is
+		// possible.
+		if (this.links.length == 0) {
+			Logger.logLine("\tNo links exist on the starting page! Unable " +
+					"to complete the path.");
+			
+			return false;
+		}
+		
+		// Try to find a two degree of separation path
+		if (this.getSeparation2()) return true;
+		
+		// If the ending article contains no backlinks that link to it, no
+		// path is possible.
+		if (this.backlinks.length == 0) {
+			Logger.logLine("\tNo backlinks exist on the ending page! Unable" +
+					" to complete the path.");
+			
+			return false;
+		}
+		
+		// Try to find a three or more degree of separation path
+		return this.getSeparation3();
+	}
+	
+	/**
+	 * Searches for the path from the start article to the end article, 
+	 * starting from the cached backward tree of the end article. Every level
+	 * of the tree was fetched in full, so the search goes on as though it 
+	 * had grown each of those levels itself, and the two sides cannot meet
+	 * any earlier than the level after the last level of the tree.
+	 * @return True if a path was found. False otherwise.
+	 * @throws IOException If there is an error fetching the links or
+	 *                     backlinks for any articles.
+	 */
+	private boolean searchFromTree() throws IOException {
+		ReverseTreeCache.Tree tree = this.reverseTree;
+		Logger.logLine("Starting from the cached backward tree of the end " +
+				"article: " + tree.getDepth() + " level(s), " + tree.size() +
+				" backlink(s).");
+		
+		// Visit every article of the tree from the backward side. The end
+		// article is the first article of the tree.
+		int[] ids = new int[tree.size()];
+		ids[0] = this.endId;
+		int startLevel = -1;
+		for (int level = 1; level <= tree.getDepth(); ++level) {
+			int from = tree.getLevelStart(level);
+			int[] levelIds = new int[tree.getLevelEnd(level) - from];
+			for (int i = from; i < tree.getLevelEnd(level); ++i) {
+				ids[i] = this.dictionary.intern(tree.getTitle(i));
+				this.successors.put(ids[i], ids[tree.getSuccessor(i)]);
+				levelIds[i - from] = ids[i];
+				
+				if (ids[i] == this.startId) startLevel = level;
+			}
+			
+			this.backwardLevels.add(levelIds);
+		}
+		this.backlinks = this.backwardLevels.get(tree.getDepth());
+		
+		// If the start article is in the tree, the path is in the tree
+		if (startLevel >= 0) {
+			Logger.logLine("\tThe start article is in the tree, " + 
+					startLevel + " degrees of separation found.");
+			
+			this.numDegrees = startLevel;
+			this.buildPath(this.startId);
+			this.computeEmbeddedPath();
+			return true;
+		}
+		
+		// If the tree holds every article from which the end article can be
+		// reached, no path is possible.
+		if (tree.getIsComplete()) {
+			Logger.logLine("\tThe tree holds every backlink of the ending " +
+					"page! Unable to complete the path.");
+			
+			return false;
+		}
+		
+		this.links = new int[] { this.startId };
+		this.numDegrees = tree.getDepth();
+		return this.getSeparation3();
+	}
+	
+	/**
+	 * Caches the levels of backlinks which the search fetched in full as the
+	 * backward tree of the end article, unless the cached tree is at least 
+	 * as deep.
+	 */
+	private void storeReverseTree() {
+		int depth = this.backwardLevels.size() - 1;
+		if (depth == 0 || (this.reverseTree != null && 
+				this.reverseTree.getDepth() >= depth)) {
+			return;
+		}
+		
+		int nodes = 0;
+		for (int[] level : this.backwardLevels) nodes += level.length;
+		
+		// Number the articles level by level. The successor of an article
+		// is always in the level before it, so it is already numbered.
+		String[] titles = new String[nodes];
+		int[] successors = new int[nodes];
+		int[] levelEnds = new int[depth + 1];
+		IntIntMap numbers = new IntIntMap(nodes);
+		int node = 0;
+		for (int level = 0; level <= depth; ++level) {
+			for (int id : this.backwardLevels.get(level)) {
+				numbers.put(id, node);
+				titles[node] = this.dictionary.getTitle(id);
+				successors[node] = numbers.get(this.successors.get(id));
+				++node;
+			}
+			
+			levelEnds[level] = node;
+		}
+		
+		ReverseTreeCache.getShared().put(new ReverseTreeCache.Tree(
+				this.backwardFetcher, titles, successors, levelEnds));
+	}
+	
+	/**
+	 * Cancels the search, once its deadline has passed.
+	 */
+	private void expire() {
+		this.isTimedOut = true;
+		this.token.cancel();
+		
+		CancellationToken embedToken = this.embedToken;
+		if (embedToken != null) embedToken.cancel();
+	}
+	
+	/**
+	 * Throws an exception if the deadline of the search has passed.
+	 * @throws SearchTimeoutException If the deadline has passed.
+	 */
+	private void throwIfTimedOut() throws SearchTimeoutException {
+		if (this.isTimedOut) {
+			throw new SearchTimeoutException("The search timed out after " + 
+					this.timeout.toMillis() + "ms.");
 		}
 	}
 	
@@ -278,17 +532,23 @@ public class Separation {
 		
 		// Get the links of the starting article, and short circuit halt if
 		// the end article is found.
-		ArrayList<String> targets = new ArrayList<String>(1);
-		targets.add(this.endArticle);
-		this.links = linksFetcher.getLinks(this.startArticle, targets);
-		
-		Logger.logLine("\tFetched " + this.links.size() + " link(s) from " + 
+		TitleSet targets = TitleSet.of(this.dictionary, 
+				new int[] { this.endId });
+		long requests = this.token.getRequests();
+		long bytes = this.token.getBytes();
+		this.links = this.internAll(
+				this.forwardFetcher.getLinks(this.startArticle, targets, 
+						this.token),
+				this.startId, this.predecessors);
+		this.forwardCost.record(1, this.token.getRequests() - requests,
+				this.token.getBytes() - bytes);
+		
+		Logger.logLine("\tFetched " + this.links.length + " link(s) from " + 
 				"the starting article.");
 		
 		// If the links contain the end article, then we have one degree of
 		// separation.
-		boolean contain = Utilities.containsIgnoreCase(this.links, 
-				this.endArticle);
+		boolean contain = this.predecessors.containsKey(this.endId);
 		if (contain) {
 			this.path.push(this.endArticle);
 			
@@ -321,30 +581,40 @@ public class Separation {
 		// Get the backlinks of the ending article, stop if the backlinks
 		// contain any of the starting article's links (then we have a middle
 		// article!).
-		this.backlinks = backlinksFetcher.getLinks(this.endArticle, 
-				new ArrayList<String>(this.links));
-		
-		Logger.logLine("\tFetched " + this.backlinks.size() + " backlink(s)" +
+		TitleSet linksSet = TitleSet.of(this.dictionary, this.links);
+		long requests = this.token.getRequests();
+		long bytes = this.token.getBytes();
+		this.backlinks = this.internAll(
+				this.backwardFetcher.getLinks(this.endArticle, linksSet, 
+						this.token),
+				this.endId, this.successors);
+		this.backwardCost.record(1, this.token.getRequests() - requests,
+				this.token.getBytes() - bytes);
+		
+		Logger.logLine("\tFetched " + this.backlinks.length + " backlink(s)" +
 				" from the ending article.");
 		
 		// Find any articles that backlinks has in common with the links. This
 		// implies that there exists some middle article such that we can go
 		// from start -> middle -> end.
-		List<String> common = Utilities.retainAllIgnoreCase(this.backlinks,
-				this.links);
+		int[] common = Arrays.stream(this.backlinks)
+				.filter(linksSet::containsId).toArray();
 		
 		// If no middle articles exist, return false
-		if (common.isEmpty()) {
+		if (common.length == 0) {
 			Logger.logLine("\tFound no middle ground articles between start" +
 					" links and end backlinks, two degrees of separation " +
 					"not found.");
 			
+			// The backlinks were not cut short, so they are kept for the
+			// backward tree of the end article
+			this.backwardLevels.add(this.backlinks);
 			return false;
 		}
 		
 		// Fetch some random article from the common set and build a path with
 		// it, returning a separation of two degrees.
-		String middle = common.iterator().next();
+		String middle = this.dictionary.getTitle(common[0]);
 		this.path.push(middle);
 		this.path.push(this.endArticle);
 		
@@ -367,95 +637,86 @@ public class Separation {
 	private boolean getSeparation3() throws IOException {
 		++(this.numDegrees);
 		
-		// Set the predecessor and successor for each link and backlink.
-		for (String s : this.links) predecessors.put(s.toLowerCase(),
-				this.startArticle);
-		for (String s : this.backlinks) successors.put(s.toLowerCase(),
-				this.endArticle);
-		
 		while (true) { // Until we have found a link
 			Logger.logLine("Checking for " + this.numDegrees + " Degrees "
 					+ "Separation: ");
-			Logger.logLine("\tLinks Size: " + this.links.size());
-			Logger.logLine("\tBacklinks Size: " + this.backlinks.size());
+			Logger.logLine("\tLinks Size: " + this.links.length + 
+					" (" + this.predecessors.size() + " visited)");
+			Logger.logLine("\tBacklinks Size: " + this.backlinks.length + 
+					" (" + this.successors.size() + " visited)");
+			
+			// Build the graph from the side which is predicted to be the
+			// cheaper one to grow. Each link is checked against the other
+			// side as it is fetched, so the level stops as soon as the two
+			// sides meet.
+			double linksCost = this.forwardCost.predict(this.links.length);
+			double backlinksCost = this.backwardCost.predict(
+					this.backlinks.length);
+			Logger.logLine(String.format("\tPredicted Cost: %.1f round " +
+					"trips for links (%s), %.1f for backlinks (%s)",
+					linksCost, this.forwardCost, backlinksCost, 
+					this.backwardCost));
 			
-			// Build the graph from the perspective of the smaller data set.
-			if (this.links.size() <= this.backlinks.size()) {
+			long requests = this.token.getRequests();
+			long bytes = this.token.getBytes();
+			int[] grown;
+			int articles;
+			ExpansionCost cost;
+			double predicted;
+			if (linksCost <= backlinksCost) {
 				Logger.logLine("\tFetching links of current links.");
-				links = this.getSeparation3GrowGraph(linksFetcher);
-				
-				if (links.isEmpty()) return false;
+				articles = this.links.length;
+				cost = this.forwardCost;
+				predicted = linksCost;
+				grown = links = this.getSeparation3GrowGraph(
+						this.forwardFetcher);
 			} else {
 				Logger.logLine("\tFetching backlinks of current " + 
 						"backlinks.");
-				backlinks = this.getSeparation3GrowGraph(backlinksFetcher);
-				
-				if (backlinks.isEmpty()) return false;
+				articles = this.backlinks.length;
+				cost = this.backwardCost;
+				predicted = backlinksCost;
+				grown = backlinks = this.getSeparation3GrowGraph(
+						this.backwardFetcher);
 			}
 			
-			// Check if there is some element in common between the links and
-			// backlinks. If so, then we found a path! Otherwise, we must
+			// Learn from the cost of the level, which is less than predicted
+			// if the level stopped early because the two sides met
+			requests = this.token.getRequests() - requests;
+			bytes = this.token.getBytes() - bytes;
+			cost.record(articles, requests, bytes);
+			Logger.logLine(String.format("\tActual Cost: %.1f round trips " +
+					"(%d requests, %d KB), predicted %.1f.",
+					ExpansionCost.getCost(articles, requests, bytes), 
+					requests, bytes >> 10, predicted));
+			
+			// If the two sides met, then we found a path! Otherwise, we must
 			// repeat the loop though the number of degrees has now increased.
-			List<String> common = Utilities.retainAllIgnoreCase(
-					this.links, this.backlinks);
-			if (!common.isEmpty()) {
-				// Get some random element from the common list and mark it
-				// as the middle node. Now we need to backtrace through the
-				// predecessors and successors to find the full path from
-				// start to end.
-				String middle = common.iterator().next();
-				
-				Logger.logLine("\tFound middle ground article, \"" + middle + 
-						"\", " + "between links and backlinks, " +
-						this.numDegrees + " degrees of separation found.");
-				
-				// Set the current predecessor / successor of the middle node
-				// to itself, for now.
-				String currentPredecessor = middle;
-				String currentSuccessor = middle;
-				
-				// Create a stack for backtracing the path
-				Stack<String> backtrace = new Stack<String>();
-				
-				// Until we back trace all the way back to starting title
-				while (!currentPredecessor.equalsIgnoreCase(
-						this.startArticle)) {
-					// Get the predecessor of the current predecessor and add
-					// it to the backtrace queue.
-					String oldPredecessor = currentPredecessor;
-					currentPredecessor = predecessors.get(
-							currentPredecessor.toLowerCase());
-					backtrace.push(currentPredecessor);
-					
-					Logger.logLine("\tFound predecessor, \"" + 
-							currentPredecessor + "\", of link \"" + 
-							oldPredecessor + "\".");
-				}
-				
-				// Pop all of the titles from the queue and onto the path with
-				// the exception of the starting article since that is already
-				// in the path.
-				backtrace.pop();
-				while (!backtrace.isEmpty()) {
-					this.path.push(backtrace.pop());
-				}
-				
-				// For the successors, we can just add all of the the
-				// successors to the path stack, including the middle node and
-				// the end article.
-				while (!currentSuccessor.equalsIgnoreCase(this.endArticle)) {
-					String oldSuccessor = currentSuccessor;
-					this.path.push(currentSuccessor);
-					currentSuccessor = successors.get(
-							currentSuccessor.toLowerCase());
-					Logger.logLine("\tFound successor, \"" + 
-							currentSuccessor + "\", of link \"" + 
-							oldSuccessor + "\".");
-				}
-				this.path.push(this.endArticle);
+			// A level of backlinks which was fetched in full is kept for the
+			// backward tree of the end article, as long as every level
+			// before it was fetched in full as well
+			int middle = this.meeting.get();
+			if (cost == this.backwardCost) {
+				if (middle != TitleDictionary.NOT_FOUND || this.isTimedOut)
+					this.isTreeRecorded = false;
+				if (this.isTreeRecorded) this.backwardLevels.add(grown);
+			}
+			
+			if (middle != TitleDictionary.NOT_FOUND) {
+				Logger.logLine("\tFound middle ground article, \"" + 
+						this.dictionary.getTitle(middle) + "\", " + 
+						"between links and backlinks, " + this.numDegrees + 
+						" degrees of separation found.");
 				
+				// Now we need to backtrace through the predecessors and 
+				// successors to find the full path from start to end.
+				this.buildPath(middle);
 				this.computeEmbeddedPath();
 				return true;
+			} else if (this.isTimedOut) {
+				this.throwIfTimedOut();
+			} else if (grown.length == 0) {
+				return false;
 			} else {
 				Logger.logLine("\tFound no middle ground articles between links" +
 						" and backlinks, " + this.numDegrees + " degrees of " +
@@ -466,90 +727,132 @@ public class Separation {
 		}
 	}
 	
+	/**
+	 * Builds the path from the start article to the end article, through the
+	 * specified middle node, which has been visited by both sides of the 
+	 * search. The path stack must only contain the start article.
+	 * @param middle The ID of the middle node.
+	 */
+	private void buildPath(int middle) {
+		// Create a stack for backtracing the path
+		Stack<String> backtrace = new Stack<String>();
+		
+		// Until we back trace all the way back to starting title, push the
+		// current predecessor onto the backtrace stack. The starting article
+		// is not pushed since it is already in the path.
+		int currentPredecessor = middle;
+		while (currentPredecessor != this.startId) {
+			int oldPredecessor = currentPredecessor;
+			backtrace.push(this.dictionary.getTitle(currentPredecessor));
+			currentPredecessor = this.predecessors.get(currentPredecessor);
+			
+			Logger.logLine("\tFound predecessor, \"" + 
+					this.dictionary.getTitle(currentPredecessor) + 
+					"\", of link \"" + 
+					this.dictionary.getTitle(oldPredecessor) + "\".");
+		}
+		
+		// Pop all of the titles from the stack and onto the path
+		while (!backtrace.isEmpty()) {
+			this.path.push(backtrace.pop());
+		}
+		
+		// For the successors, we can just add all of the successors to the
+		// path stack, up to and including the end article.
+		int currentSuccessor = middle;
+		while (currentSuccessor != this.endId) {
+			int oldSuccessor = currentSuccessor;
+			currentSuccessor = this.successors.get(currentSuccessor);
+			this.path.push(this.dictionary.getTitle(currentSuccessor));
+			
+			Logger.logLine("\tFound successor, \"" + 
+					this.dictionary.getTitle(currentSuccessor) + 
+					"\", of link \"" + 
+					this.dictionary.getTitle(oldSuccessor) + "\".");
+		}
+	}
+	
 	/**
 	 * Grows the graph from one side in the separation three+ degrees 
 	 * algorithm.
 	 * @param fetcher The fetcher to be used when getting the links or 
-	 *                backlinks. If this is a LinksFetcher, the graph will be
-	 *                grown from the starting node side. Otherwise, the graph
-	 *                will be grown from the ending node side.
-	 * @return The new set of (back)links.
+	 *                backlinks. If this is the links fetcher of the search,
+	 *                the graph will be grown from the starting node side. 
+	 *                Otherwise, the graph will be grown from the ending node
+	 *                side.
+	 * @return The IDs of the new set of (back)links, which were not visited
+	 *         by any previous level of the search.
 	 * @throws IOException If the links could not be properly fetched.
 	 */
-	private ArrayList<String> getSeparation3GrowGraph(
+	private int[] getSeparation3GrowGraph(
 			AbstractLinkFetcher fetcher) throws IOException {
-		// Create a new thread safe list into which each thread will write its
-		// fetched links.
-		List<String> newLinks = Collections.synchronizedList(
-				new ArrayList<String>());
+		// Create a new thread safe map into whose keys each thread will write
+		// the IDs of its fetched links.
+		IntIntMap newLinks = new IntIntMap();
 		
 		// If the parameter was a links fetcher then we need to build the
 		// graph from the starting node. Otherwise, set up the parameters to
 		// build the graph from the ending node.
-		boolean isStartSide = fetcher == Separation.linksFetcher;
-		List<String> thisSide = isStartSide ? this.links : this.backlinks;
-		List<String> otherSide = isStartSide ? this.backlinks : this.links;
-		ConcurrentHashMap<String, String> map = isStartSide ? 
-				this.predecessors : this.successors;
+		boolean isStartSide = fetcher == this.forwardFetcher;
+		int[] thisSide = isStartSide ? this.links : this.backlinks;
+		IntIntMap map = isStartSide ? this.predecessors : this.successors;
+		
+		// Every link is checked against all of the links visited by the 
+		// other side as soon as it is fetched, rather than intersecting the
+		// two frontiers once the level is done. The map of the other side is
+		// not written to while this side grows, so a view of it is enough.
+		TitleSet otherSide = new TitleSet(this.dictionary, 
+				isStartSide ? this.successors : this.predecessors);
 
-		// Since the biggest obstacle to performance for fetching links is
-		// I/O (download speed), we can have a large number of threads here.
-		final int MAX_NUM_THREADS = 128;     // Max Number of Threads at Once
-		final int MAX_IDEAL_PER_THREAD = 32; // Ideal task size per thread
-		
-		// By default, we use one thread with the whole list being processed
-		// by the sole thread.
-		int numThreads = 1;
-		int numPerThread = thisSide.size();
-		
-		// If the list size is big enough to use multithreading
-		if (thisSide.size() >= MAX_IDEAL_PER_THREAD) {
-			// Calculate the number of threads to ideally split up the task
-			numThreads = thisSide.size() / MAX_IDEAL_PER_THREAD + 1;
-			
-			// If the ideal will result in too many threads, limit the number
-			// of threads to the maximum constant.
-			if (numThreads > MAX_NUM_THREADS) 
-				numThreads = MAX_NUM_THREADS;
+		// Split this side into one task per batch of the fetcher, so that a
+		// fetcher which does not support batching gets one task per title.
+		// The tasks are queued on the shared pool, where an idle thread will
+		// always take the next task, so a few huge pages never leave the
+		// rest of the threads waiting.
+		int batchSize = fetcher.getBatchSize();
+		List<ThreadedLinkFetcher> tasks = new ArrayList<ThreadedLinkFetcher>(
+				(thisSide.length + batchSize - 1) / batchSize);
+		
+		for (int from = 0; from < thisSide.length; from += batchSize) {
+			int to = Math.min(thisSide.length, from + batchSize);
+			int[] task = Arrays.copyOfRange(thisSide, from, to);
 			
-			// Calculate the number of elements in the task per thread
-			numPerThread = thisSide.size() / numThreads;
+			tasks.add(new ThreadedLinkFetcher(this.dictionary, newLinks, 
+					task, fetcher, otherSide, map, this.meeting, this.token));
 		}
 		
-		// Create a list of threads which will be used. Be sure to reset the
-		// isDone flag every time we want to reuse the threads!
-		ArrayList<Thread> threads = new ArrayList<Thread>();
-		ThreadedLinkFetcher.isDone = false;
+		// Wait for every single task to fetch its data, or for the tasks to
+		// stop once the meeting node has been found...
+		FetchExecutor.runAll(this.token, tasks);
 		
-		for (int i = 1; i <= numThreads; ++i) {
-			// Get the indices of elements in the links list so that we may
-			// evenly partition the links elements amongst all the threads.
-			int fromIndex = (i - 1) * numPerThread;
-			int toIndex = fromIndex + numPerThread;
-			
-			// Just In Case, limit the toIndex to the side of the links list.
-			// Also, if this is the last thread, make sure it encapsulates the
-			// entire remaining partition of the list.
-			if (i == numThreads) toIndex = thisSide.size();
-			if (toIndex >= thisSide.size()) toIndex = thisSide.size();
-			
-			// Create the partition of the list
-			List<String> task = thisSide.subList(fromIndex, toIndex);
-			
-			// Create a new Thread with the partition as its assignment, add
-			// it to the list and start its execution.
-			Thread tgg = new Thread(new ThreadedLinkFetcher(
-					newLinks, task, fetcher, otherSide, map));
-			threads.add(tgg);
-			tgg.start();
+		// A level of backlinks with batches which could not be fetched is
+		// missing some of its backlinks
+		if (!isStartSide) {
+			for (ThreadedLinkFetcher task : tasks) 
+				if (task.getFailedBatches() > 0) this.isTreeRecorded = false;
 		}
 		
-		// Wait for every single thread to fetch its data...
-		for (Thread t : threads) {
-			try { t.join(); } 
-			catch (InterruptedException e) { e.printStackTrace(); } 
+		return newLinks.keys(); // Finished
+	}
+	
+	/**
+	 * Interns each of the specified titles in the dictionary and records the
+	 * specified parent as its predecessor or successor, unless the title was
+	 * already visited by that side of the search.
+	 * @param titles The titles to be interned.
+	 * @param parentId The ID of the article from which the titles were
+	 *                 fetched.
+	 * @param map The predecessor or successor ID map.
+	 * @return The distinct IDs of the titles which had not been visited.
+	 */
+	private int[] internAll(List<String> titles, int parentId, 
+			IntIntMap map) {
+		IntList ids = new IntList(titles.size());
+		for (String title : titles) {
+			int id = this.dictionary.intern(title);
+			if (map.putIfAbsent(id, parentId)) ids.add(id);
 		}
 		
-		return new ArrayList<String>(newLinks); // Finished
+		return ids.toArray();
 	}
 }
@@ -12,6 +12,7 @@ import org.junit.Test;
 
 import com.antverdovsky.wikideg.linkfetch.JSONLinksFetcher;
 import com.antverdovsky.wikideg.util.DataParse;
+import com.antverdovsky.wikideg.util.TitleSet;
 import com.antverdovsky.wikideg.util.URLFetch;
 import com.antverdovsky.wikideg.util.Utilities;
 
@@ -94,7 +95,7 @@ public class SeparationTest {
 			// article.
 			ArrayList<String> links = new ArrayList<String>();
 			try {
-				ArrayList<String> targets = new ArrayList<String>(1);
+				TitleSet targets = new TitleSet();
 				targets.add(next);
 				links = new JSONLinksFetcher().getLinks(current, targets);
 			} catch (IOException e) {
@@ -0,0 +1,695 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.IntIntMap;
+import com.antverdovsky.wikideg.util.IntList;
+import com.antverdovsky.wikideg.util.Logger;
+import com.antverdovsky.wikideg.util.TitleDictionary;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Computes every shortest path between two articles, from a single search.
+ * Like a {@link Separation}, the search grows the side of the start article
+ * and the side of the end article one level at a time, but each level is
+ * fetched in full, and every link from an article of one level to an
+ * article of the next is kept, rather than only the first one found. Each
+ * side is then a layered graph which holds every shortest path from its
+ * root to the articles it reached. Once the two sides meet, each article
+ * of the level where they met which was reached by both sides is the
+ * middle of some shortest path, and every shortest path runs through one
+ * of them, so all of the paths are read from the two layered graphs
+ * without fetching anything more. The paths are enumerated lazily, either
+ * in the order of the search, or best first by the total score of their
+ * articles. Both sides use the fetchers of the {@link Separation} class.
+ */
+public class ShortestPathsSeparation implements Iterable<AbstractSeparation> {
+	// Default bound on the number of degrees of the paths
+	public static final int DEFAULT_MAX_DEGREES = 6;
+	
+	/**
+	 * One side of the search, along with the links between its levels.
+	 * Each article reached by the side holds a list of its parents, the
+	 * articles of the level before it which link to it (or to which it
+	 * links, on the side of the end article).
+	 */
+	private static class Side {
+		private AbstractLinkFetcher fetcher; // Fetcher of the side
+		private int root;                    // ID of the root article
+		private IntIntMap levels;            // Level of each visited link
+		private IntIntMap lastParents;       // Last parent edge of each link
+		private IntList parents;             // Parent ID of each edge
+		private IntList previous;            // Edge before each edge, or -1
+		private int[] frontier;              // IDs reached by the last level
+		private int depth;                   // Number of levels grown
+		
+		/**
+		 * Creates a new side, which has only visited its root.
+		 * @param fetcher The fetcher of the links of the side.
+		 * @param root The ID of the root article.
+		 */
+		private Side(AbstractLinkFetcher fetcher, int root) {
+			this.fetcher = fetcher;
+			this.root = root;
+			this.levels = new IntIntMap();
+			this.levels.put(root, 0);
+			this.lastParents = new IntIntMap();
+			this.parents = new IntList();
+			this.previous = new IntList();
+			this.frontier = new int[] { root };
+			this.depth = 0;
+		}
+		
+		/**
+		 * Records the specified parent of the specified article, unless it
+		 * is the last parent which was recorded for the article.
+		 * @param id The ID of the article.
+		 * @param parent The ID of the parent.
+		 */
+		private void addParent(int id, int parent) {
+			int last = this.lastParents.get(id);
+			if (last != IntIntMap.MISSING && this.parents.get(last) == parent)
+				return;
+			
+			this.parents.add(parent);
+			this.previous.add((last == IntIntMap.MISSING) ? -1 : last);
+			this.lastParents.put(id, this.parents.size() - 1);
+		}
+		
+		/**
+		 * Returns the parents of the specified article, in the order in
+		 * which they were found.
+		 * @param id The ID of the article.
+		 * @return The IDs of the parents.
+		 */
+		private IntList getParents(int id) {
+			IntList reversed = new IntList();
+			int edge = this.lastParents.get(id);
+			for (; edge >= 0; edge = this.previous.get(edge))
+				reversed.add(this.parents.get(edge));
+			
+			IntList parents = new IntList(reversed.size());
+			for (int i = reversed.size() - 1; i >= 0; --i)
+				parents.add(reversed.get(i));
+			return parents;
+		}
+	}
+	
+	/**
+	 * Path which is being grown by the best first enumeration, from the
+	 * start article up to one of the articles of its shortest paths.
+	 */
+	private static class Partial {
+		private int id;           // ID of the last article of the path
+		private int position;     // Position of the last article
+		private Partial previous; // Path up to the article before, or null
+		private double score;     // Total score of the articles of the path
+		private double bound;     // Score of the best path which extends it
+		private long order;       // Order in which the path was queued
+	}
+	
+	/**
+	 * Iterator over every shortest path, in the order of the search. The
+	 * iterator holds the path which it returns next, along with the options
+	 * at each position of the path, and moves on to the next path by taking
+	 * the next option at the last position which has one left.
+	 */
+	private class PathIterator implements Iterator<AbstractSeparation> {
+		private int[] path;         // IDs of the articles of the next path
+		private IntList[] options;  // Options at each position of the path
+		private int[] chosen;       // Option taken at each position
+		private boolean hasNext;    // Is there a next path?
+		
+		/**
+		 * Creates a new iterator, whose next path takes the first option at
+		 * every position.
+		 */
+		private PathIterator() {
+			int degrees = ShortestPathsSeparation.this.numDegrees;
+			this.path = new int[degrees + 1];
+			this.options = new IntList[degrees + 1];
+			this.chosen = new int[degrees + 1];
+			this.hasNext = ShortestPathsSeparation.this.pathExists;
+			
+			this.path[0] = ShortestPathsSeparation.this.startId;
+			if (this.hasNext) this.fill(0);
+		}
+		
+		@Override
+		/**
+		 * Returns whether or not there is another path.
+		 * @return True if there is another path. False otherwise.
+		 */
+		public boolean hasNext() {
+			return this.hasNext;
+		}
+		
+		@Override
+		/**
+		 * Returns the next path, and moves on to the path after it.
+		 * @return The separation of the path.
+		 */
+		public AbstractSeparation next() {
+			if (!this.hasNext) throw new NoSuchElementException();
+			AbstractSeparation separation =
+					ShortestPathsSeparation.this.toSeparation(this.path);
+			
+			int position = this.path.length - 1;
+			while (position > 0 && this.chosen[position] + 1 >=
+					this.options[position].size()) {
+				--position;
+			}
+			if (position == 0) {
+				this.hasNext = false;
+			} else {
+				++(this.chosen[position]);
+				this.path[position] = this.options[position].get(
+						this.chosen[position]);
+				this.fill(position);
+			}
+			
+			return separation;
+		}
+		
+		/**
+		 * Takes the first option at every position after the specified
+		 * position of the path.
+		 * @param position The position.
+		 */
+		private void fill(int position) {
+			for (int i = position; i + 1 < this.path.length; ++i) {
+				this.options[i + 1] = ShortestPathsSeparation.this.getNext(
+						this.path[i], i);
+				this.chosen[i + 1] = 0;
+				this.path[i + 1] = this.options[i + 1].get(0);
+			}
+		}
+	}
+	
+	/**
+	 * Iterator over every shortest path, best first. The iterator grows the
+	 * path whose bound is the highest, which is the score of its articles
+	 * plus the highest score of any path on from its last article, so the
+	 * first complete path to come out of the queue is the best one left.
+	 */
+	private class BestPathIterator implements Iterator<AbstractSeparation> {
+		private ToDoubleFunction<String> score; // Score of each article
+		private HashMap<Integer, Double> best;  // Best score from each ID
+		private PriorityQueue<Partial> queue;   // Paths, by their bound
+		private long order;                     // Paths queued so far
+		private Partial next;                   // Next complete path
+		
+		/**
+		 * Creates a new iterator, whose queue holds only the start article.
+		 * @param score The score of each article, by its title.
+		 */
+		private BestPathIterator(ToDoubleFunction<String> score) {
+			this.score = score;
+			this.best = new HashMap<Integer, Double>();
+			this.queue = new PriorityQueue<Partial>((a, b) ->
+					(a.bound != b.bound) ? Double.compare(b.bound, a.bound) :
+						Long.compare(a.order, b.order));
+			this.order = 0;
+			
+			if (ShortestPathsSeparation.this.pathExists) {
+				int start = ShortestPathsSeparation.this.startId;
+				Partial root = new Partial();
+				root.id = start;
+				root.score = score.applyAsDouble(
+						ShortestPathsSeparation.this.startArticle);
+				root.bound = ShortestPathsSeparation.this.getBest(start, 0,
+						score, this.best);
+				this.queue.add(root);
+			}
+			this.next = this.advance();
+		}
+		
+		@Override
+		/**
+		 * Returns whether or not there is another path.
+		 * @return True if there is another path. False otherwise.
+		 */
+		public boolean hasNext() {
+			return this.next != null;
+		}
+		
+		@Override
+		/**
+		 * Returns the path with the next highest score.
+		 * @return The separation of the path.
+		 */
+		public AbstractSeparation next() {
+			if (this.next == null) throw new NoSuchElementException();
+			
+			int[] path = new int[this.next.position + 1];
+			for (Partial p = this.next; p != null; p = p.previous)
+				path[p.position] = p.id;
+			this.next = this.advance();
+			
+			return ShortestPathsSeparation.this.toSeparation(path);
+		}
+		
+		/**
+		 * Grows the best paths of the queue until the best of them is
+		 * complete.
+		 * @return The complete path, or null if there are no more.
+		 */
+		private Partial advance() {
+			int degrees = ShortestPathsSeparation.this.numDegrees;
+			while (!this.queue.isEmpty()) {
+				Partial partial = this.queue.poll();
+				if (partial.position == degrees) return partial;
+				
+				int position = partial.position + 1;
+				IntList next = ShortestPathsSeparation.this.getNext(
+						partial.id, partial.position);
+				for (int i = 0; i < next.size(); ++i) {
+					Partial grown = new Partial();
+					grown.id = next.get(i);
+					grown.position = position;
+					grown.previous = partial;
+					grown.score = partial.score + this.score.applyAsDouble(
+							ShortestPathsSeparation.this.getTitle(grown.id,
+									position));
+					grown.bound = partial.score +
+							ShortestPathsSeparation.this.getBest(grown.id,
+									position, this.score, this.best);
+					grown.order = ++(this.order);
+					this.queue.add(grown);
+				}
+			}
+			
+			return null;
+		}
+	}
+	
+	private String startArticle;          // The article where paths start
+	private String endArticle;            // The article where paths end
+	private TitleDictionary dictionary;   // Interns titles as integer IDs
+	private int startId;                  // The ID of the start article
+	private int endId;                    // The ID of the end article
+	
+	private Side forward;                 // Side of the start article
+	private Side backward;                // Side of the end article
+	private int[] middles;                // IDs where the two sides met
+	private HashMap<Integer, IntList> children; // Next articles, forwards
+	
+	private int numDegrees;               // Degrees of Separation
+	private boolean pathExists;           // Does a path exist?
+	private CancellationToken token;      // Token of the search
+	
+	/**
+	 * Creates a new ShortestPathsSeparation and computes every shortest
+	 * path from the start article to the end article, of up to the default
+	 * number of degrees.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @throws IOException If the links or backlinks of any level of the
+	 *                     search could not be fetched.
+	 */
+	public ShortestPathsSeparation(String start, String end)
+			throws IOException {
+		this(start, end, DEFAULT_MAX_DEGREES);
+	}
+	
+	/**
+	 * Creates a new ShortestPathsSeparation and computes every shortest
+	 * path from the start article to the end article.
+	 * @param start The start article.
+	 * @param end The end article.
+	 * @param maxDegrees The maximum number of degrees of the paths. Since
+	 *                   every level is fetched in full, no more levels are
+	 *                   grown than are needed for paths of this length.
+	 * @throws IOException If the links or backlinks of any level of the
+	 *                     search could not be fetched.
+	 */
+	public ShortestPathsSeparation(String start, String end, int maxDegrees)
+			throws IOException {
+		this.startArticle = start;
+		this.endArticle = end;
+		this.dictionary = new TitleDictionary();
+		this.startId = this.dictionary.intern(start);
+		this.endId = this.dictionary.intern(end);
+		
+		this.forward = new Side(Separation.getLinksFetcher(), this.startId);
+		this.backward = new Side(Separation.getBacklinksFetcher(),
+				this.endId);
+		this.middles = new int[0];
+		this.children = new HashMap<Integer, IntList>();
+		this.numDegrees = 0;
+		this.pathExists = false;
+		this.token = new CancellationToken();
+		
+		this.pathExists = this.search(maxDegrees);
+		if (this.pathExists) this.buildChildren();
+	}
+	
+	/**
+	 * Returns the number of degrees of separation between the two articles,
+	 * which is the length of every one of the shortest paths.
+	 * @return The degrees of separation, or zero if no path was found.
+	 */
+	public int getNumDegrees() {
+		return this.numDegrees;
+	}
+	
+	/**
+	 * Returns whether or not a path was found.
+	 * @return True if a path was found. False otherwise.
+	 */
+	public boolean getPathExists() {
+		return this.pathExists;
+	}
+	
+	/**
+	 * Returns the number of articles through which the shortest paths run
+	 * where the two sides of the search met.
+	 * @return The number of middle articles.
+	 */
+	public int getNumMiddles() {
+		return this.middles.length;
+	}
+	
+	/**
+	 * Returns the number of shortest paths, which is counted without
+	 * enumerating them.
+	 * @return The number of paths, or Long.MAX_VALUE if there are more.
+	 */
+	public long getNumPaths() {
+		if (!this.pathExists) return 0;
+		
+		return this.count(this.startId, 0, new HashMap<Integer, Long>());
+	}
+	
+	@Override
+	/**
+	 * Returns an iterator over every shortest path, in the order of the
+	 * search. The paths are read from the search as they are iterated, so
+	 * taking the first few of a great many paths costs only those few.
+	 * @return The iterator over the separation of each path.
+	 */
+	public Iterator<AbstractSeparation> iterator() {
+		return new PathIterator();
+	}
+	
+	/**
+	 * Returns an iterator over every shortest path, from the path whose
+	 * articles have the highest total score to the path whose articles have
+	 * the lowest. The best score which can be reached from each article is
+	 * worked out from the end article backwards first, so each path is
+	 * found by growing only the paths which may still be the best, and
+	 * taking the first few paths does not enumerate the rest.
+	 * @param score The score of each article, by its title. The score of
+	 *              an article must not change while the paths are iterated.
+	 * @return The iterator over the separation of each path.
+	 */
+	public Iterator<AbstractSeparation> iterator(
+			ToDoubleFunction<String> score) {
+		return new BestPathIterator(score);
+	}
+	
+	/**
+	 * Returns up to the specified number of shortest paths, in the order of
+	 * the search.
+	 * @param limit The maximum number of paths.
+	 * @return The separation of each path.
+	 */
+	public List<AbstractSeparation> getPaths(int limit) {
+		return ShortestPathsSeparation.take(this.iterator(), limit);
+	}
+	
+	/**
+	 * Returns up to the specified number of shortest paths, whose articles
+	 * have the highest total scores, from the best path down.
+	 * @param limit The maximum number of paths.
+	 * @param score The score of each article, by its title.
+	 * @return The separation of each path.
+	 */
+	public List<AbstractSeparation> getBestPaths(int limit,
+			ToDoubleFunction<String> score) {
+		return ShortestPathsSeparation.take(this.iterator(score), limit);
+	}
+	
+	/**
+	 * Searches for the shortest paths from the start article to the end
+	 * article, growing the side with the fewer articles in its frontier by
+	 * a level at a time, until the two sides meet.
+	 * @param maxDegrees The maximum number of degrees of the paths.
+	 * @return True if a path was found. False otherwise.
+	 * @throws IOException If the links or backlinks of any level of the
+	 *                     search could not be fetched.
+	 */
+	private boolean search(int maxDegrees) throws IOException {
+		if (this.startId == this.endId) {
+			Logger.logLine("\tThe starting article equals the end article, " +
+					"0 degrees of separation found.");
+			
+			this.middles = new int[] { this.startId };
+			return true;
+		}
+		
+		while (this.forward.depth + this.backward.depth < maxDegrees) {
+			Side side = (this.forward.frontier.length <=
+					this.backward.frontier.length) ? this.forward :
+						this.backward;
+			Side other = (side == this.forward) ? this.backward :
+				this.forward;
+			this.grow(side);
+			
+			// Every article of the new level which the other side reached
+			// was reached by the last level of the other side, since the
+			// two sides would otherwise have met at an earlier level
+			IntList met = new IntList();
+			for (int id : side.frontier)
+				if (other.levels.containsKey(id)) met.add(id);
+			
+			if (!met.isEmpty()) {
+				this.middles = met.toArray();
+				this.numDegrees = this.forward.depth + this.backward.depth;
+				Logger.logLine("\tThe sides met at " + met.size() +
+						" middle ground article(s), " + this.numDegrees +
+						" degrees of separation found.");
+				return true;
+			} else if (side.frontier.length == 0) {
+				Logger.logLine("\tOne side cannot be grown any further! " +
+						"Unable to complete the path.");
+				return false;
+			}
+		}
+		
+		Logger.logLine("\tNo path of at most " + maxDegrees + " degrees " +
+				"exists! Unable to complete the path.");
+		return false;
+	}
+	
+	/**
+	 * Grows the specified side by one level, fetching the links of every
+	 * article of its frontier in full, and recording every article of the
+	 * frontier as a parent of each of its links which are new to the side
+	 * or were first reached by this level.
+	 * @param side The side.
+	 * @throws IOException If the links of the level could not be fetched.
+	 */
+	private void grow(Side side) throws IOException {
+		++(side.depth);
+		Logger.logLine("Growing level " + side.depth + " of the " +
+				((side == this.forward) ? "start" : "end") + " article " +
+				"from " + side.frontier.length + " article(s).");
+		
+		Map<Integer, int[]> links = this.fetch(side);
+		IntList next = new IntList();
+		for (int id : side.frontier) {
+			int[] linksOf = links.get(id);
+			if (linksOf == null) continue;
+			
+			for (int link : linksOf) {
+				int level = side.levels.get(link);
+				if (level == IntIntMap.MISSING) {
+					side.levels.put(link, side.depth);
+					next.add(link);
+				} else if (level != side.depth) {
+					continue;
+				}
+				
+				side.addParent(link, id);
+			}
+		}
+		
+		side.frontier = next.toArray();
+	}
+	
+	/**
+	 * Fetches the links of each article of the frontier of the specified
+	 * side, in parallel. The links of the root of the side are fetched on
+	 * their own, so that a failure to fetch them is thrown rather than
+	 * leaving the root without links.
+	 * @param side The side.
+	 * @return The IDs of the links of each article, by its ID.
+	 * @throws IOException If the links of any article of the frontier could
+	 *                     not be fetched.
+	 */
+	private Map<Integer, int[]> fetch(Side side) throws IOException {
+		if (side.depth == 1) {
+			TitleSet none = TitleSet.of(this.dictionary, new int[0]);
+			HashMap<Integer, int[]> links = new HashMap<Integer, int[]>();
+			links.put(side.root, LevelFetcher.internAll(this.dictionary,
+					side.fetcher.getLinks(this.dictionary.getTitle(side.root),
+							none, this.token)));
+			return links;
+		}
+		
+		return LevelFetcher.fetch(side.fetcher, this.dictionary,
+				side.frontier, this.token);
+	}
+	
+	/**
+	 * Builds the next articles of each article of the side of the start
+	 * article which is on a shortest path, by following the parents of the
+	 * middle articles back to the start article. Articles which the side
+	 * reached but which lead to no middle article are left out.
+	 */
+	private void buildChildren() {
+		int[] level = this.middles;
+		for (int depth = this.forward.depth; depth > 0; --depth) {
+			IntList previous = new IntList();
+			for (int id : level) {
+				IntList parents = this.forward.getParents(id);
+				for (int i = 0; i < parents.size(); ++i) {
+					int parent = parents.get(i);
+					IntList next = this.children.get(parent);
+					if (next == null) {
+						next = new IntList();
+						this.children.put(parent, next);
+						previous.add(parent);
+					}
+					
+					next.add(id);
+				}
+			}
+			
+			level = previous.toArray();
+		}
+	}
+	
+	/**
+	 * Returns the articles which come after the specified article on the
+	 * shortest paths. Up to the middle articles, these are the articles
+	 * which it links to on the side of the start article. From the middle
+	 * articles on, these are the parents of the article on the side of the
+	 * end article.
+	 * @param id The ID of the article.
+	 * @param position The position of the article on the paths.
+	 * @return The IDs of the next articles.
+	 */
+	private IntList getNext(int id, int position) {
+		if (position < this.forward.depth) return this.children.get(id);
+		
+		return this.backward.getParents(id);
+	}
+	
+	/**
+	 * Returns the title of the specified article of the paths, which is the
+	 * title as specified for the start and end articles.
+	 * @param id The ID of the article.
+	 * @param position The position of the article on the paths.
+	 * @return The title.
+	 */
+	private String getTitle(int id, int position) {
+		if (position == 0) return this.startArticle;
+		if (position == this.numDegrees) return this.endArticle;
+		
+		return this.dictionary.getTitle(id);
+	}
+	
+	/**
+	 * Returns the separation along the specified path.
+	 * @param path The IDs of the articles of the path.
+	 * @return The separation.
+	 */
+	private AbstractSeparation toSeparation(int[] path) {
+		List<String> titles = new ArrayList<String>(path.length);
+		for (int i = 0; i < path.length; ++i)
+			titles.add(this.getTitle(path[i], i));
+		
+		return new PathSeparation(titles);
+	}
+	
+	/**
+	 * Returns the number of shortest paths from the specified article to
+	 * the end article.
+	 * @param id The ID of the article.
+	 * @param position The position of the article on the paths.
+	 * @param counts The number of paths from each article which has been
+	 *               counted.
+	 * @return The number of paths, or Long.MAX_VALUE if there are more.
+	 */
+	private long count(int id, int position, HashMap<Integer, Long> counts) {
+		if (position == this.numDegrees) return 1;
+		Long count = counts.get(id);
+		if (count != null) return count;
+		
+		long total = 0;
+		IntList next = this.getNext(id, position);
+		for (int i = 0; i < next.size(); ++i) {
+			long paths = this.count(next.get(i), position + 1, counts);
+			total = (paths > Long.MAX_VALUE - total) ? Long.MAX_VALUE :
+				total + paths;
+		}
+		
+		counts.put(id, total);
+		return total;
+	}
+	
+	/**
+	 * Returns the highest total score of the articles of any shortest path
+	 * from the specified article to the end article, including the article.
+	 * @param id The ID of the article.
+	 * @param position The position of the article on the paths.
+	 * @param score The score of each article, by its title.
+	 * @param best The highest score from each article which has been found.
+	 * @return The highest score.
+	 */
+	private double getBest(int id, int position,
+			ToDoubleFunction<String> score, HashMap<Integer, Double> best) {
+		Double known = best.get(id);
+		if (known != null) return known;
+		
+		double highest = 0;
+		if (position < this.numDegrees) {
+			highest = Double.NEGATIVE_INFINITY;
+			IntList next = this.getNext(id, position);
+			for (int i = 0; i < next.size(); ++i) {
+				highest = Math.max(highest,
+						this.getBest(next.get(i), position + 1, score, best));
+			}
+		}
+		
+		highest += score.applyAsDouble(this.getTitle(id, position));
+		best.put(id, highest);
+		return highest;
+	}
+	
+	/**
+	 * Returns up to the specified number of elements of an iterator.
+	 * @param it The iterator.
+	 * @param limit The maximum number of elements.
+	 * @return The elements.
+	 */
+	private static List<AbstractSeparation> take(
+			Iterator<AbstractSeparation> it, int limit) {
+		List<AbstractSeparation> paths = new ArrayList<AbstractSeparation>();
+		while (paths.size() < limit && it.hasNext()) paths.add(it.next());
+		
+		return paths;
+	}
+}
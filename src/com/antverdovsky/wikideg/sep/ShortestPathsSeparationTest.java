@@ -0,0 +1,224 @@
+package com.antverdovsky.wikideg.sep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.graph.ArrayGraph;
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.graph.TestGraphs;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+
+/**
+ * Basic Testing of the ShortestPathsSeparation class.
+ */
+public class ShortestPathsSeparationTest {
+	@Rule
+	public TestFetchers fetchers = new TestFetchers();
+	
+	/**
+	 * Returns the number of shortest paths from an article to every other
+	 * article, counted by a plain breadth first search.
+	 * @param graph The graph.
+	 * @param start The start article.
+	 * @param distances Receives the length of the shortest path to each
+	 *                  article, or -1 for each article to which there is no
+	 *                  path.
+	 * @return The number of shortest paths to each article.
+	 */
+	private static long[] countPaths(IntGraph graph, int start,
+			int[] distances) {
+		long[] counts = new long[graph.size()];
+		Arrays.fill(distances, -1);
+		distances[start] = 0;
+		counts[start] = 1;
+		
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			int last = -1;
+			long stop = graph.getLinksEnd(LinkDirection.LINKS, node);
+			for (long p = graph.getLinksStart(LinkDirection.LINKS, node);
+					p < stop; ++p) {
+				// The links are sorted, so repeated links are together
+				int link = graph.getLink(LinkDirection.LINKS, p);
+				if (link == last) continue;
+				last = link;
+				
+				if (distances[link] < 0) {
+					distances[link] = distances[node] + 1;
+					queue.add(link);
+				}
+				if (distances[link] == distances[node] + 1)
+					counts[link] += counts[node];
+			}
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Returns the total score of the articles of the specified path.
+	 * @param path The path.
+	 * @param scores The score of each article, by its title.
+	 * @return The total score.
+	 */
+	private static double score(Stack<String> path,
+			HashMap<String, Double> scores) {
+		double total = 0;
+		for (String title : path) total += scores.get(title);
+		
+		return total;
+	}
+	
+	@Test
+	/**
+	 * Tests that every shortest path over random graphs is enumerated
+	 * exactly once, both in the order of the search and best first, and
+	 * that the paths come out best first in the order of their scores.
+	 * @throws IOException If the links of the start article or the
+	 *                     backlinks of the end article could not be
+	 *                     fetched.
+	 */
+	public void testRandomGraphs() throws IOException {
+		Random random = new Random(11);
+		
+		for (int maxLinks : new int[] { 3, 6 }) {
+			ArrayGraph graph = this.fetchers.useGraph(
+					TestGraphs.randomGraph(500, maxLinks, maxLinks));
+			HashMap<String, Double> scores = new HashMap<String, Double>();
+			for (int node = 0; node < graph.size(); ++node)
+				scores.put(graph.getTitle(node), random.nextDouble());
+			
+			for (int i = 0; i < 20; ++i) {
+				int start = random.nextInt(graph.size());
+				int[] distances = new int[graph.size()];
+				long[] counts = ShortestPathsSeparationTest.countPaths(graph,
+						start, distances);
+				
+				for (int j = 0; j < 10; ++j) {
+					int end = random.nextInt(graph.size());
+					ShortestPathsSeparation separation =
+							new ShortestPathsSeparation(graph.getTitle(start),
+									graph.getTitle(end));
+					if (distances[end] < 0 ||
+							distances[end] > ShortestPathsSeparation
+									.DEFAULT_MAX_DEGREES) {
+						assertFalse(separation.getPathExists());
+						assertEquals(0, separation.getNumPaths());
+						assertFalse(separation.iterator().hasNext());
+						continue;
+					}
+					
+					assertTrue(separation.getPathExists());
+					assertEquals(distances[end], separation.getNumDegrees());
+					assertEquals(counts[end], separation.getNumPaths());
+					
+					HashSet<List<String>> paths = new HashSet<List<String>>();
+					for (AbstractSeparation path : separation) {
+						assertEquals(distances[end], path.getNumDegrees());
+						assertEquals(graph.getTitle(start),
+								path.getPath().firstElement());
+						assertEquals(graph.getTitle(end),
+								path.getPath().lastElement());
+						TestGraphs.assertLinked(graph,
+								path.getPath());
+						assertTrue(paths.add(path.getPath()));
+					}
+					assertEquals(counts[end], paths.size());
+					
+					double last = Double.POSITIVE_INFINITY;
+					Iterator<AbstractSeparation> best = separation.iterator(
+							scores::get);
+					while (best.hasNext()) {
+						Stack<String> path = best.next().getPath();
+						double score = ShortestPathsSeparationTest.score(
+								path, scores);
+						assertTrue(score <= last + 1e-9);
+						assertTrue(paths.remove(path));
+						last = score;
+					}
+					assertTrue(paths.isEmpty());
+				}
+			}
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests the paths of a small graph with several middle articles, the
+	 * paths from an article to itself, and the limits on the number of
+	 * paths and degrees.
+	 * @throws IOException If the links of the start article or the
+	 *                     backlinks of the end article could not be
+	 *                     fetched.
+	 */
+	public void testPaths() throws IOException {
+		HashMap<String, List<String>> links =
+				new HashMap<String, List<String>>();
+		links.put("Poland", Arrays.asList("Warsaw", "Krak\u00f3w", "Lviv"));
+		links.put("Warsaw", Arrays.asList("Vistula", "Baltic Sea"));
+		links.put("Krak\u00f3w", Arrays.asList("Vistula", "Wawel"));
+		links.put("Lviv", Arrays.asList("Ukraine"));
+		links.put("Vistula", Arrays.asList("Baltic Sea"));
+		ArrayGraph graph = new ArrayGraph(links);
+		this.fetchers.useGraph(graph);
+		
+		ShortestPathsSeparation separation = new ShortestPathsSeparation(
+				"poland", "Vistula");
+		assertEquals(2, separation.getNumDegrees());
+		assertEquals(2, separation.getNumPaths());
+		assertEquals(2, separation.getNumMiddles());
+		
+		List<List<String>> paths = new ArrayList<List<String>>();
+		for (AbstractSeparation path : separation)
+			paths.add(path.getPath());
+		assertEquals(2, paths.size());
+		assertTrue(paths.contains(Arrays.asList("poland", "Warsaw",
+				"Vistula")));
+		assertTrue(paths.contains(Arrays.asList("poland", "Krak\u00f3w",
+				"Vistula")));
+		assertEquals(1, separation.getPaths(1).size());
+		
+		HashMap<String, Double> scores = new HashMap<String, Double>();
+		scores.put("Krak\u00f3w", 1.0);
+		List<AbstractSeparation> best = separation.getBestPaths(5,
+				title -> scores.getOrDefault(title, 0.0));
+		assertEquals(2, best.size());
+		assertEquals(Arrays.asList("poland", "Krak\u00f3w", "Vistula"),
+				best.get(0).getPath());
+		
+		separation = new ShortestPathsSeparation("Poland", "Baltic Sea");
+		assertEquals(2, separation.getNumDegrees());
+		assertEquals(1, separation.getNumPaths());
+		
+		separation = new ShortestPathsSeparation("Poland", "poland");
+		assertEquals(0, separation.getNumDegrees());
+		assertEquals(Arrays.asList("Poland"),
+				separation.iterator().next().getPath());
+		
+		separation = new ShortestPathsSeparation("Poland", "Ukraine", 1);
+		assertFalse(separation.getPathExists());
+		separation = new ShortestPathsSeparation("Poland", "Ukraine", 2);
+		assertEquals(1, separation.getNumPaths());
+		
+		separation = new ShortestPathsSeparation("Baltic Sea", "Poland");
+		assertFalse(separation.getPathExists());
+		assertFalse(separation.iterator(title -> 0).hasNext());
+	}
+}
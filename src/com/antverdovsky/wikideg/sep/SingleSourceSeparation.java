@@ -0,0 +1,361 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.IntIntMap;
+import com.antverdovsky.wikideg.util.IntList;
+import com.antverdovsky.wikideg.util.Logger;
+import com.antverdovsky.wikideg.util.TitleDictionary;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Computes the separation between a single start article and each of many
+ * target articles. Rather than searching for each target from scratch, the
+ * links of the start article are grown once, one level at a time, and each
+ * target is resolved as soon as a level reaches it. Each level is grown in
+ * full, so a target is first reached at its shortest distance.
+ * The forward search grows at most a fixed number of levels, since each
+ * level is far larger than the one before it. The targets which it did not
+ * reach are then probed backwards, for at most a fixed number of levels,
+ * until their backlinks meet the articles reached by the forward search.
+ * The probes of all of the targets grow together, one level at a time, so
+ * an article which is on the probes of many targets is fetched only once.
+ * Both searches use the fetchers of the {@link Separation} class.
+ */
+public class SingleSourceSeparation {
+	// Default number of levels grown by the forward search
+	public static final int DEFAULT_FORWARD_DEGREES = 2;
+	
+	// Default number of levels grown by the probe of each target
+	public static final int DEFAULT_PROBE_DEGREES = 2;
+	
+	/**
+	 * The backward probe of a single target.
+	 */
+	private static class Probe {
+		private List<String> targets;  // Titles of the target, as specified
+		private int id;                // ID of the target
+		private IntIntMap successors;  // Successor ID of each visited link
+		private int[] frontier;        // IDs reached by the last level
+	}
+	
+	private String startArticle;          // The article where paths start
+	private TitleDictionary dictionary;   // Interns titles as integer IDs
+	private int startId;                  // The ID of the start article
+	
+	private IntIntMap predecessors;       // Predecessor ID of each link
+	private int[] frontier;               // IDs reached by the last level
+	private int forwardDegrees;           // Levels grown forwards
+	
+	private LinkedHashMap<String, Integer> pending; // Unresolved target IDs
+	private HashMap<String, AbstractSeparation> resolved; // Found paths
+	private LinkedHashMap<String, AbstractSeparation> separations;
+	
+	private CancellationToken token;             // Token of the search
+	private AbstractLinkFetcher forwardFetcher;  // Links of this search
+	private AbstractLinkFetcher backwardFetcher; // Backlinks of this search
+	
+	/**
+	 * Creates a new SingleSourceSeparation and computes the path from the
+	 * start article to each of the target articles, growing the default
+	 * number of levels forwards and probing the default number of levels
+	 * backwards.
+	 * @param start The start article.
+	 * @param targets The target articles.
+	 * @throws IOException If the links of the start article, or the
+	 *                     backlinks of any level probed from the targets,
+	 *                     could not be fetched.
+	 */
+	public SingleSourceSeparation(String start, Collection<String> targets)
+			throws IOException {
+		this(start, targets, DEFAULT_FORWARD_DEGREES, DEFAULT_PROBE_DEGREES);
+	}
+	
+	/**
+	 * Creates a new SingleSourceSeparation and computes the path from the
+	 * start article to each of the target articles.
+	 * @param start The start article.
+	 * @param targets The target articles.
+	 * @param forwardDegrees The maximum number of levels grown forwards from
+	 *                       the start article.
+	 * @param probeDegrees The maximum number of levels grown backwards from
+	 *                     each target which the forward search did not
+	 *                     reach, or zero if the targets are not probed.
+	 * @throws IOException If the links of the start article, or the
+	 *                     backlinks of any level probed from the targets,
+	 *                     could not be fetched.
+	 */
+	public SingleSourceSeparation(String start, Collection<String> targets,
+			int forwardDegrees, int probeDegrees) throws IOException {
+		this.startArticle = start;
+		this.dictionary = new TitleDictionary();
+		this.startId = this.dictionary.intern(start);
+		
+		this.predecessors = new IntIntMap();
+		this.predecessors.put(this.startId, this.startId);
+		this.frontier = new int[] { this.startId };
+		this.forwardDegrees = 0;
+		
+		this.pending = new LinkedHashMap<String, Integer>();
+		for (String target : targets)
+			this.pending.put(target, this.dictionary.intern(target));
+		this.resolved = new HashMap<String, AbstractSeparation>();
+		
+		this.token = new CancellationToken();
+		this.forwardFetcher = Separation.getLinksFetcher();
+		this.backwardFetcher = Separation.getBacklinksFetcher();
+		
+		// Grow the forward search until every target has been reached
+		this.resolveForward();
+		while (this.forwardDegrees < forwardDegrees &&
+				!this.pending.isEmpty() && this.frontier.length > 0) {
+			this.growForward();
+			this.resolveForward();
+		}
+		
+		// Probe backwards from the targets which were not reached, unless
+		// the forward search has reached every article it ever can
+		if (probeDegrees > 0 && !this.pending.isEmpty() &&
+				this.frontier.length > 0)
+			this.probe(probeDegrees);
+		
+		this.separations = new LinkedHashMap<String, AbstractSeparation>();
+		for (String target : targets) {
+			AbstractSeparation separation = this.resolved.get(target);
+			this.separations.put(target, (separation != null) ?
+					separation : new PathSeparation());
+		}
+	}
+	
+	/**
+	 * Returns the separation between the start article and each of the
+	 * target articles, in the order in which the targets were specified.
+	 * The separation of a target to which no path was found has no path,
+	 * either since there is none or since any path is longer than the
+	 * levels which were grown.
+	 * @return The separation of each target, by the target as specified.
+	 */
+	public Map<String, AbstractSeparation> getSeparations() {
+		return Collections.unmodifiableMap(this.separations);
+	}
+	
+	/**
+	 * Returns the separation between the start article and the specified
+	 * target article.
+	 * @param target The target article, as it was specified.
+	 * @return The separation, or null if the article was not a target.
+	 */
+	public AbstractSeparation getSeparation(String target) {
+		return this.separations.get(target);
+	}
+	
+	/**
+	 * Returns the number of levels which were grown forwards from the start
+	 * article.
+	 * @return The number of levels.
+	 */
+	public int getForwardDegrees() {
+		return this.forwardDegrees;
+	}
+	
+	/**
+	 * Grows the forward search by one level, fetching the links of every
+	 * article reached by the last level. The links of the start article are
+	 * fetched on their own, so that a failure to fetch them is thrown rather
+	 * than leaving the start article without links. Each article is fetched
+	 * in full, since every one of its links may lead to a target.
+	 * @throws IOException If the links of the start article could not be
+	 *                     fetched.
+	 */
+	private void growForward() throws IOException {
+		++(this.forwardDegrees);
+		Logger.logLine("Growing level " + this.forwardDegrees + " from " +
+				this.frontier.length + " article(s).");
+		
+		TitleSet none = TitleSet.of(this.dictionary, new int[0]);
+		IntIntMap newLinks = new IntIntMap();
+		if (this.forwardDegrees == 1) {
+			for (String link : this.forwardFetcher.getLinks(
+					this.startArticle, none, this.token)) {
+				int id = this.dictionary.intern(link);
+				if (this.predecessors.putIfAbsent(id, this.startId))
+					newLinks.putIfAbsent(id, id);
+			}
+		} else {
+			int batchSize = this.forwardFetcher.getBatchSize();
+			AtomicInteger meeting = new AtomicInteger(
+					TitleDictionary.NOT_FOUND);
+			List<ThreadedLinkFetcher> tasks =
+					new ArrayList<ThreadedLinkFetcher>();
+			for (int from = 0; from < this.frontier.length;
+					from += batchSize) {
+				int to = Math.min(this.frontier.length, from + batchSize);
+				tasks.add(new ThreadedLinkFetcher(this.dictionary, newLinks,
+						Arrays.copyOfRange(this.frontier, from, to),
+						this.forwardFetcher, none, this.predecessors, meeting,
+						this.token));
+			}
+			
+			FetchExecutor.runAll(this.token, tasks);
+		}
+		
+		this.frontier = newLinks.keys();
+	}
+	
+	/**
+	 * Resolves each pending target which has been reached by the forward
+	 * search.
+	 */
+	private void resolveForward() {
+		Iterator<Map.Entry<String, Integer>> it =
+				this.pending.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Integer> target = it.next();
+			if (!this.predecessors.containsKey(target.getValue())) continue;
+			
+			List<String> path = this.getForwardPath(target.getValue());
+			path.set(path.size() - 1, target.getKey());
+			this.resolved.put(target.getKey(), new PathSeparation(path));
+			it.remove();
+		}
+		
+		Logger.logLine("\tResolved " + this.resolved.size() + " target(s) " +
+				"within " + this.forwardDegrees + " degree(s), " +
+				this.pending.size() + " left.");
+	}
+	
+	/**
+	 * Probes backwards from each pending target, one level at a time, until
+	 * its backlinks meet the articles reached by the forward search. Since
+	 * every article within the levels grown forwards has been reached, the
+	 * first level at which a probe meets the forward search holds the last
+	 * step of a shortest path, through the article which is the closest to
+	 * the start article.
+	 * @param probeDegrees The maximum number of levels grown backwards.
+	 * @throws IOException If the backlinks of any level could not be
+	 *                     fetched.
+	 */
+	private void probe(int probeDegrees) throws IOException {
+		// Targets which are equal, ignoring their case, share a probe
+		HashMap<Integer, Probe> byId = new HashMap<Integer, Probe>();
+		for (Map.Entry<String, Integer> target : this.pending.entrySet()) {
+			Probe probe = byId.get(target.getValue());
+			if (probe == null) {
+				probe = new Probe();
+				probe.targets = new ArrayList<String>();
+				probe.id = target.getValue();
+				probe.successors = new IntIntMap();
+				probe.successors.put(probe.id, probe.id);
+				probe.frontier = new int[] { probe.id };
+				byId.put(probe.id, probe);
+			}
+			
+			probe.targets.add(target.getKey());
+		}
+		
+		List<Probe> probes = new ArrayList<Probe>(byId.values());
+		for (int level = 1; level <= probeDegrees && !probes.isEmpty();
+				++level) {
+			// Fetch the backlinks of the frontiers of every probe at once
+			IntIntMap union = new IntIntMap();
+			for (Probe probe : probes)
+				for (int id : probe.frontier) union.putIfAbsent(id, id);
+			Logger.logLine("Probing level " + level + " of " + probes.size() +
+					" target(s) from " + union.size() + " article(s).");
+			Map<Integer, int[]> backlinks = LevelFetcher.fetch(
+					this.backwardFetcher, this.dictionary, union.keys(),
+					this.token);
+			
+			Iterator<Probe> it = probes.iterator();
+			while (it.hasNext()) {
+				Probe probe = it.next();
+				int middle = TitleDictionary.NOT_FOUND;
+				int middleDistance = Integer.MAX_VALUE;
+				IntList next = new IntList();
+				
+				for (int id : probe.frontier) {
+					int[] backlinksOf = backlinks.get(id);
+					if (backlinksOf == null) continue;
+					
+					for (int backlink : backlinksOf) {
+						if (!probe.successors.putIfAbsent(backlink, id))
+							continue;
+						next.add(backlink);
+						
+						if (!this.predecessors.containsKey(backlink))
+							continue;
+						int distance = this.getForwardPath(backlink).size();
+						if (distance < middleDistance) {
+							middle = backlink;
+							middleDistance = distance;
+						}
+					}
+				}
+				
+				if (middle != TitleDictionary.NOT_FOUND) {
+					this.resolveProbe(probe, middle);
+					it.remove();
+				} else if (next.isEmpty()) {
+					it.remove();
+				} else {
+					probe.frontier = next.toArray();
+				}
+			}
+		}
+		
+		Logger.logLine("\tResolved " + this.resolved.size() + " target(s) " +
+				"in total, " + (this.pending.size()) + " left.");
+	}
+	
+	
+	/**
+	 * Resolves the targets of the specified probe, along the path through
+	 * the specified middle article.
+	 * @param probe The probe.
+	 * @param middle The ID of the article where the probe met the forward
+	 *               search.
+	 */
+	private void resolveProbe(Probe probe, int middle) {
+		List<String> path = this.getForwardPath(middle);
+		for (int id = middle; id != probe.id; ) {
+			id = probe.successors.get(id);
+			path.add(this.dictionary.getTitle(id));
+		}
+		
+		for (String target : probe.targets) {
+			List<String> targetPath = new ArrayList<String>(path);
+			targetPath.set(targetPath.size() - 1, target);
+			this.resolved.put(target, new PathSeparation(targetPath));
+			this.pending.remove(target);
+		}
+	}
+	
+	/**
+	 * Returns the path from the start article to the specified article,
+	 * which must have been reached by the forward search.
+	 * @param id The ID of the article.
+	 * @return The path, from the start article up to and including the
+	 *         article.
+	 */
+	private List<String> getForwardPath(int id) {
+		ArrayList<String> path = new ArrayList<String>();
+		for (; id != this.startId; id = this.predecessors.get(id))
+			path.add(this.dictionary.getTitle(id));
+		path.add(this.startArticle);
+		
+		Collections.reverse(path);
+		return path;
+	}
+}
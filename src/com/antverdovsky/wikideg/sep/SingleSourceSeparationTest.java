@@ -0,0 +1,166 @@
+package com.antverdovsky.wikideg.sep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.antverdovsky.wikideg.graph.ArrayGraph;
+import com.antverdovsky.wikideg.graph.TestGraphs;
+import com.antverdovsky.wikideg.linkfetch.GraphLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+
+/**
+ * Basic Testing of the SingleSourceSeparation class.
+ */
+public class SingleSourceSeparationTest {
+	@Rule
+	public TestFetchers fetchers = new TestFetchers();
+	
+	@Test
+	/**
+	 * Tests that the paths found from one article to many over random
+	 * graphs are as short as the paths found by a plain breadth first
+	 * search, whether they are found by the forward search alone or by the
+	 * backward probes, and that only the targets which are out of reach of
+	 * both are left without a path.
+	 * @throws IOException If the links of the start article could not be
+	 *                     fetched.
+	 */
+	public void testRandomGraphs() throws IOException {
+		Random random = new Random(7);
+		int[][] degrees = { { 2, 2 }, { 1, 3 }, { 3, 0 }, { 0, 4 },
+				{ 20, 0 } };
+		
+		for (int maxLinks : new int[] { 2, 4 }) {
+			ArrayGraph graph = this.fetchers.useGraph(
+					TestGraphs.randomGraph(2000, maxLinks, maxLinks));
+			
+			for (int i = 0; i < 10; ++i) {
+				int start = random.nextInt(graph.size());
+				String startTitle = graph.getTitle(start);
+				int[] distances = TestGraphs.distances(graph,
+						start);
+				
+				List<String> targets = new ArrayList<String>();
+				for (int j = 0; j < 30; ++j)
+					targets.add(graph.getTitle(random.nextInt(graph.size())));
+				
+				for (int[] degree : degrees) {
+					int maxDegrees = degree[0] + degree[1];
+					Map<String, AbstractSeparation> separations =
+							new SingleSourceSeparation(startTitle, targets,
+									degree[0], degree[1]).getSeparations();
+					assertEquals(targets.stream()
+							.distinct().count(), separations.size());
+					
+					for (String target : targets) {
+						AbstractSeparation separation =
+								separations.get(target);
+						int distance = distances[graph.find(target)];
+						if (!separation.getPathExists()) {
+							assertTrue(target + " at " + distance,
+									distance < 0 || distance > maxDegrees);
+							continue;
+						}
+						
+						assertEquals(target, distance,
+								separation.getNumDegrees());
+						Stack<String> path = separation.getPath();
+						assertEquals(distance + 1, path.size());
+						assertEquals(startTitle, path.firstElement());
+						assertEquals(target, path.lastElement());
+						assertEquals(distance,
+								separation.getEmbeddedPath().size());
+						TestGraphs.assertLinked(graph, path);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests the targets which are the start article itself, or which differ
+	 * only in case from each other, and the targets which are found only by
+	 * probing backwards from them.
+	 * @throws IOException If the links of the start article could not be
+	 *                     fetched.
+	 */
+	public void testTargets() throws IOException {
+		HashMap<String, List<String>> links =
+				new HashMap<String, List<String>>();
+		links.put("Poland", Arrays.asList("Warsaw", "Baltic Sea"));
+		links.put("Warsaw", Arrays.asList("Vistula"));
+		links.put("Vistula", Arrays.asList("Krak\u00f3w"));
+		links.put("Krak\u00f3w", Arrays.asList("Wawel"));
+		links.put("Lviv", Arrays.asList("Poland"));
+		ArrayGraph graph = new ArrayGraph(links);
+		this.fetchers.useGraph(graph);
+		
+		SingleSourceSeparation separations = new SingleSourceSeparation(
+				"poland", Arrays.asList("Poland", "wawel", "Wawel", "Lviv",
+						"Vistula"), 1, 3);
+		assertEquals(1, separations.getForwardDegrees());
+		
+		AbstractSeparation separation = separations.getSeparation("Poland");
+		assertTrue(separation.getPathExists());
+		assertEquals(0, separation.getNumDegrees());
+		
+		for (String wawel : new String[] { "wawel", "Wawel" }) {
+			separation = separations.getSeparation(wawel);
+			assertTrue(separation.getPathExists());
+			assertEquals(Arrays.asList("poland", "Warsaw", "Vistula",
+					"Krak\u00f3w", wawel), separation.getPath());
+		}
+		
+		separation = separations.getSeparation("Vistula");
+		assertEquals(Arrays.asList("poland", "Warsaw", "Vistula"),
+				separation.getPath());
+		
+		assertFalse(separations.getSeparation("Lviv").getPathExists());
+		assertEquals(null, separations.getSeparation("Lublin"));
+		assertEquals(Arrays.asList("Poland", "wawel", "Wawel", "Lviv",
+				"Vistula"), new ArrayList<String>(
+						separations.getSeparations().keySet()));
+	}
+	
+	@Test
+	/**
+	 * Tests that a failure to fetch the backlinks of a level probed from
+	 * the targets is thrown, rather than taken for there being no path.
+	 * @throws IOException If the links of the start article could not be
+	 *                     fetched.
+	 */
+	public void testProbeFailure() throws IOException {
+		HashMap<String, List<String>> links =
+				new HashMap<String, List<String>>();
+		links.put("Poland", Arrays.asList("Warsaw"));
+		links.put("Warsaw", Arrays.asList("Vistula"));
+		ArrayGraph graph = new ArrayGraph(links);
+		this.fetchers.use(new GraphLinkFetcher(graph, LinkDirection.LINKS),
+				(article, targets, token) -> {
+					throw new IOException("Unable to fetch " + article + ".");
+				});
+		
+		try {
+			new SingleSourceSeparation("Poland", Arrays.asList("Vistula"),
+					1, 1);
+			fail("The failure to fetch the backlinks was not thrown.");
+		} catch (IOException e) {
+			assertEquals("Unable to fetch Vistula.", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.antverdovsky.wikideg.sep;
+
+import org.junit.rules.ExternalResource;
+
+import com.antverdovsky.wikideg.graph.IntGraph;
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.GraphLinkFetcher;
+import com.antverdovsky.wikideg.linkfetch.LinkDirection;
+import com.antverdovsky.wikideg.util.URLFetch;
+
+/**
+ * Rule which lets the tests replace the fetchers of the Separation class.
+ * Before each test, the fetchers and the offline mode are saved and the
+ * offline mode is turned on, so that a test never downloads anything by
+ * mistake. After each test, they are restored.
+ */
+public class TestFetchers extends ExternalResource {
+	private AbstractLinkFetcher links;     // Links fetcher before the test
+	private AbstractLinkFetcher backlinks; // Backlinks fetcher before the test
+	private boolean wasOffline;            // Offline before the test?
+	
+	@Override
+	/**
+	 * Saves the fetchers of the Separation class and the offline mode, and
+	 * turns the offline mode on.
+	 */
+	protected void before() {
+		this.links = Separation.getLinksFetcher();
+		this.backlinks = Separation.getBacklinksFetcher();
+		this.wasOffline = URLFetch.getIsOffline();
+		URLFetch.setIsOffline(true);
+	}
+	
+	@Override
+	/**
+	 * Restores the fetchers of the Separation class and the offline mode.
+	 */
+	protected void after() {
+		Separation.setLinksFetcher(this.links);
+		Separation.setBacklinksFetcher(this.backlinks);
+		URLFetch.setIsOffline(this.wasOffline);
+	}
+	
+	/**
+	 * Sets the fetchers of the Separation class.
+	 * @param links The fetcher of the links.
+	 * @param backlinks The fetcher of the backlinks.
+	 */
+	public void use(AbstractLinkFetcher links, AbstractLinkFetcher backlinks) {
+		Separation.setLinksFetcher(links);
+		Separation.setBacklinksFetcher(backlinks);
+	}
+	
+	/**
+	 * Sets the fetchers of the Separation class to read from the specified
+	 * graph.
+	 * @param graph The graph.
+	 * @return The graph.
+	 */
+	public <T extends IntGraph> T useGraph(T graph) {
+		this.use(new GraphLinkFetcher(graph, LinkDirection.LINKS),
+				new GraphLinkFetcher(graph, LinkDirection.BACKLINKS));
+		return graph;
+	}
+}
@@ -0,0 +1,135 @@
+package com.antverdovsky.wikideg.sep;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.antverdovsky.wikideg.linkfetch.AbstractLinkFetcher;
+import com.antverdovsky.wikideg.util.CancellationToken;
+import com.antverdovsky.wikideg.util.IntIntMap;
+import com.antverdovsky.wikideg.util.TitleDictionary;
+import com.antverdovsky.wikideg.util.TitleSet;
+
+/**
+ * Task which fetches all of the links or backlinks of a particular set of
+ * articles. Many tasks are run on the shared fetch executor at once, so that
+ * multiple threads fetch different links at the same time. 
+ */
+class ThreadedLinkFetcher implements Runnable {
+	private IntIntMap writeTo;      // Where to add fetched links (concurrent)
+	private int[] task;             // IDs for which links are to be fetched
+	private TitleSet targets;       // The graph's other side visited nodes
+	private AtomicInteger meeting;  // ID of the node where the sides met
+	
+	private TitleDictionary dictionary;      // Dictionary of title IDs
+	private IntIntMap map;                   // Predecessor/Successor 
+	private AbstractLinkFetcher linkFetcher; // Fetcher to be used
+	private CancellationToken token;         // Cancellation of the search
+	private int failedBatches;               // Batches which failed to fetch
+	
+	/**
+	 * Creates a new thread graph grower instance.
+	 * @param dictionary The dictionary in which all titles are interned.
+	 * @param writeTo The concurrent map into whose keys the graph grower is
+	 *                to write the IDs of all of the links it fetches.
+	 * @param task The IDs of the links for which we are going to fetch their
+	 *             links.
+	 * @param linkFetcher The Link Fetcher to be used when fetching all of the
+	 *                    links.
+	 * @param targets The set of links visited by the other side. If any 
+	 *                fetched link is contained in this set as well, it is 
+	 *                written to the meeting node and the token will be 
+	 *                cancelled since a common node has been found.
+	 * @param map The predecessor or successor ID map.
+	 * @param meeting The ID of the common node, which is written by the 
+	 *                first instance to find a common node.
+	 * @param token The cancellation token of the search.
+	 */
+	public ThreadedLinkFetcher(TitleDictionary dictionary, 
+			IntIntMap writeTo, int[] task, AbstractLinkFetcher linkFetcher, 
+			TitleSet targets, IntIntMap map, AtomicInteger meeting, 
+			CancellationToken token) {
+		this.dictionary = dictionary;
+		this.writeTo = writeTo;
+		this.task = task;
+		this.linkFetcher = linkFetcher;
+		this.targets = targets;
+		this.map = map;
+		this.meeting = meeting;
+		this.token = token;
+		this.failedBatches = 0;
+	}
+	
+	/**
+	 * Returns the number of batches whose links could not be fetched, and
+	 * were thus left out of the graph. Must only be called once the task
+	 * has finished.
+	 * @return The number of batches.
+	 */
+	public int getFailedBatches() {
+		return this.failedBatches;
+	}
+	
+	/**
+	 * Continually fetches the links of each link in the task list, in batches
+	 * as large as the link fetcher supports. As each new link is fetched, its
+	 * predecessor or successor is added to the predecessor or successor hash
+	 * map. The keys of that map are the set of links visited by this side of
+	 * the search, so only links which have not been visited before are added
+	 * to the concurrent write to set. Each link is checked against the
+	 * targets set as soon as it is fetched. If it is contained in the targets
+	 * set, it is recorded as the meeting node and the token of the search is
+	 * cancelled, which halts this method for every task of the search and 
+	 * aborts each of their downloads which are still in flight.
+	 */
+	public void run() {
+		int batchSize = this.linkFetcher.getBatchSize();
+		
+		// While the search has not been cancelled and we have more elements
+		// in the task list that need processing.
+		for (int from = 0; !this.token.isCancelled() &&
+				from < this.task.length; from += batchSize) {
+			// Fetch the next batch of links from the task list
+			int to = Math.min(this.task.length, from + batchSize);
+			List<String> batch = new ArrayList<String>(to - from);
+			for (int i = from; i < to; ++i)
+				batch.add(this.dictionary.getTitle(this.task[i]));
+			
+			// Get the (back)links of each link in the batch
+			HashMap<String, ArrayList<String>> linksOfBatch;
+			try { 
+				linksOfBatch = linkFetcher.getLinks(batch, this.targets, 
+						this.token); 
+			} catch (IOException e) { 
+				++(this.failedBatches);
+				continue;
+			}
+
+			for (Entry<String, ArrayList<String>> linksOf : 
+					linksOfBatch.entrySet()) {
+				int linkId = this.dictionary.intern(linksOf.getKey());
+				
+				// For each link fetched, add it to the predecessor/successor
+				// map and, if it has never been visited, write it to the 
+				// write to set. If any elements of targets were found, record
+				// the meeting node and halt execution for every task of this
+				// search.
+				for (String linkOf : linksOf.getValue()) {
+					int linkOfId = this.dictionary.intern(linkOf);
+					if (this.map.putIfAbsent(linkOfId, linkId))
+						this.writeTo.putIfAbsent(linkOfId, linkOfId);
+					
+					if (this.targets.containsId(linkOfId)) {
+						this.meeting.compareAndSet(
+								TitleDictionary.NOT_FOUND, linkOfId);
+						this.token.cancel();
+						return;
+					}
+				}
+			}
+		}
+	}
+}
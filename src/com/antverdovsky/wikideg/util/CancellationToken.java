@@ -0,0 +1,169 @@
+package com.antverdovsky.wikideg.util;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token through which a single search is cancelled. Every download made on
+ * behalf of the search registers itself with the token of the search, so
+ * that cancelling the token aborts each of the downloads which are still in
+ * flight, rather than letting them run to their end. The token also counts
+ * the downloads of the search, and the bytes which they downloaded, so that
+ * the cost of each step of the search can be measured.
+ */
+public class CancellationToken {
+	private volatile boolean isCancelled;   // Has the token been cancelled?
+	private final Set<Closeable> inFlight;  // Downloads to abort on cancel
+	private final LongAdder requests;       // Number of downloads
+	private final LongAdder bytes;          // Number of bytes downloaded
+	
+	/**
+	 * Creates a new token, which has not been cancelled.
+	 */
+	public CancellationToken() {
+		this.isCancelled = false;
+		this.inFlight = ConcurrentHashMap.newKeySet();
+		this.requests = new LongAdder();
+		this.bytes = new LongAdder();
+	}
+	
+	/**
+	 * Cancels this token and aborts every download which is registered with
+	 * it. Cancelling a token which has already been cancelled has no effect.
+	 */
+	public void cancel() {
+		this.isCancelled = true;
+		
+		for (Closeable download : this.inFlight) {
+			this.inFlight.remove(download);
+			CancellationToken.closeQuietly(download);
+		}
+	}
+	
+	/**
+	 * Returns whether or not this token has been cancelled.
+	 * @return True if the token has been cancelled. False otherwise.
+	 */
+	public boolean isCancelled() {
+		return this.isCancelled;
+	}
+	
+	/**
+	 * Throws an exception if this token has been cancelled.
+	 * @throws SearchCancelledException If the token has been cancelled.
+	 */
+	public void throwIfCancelled() throws SearchCancelledException {
+		if (this.isCancelled) 
+			throw new SearchCancelledException("The search was cancelled.");
+	}
+	
+	/**
+	 * Registers the specified download with this token, so that it is closed
+	 * once the token is cancelled. If the token has already been cancelled,
+	 * the download is closed immediately.
+	 * @param download The download.
+	 * @throws SearchCancelledException If the token has been cancelled.
+	 */
+	public void register(Closeable download)
+			throws SearchCancelledException {
+		this.inFlight.add(download);
+		
+		// The token may have been cancelled after the check of the caller but
+		// before the download was added, in which case nobody else closes it.
+		if (this.isCancelled) {
+			this.inFlight.remove(download);
+			CancellationToken.closeQuietly(download);
+			this.throwIfCancelled();
+		}
+	}
+	
+	/**
+	 * Unregisters the specified download from this token, once it is done.
+	 * @param download The download.
+	 */
+	public void unregister(Closeable download) {
+		this.inFlight.remove(download);
+	}
+	
+	/**
+	 * Returns the number of downloads which were made on behalf of the
+	 * search of this token.
+	 * @return The number of downloads.
+	 */
+	public long getRequests() {
+		return this.requests.sum();
+	}
+	
+	/**
+	 * Returns the number of bytes which were downloaded on behalf of the
+	 * search of this token, as they were sent, before any decompression.
+	 * @return The number of bytes.
+	 */
+	public long getBytes() {
+		return this.bytes.sum();
+	}
+	
+	/**
+	 * Wraps the specified stream so that it is registered with this token
+	 * until the stream is closed, and counts it as a download of the search
+	 * along with each of the bytes which are read from it.
+	 * @param stream The stream.
+	 * @return The registered stream, which must be closed by the caller.
+	 * @throws SearchCancelledException If the token has been cancelled, in
+	 *                                  which case the stream is closed.
+	 */
+	InputStream track(InputStream stream) throws SearchCancelledException {
+		InputStream tracked = new FilterInputStream(stream) {
+			@Override
+			/**
+			 * Reads a single byte, counting it.
+			 */
+			public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0) CancellationToken.this.bytes.increment();
+				return b;
+			}
+			
+			@Override
+			/**
+			 * Reads up to the specified number of bytes, counting them.
+			 */
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if (n > 0) CancellationToken.this.bytes.add(n);
+				return n;
+			}
+			
+			@Override
+			/**
+			 * Closes the stream and unregisters it from the token.
+			 */
+			public void close() throws IOException {
+				CancellationToken.this.unregister(this);
+				super.close();
+			}
+		};
+		
+		this.register(tracked);
+		this.requests.increment();
+		return tracked;
+	}
+	
+	/**
+	 * Closes the specified download, ignoring any error since the download
+	 * is being abandoned anyway.
+	 * @param download The download.
+	 */
+	private static void closeQuietly(Closeable download) {
+		try {
+			download.close();
+		} catch (IOException e) {
+			// The download is abandoned, so the error does not matter
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the CancellationToken class.
+ */
+public class CancellationTokenTest {
+	/**
+	 * Stream whose reads block until the stream is closed, like the body of
+	 * a download whose server has stopped sending data.
+	 */
+	static class StalledStream extends InputStream {
+		private CountDownLatch closed = new CountDownLatch(1);
+		
+		@Override
+		/**
+		 * Blocks until the stream is closed.
+		 * @throws IOException Once the stream is closed.
+		 */
+		public int read() throws IOException {
+			try {
+				this.closed.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IOException("Stream closed.");
+		}
+		
+		@Override
+		/**
+		 * Closes the stream, waking up any blocked read.
+		 */
+		public void close() {
+			this.closed.countDown();
+		}
+	}
+	
+	@Test(timeout = 5000)
+	/**
+	 * Tests that cancelling the token aborts a read which is blocked on a
+	 * registered stream.
+	 */
+	public void testCancelAbortsRead() throws Exception {
+		CancellationToken token = new CancellationToken();
+		InputStream stream = token.track(new StalledStream());
+		
+		CompletableFuture<Boolean> aborted = CompletableFuture.supplyAsync(
+				() -> {
+			try {
+				stream.read();
+				return false;
+			} catch (IOException e) {
+				return true;
+			}
+		});
+		
+		Thread.sleep(100);
+		assertFalse(aborted.isDone());
+		
+		token.cancel();
+		assertTrue(token.isCancelled());
+		assertTrue(aborted.get(4, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	/**
+	 * Tests that nothing may be registered with a cancelled token.
+	 */
+	public void testRegisterAfterCancel() throws IOException {
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		
+		boolean[] closed = { false };
+		try {
+			token.register(() -> closed[0] = true);
+			fail("Registered with a cancelled token.");
+		} catch (SearchCancelledException e) {
+			assertTrue(closed[0]);
+		}
+	}
+	
+	@Test
+	/**
+	 * Tests that the token counts each tracked stream as a download, and
+	 * each of the bytes read from it.
+	 */
+	public void testCountsDownloads() throws IOException {
+		CancellationToken token = new CancellationToken();
+		for (int i = 0; i < 3; ++i) {
+			try (InputStream stream = token.track(
+					new ByteArrayInputStream(new byte[1000]))) {
+				assertEquals(0, stream.read());
+				while (stream.read(new byte[64]) > 0) ;
+			}
+		}
+		
+		assertEquals(3, token.getRequests());
+		assertEquals(3000, token.getBytes());
+	}
+}
@@ -1,15 +1,18 @@
 package com.antverdovsky.wikideg.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Class for parsing various Wikipedia API JSON files and export data. 
@@ -44,204 +47,453 @@ public class DataParse {
 	 * @return The embedded title of the target article.
 	 */
 	public static String parseEmbeddedArticle(String data, String target) {
-		// Find where in the current article, the name of the next
-		// article is embedded. Trim the data so that we have the string
-		// containing the name of the next article as it is embedded,
-		// along with all of the leftover information.
-		String preEmbeddedName = "[[" + target + "|";
-		int indexOfEmbeddedNameStart = data.indexOf(preEmbeddedName);
-		indexOfEmbeddedNameStart += preEmbeddedName.length();
-		data = data.substring(indexOfEmbeddedNameStart);
+		try {
+			return DataParse.parseEmbeddedArticle(new StringReader(data), 
+					target);
+		} catch (IOException e) {
+			return target; // Never thrown by a StringReader
+		}
+	}
 
-		// This will be true if the indexOfEmbeddedNameStart was less than
-		// zero, period to the pre embedded name string length being added
-		// on. In this case, the current article references the next
-		// article, directly, so we can return the next article name.
-		if (indexOfEmbeddedNameStart < preEmbeddedName.length()) 
-			return target;
+	/**
+	 * Finds the embedded article name of the target article in the specified
+	 * export data, as it is read. The first piped link whose target is the
+	 * target article, ignoring the case and the form in which the target is
+	 * written, gives the embedded name. If the target article is only linked
+	 * under its own name, or not at all, the target article is returned.
+	 * @param export The reader of the export data.
+	 * @param target The name of the article which should be embedded in the
+	 *               export data.
+	 * @return The embedded title of the target article.
+	 * @throws IOException If the export data could not be read.
+	 */
+	public static String parseEmbeddedArticle(Reader export, String target)
+			throws IOException {
+		String key = TitleSet.key(target);
+		String[] embedded = { target };
 
-		// Now get the index of where the embedded name ends (on Wikipedia
-		// this is signified by the double brackets) and trim so that we
-		// only have the embedded name leftover.
-		int indexOfEmbeddedNameEnd = data.indexOf("]]");
-		data = data.substring(0, indexOfEmbeddedNameEnd);
+		WikiLinkScanner.scan(export, (linkTarget, anchor) -> {
+			if (anchor.equals(linkTarget)) return true;
 
-		// Return the embedded name
-		return data;
+			String title = TitleNormalizer.normalize(linkTarget);
+			if (title == null || !TitleSet.key(title).equals(key)) 
+				return true;
+			
+			embedded[0] = anchor;
+			return false;
+		});
+		
+		return embedded[0];
 	}
 
 	/**
-	 * Parses the specified backlinks JSON data. All of the links fetched from
-	 * the JSON data are then added to the backlinks reference parameter. If
-	 * the JSON data contains a continue token, it is returned as a String,
-	 * otherwise an empty String is returned instead. If the target string
-	 * is not empty, for each link fetched from the JSON data, if the target
-	 * equals the link, the method will append the target to the links and
-	 * halt its execution, returning an empty return string.
-	 * @param json The JSON data which is to be parsed.
+	 * Parses the specified backlinks JSON data as it is read. All of the 
+	 * links fetched from the JSON data are then added to the backlinks
+	 * reference parameter. If the JSON data contains a continue token, it is
+	 * returned as a String, otherwise an empty String is returned instead. 
+	 * If any link fetched from the JSON data is equal to any of the targets,
+	 * the method will append the target to the backlinks and halt its 
+	 * execution without reading the rest of the data, returning an empty
+	 * return string.
+	 * @param json The reader of the JSON data which is to be parsed.
 	 * @param backlinks The backlinks set into which the parsed backlinks are
 	 *                  to be appended.
-	 * @param target The target String which is to be found in the JSON data. 
+	 * @param targets The target Strings which are to be found in the JSON 
+	 *                data. 
 	 * @return The continue token of the JSON data, or an empty String if the
 	 *         JSON data contains no continue token, or if the target has been
 	 *         found.
+	 * @throws IOException If the JSON data could not be read or is malformed.
 	 */
-	public static String parseBacklinksJSON(
-			String json, ArrayList<String> backlinks, 
-			ArrayList<String> targets) {
-		// Create a JSON Parser using GSON and parse the root of the JSON data
-		JsonParser jParser = new JsonParser();
-		JsonElement root = jParser.parse(json);
-
-		// Navigate Root -> Query -> Backlinks
-		JsonElement jQuery = root.getAsJsonObject().get("query");
-		JsonElement jBacklinks = jQuery.getAsJsonObject().get("backlinks");
-		if (jBacklinks == null) return "";
-		JsonArray jBacklinksArray = jBacklinks.getAsJsonArray();
-
-		// Move all of the titles from the JsonArray into the List
-		for (JsonElement e : jBacklinksArray) { // Foreach link
-			JsonObject jLinkObj = e.getAsJsonObject();
-
-			// Fetch the title and add it to the backlinks set. If the title
-			// is actually the target we are looking for, we do not need to
-			// parse any more JSON data.
-			String title = jLinkObj.get("title").getAsString();
-			backlinks.add(title);
-			if (Utilities.containsIgnoreCase(targets, title)) return "";
-		}
-
-		// Navigate Root -> Continue. If unable, then there is no continue
-		// token, so make the continue token empty.
-		String blCont;
-		JsonElement cont = root.getAsJsonObject().get("continue");
-		if (cont != null) {
-			// Fetch the blContinue entry. Strip the quotation marks from the 
-			// continue entry.
-			blCont = cont.getAsJsonObject().get("blcontinue").toString();
-			blCont = blCont.replaceAll("\"", "");
-		} else {
-			blCont = "";
+	public static String parseBacklinksJSON(Reader json, 
+			ArrayList<String> backlinks, TitleSet targets) 
+			throws IOException {
+		JsonReader reader = new JsonReader(json);
+		String blCont = "";
+		
+		// Navigate Root -> Query -> Backlinks, and Root -> Continue. The 
+		// continue object may appear before or after the query object.
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("continue")) {
+				blCont = DataParse.readContinue(reader, "blcontinue");
+			} else if (name.equals("query")) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (!reader.nextName().equals("backlinks")) {
+						reader.skipValue();
+					} else if (DataParse.readTitles(
+							reader, backlinks, targets)) {
+						return ""; // Found a target, stop reading
+					}
+				}
+				reader.endObject();
+			} else {
+				reader.skipValue();
+			}
 		}
+		reader.endObject();
 
 		return blCont;
 	}
-	
+
 	/**
-	 * Parses the specified export data, searching for links. All of the
-	 * links fetched from the export data are then added to the links
-	 * reference parameter. If the target string is not empty, for each 
-	 * link fetched from the JSON data, if the target equals the link, the
-	 * method will append the target to the links and halt its execution.
-	 * @param export The export data String.
+	 * Parses the specified links JSON data as it is read. All of the links
+	 * fetched from the JSON data are then added to the links reference 
+	 * parameter. If the JSON data contains a continue token, it is returned
+	 * as a String, otherwise an empty String is returned instead. If any 
+	 * link fetched from the JSON data is equal to any of the targets, the 
+	 * method will append the target to the links and halt its execution 
+	 * without reading the rest of the data, returning an empty return 
+	 * string.
+	 * @param json The reader of the JSON data which is to be parsed.
 	 * @param links The links set into which the parsed links are to be 
 	 *              appended.
 	 * @param targets The target Strings which are to be found in the JSON 
+	 *                data. 
+	 * @return The continue token of the JSON data, or an empty String if the
+	 *         JSON data contains no continue token, or if the target has been
+	 *         found.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	public static String parseLinksJSON(Reader json, 
+			ArrayList<String> links, TitleSet targets) throws IOException {
+		// Since we are only parsing for one web article at a time, all of
+		// the links belong to the same page.
+		HashMap<String, ArrayList<String>> pages = 
+				new HashMap<String, ArrayList<String>>();
+		String plCont = DataParse.parsePagesJSON(json, pages, targets, 
+				"links", "plcontinue");
+		for (ArrayList<String> pageLinks : pages.values())
+			links.addAll(pageLinks);
+		
+		return plCont == null ? "" : plCont;
+	}
+	
+	/**
+	 * Parses the specified multi page links JSON data as it is read. The 
+	 * links of each page are appended to the list of that page in the links
+	 * map, which is keyed by the title of the page as it was requested. If 
+	 * the JSON data contains a continue token, it is returned as a String,
+	 * otherwise an empty String is returned instead. If any link is equal to
+	 * any of the targets, the method will halt its execution without reading
+	 * the rest of the data and return null.
+	 * @param json The reader of the JSON data which is to be parsed.
+	 * @param links The map of the title of each page to its links, into 
+	 *              which the parsed links are to be appended.
+	 * @param targets The target Strings which are to be found in the JSON 
+	 *                data. 
+	 * @return The continue token of the JSON data, an empty String if the 
+	 *         JSON data contains no continue token, or null if a target has
+	 *         been found.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	public static String parseLinksJSON(Reader json, 
+			HashMap<String, ArrayList<String>> links, TitleSet targets) 
+			throws IOException {
+		return DataParse.parsePagesJSON(json, links, targets, 
+				"links", "plcontinue");
+	}
+	
+	/**
+	 * Parses the specified multi page backlinks (links here) JSON data as it
+	 * is read. The backlinks of each page are appended to the list of that
+	 * page in the backlinks map, which is keyed by the title of the page as
+	 * it was requested. If the JSON data contains a continue token, it is 
+	 * returned as a String, otherwise an empty String is returned instead. 
+	 * If any backlink is equal to any of the targets, the method will halt 
+	 * its execution without reading the rest of the data and return null.
+	 * @param json The reader of the JSON data which is to be parsed.
+	 * @param backlinks The map of the title of each page to its backlinks, 
+	 *                  into which the parsed backlinks are to be appended.
+	 * @param targets The target Strings which are to be found in the JSON 
+	 *                data. 
+	 * @return The continue token of the JSON data, an empty String if the 
+	 *         JSON data contains no continue token, or null if a target has
+	 *         been found.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	public static String parseLinksHereJSON(Reader json, 
+			HashMap<String, ArrayList<String>> backlinks, TitleSet targets) 
+			throws IOException {
+		return DataParse.parsePagesJSON(json, backlinks, targets, 
+				"linkshere", "lhcontinue");
+	}
+	
+	/**
+	 * Parses the specified export data as it is read, searching for links.
+	 * The target of each link is normalized into the title of the article to
+	 * which it points, and links to pages outside of the main namespace are
+	 * discarded. Each distinct title is then added to the links reference
+	 * parameter once. If any title is equal to any of the targets, the method
+	 * will append the target to the links and halt its execution without
+	 * reading the rest of the data.
+	 * @param export The reader of the export data.
+	 * @param links The links set into which the parsed links are to be 
+	 *              appended.
+	 * @param targets The target Strings which are to be found in the export
 	 *                data.
+	 * @throws IOException If the export data could not be read.
 	 */
-	public static void parseLinksExport(
-			String export, ArrayList<String> links, 
-			ArrayList<String> targets) {
-		// Trim the export text so that we only have the article itself
-		int start = export.indexOf("<text xml:space=\"preserve\"");
-		int end = export.lastIndexOf("</text>");
-		if (start > 0 && end > 0 && // JIC 
-				start < export.length() && end < export.length())
-			export = export.substring(start, end);
-		
-		String pattern = "\\[\\[(.*?)\\]\\]";
-		Pattern regex = Pattern.compile(pattern);
-		Matcher matcher = regex.matcher(export);
-		
-		while (matcher.find()) {
-			String match = matcher.group(0);
-			
-			int startIndex = 2; // For stripping off the "[["
-			int endIndex = match.length() - 2; // For stripping off the "]]"
+	public static void parseLinksExport(Reader export, 
+			ArrayList<String> links, TitleSet targets) throws IOException {
+		DataParse.parseLinksExport(export, links, targets, null);
+	}
+	
+	/**
+	 * Parses the specified export data as it is read, searching for links,
+	 * in the same way as {@link #parseLinksExport(Reader, ArrayList, 
+	 * TitleSet)} does. The anchor text of the first piped link to each title
+	 * is recorded as well, and so is the anchor text of the link to the 
+	 * target, if one is found, whether or not it is piped.
+	 * @param export The reader of the export data.
+	 * @param links The links set into which the parsed links are to be 
+	 *              appended.
+	 * @param targets The target Strings which are to be found in the export
+	 *                data.
+	 * @param anchors The map into which the anchor text of each piped link
+	 *                is recorded, by its title, or null if the anchors are
+	 *                not to be recorded.
+	 * @return True if the whole export data was parsed. False if a target
+	 *         was found.
+	 * @throws IOException If the export data could not be read.
+	 */
+	public static boolean parseLinksExport(Reader export, 
+			ArrayList<String> links, TitleSet targets, 
+			Map<String, String> anchors) throws IOException {
+		HashSet<String> seen = new HashSet<String>(); // Titles on this page
+		
+		// If the link is referenced under a different name in this page, we
+		// don't want the name of how it is referenced, only the target. The
+		// name is recorded separately, for the embedded path.
+		return !WikiLinkScanner.scan(export, (target, anchor) -> {
+			String title = TitleNormalizer.normalize(target);
+			if (title == null) return true;
 			
-			// If the string contains a "|" then the article has a link but it
-			// is referenced under a different name in this page. Either way,
-			// we don't want the name of how it is referenced, so we will cut
-			// off the string before the reference name.
-			int split = match.indexOf('|');
-			if (split >= 0) endIndex = split;
+			boolean isPiped = !anchor.equals(target);
+			if (anchors != null && isPiped) anchors.putIfAbsent(title, anchor);
+			if (!seen.add(title)) return true;
 			
-			// Get the article name and add it to the links list.
-			// TODO: Need to not add non namespace zero links...
-			match = match.substring(startIndex, endIndex);
-			links.add(match);
+			links.add(title);
+			if (!targets.contains(title)) return true;
 			
-			// If we found the target then return
-			if (Utilities.containsIgnoreCase(targets, match)) return;
+			// Stop once the target is found
+			if (anchors != null) anchors.putIfAbsent(title, title);
+			return false;
+		});
+	}
+	
+	/**
+	 * Parses the specified multi page JSON data as it is read, in which each
+	 * page contains an array of link objects under the specified name.
+	 * @param json The reader of the JSON data which is to be parsed.
+	 * @param links The map of the title of each page to its links.
+	 * @param targets The target Strings which are to be found in the JSON 
+	 *                data.
+	 * @param listName The name of the array of links of each page.
+	 * @param contName The name of the continue token of the JSON data.
+	 * @return The continue token of the JSON data, an empty String if the 
+	 *         JSON data contains no continue token, or null if a target has
+	 *         been found.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	private static String parsePagesJSON(Reader json,
+			HashMap<String, ArrayList<String>> links, TitleSet targets,
+			String listName, String contName) throws IOException {
+		JsonReader reader = new JsonReader(json);
+		String cont = "";
+		
+		// Navigate Root -> Query, and Root -> Continue. The continue object
+		// may appear before or after the query object.
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("continue")) {
+				cont = DataParse.readContinue(reader, contName);
+			} else if (name.equals("query")) {
+				if (!DataParse.readPagesQuery(reader, links, targets, 
+						listName))
+					return null; // Found a target, stop reading
+			} else {
+				reader.skipValue();
+			}
 		}
+		reader.endObject();
+		
+		return cont;
 	}
-
+	
 	/**
-	 * Parses the specified links JSON data. All of the links fetched from
-	 * the JSON data are then added to the links reference parameter. If
-	 * the JSON data contains a continue token, it is returned as a String,
-	 * otherwise an empty String is returned instead. If the target string
-	 * is not empty, for each link fetched from the JSON data, if the target
-	 * equals the link, the method will append the target to the links and
-	 * halt its execution, returning an empty return string.
-	 * @param json The JSON data which is to be parsed.
-	 * @param links The links set into which the parsed links are to be 
-	 *              appended.
+	 * Reads the query object of multi page JSON data.
+	 * @param reader The JSON reader, positioned at the query object.
+	 * @param links The map of the title of each page to its links.
 	 * @param targets The target Strings which are to be found in the JSON 
-	 *                data. 
-	 * @return The continue token of the JSON data, or an empty String if the
-	 *         JSON data contains no continue token, or if the target has been
-	 *         found.
+	 *                data.
+	 * @param listName The name of the array of links of each page.
+	 * @return True if the query object was read in full. False if a target
+	 *         was found, in which case the reader is left mid object.
+	 * @throws IOException If the JSON data could not be read or is malformed.
 	 */
-	public static String parseLinksJSON(
-			String json, ArrayList<String> links, ArrayList<String> targets) {
-		// Create a JSON Parser using GSON and parse the root of the JSON data
-		JsonParser jParser = new JsonParser();
-		JsonElement root = jParser.parse(json);
-
-		// Navigate Root -> Query -> Pages
-		JsonElement jQuery = root.getAsJsonObject().get("query");
-		JsonElement jPages = jQuery.getAsJsonObject().get("pages");
-
-		// Get all of the Entries in the JSON file. Since we are only parsing
-		// for one web article at a time, assert that there is only one entry.
-		JsonObject pagesObj = jPages.getAsJsonObject();
-		Set<Entry<String, JsonElement>> eSet = pagesObj.entrySet();
-		if (eSet.size() != 1) return null;
-
-		// Fetch the single entry from the entry set
-		JsonElement entry = eSet.iterator().next().getValue();
-
-		// Navigate Root -> Query -> Pages -> Entry -> Links
-		JsonElement jLinks = entry.getAsJsonObject().get("links");
-		if (jLinks == null) return "";
-		JsonArray jLinksArray = jLinks.getAsJsonArray();
-
-		// Move all of the titles from the JsonArray into the List 
-		for (JsonElement e : jLinksArray) {
-			JsonObject jLinkObj = e.getAsJsonObject();
-
-			// Fetch the title and add it to the backlinks set. If the title
-			// is actually the target we are looking for, we do not need to
-			// parse any more JSON data.
-			String title = jLinkObj.get("title").getAsString();
-			links.add(title);
-			if (Utilities.containsIgnoreCase(targets, title)) return "";
+	private static boolean readPagesQuery(JsonReader reader, 
+			HashMap<String, ArrayList<String>> links, TitleSet targets,
+			String listName) throws IOException {
+		// The Wiki API normalizes the titles of the requested pages, so map
+		// each normalized title back to the title as it was requested. The
+		// normalized array always precedes the pages object.
+		HashMap<String, String> requested = new HashMap<String, String>();
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("normalized")) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					String from = null;
+					String to = null;
+					
+					reader.beginObject();
+					while (reader.hasNext()) {
+						String field = reader.nextName();
+						if (field.equals("from")) from = reader.nextString();
+						else if (field.equals("to")) to = reader.nextString();
+						else reader.skipValue();
+					}
+					reader.endObject();
+					
+					if (from != null && to != null) requested.put(to, from);
+				}
+				reader.endArray();
+			} else if (name.equals("pages")) {
+				reader.beginObject();
+				while (reader.hasNext()) { // Foreach page
+					reader.nextName(); // Skip the page ID
+					if (!DataParse.readPage(reader, links, requested, 
+							targets, listName))
+						return false;
+				}
+				reader.endObject();
+			} else {
+				reader.skipValue();
+			}
 		}
-
-		// Navigate Root -> Continue. If unable, then there is no continue
-		// token, so make the continue token empty.
-		String plCont;
-		JsonElement cont = root.getAsJsonObject().get("continue");
-		if (cont != null) {
-			// Fetch the plContinue entry. Strip the quotation marks from the 
-			// continue entry.
-			plCont = cont.getAsJsonObject().get("plcontinue").toString();
-			plCont = plCont.replaceAll("\"", "");
-		} else {
-			plCont = "";
+		reader.endObject();
+		
+		return true;
+	}
+	
+	/**
+	 * Reads a single page object of multi page JSON data, appending its 
+	 * links to the list of the page in the links map.
+	 * @param reader The JSON reader, positioned at the page object.
+	 * @param links The map of the title of each page to its links.
+	 * @param requested The map of each normalized title to the title as it
+	 *                  was requested.
+	 * @param targets The target Strings which are to be found in the JSON 
+	 *                data.
+	 * @param listName The name of the array of links of each page.
+	 * @return True if the page object was read in full. False if a target
+	 *         was found, in which case the reader is left mid object.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	private static boolean readPage(JsonReader reader, 
+			HashMap<String, ArrayList<String>> links, 
+			HashMap<String, String> requested, TitleSet targets, 
+			String listName) throws IOException {
+		String page = null;
+		ArrayList<String> pageLinks = new ArrayList<String>();
+		boolean found = false;
+		
+		// Read the fields of the page. Pages without any links, or whose 
+		// links were all returned on a previous continue page, have no links
+		// array. If a target is found, stop reading as soon as the title of
+		// the page is known.
+		reader.beginObject();
+		while (!(found && page != null) && reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("title")) {
+				page = reader.nextString();
+				if (requested.containsKey(page)) page = requested.get(page);
+			} else if (name.equals(listName) && !found) {
+				found = DataParse.readTitles(reader, pageLinks, targets);
+				if (found && page == null) {
+					while (reader.hasNext()) reader.skipValue();
+					reader.endArray();
+				}
+			} else {
+				reader.skipValue();
+			}
 		}
-
-		return plCont;
+		if (!found) reader.endObject();
+		
+		if (page != null) {
+			ArrayList<String> allPageLinks = links.get(page);
+			if (allPageLinks == null) {
+				allPageLinks = new ArrayList<String>();
+				links.put(page, allPageLinks);
+			}
+			allPageLinks.addAll(pageLinks);
+		}
+		
+		return !found;
+	}
+	
+	/**
+	 * Reads an array of link objects, appending the title of each link to
+	 * the specified list. If any title is equal to any of the targets, the
+	 * method halts without reading the rest of the array.
+	 * @param reader The JSON reader, positioned at the array.
+	 * @param titles The list into which the titles are to be appended.
+	 * @param targets The target Strings which are to be found in the array.
+	 * @return True if a target was found, in which case the reader is left 
+	 *         mid array. False otherwise.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	private static boolean readTitles(JsonReader reader, 
+			ArrayList<String> titles, TitleSet targets) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String title = null;
+			
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("title")) 
+					title = reader.nextString();
+				else 
+					reader.skipValue();
+			}
+			reader.endObject();
+			
+			if (title == null) continue;
+			titles.add(title);
+			if (targets.contains(title)) return true;
+		}
+		reader.endArray();
+		
+		return false;
+	}
+	
+	/**
+	 * Reads the continue object of JSON data and returns the value of the
+	 * continue token with the specified name.
+	 * @param reader The JSON reader, positioned at the continue object.
+	 * @param contName The name of the continue token.
+	 * @return The continue token, or an empty String if there is none.
+	 * @throws IOException If the JSON data could not be read or is malformed.
+	 */
+	private static String readContinue(JsonReader reader, String contName) 
+			throws IOException {
+		String cont = "";
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals(contName)) 
+				cont = reader.nextString();
+			else 
+				reader.skipValue();
+		}
+		reader.endObject();
+		
+		return cont;
 	}
 }
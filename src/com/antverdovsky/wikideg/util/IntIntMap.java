@@ -0,0 +1,234 @@
+package com.antverdovsky.wikideg.util;
+
+import java.util.Arrays;
+
+/**
+ * Thread safe hash map from non negative integer keys to integer values. The
+ * map uses open addressing over primitive arrays, so no boxed objects are
+ * allocated per entry. The map is split into a number of independently
+ * locked segments so that many threads may write to it at once.
+ */
+public class IntIntMap {
+	// Value returned by get when the key is not present in the map
+	public static final int MISSING = Integer.MIN_VALUE;
+
+	private static final int SEGMENT_BITS = 5;   // log2(number of segments)
+	private static final int EMPTY = -1;         // Marks an empty key slot
+	private static final float LOAD = 0.6f;      // Max load before resizing
+
+	/**
+	 * A single open addressing table, guarded by its own monitor.
+	 */
+	private static class Segment {
+		private int[] keys;   // Keys of the table, EMPTY if slot is unused
+		private int[] values; // Values of the table
+		private int size;     // Number of keys stored in the table
+
+		/**
+		 * Creates a new segment with the specified capacity.
+		 * @param capacity The capacity, which must be a power of two.
+		 */
+		private Segment(int capacity) {
+			this.keys = new int[capacity];
+			this.values = new int[capacity];
+			Arrays.fill(this.keys, EMPTY);
+		}
+
+		/**
+		 * Returns the slot of the specified key, or the empty slot into
+		 * which the key should be inserted if it is not present.
+		 * @param key The key.
+		 * @param hash The hash of the key.
+		 * @return The index of the slot.
+		 */
+		private int slotOf(int key, int hash) {
+			int mask = this.keys.length - 1;
+			int slot = hash & mask;
+			while (this.keys[slot] != EMPTY && this.keys[slot] != key)
+				slot = (slot + 1) & mask;
+
+			return slot;
+		}
+
+		/**
+		 * Doubles the capacity of the table, rehashing every key.
+		 */
+		private void grow() {
+			int[] oldKeys = this.keys;
+			int[] oldValues = this.values;
+
+			this.keys = new int[oldKeys.length * 2];
+			this.values = new int[oldKeys.length * 2];
+			Arrays.fill(this.keys, EMPTY);
+
+			for (int i = 0; i < oldKeys.length; ++i) {
+				if (oldKeys[i] == EMPTY) continue;
+
+				int slot = this.slotOf(oldKeys[i], IntIntMap.hash(oldKeys[i]));
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private final Segment[] segments; // The independently locked tables
+
+	/**
+	 * Creates a new empty map.
+	 */
+	public IntIntMap() {
+		this(0);
+	}
+
+	/**
+	 * Creates a new empty map, sized so that the expected number of keys can
+	 * be inserted without any resizing.
+	 * @param expected The expected number of keys.
+	 */
+	public IntIntMap(int expected) {
+		int perSegment = (int)(expected / LOAD) >> SEGMENT_BITS;
+		int capacity = Integer.highestOneBit(Math.max(8, perSegment) * 2 - 1);
+
+		this.segments = new Segment[1 << SEGMENT_BITS];
+		for (int i = 0; i < this.segments.length; ++i)
+			this.segments[i] = new Segment(capacity);
+	}
+
+	/**
+	 * Associates the value with the key if the key is not already present.
+	 * @param key The key, which must not be negative.
+	 * @param value The value.
+	 * @return True if the key was inserted. False if it was already present,
+	 *         in which case its value is left unchanged.
+	 */
+	public boolean putIfAbsent(int key, int value) {
+		return this.insert(key, value, false);
+	}
+
+	/**
+	 * Associates the value with the key, replacing any existing value.
+	 * @param key The key, which must not be negative.
+	 * @param value The value.
+	 * @return True if the key was not already present. False otherwise.
+	 */
+	public boolean put(int key, int value) {
+		return this.insert(key, value, true);
+	}
+
+	/**
+	 * Returns the value associated with the specified key.
+	 * @param key The key.
+	 * @return The value, or {@link #MISSING} if the key is not present.
+	 */
+	public int get(int key) {
+		if (key < 0) return MISSING;
+
+		int hash = IntIntMap.hash(key);
+		Segment segment = this.segmentOf(hash);
+		synchronized (segment) {
+			int slot = segment.slotOf(key, hash);
+			return segment.keys[slot] == EMPTY ? MISSING :
+				segment.values[slot];
+		}
+	}
+
+	/**
+	 * Checks if the map contains the specified key.
+	 * @param key The key.
+	 * @return True if the key is present. False otherwise.
+	 */
+	public boolean containsKey(int key) {
+		if (key < 0) return false;
+
+		int hash = IntIntMap.hash(key);
+		Segment segment = this.segmentOf(hash);
+		synchronized (segment) {
+			return segment.keys[segment.slotOf(key, hash)] != EMPTY;
+		}
+	}
+
+	/**
+	 * Returns the number of keys in the map.
+	 * @return The size of the map.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) { size += segment.size; }
+		}
+
+		return size;
+	}
+
+	/**
+	 * Returns whether or not the map is empty.
+	 * @return True if the map contains no keys. False otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+
+	/**
+	 * Returns a snapshot of all of the keys in the map, in no particular
+	 * order.
+	 * @return The array of keys.
+	 */
+	public int[] keys() {
+		IntList keys = new IntList(this.size());
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				for (int key : segment.keys)
+					if (key != EMPTY) keys.add(key);
+			}
+		}
+
+		return keys.toArray();
+	}
+
+	/**
+	 * Inserts the key and value into the map.
+	 * @param key The key, which must not be negative.
+	 * @param value The value.
+	 * @param replace Whether the value of an existing key is to be replaced.
+	 * @return True if the key was not already present. False otherwise.
+	 */
+	private boolean insert(int key, int value, boolean replace) {
+		if (key < 0)
+			throw new IllegalArgumentException("Negative key: " + key);
+
+		int hash = IntIntMap.hash(key);
+		Segment segment = this.segmentOf(hash);
+		synchronized (segment) {
+			int slot = segment.slotOf(key, hash);
+			if (segment.keys[slot] != EMPTY) {
+				if (replace) segment.values[slot] = value;
+				return false;
+			}
+
+			segment.keys[slot] = key;
+			segment.values[slot] = value;
+			if (++segment.size > segment.keys.length * LOAD) segment.grow();
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the segment responsible for the specified hash.
+	 * @param hash The hash of a key.
+	 * @return The segment.
+	 */
+	private Segment segmentOf(int hash) {
+		return this.segments[hash >>> (32 - SEGMENT_BITS)];
+	}
+
+	/**
+	 * Scrambles the bits of the key so that sequential keys are spread out
+	 * evenly across the segments and slots.
+	 * @param key The key.
+	 * @return The hash of the key.
+	 */
+	static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
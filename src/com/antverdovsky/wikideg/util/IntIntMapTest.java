@@ -0,0 +1,119 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the IntIntMap class.
+ */
+public class IntIntMapTest {
+	@Test
+	/**
+	 * Tests that every key is kept once the map has grown far past its
+	 * initial capacity.
+	 */
+	public void testGrowth() {
+		IntIntMap map = new IntIntMap();
+		for (int key = 0; key < 100000; ++key)
+			assertTrue(map.put(key * 7, key));
+
+		assertEquals(100000, map.size());
+		for (int key = 0; key < 100000; ++key) {
+			assertEquals(key, map.get(key * 7));
+			assertFalse(map.containsKey(key * 7 + 1));
+		}
+	}
+
+	@Test
+	/**
+	 * Tests that keys which fall into the same slot of the same segment are
+	 * kept apart, and that replacing the value of one leaves the others
+	 * alone.
+	 */
+	public void testCollidingKeys() {
+		// Keys whose hashes agree in the bits which choose the segment and
+		// the slot of a new map, whose segments have eight slots each
+		int mask = 0xF8000007;
+		int target = IntIntMap.hash(1) & mask;
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int key = 1; keys.size() < 5; ++key)
+			if ((IntIntMap.hash(key) & mask) == target) keys.add(key);
+
+		IntIntMap map = new IntIntMap();
+		for (int key : keys) assertTrue(map.putIfAbsent(key, -key));
+		for (int key : keys) assertEquals(-key, map.get(key));
+
+		assertFalse(map.putIfAbsent(keys.get(2), 0));
+		assertEquals(-keys.get(2), map.get(keys.get(2)));
+		assertFalse(map.put(keys.get(2), 0));
+		assertEquals(0, map.get(keys.get(2)));
+		assertEquals(-keys.get(3), map.get(keys.get(3)));
+		assertEquals(keys.size(), map.size());
+	}
+
+	@Test
+	/**
+	 * Tests that keys which are not present, and negative keys, are missing,
+	 * and that negative keys may not be inserted.
+	 */
+	public void testMissingAndNegativeKeys() {
+		IntIntMap map = new IntIntMap();
+		assertTrue(map.isEmpty());
+		assertEquals(IntIntMap.MISSING, map.get(42));
+
+		map.put(42, IntIntMap.MISSING + 1);
+		assertEquals(IntIntMap.MISSING, map.get(41));
+		assertEquals(IntIntMap.MISSING, map.get(-42));
+		assertFalse(map.containsKey(-42));
+
+		try {
+			map.put(-1, 0);
+			fail("Inserted a negative key.");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			map.putIfAbsent(Integer.MIN_VALUE, 0);
+			fail("Inserted a negative key.");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(1, map.size());
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Tests that the keys and size of the map hold every key once eight
+	 * threads have inserted overlapping ranges of keys at once.
+	 */
+	public void testConcurrentInserts() throws InterruptedException {
+		IntIntMap map = new IntIntMap();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; ++i) {
+			int first = i * 10000;
+			threads[i] = new Thread(() -> {
+				for (int key = first; key < first + 20000; ++key)
+					map.putIfAbsent(key, key);
+			});
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+
+		int[] keys = map.keys();
+		Arrays.sort(keys);
+		assertEquals(90000, map.size());
+		assertEquals(90000, keys.length);
+		for (int i = 0; i < keys.length; ++i) {
+			assertEquals(i, keys[i]);
+			assertEquals(i, map.get(i));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.antverdovsky.wikideg.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive integers. This class is not thread safe.
+ */
+public class IntList {
+	private int[] elements; // Backing array of the list
+	private int size;       // Number of elements in the list
+
+	/**
+	 * Creates a new empty list.
+	 */
+	public IntList() {
+		this(16);
+	}
+
+	/**
+	 * Creates a new empty list with the specified initial capacity.
+	 * @param capacity The initial capacity.
+	 */
+	public IntList(int capacity) {
+		this.elements = new int[Math.max(1, capacity)];
+		this.size = 0;
+	}
+
+	/**
+	 * Appends the specified value to the end of the list.
+	 * @param value The value.
+	 */
+	public void add(int value) {
+		if (this.size == this.elements.length)
+			this.elements = Arrays.copyOf(this.elements, this.size * 2);
+
+		this.elements[this.size++] = value;
+	}
+
+	/**
+	 * Returns the value at the specified index.
+	 * @param index The index.
+	 * @return The value.
+	 */
+	public int get(int index) {
+		if (index >= this.size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+
+		return this.elements[index];
+	}
+
+	/**
+	 * Returns the number of values in the list.
+	 * @return The size of the list.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns whether or not the list is empty.
+	 * @return True if the list contains no values. False otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns a new array containing all of the values in the list.
+	 * @return The array of values.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(this.elements, this.size);
+	}
+}
@@ -0,0 +1,19 @@
+package com.antverdovsky.wikideg.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a download or fetch is abandoned because the search which
+ * requested it has been cancelled.
+ */
+public class SearchCancelledException extends IOException {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Creates a new exception with the specified detail message.
+	 * @param message The detail message.
+	 */
+	public SearchCancelledException(String message) {
+		super(message);
+	}
+}
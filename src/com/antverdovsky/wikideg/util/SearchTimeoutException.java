@@ -0,0 +1,17 @@
+package com.antverdovsky.wikideg.util;
+
+/**
+ * Thrown when a search is abandoned because its deadline has passed before
+ * the path was found.
+ */
+public class SearchTimeoutException extends SearchCancelledException {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Creates a new exception with the specified detail message.
+	 * @param message The detail message.
+	 */
+	public SearchTimeoutException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,211 @@
+package com.antverdovsky.wikideg.util;
+
+import java.util.Arrays;
+
+/**
+ * Thread safe dictionary which interns Wikipedia article titles as integer
+ * identifiers. Titles which are equal, ignoring their case, are given the
+ * same identifier. Each title String is stored exactly once, no matter how
+ * many times it is interned, so searches may store identifiers instead of
+ * titles and only turn them back into titles when they are displayed.
+ */
+public class TitleDictionary {
+	// Returned by lookup when the title has not been interned
+	public static final int NOT_FOUND = -1;
+
+	private static final int STRIPE_BITS = 6;    // log2(number of stripes)
+	private static final int STRIPE_MASK = (1 << STRIPE_BITS) - 1;
+	private static final float LOAD = 0.6f;      // Max load before resizing
+
+	/**
+	 * A single open addressing table of titles, guarded by its own monitor.
+	 * The identifier of a title is built from the index of the title within
+	 * its stripe and the index of the stripe itself.
+	 */
+	private static class Stripe {
+		private int[] table;      // Index of title + 1 in each slot, 0 empty
+		private int[] hashes;     // Hash of each title, by index
+		private String[] titles;  // Titles stored in this stripe, by index
+		private int size;         // Number of titles stored in this stripe
+
+		/**
+		 * Creates a new empty stripe.
+		 */
+		private Stripe() {
+			this.table = new int[16];
+			this.hashes = new int[8];
+			this.titles = new String[8];
+			this.size = 0;
+		}
+
+		/**
+		 * Returns the slot of the specified title, or the empty slot into
+		 * which the title should be inserted if it is not present.
+		 * @param title The title.
+		 * @param hash The hash of the title.
+		 * @return The index of the slot.
+		 */
+		private int slotOf(String title, int hash) {
+			int mask = this.table.length - 1;
+			int slot = (hash >>> STRIPE_BITS) & mask;
+			while (this.table[slot] != 0) {
+				int index = this.table[slot] - 1;
+				if (this.hashes[index] == hash &&
+						TitleDictionary.equalsFolded(this.titles[index], title))
+					break;
+
+				slot = (slot + 1) & mask;
+			}
+
+			return slot;
+		}
+
+		/**
+		 * Appends the title to this stripe and places it in the table.
+		 * @param slot The empty slot of the title in the table.
+		 * @param title The title.
+		 * @param hash The hash of the title.
+		 * @return The index of the title within this stripe.
+		 */
+		private int append(int slot, String title, int hash) {
+			if (this.size == this.titles.length) {
+				this.titles = Arrays.copyOf(this.titles, this.size * 2);
+				this.hashes = Arrays.copyOf(this.hashes, this.size * 2);
+			}
+
+			int index = this.size++;
+			this.titles[index] = title;
+			this.hashes[index] = hash;
+			this.table[slot] = index + 1;
+
+			if (this.size > this.table.length * LOAD) this.grow();
+			return index;
+		}
+
+		/**
+		 * Doubles the capacity of the table, rehashing every title.
+		 */
+		private void grow() {
+			this.table = new int[this.table.length * 2];
+
+			int mask = this.table.length - 1;
+			for (int index = 0; index < this.size; ++index) {
+				int slot = (this.hashes[index] >>> STRIPE_BITS) & mask;
+				while (this.table[slot] != 0) slot = (slot + 1) & mask;
+
+				this.table[slot] = index + 1;
+			}
+		}
+	}
+
+	private final Stripe[] stripes; // The independently locked tables
+
+	/**
+	 * Creates a new empty title dictionary.
+	 */
+	public TitleDictionary() {
+		this.stripes = new Stripe[1 << STRIPE_BITS];
+		for (int i = 0; i < this.stripes.length; ++i)
+			this.stripes[i] = new Stripe();
+	}
+
+	/**
+	 * Returns the identifier of the specified title, adding the title to the
+	 * dictionary if it has not been interned already.
+	 * @param title The title.
+	 * @return The non negative identifier of the title.
+	 */
+	public int intern(String title) {
+		int hash = TitleDictionary.hash(title);
+		int stripeIndex = hash & STRIPE_MASK;
+		Stripe stripe = this.stripes[stripeIndex];
+
+		synchronized (stripe) {
+			int slot = stripe.slotOf(title, hash);
+			int index = stripe.table[slot] != 0 ? stripe.table[slot] - 1 :
+				stripe.append(slot, title, hash);
+
+			return (index << STRIPE_BITS) | stripeIndex;
+		}
+	}
+
+	/**
+	 * Returns the identifier of the specified title, without adding the
+	 * title to the dictionary.
+	 * @param title The title.
+	 * @return The identifier of the title, or {@link #NOT_FOUND} if the
+	 *         title has not been interned.
+	 */
+	public int lookup(String title) {
+		int hash = TitleDictionary.hash(title);
+		int stripeIndex = hash & STRIPE_MASK;
+		Stripe stripe = this.stripes[stripeIndex];
+
+		synchronized (stripe) {
+			int slot = stripe.slotOf(title, hash);
+			if (stripe.table[slot] == 0) return NOT_FOUND;
+
+			return ((stripe.table[slot] - 1) << STRIPE_BITS) | stripeIndex;
+		}
+	}
+
+	/**
+	 * Returns the title with the specified identifier, as it was when it was
+	 * first interned.
+	 * @param id The identifier of the title.
+	 * @return The title.
+	 */
+	public String getTitle(int id) {
+		Stripe stripe = this.stripes[id & STRIPE_MASK];
+		synchronized (stripe) {
+			return stripe.titles[id >>> STRIPE_BITS];
+		}
+	}
+
+	/**
+	 * Returns the number of titles in the dictionary.
+	 * @return The size of the dictionary.
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) { size += stripe.size; }
+		}
+
+		return size;
+	}
+
+	/**
+	 * Returns the case insensitive hash of the specified title.
+	 * @param title The title.
+	 * @return The hash of the title.
+	 */
+	private static int hash(String title) {
+		int h = 0;
+		for (int i = 0; i < title.length(); ++i)
+			h = 31 * h + TitleSet.fold(title.charAt(i));
+
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 15);
+	}
+
+	/**
+	 * Checks if the two titles are equal once each of their characters has
+	 * been case folded.
+	 * @param a The first title.
+	 * @param b The second title.
+	 * @return True if the titles are equal, ignoring case. False otherwise.
+	 */
+	private static boolean equalsFolded(String a, String b) {
+		if (a.length() != b.length()) return false;
+
+		for (int i = 0; i < a.length(); ++i) {
+			char ca = a.charAt(i);
+			char cb = b.charAt(i);
+			if (ca != cb && TitleSet.fold(ca) != TitleSet.fold(cb))
+				return false;
+		}
+
+		return true;
+	}
+}
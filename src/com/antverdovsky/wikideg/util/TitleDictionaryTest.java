@@ -0,0 +1,99 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the TitleDictionary class.
+ */
+public class TitleDictionaryTest {
+	@Test
+	/**
+	 * Tests that titles which differ only in case share an identifier, and
+	 * that each identifier gives back the title as it was first interned.
+	 */
+	public void testCaseFolding() {
+		TitleDictionary dictionary = new TitleDictionary();
+		int id = dictionary.intern("GitHub");
+
+		assertTrue(id >= 0);
+		assertEquals(id, dictionary.intern("github"));
+		assertEquals(id, dictionary.lookup("GITHUB"));
+		assertEquals("GitHub", dictionary.getTitle(id));
+		assertEquals(1, dictionary.size());
+
+		int other = dictionary.intern("Encyclop\u00e6dia Britannica");
+		assertEquals(other, dictionary.lookup("ENCYCLOP\u00c6DIA BRITANNICA"));
+		assertNotEquals(id, other);
+		assertEquals(TitleDictionary.NOT_FOUND, dictionary.lookup("Git"));
+		assertEquals(2, dictionary.size());
+	}
+
+	@Test
+	/**
+	 * Tests that titles whose case insensitive hashes are equal are still
+	 * given their own identifiers.
+	 */
+	public void testCollidingTitles() {
+		// 'a' * 31 + '@' == 'b' * 31 + '!', so the titles hash the same
+		TitleDictionary dictionary = new TitleDictionary();
+		int a = dictionary.intern("Xa@");
+		int b = dictionary.intern("Xb!");
+
+		assertNotEquals(a, b);
+		assertEquals(a, dictionary.lookup("xA@"));
+		assertEquals(b, dictionary.lookup("XB!"));
+		assertEquals("Xa@", dictionary.getTitle(a));
+		assertEquals("Xb!", dictionary.getTitle(b));
+	}
+
+	@Test
+	/**
+	 * Tests that every title is kept once the dictionary has grown far past
+	 * its initial capacity.
+	 */
+	public void testGrowth() {
+		TitleDictionary dictionary = new TitleDictionary();
+		int[] ids = new int[50000];
+		for (int i = 0; i < ids.length; ++i)
+			ids[i] = dictionary.intern("Article " + i);
+
+		assertEquals(ids.length, dictionary.size());
+		for (int i = 0; i < ids.length; ++i) {
+			assertEquals(ids[i], dictionary.lookup("ARTICLE " + i));
+			assertEquals("Article " + i, dictionary.getTitle(ids[i]));
+		}
+	}
+
+	@Test(timeout = 10000)
+	/**
+	 * Tests that eight threads which intern the same titles at once, each
+	 * in its own case, are given the same identifiers.
+	 */
+	public void testConcurrentInterns() throws InterruptedException {
+		TitleDictionary dictionary = new TitleDictionary();
+		int[][] ids = new int[8][20000];
+		Thread[] threads = new Thread[ids.length];
+		for (int i = 0; i < threads.length; ++i) {
+			int[] mine = ids[i];
+			boolean isUpper = i % 2 == 0;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < mine.length; ++j) {
+					String title = "Article " + j;
+					mine[j] = dictionary.intern(isUpper ?
+							title.toUpperCase() : title);
+				}
+			});
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+
+		assertEquals(ids[0].length, dictionary.size());
+		for (int i = 1; i < ids.length; ++i)
+			for (int j = 0; j < ids[i].length; ++j)
+				assertEquals(ids[0][j], ids[i][j]);
+	}
+}
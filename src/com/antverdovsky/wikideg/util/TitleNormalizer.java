@@ -0,0 +1,136 @@
+package com.antverdovsky.wikideg.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Normalizes the targets of links, as they are written in wikitext, into the
+ * titles of the Wikipedia articles they point to. Links which do not point to
+ * an article in the main (zero) namespace, such as files, categories,
+ * templates, interwiki and language links, are filtered out.
+ */
+public class TitleNormalizer {
+	// The maximum length of a Wikipedia title
+	private static final int MAX_TITLE_LENGTH = 255;
+
+	// Prefixes (in lower case) of the namespaces other than the main one
+	private static final HashSet<String> NAMESPACES = new HashSet<String>(
+			Arrays.asList("talk", "user", "wikipedia", "wp", "project",
+					"file", "image", "media", "mediawiki", "template", "t",
+					"help", "category", "cat", "portal", "p", "draft",
+					"timedtext", "module", "special", "book", "gadget",
+					"gadget definition", "topic", "education program",
+					"course"));
+
+	// Prefixes (in lower case) of links to other Wikimedia projects
+	private static final HashSet<String> INTERWIKIS = new HashSet<String>(
+			Arrays.asList("wikt", "wiktionary", "commons", "c", "meta", "m",
+					"species", "s", "wikisource", "q", "wikiquote", "n",
+					"wikinews", "b", "wikibooks", "v", "wikiversity", "voy",
+					"wikivoyage", "d", "wikidata", "mw", "mediawikiwiki",
+					"w", "wikipedia", "phab", "foundation", "wmf", "outreach",
+					"incubator", "metawikimedia", "google", "doi", "iarchive",
+					"imdbname", "imdbtitle", "rfc"));
+
+	/**
+	 * Normalizes the specified link target into the title of the article it
+	 * points to. The section fragment is stripped, underscores and repeated
+	 * whitespace become single spaces, and the first letter is upper cased.
+	 * @param target The target of the link, as it is written in wikitext.
+	 * @return The title of the article, or null if the link does not point
+	 *         to an article in the main namespace.
+	 */
+	public static String normalize(String target) {
+		// Strip the section fragment. A link to a section of the current
+		// article has no title at all.
+		int hash = target.indexOf('#');
+		if (hash >= 0) target = target.substring(0, hash);
+
+		// Replace underscores and runs of whitespace with single spaces
+		StringBuilder sB = new StringBuilder(target.length());
+		for (int i = 0; i < target.length(); ++i) {
+			char c = target.charAt(i);
+
+			// These characters may never appear in a title
+			if (c < ' ' || c == '<' || c == '>' || c == '[' || c == ']' ||
+					c == '{' || c == '}' || c == '|' || c == '\u007F')
+				return null;
+
+			if (c == '_' || Character.isWhitespace(c) || c == '\u00A0') {
+				if (sB.length() > 0 && sB.charAt(sB.length() - 1) != ' ')
+					sB.append(' ');
+			} else {
+				sB.append(c);
+			}
+		}
+		String title = sB.toString().trim();
+
+		// A leading colon forces a link to be a plain link, for example to a
+		// category page, rather than placing the article into the category.
+		if (title.startsWith(":")) title = title.substring(1).trim();
+
+		if (title.isEmpty() || title.length() > MAX_TITLE_LENGTH) return null;
+		if (title.startsWith("/")) return null; // Relative subpage link
+		if (TitleNormalizer.hasForeignPrefix(title)) return null;
+
+		// Titles in the main namespace always start with a capital letter
+		int first = title.codePointAt(0);
+		int upper = Character.toUpperCase(first);
+		if (first != upper) {
+			title = new StringBuilder(title.length())
+					.appendCodePoint(upper)
+					.append(title, Character.charCount(first), title.length())
+					.toString();
+		}
+
+		return title;
+	}
+
+	/**
+	 * Checks if the specified title starts with the prefix of a namespace
+	 * other than the main namespace, an interwiki prefix or a language code.
+	 * @param title The title, with its whitespace already normalized.
+	 * @return True if the title has such a prefix. False otherwise.
+	 */
+	private static boolean hasForeignPrefix(String title) {
+		int colon = title.indexOf(':');
+		if (colon <= 0) return false;
+
+		String prefix = title.substring(0, colon).trim();
+		String lower = prefix.toLowerCase(Locale.ROOT);
+
+		if (NAMESPACES.contains(lower) || INTERWIKIS.contains(lower))
+			return true;
+
+		// The talk namespace of every namespace, such as "User talk"
+		if (lower.endsWith(" talk") &&
+				NAMESPACES.contains(lower.substring(0, lower.length() - 5)))
+			return true;
+
+		// Language links are written with a lower case language code, such
+		// as "fr" or "zh-yue", while article titles start with a capital.
+		return TitleNormalizer.isLanguageCode(prefix);
+	}
+
+	/**
+	 * Checks if the specified prefix looks like a language code: two or three
+	 * lower case letters, optionally followed by hyphenated subtags.
+	 * @param prefix The prefix.
+	 * @return True if the prefix looks like a language code.
+	 */
+	private static boolean isLanguageCode(String prefix) {
+		String[] subtags = prefix.split("-", -1);
+		if (subtags[0].length() < 2 || subtags[0].length() > 3) return false;
+
+		for (String subtag : subtags) {
+			if (subtag.isEmpty() || subtag.length() > 8) return false;
+			for (int i = 0; i < subtag.length(); ++i) {
+				char c = subtag.charAt(i);
+				if (c < 'a' || c > 'z') return false;
+			}
+		}
+
+		return true;
+	}
+}
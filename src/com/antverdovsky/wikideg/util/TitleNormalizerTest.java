@@ -0,0 +1,40 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the TitleNormalizer class.
+ */
+public class TitleNormalizerTest {
+	@Test
+	/**
+	 * Tests that links to articles are normalized into their titles.
+	 */
+	public void testNormalize() {
+		assertEquals("United States", 
+				TitleNormalizer.normalize("united_States#History"));
+		assertEquals("Lots of space", 
+				TitleNormalizer.normalize("  lots   of_space "));
+		assertEquals("Star Wars: Episode IV", 
+				TitleNormalizer.normalize("Star Wars: Episode IV"));
+		assertEquals("AT&T", TitleNormalizer.normalize("AT&T"));
+	}
+	
+	@Test
+	/**
+	 * Tests that links which do not point to an article in the main
+	 * namespace are filtered out.
+	 */
+	public void testFilter() {
+		assertNull(TitleNormalizer.normalize("#Section"));
+		assertNull(TitleNormalizer.normalize("File:Map.png"));
+		assertNull(TitleNormalizer.normalize(":Category:Poland"));
+		assertNull(TitleNormalizer.normalize("User talk:Bob"));
+		assertNull(TitleNormalizer.normalize("wikt:word"));
+		assertNull(TitleNormalizer.normalize("zh-yue:Paris"));
+		assertNull(TitleNormalizer.normalize("{{PAGENAME}}"));
+	}
+}
@@ -0,0 +1,218 @@
+package com.antverdovsky.wikideg.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Thread safe set of Wikipedia article titles in which the case of the titles
+ * is ignored. Each title is interned in a {@link TitleDictionary} and only
+ * its integer identifier is stored in the set, so membership checks take
+ * constant time and many sets may share the title Strings of a single
+ * dictionary.
+ */
+public class TitleSet implements Iterable<String> {
+	private TitleDictionary dictionary; // Dictionary of the titles
+	private IntIntMap ids;              // Identifiers of titles in the set
+
+	/**
+	 * Creates a new empty title set with its own dictionary.
+	 */
+	public TitleSet() {
+		this(new TitleDictionary());
+	}
+
+	/**
+	 * Creates a new title set, with its own dictionary, containing all of
+	 * the specified titles.
+	 * @param titles The titles to be added to the set.
+	 */
+	public TitleSet(Collection<String> titles) {
+		this.dictionary = new TitleDictionary();
+		this.ids = new IntIntMap(titles.size());
+		this.addAll(titles);
+	}
+
+	/**
+	 * Creates a new empty title set which interns its titles in the
+	 * specified dictionary.
+	 * @param dictionary The dictionary of the titles.
+	 */
+	public TitleSet(TitleDictionary dictionary) {
+		this(dictionary, new IntIntMap());
+	}
+
+	/**
+	 * Creates a title set which is a view over the keys of the specified
+	 * map. Any key of the map is a member of the set, and any title added to
+	 * the set is placed into the map with its own identifier as its value.
+	 * @param dictionary The dictionary of the titles.
+	 * @param ids The map whose keys are the identifiers of the titles.
+	 */
+	public TitleSet(TitleDictionary dictionary, IntIntMap ids) {
+		this.dictionary = dictionary;
+		this.ids = ids;
+	}
+
+	/**
+	 * Creates a new title set containing all of the specified identifiers.
+	 * @param dictionary The dictionary of the identifiers.
+	 * @param ids The identifiers of the titles to be added to the set.
+	 * @return The title set.
+	 */
+	public static TitleSet of(TitleDictionary dictionary, int[] ids) {
+		TitleSet set = new TitleSet(dictionary, new IntIntMap(ids.length));
+		for (int id : ids) set.ids.putIfAbsent(id, id);
+
+		return set;
+	}
+
+	/**
+	 * Returns the canonical key of the specified title. Two titles which are
+	 * equal, ignoring their case, will always have the same key.
+	 * @param title The title of the article.
+	 * @return The case folded key of the title.
+	 */
+	public static String key(String title) {
+		char[] chars = title.toCharArray();
+		for (int i = 0; i < chars.length; ++i)
+			chars[i] = TitleSet.fold(chars[i]);
+
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the case folded form of the specified character. The character
+	 * is first converted to upper case and then to lower case so that the
+	 * folding agrees with {@link String#equalsIgnoreCase(String)}.
+	 * @param c The character.
+	 * @return The case folded character.
+	 */
+	public static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Adds the specified title to the set, if a title equal to it (ignoring
+	 * case) is not already in the set.
+	 * @param title The title to be added.
+	 * @return True if the title was added. False if it was already present.
+	 */
+	public boolean add(String title) {
+		int id = this.dictionary.intern(title);
+		return this.ids.putIfAbsent(id, id);
+	}
+
+	/**
+	 * Adds all of the specified titles to the set.
+	 * @param titles The titles to be added.
+	 */
+	public void addAll(Iterable<String> titles) {
+		for (String title : titles) this.add(title);
+	}
+
+	/**
+	 * Checks if the set contains the specified title, ignoring case.
+	 * @param title The title to be checked.
+	 * @return True if the set contains the title. False otherwise.
+	 */
+	public boolean contains(String title) {
+		int id = this.dictionary.lookup(title);
+		return id != TitleDictionary.NOT_FOUND && this.ids.containsKey(id);
+	}
+
+	/**
+	 * Checks if the set contains the title with the specified identifier.
+	 * @param id The identifier of the title in the dictionary of this set.
+	 * @return True if the set contains the title. False otherwise.
+	 */
+	public boolean containsId(int id) {
+		return this.ids.containsKey(id);
+	}
+
+	/**
+	 * Returns the number of titles in the set.
+	 * @return The size of the set.
+	 */
+	public int size() {
+		return this.ids.size();
+	}
+
+	/**
+	 * Returns whether or not the set is empty.
+	 * @return True if the set contains no titles. False otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.ids.isEmpty();
+	}
+
+	/**
+	 * Returns the dictionary in which the titles of this set are interned.
+	 * @return The dictionary.
+	 */
+	public TitleDictionary getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * Returns a snapshot of the identifiers of all of the titles in the set.
+	 * @return The array of identifiers.
+	 */
+	public int[] ids() {
+		return this.ids.keys();
+	}
+
+	/**
+	 * Returns the list of titles which are in both this set and the other
+	 * set, ignoring case. The smaller of the two sets is scanned in parallel
+	 * and each of its titles is checked against the larger set, so the cost
+	 * is linear in the size of the smaller set. If both sets share the same
+	 * dictionary, the identifiers are compared directly. The titles returned
+	 * are as they were first interned in the dictionary of this set.
+	 * @param other The other set.
+	 * @return The list of the intersection of this set and the other set.
+	 */
+	public List<String> intersect(TitleSet other) {
+		TitleSet small = this.size() <= other.size() ? this : other;
+		TitleSet large = small == this ? other : this;
+
+		IntStream common = IntStream.of(small.ids()).parallel();
+		if (small.dictionary == large.dictionary) {
+			common = common.filter(large::containsId);
+		} else {
+			common = common.filter(id -> large.contains(
+					small.dictionary.getTitle(id)));
+		}
+
+		return common.mapToObj(id -> {
+			String title = small.dictionary.getTitle(id);
+			return small == this ? title : this.dictionary.getTitle(
+					this.dictionary.lookup(title));
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns a new list containing all of the titles in this set.
+	 * @return The list of titles.
+	 */
+	public ArrayList<String> toList() {
+		int[] ids = this.ids();
+
+		ArrayList<String> titles = new ArrayList<String>(ids.length);
+		for (int id : ids) titles.add(this.dictionary.getTitle(id));
+
+		return titles;
+	}
+
+	@Override
+	/**
+	 * Returns an iterator over a snapshot of the titles in the set.
+	 * @return The iterator.
+	 */
+	public Iterator<String> iterator() {
+		return this.toList().iterator();
+	}
+}
@@ -0,0 +1,50 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the TitleSet class.
+ */
+public class TitleSetTest {
+	@Test
+	/**
+	 * Tests that membership and insertion ignore the case of the titles.
+	 */
+	public void testContainsIgnoreCase() {
+		TitleSet set = new TitleSet(Arrays.asList("GitHub", "Lembarg"));
+
+		assertTrue(set.contains("github"));
+		assertTrue(set.contains("LEMBARG"));
+		assertFalse(set.contains("IPhone"));
+
+		assertFalse(set.add("GITHUB"));
+		assertTrue(set.add("IPhone"));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	/**
+	 * Tests that the intersection of two sets ignores case and returns the
+	 * titles as they were added to the first set.
+	 */
+	public void testIntersect() {
+		TitleSet a = new TitleSet(Arrays.asList("GitHub", "IPhone", "Java"));
+		TitleSet b = new TitleSet(Arrays.asList("iphone", "Python", "JAVA",
+				"Rust", "Go"));
+
+		List<String> common = a.intersect(b);
+		assertEquals(2, common.size());
+		assertTrue(common.contains("IPhone"));
+		assertTrue(common.contains("Java"));
+
+		assertEquals(2, b.intersect(a).size());
+		assertTrue(b.intersect(a).contains("JAVA"));
+	}
+}
@@ -1,17 +1,94 @@
 package com.antverdovsky.wikideg.util;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.stream.Collectors;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class for creating the URLs for JSON and Export link requests, and for
- * downloading data from a URL.
+ * downloading data from a URL. All downloads share a single HTTP client, so
+ * connections are reused (and multiplexed over HTTP/2) between requests and
+ * threads.
  */
 public class URLFetch {
+	// The maximum number of titles which the Wiki API accepts in one query
+	public static final int MAX_TITLES_PER_QUERY = 50;
+	
+	// Time allowed to establish a connection, and to receive the response
+	// headers of a request once it has been sent.
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	private static final Duration HEADERS_TIMEOUT = Duration.ofSeconds(30);
+	
+	// Time allowed to pass without any data arriving while the body of a
+	// response is read, after which the download is aborted.
+	private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+	
+	// Thread which aborts the downloads whose bodies have stalled
+	private static final ScheduledExecutorService WATCHDOG = 
+			Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "url-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	// User agent sent with every request, as asked of API clients by the
+	// Wikimedia User-Agent policy.
+	private static final String USER_AGENT = "WikiDegrees " + 
+			"(https://github.com/antverdovsky/Wiki-Degrees)";
+	
+	// The HTTP client shared by all downloads
+	private static final HttpClient CLIENT = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.connectTimeout(CONNECT_TIMEOUT)
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.build();
+	
+	// If true, every download fails without touching the network
+	private static volatile boolean isOffline = false;
+	
+	/**
+	 * Sets a boolean value indicating whether downloads are disabled. While
+	 * offline, every download fails with an IOException, so that data can
+	 * only be served from caches.
+	 * @param b True if downloads are to be disabled. False otherwise.
+	 */
+	public static void setIsOffline(boolean b) {
+		URLFetch.isOffline = b;
+	}
+	
+	/**
+	 * Returns a boolean value indicating whether downloads are disabled.
+	 * @return True if downloads are disabled. False otherwise.
+	 */
+	public static boolean getIsOffline() {
+		return URLFetch.isOffline;
+	}
+	
 	/**
 	 * Downloads the data from the specified URL and places it into a String.
 	 * @param urlLink The URL link from which to download the data.
@@ -21,22 +98,326 @@ public class URLFetch {
 	 */
 	public static String getData(String urlLink) throws 
 			IOException {
-		URLConnection connection = null;    // Connection to the URL data
-	    InputStreamReader iSR = null;       // Stream of the URL data
-	    BufferedReader bR = null;           // Reader of URL data
-	    URL url = null;                     // URL based on the specified link
-
-	    // Open the connection to the URL web page
-	    url = new URL(urlLink);
-	    connection = url.openConnection();
-
-	    // Initialize the Readers
-	    iSR = new InputStreamReader(connection.getInputStream());
-	    bR = new BufferedReader(iSR);
-
-	    // Fetch all of the lines from the buffered reader and join them all
-	    // together into a single string.
-	    return bR.lines().collect(Collectors.joining("\n"));
+		try (InputStream iS = URLFetch.getStream(urlLink)) {
+			return new String(iS.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+	
+	/**
+	 * Downloads the data from the specified URL asynchronously. No thread is
+	 * blocked while the request is in flight, so many requests may be 
+	 * pipelined over the shared connections of the HTTP client.
+	 * @param urlLink The URL link from which to download the data.
+	 * @return The future which completes with a String containing all of the
+	 *         data of the link, or completes exceptionally with an 
+	 *         IOException if the data could not be read.
+	 */
+	public static CompletableFuture<String> getDataAsync(String urlLink) {
+		HttpRequest request;
+		try {
+			URLFetch.checkOnline(urlLink);
+			request = URLFetch.newRequest(urlLink);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		
+		return CLIENT.sendAsync(request, BodyHandlers.ofByteArray())
+				.thenApply(response -> {
+			try {
+				URLFetch.checkStatus(response);
+				
+				InputStream iS = new ByteArrayInputStream(response.body());
+				iS = URLFetch.decode(response, iS);
+				return new String(iS.readAllBytes(), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+	
+	/**
+	 * Opens a stream to the data of the specified URL. If the server
+	 * compressed the data, it is decompressed as it is read from the stream,
+	 * so the data is never held in memory in its entirety. The stream must
+	 * be closed by the caller.
+	 * @param urlLink The URL link from which to download the data.
+	 * @return The stream of the data of the link.
+	 * @throws IOException If there occurs an error connecting to the URL.
+	 */
+	public static InputStream getStream(String urlLink) throws IOException {
+		return URLFetch.getStream(urlLink, new CancellationToken());
+	}
+	
+	/**
+	 * Opens a stream to the data of the specified URL, on behalf of the 
+	 * search of the specified cancellation token. If the token is cancelled
+	 * while the request is in flight, or while the stream is being read, the
+	 * download is aborted and any further reads of the stream fail. The 
+	 * stream must be closed by the caller.
+	 * @param urlLink The URL link from which to download the data.
+	 * @param token The cancellation token of the search.
+	 * @return The stream of the data of the link.
+	 * @throws SearchCancelledException If the token has been cancelled.
+	 * @throws IOException If there occurs an error connecting to the URL.
+	 */
+	public static InputStream getStream(String urlLink, 
+			CancellationToken token) throws IOException {
+		token.throwIfCancelled();
+		URLFetch.checkOnline(urlLink);
+		
+		// Wait for the response headers, aborting the wait if the token is
+		// cancelled in the meantime.
+		CompletableFuture<HttpResponse<InputStream>> pending = CLIENT
+				.sendAsync(URLFetch.newRequest(urlLink), 
+						BodyHandlers.ofInputStream());
+		Closeable abort = () -> pending.cancel(true);
+		HttpResponse<InputStream> response;
+		
+		token.register(abort);
+		try {
+			response = pending.get();
+		} catch (CancellationException e) {
+			throw new SearchCancelledException("Cancelled: " + urlLink);
+		} catch (InterruptedException e) {
+			pending.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted: " + urlLink);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new IOException("Unable to fetch: " + urlLink, e.getCause());
+		} finally {
+			token.unregister(abort);
+		}
+		
+		// Keep the raw body registered with the token until it is closed, so
+		// that cancelling the token aborts the rest of the download, and 
+		// abort the download if the body stalls.
+		InputStream body = token.track(URLFetch.withReadTimeout(
+				response.body(), READ_TIMEOUT));
+		try {
+			URLFetch.checkStatus(response);
+			return URLFetch.decode(response, body);
+		} catch (IOException e) {
+			body.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Opens a reader of the data of the specified URL, decoding it as UTF-8
+	 * as it is read. The reader must be closed by the caller, which aborts
+	 * the download if the data has not been read in full.
+	 * @param urlLink The URL link from which to download the data.
+	 * @return The reader of the data of the link.
+	 * @throws IOException If there occurs an error connecting to the URL.
+	 */
+	public static Reader getReader(String urlLink) throws IOException {
+		return URLFetch.getReader(urlLink, new CancellationToken());
+	}
+	
+	/**
+	 * Opens a reader of the data of the specified URL, decoding it as UTF-8
+	 * as it is read, on behalf of the search of the specified cancellation
+	 * token. The reader must be closed by the caller.
+	 * @param urlLink The URL link from which to download the data.
+	 * @param token The cancellation token of the search.
+	 * @return The reader of the data of the link.
+	 * @throws SearchCancelledException If the token has been cancelled.
+	 * @throws IOException If there occurs an error connecting to the URL.
+	 */
+	public static Reader getReader(String urlLink, CancellationToken token) 
+			throws IOException {
+		return new InputStreamReader(URLFetch.getStream(urlLink, token), 
+				StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Wraps the specified stream so that it is closed once the specified
+	 * time passes without any data being read from it. The time is measured
+	 * from the opening of the stream, and then from each read which returned
+	 * data. A read which is blocked when the stream is closed, and any read
+	 * after it, fails with a SocketTimeoutException.
+	 * @param stream The stream.
+	 * @param timeout The time allowed between two reads of data.
+	 * @return The wrapped stream, which must be closed by the caller.
+	 */
+	static InputStream withReadTimeout(InputStream stream, Duration timeout) {
+		return new ReadTimeoutStream(stream, timeout.toNanos());
+	}
+	
+	/**
+	 * Stream which is closed once too much time passes without any data
+	 * being read from it. Rather than rescheduling its check on every read,
+	 * each read only moves the deadline of the stream, and the check, once
+	 * it runs, schedules itself again for the deadline if it has moved.
+	 */
+	private static class ReadTimeoutStream extends FilterInputStream {
+		private long timeoutNanos;              // Time allowed between reads
+		private volatile long deadline;         // Time at which it times out
+		private volatile boolean isTimedOut;    // Has the stream timed out?
+		private volatile boolean isClosed;      // Has the stream been closed?
+		private volatile ScheduledFuture<?> check; // Next check of deadline
+		
+		/**
+		 * Creates a new stream, whose deadline is the timeout from now.
+		 * @param stream The stream which is wrapped.
+		 * @param timeoutNanos The time allowed between two reads of data, in
+		 *                     nanoseconds.
+		 */
+		private ReadTimeoutStream(InputStream stream, long timeoutNanos) {
+			super(stream);
+			this.timeoutNanos = timeoutNanos;
+			this.deadline = System.nanoTime() + timeoutNanos;
+			this.isTimedOut = false;
+			this.isClosed = false;
+			this.check = WATCHDOG.schedule(this::expire, timeoutNanos, 
+					TimeUnit.NANOSECONDS);
+		}
+		
+		@Override
+		/**
+		 * Reads a single byte, moving the deadline if it was read.
+		 */
+		public int read() throws IOException {
+			int b;
+			try {
+				b = super.read();
+			} catch (IOException e) {
+				this.throwIfTimedOut();
+				throw e;
+			}
+			
+			this.throwIfTimedOut();
+			if (b >= 0) this.deadline = System.nanoTime() + this.timeoutNanos;
+			return b;
+		}
+		
+		@Override
+		/**
+		 * Reads up to the specified number of bytes, moving the deadline if
+		 * any were read.
+		 */
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n;
+			try {
+				n = super.read(b, off, len);
+			} catch (IOException e) {
+				this.throwIfTimedOut();
+				throw e;
+			}
+			
+			this.throwIfTimedOut();
+			if (n > 0) this.deadline = System.nanoTime() + this.timeoutNanos;
+			return n;
+		}
+		
+		@Override
+		/**
+		 * Closes the stream and stops checking its deadline.
+		 */
+		public void close() throws IOException {
+			this.isClosed = true;
+			this.check.cancel(false);
+			super.close();
+		}
+		
+		/**
+		 * Closes the stream if its deadline has passed, or checks it again
+		 * at its deadline otherwise.
+		 */
+		private void expire() {
+			if (this.isClosed) return;
+			
+			long remaining = this.deadline - System.nanoTime();
+			if (remaining > 0) {
+				this.check = WATCHDOG.schedule(this::expire, remaining, 
+						TimeUnit.NANOSECONDS);
+				return;
+			}
+			
+			this.isTimedOut = true;
+			try {
+				this.in.close();
+			} catch (IOException e) {
+				// The download is being abandoned anyway
+			}
+		}
+		
+		/**
+		 * Throws an exception if the stream has timed out, since the data
+		 * read up to the timeout is cut short.
+		 * @throws SocketTimeoutException If the stream has timed out.
+		 */
+		private void throwIfTimedOut() throws SocketTimeoutException {
+			if (this.isTimedOut) {
+				throw new SocketTimeoutException("No data was received for " +
+						TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos) + 
+						"ms.");
+			}
+		}
+	}
+	
+	/**
+	 * Creates a new GET request for the specified URL, which accepts gzip
+	 * compressed data.
+	 * @param urlLink The URL link.
+	 * @return The request.
+	 * @throws IOException If the URL link is not a valid URI.
+	 */
+	private static HttpRequest newRequest(String urlLink) throws IOException {
+		try {
+			return HttpRequest.newBuilder(new URI(urlLink))
+					.timeout(HEADERS_TIMEOUT)
+					.header("Accept-Encoding", "gzip")
+					.header("User-Agent", USER_AGENT)
+					.GET()
+					.build();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new IOException("Invalid URL: " + urlLink, e);
+		}
+	}
+	
+	/**
+	 * Checks that downloads are not disabled.
+	 * @param urlLink The URL link which is to be downloaded.
+	 * @throws IOException If downloads are disabled.
+	 */
+	private static void checkOnline(String urlLink) throws IOException {
+		if (URLFetch.isOffline) 
+			throw new IOException("Offline, unable to fetch: " + urlLink);
+	}
+	
+	/**
+	 * Checks that the status code of the response indicates success.
+	 * @param response The response.
+	 * @throws IOException If the status code is not a 2xx status code.
+	 */
+	private static void checkStatus(HttpResponse<?> response) 
+			throws IOException {
+		int status = response.statusCode();
+		if (status < 200 || status >= 300) {
+			throw new IOException("Server returned HTTP response code: " + 
+					status + " for URL: " + response.uri());
+		}
+	}
+	
+	/**
+	 * Wraps the stream of the body of the response so that it is 
+	 * decompressed, if the server compressed it.
+	 * @param response The response.
+	 * @param body The stream of the body of the response.
+	 * @return The stream of the decompressed body.
+	 * @throws IOException If the gzip header of the body is invalid.
+	 */
+	private static InputStream decode(HttpResponse<?> response, 
+			InputStream body) throws IOException {
+		String encoding = response.headers()
+				.firstValue("Content-Encoding").orElse("");
+		if (encoding.equalsIgnoreCase("gzip"))
+			return new GZIPInputStream(body, 64 * 1024);
+		
+		return body;
 	}
 	
 	/**
@@ -88,7 +469,7 @@ public class URLFetch {
 				"&plnamespace=0&titles=";
 		
 		// The string containing the continue token
-		String continueToken = "&plcontinue=" + cont;
+		String continueToken = "&plcontinue=" + URLFetch.encode(cont);
 		
 		return URLFetch.appendURL(PRE_TITLE_URL, name, continueToken);
 	}
@@ -129,11 +510,56 @@ public class URLFetch {
 				"&blnamespace=0&blfilterredir=nonredirects&bltitle=";
 		
 		// The string containing the continue token
-		String continueToken = "&blcontinue=" + cont;
+		String continueToken = "&blcontinue=" + URLFetch.encode(cont);
 		
 		return URLFetch.appendURL(PRE_TITLE_URL, name, continueToken);
 	}
 	
+	/**
+	 * Gets the URL of the Wiki Request Page containing the referenced links
+	 * of each of the pages with the specified names. At most 
+	 * {@link #MAX_TITLES_PER_QUERY} names may be requested at once. The 
+	 * continue token is applied to offset the Request Page returned, unless
+	 * it is empty.
+	 * @param names The names of the pages for which the referenced links 
+	 *              page is to be fetched.
+	 * @param cont The continue token, fetched from the previous JSON page.
+	 * @return The URL link.
+	 */
+	public static String getLinksURL(List<String> names, String cont) {
+		// Construct the URL onto which the titles of the pages will be 
+		// added. This requests the links used on some pages in JSON format.
+		final String PRE_TITLE_URL = "https://en.wikipedia.org/w/api.php?" + 
+				"action=query&format=json&prop=links&pllimit=max" + 
+				"&plnamespace=0&titles=";
+		
+		return URLFetch.appendURL(PRE_TITLE_URL, names, "&plcontinue=", 
+				cont);
+	}
+	
+	/**
+	 * Gets the URL of the Wiki Request Page containing the titles which link
+	 * reference each of the pages with the specified names. At most 
+	 * {@link #MAX_TITLES_PER_QUERY} names may be requested at once. The 
+	 * continue token is applied to offset the Request Page returned, unless
+	 * it is empty.
+	 * @param names The names of the pages for which the backlinks page is to
+	 *              be fetched.
+	 * @param cont The continue token, fetched from the previous JSON page.
+	 * @return The URL link.
+	 */
+	public static String getLinksHereURL(List<String> names, String cont) {
+		// Construct the URL onto which the titles of the pages will be 
+		// added. This requests the backlinks of some pages in JSON format,
+		// excluding any redirect pages.
+		final String PRE_TITLE_URL = "https://en.wikipedia.org/w/api.php?" + 
+				"action=query&format=json&prop=linkshere&lhprop=title" + 
+				"&lhlimit=max&lhnamespace=0&lhshow=!redirect&titles=";
+		
+		return URLFetch.appendURL(PRE_TITLE_URL, names, "&lhcontinue=", 
+				cont);
+	}
+	
 	/**
 	 * Gets the URL containing the JSON data for a random Wikipedia article.
 	 * @return The URL link.
@@ -152,8 +578,9 @@ public class URLFetch {
 	 */
 	private static String appendURL(String preTitle, String name) {
 		// Replace any spaces in the input string with underscores since URLs
-		// do not have any spaces.
-		name = name.replaceAll(" ", "_");
+		// do not have any spaces. Encode any other characters which are not
+		// allowed in a URI.
+		name = URLFetch.encode(name.replaceAll(" ", "_"));
 				
 		// Build the String using the PRE_TITLE_URL + name, and return the
 		// result.
@@ -162,17 +589,58 @@ public class URLFetch {
 		return sB.toString();
 	}
 	
+	/**
+	 * Appends the names, joined by the '|' character, and the continue token
+	 * onto a copy of the pre title string and returns the result. Each name
+	 * and the continue token are URL encoded.
+	 * @param preTitle The pre title URL string.
+	 * @param names The names of the pages to be appended.
+	 * @param preCont The parameter string which precedes the continue token.
+	 * @param cont The continue token, or an empty string if there is none.
+	 * @return The appended URL string.
+	 */
+	private static String appendURL(String preTitle, List<String> names,
+			String preCont, String cont) {
+		if (names.size() > URLFetch.MAX_TITLES_PER_QUERY) {
+			throw new IllegalArgumentException("At most " + 
+					URLFetch.MAX_TITLES_PER_QUERY + " titles may be " +
+					"requested at once.");
+		}
+		
+		// Build the String using the PRE_TITLE_URL + names + continue, and
+		// return the result.
+		StringBuilder sB = new StringBuilder(preTitle);
+		for (int i = 0; i < names.size(); ++i) {
+			if (i > 0) sB.append("%7C");
+			sB.append(URLFetch.encode(names.get(i)));
+		}
+		if (!cont.isEmpty()) {
+			sB.append(preCont);
+			sB.append(URLFetch.encode(cont));
+		}
+		return sB.toString();
+	}
+	
+	/**
+	 * URL encodes the specified string using the UTF-8 charset.
+	 * @param s The string.
+	 * @return The URL encoded string.
+	 */
+	private static String encode(String s) {
+		return URLEncoder.encode(s, StandardCharsets.UTF_8);
+	}
+	
 	/**
 	 * Appends the name and continue string onto a copy of the pre title 
 	 * string and returns the result.
 	 * @param preTitle The pre title URL string.
 	 * @param name The name of the page to be appended.
-	 * @param cont The continue string.
+	 * @param cont The continue string, which must already be URL encoded.
 	 * @return The appended URL string.
 	 */
 	private static String appendURL(String preTitle, String name, 
 			String cont) {
-		name = name.replaceAll(" ", "_");
+		name = URLFetch.encode(name.replaceAll(" ", "_"));
 		
 		// Build the String using the PRE_TITLE_URL + name + continue, and 
 		// return the result.
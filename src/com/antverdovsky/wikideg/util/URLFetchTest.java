@@ -0,0 +1,93 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the read timeout of the URLFetch class.
+ */
+public class URLFetchTest {
+	/**
+	 * Stream which returns a number of bytes, pausing before each of them.
+	 */
+	private static class SlowStream extends InputStream {
+		private int remaining; // Number of bytes left to return
+		private long pause;    // Pause before each byte, in milliseconds
+		
+		/**
+		 * Creates a new slow stream.
+		 * @param length The number of bytes to return.
+		 * @param pause The pause before each byte, in milliseconds.
+		 */
+		private SlowStream(int length, long pause) {
+			this.remaining = length;
+			this.pause = pause;
+		}
+		
+		@Override
+		/**
+		 * Returns the next byte after the pause, or -1 once all of the bytes
+		 * have been returned.
+		 */
+		public int read() throws IOException {
+			if (this.remaining == 0) return -1;
+			
+			try {
+				Thread.sleep(this.pause);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			--this.remaining;
+			return 'x';
+		}
+	}
+	
+	@Test(timeout = 5000)
+	/**
+	 * Tests that a read which is blocked on a stalled stream fails once the
+	 * timeout passes, and that any read after it fails as well.
+	 */
+	public void testStalledRead() throws IOException {
+		InputStream stream = URLFetch.withReadTimeout(
+				new CancellationTokenTest.StalledStream(), 
+				Duration.ofMillis(200));
+		
+		try {
+			stream.read();
+			fail("Read from a stalled stream.");
+		} catch (SocketTimeoutException e) {
+			// Expected
+		}
+		try {
+			stream.read(new byte[16], 0, 16);
+			fail("Read from a timed out stream.");
+		} catch (SocketTimeoutException e) {
+			// Expected
+		}
+		
+		stream.close();
+	}
+	
+	@Test(timeout = 5000)
+	/**
+	 * Tests that a stream which keeps returning data is read in full, even
+	 * though reading all of it takes longer than the timeout.
+	 */
+	public void testSlowRead() throws IOException {
+		InputStream stream = URLFetch.withReadTimeout(new SlowStream(20, 40),
+				Duration.ofMillis(200));
+		
+		int length = 0;
+		while (stream.read() >= 0) ++length;
+		assertEquals(20, length);
+		
+		stream.close();
+	}
+}
@@ -40,15 +40,16 @@ public class Utilities {
 	/**
 	 * Returns a list containing the intersection of list A and B. An element
 	 * will be in the intersection if it is in both A and B (string case is
-	 * ignored).
+	 * ignored). List B is hashed into a {@link TitleSet} first, so this runs
+	 * in linear rather than quadratic time.
 	 * @param a List A.
 	 * @param b List B.
 	 * @return The list of the intersection of A and B.
 	 */
 	public static List<String> retainAllIgnoreCase(
 			List<String> a, List<String> b) {
-		Stream<String> stream = a.stream().filter(
-				s -> containsIgnoreCase(b, s));
+		TitleSet set = new TitleSet(b);
+		Stream<String> stream = a.stream().filter(set::contains);
 		
 		return stream.collect(Collectors.toList());
 	}
@@ -0,0 +1,291 @@
+package com.antverdovsky.wikideg.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single pass scanner which finds the internal links, written as
+ * "[[target|anchor]]", in the wikitext of the export data of an article. The
+ * export data is read through a small buffer, so the document is never held
+ * in memory in its entirety, and no regular expressions are used. Only the
+ * contents of the "text" element of the export data are scanned.
+ */
+public class WikiLinkScanner {
+	// Links longer than this are assumed to be malformed and are skipped
+	private static final int MAX_LINK_LENGTH = 512;
+
+	// Entities longer than this are not decoded
+	private static final int MAX_ENTITY_LENGTH = 10;
+
+	private static final String TEXT_START = "<text"; // Start of text tag
+
+	private static final int SEEK_TEXT = 0; // Looking for the text element
+	private static final int TEXT_TAG = 1;  // Inside of the text start tag
+	private static final int TEXT = 2;      // Inside of the wikitext
+	private static final int LINK = 3;      // Inside of a link
+	private static final int ENTITY = 4;    // Inside of an entity of a link
+
+	private final WikiLinkSink sink;        // Receives each found link
+
+	private int state;                      // State of the scanner
+	private int matched;                    // Number of TEXT_START matched
+	private char previous;                  // Previous character scanned
+
+	private StringBuilder link;             // Contents of the current link
+	private StringBuilder entity;           // Current entity of the link
+	private int pipe;                       // Index of the pipe in the link
+	private boolean pendingOpen;            // Saw a '[' inside of the link
+	private boolean pendingClose;           // Saw a ']' inside of the link
+
+	/**
+	 * Creates a new scanner which passes each of its links to the sink.
+	 * @param sink The sink.
+	 */
+	private WikiLinkScanner(WikiLinkSink sink) {
+		this.sink = sink;
+		this.state = SEEK_TEXT;
+		this.link = new StringBuilder();
+		this.entity = new StringBuilder();
+	}
+
+	/**
+	 * Scans the specified export data for links, passing the target and
+	 * anchor of each link to the sink as soon as the link is read. XML
+	 * entities in the target and anchor are decoded. Scanning stops as soon
+	 * as the sink returns false.
+	 * @param export The reader of the export data.
+	 * @param sink The sink which receives each link.
+	 * @return True if the sink stopped the scan. False if the whole export
+	 *         data was scanned.
+	 * @throws IOException If the export data could not be read.
+	 */
+	public static boolean scan(Reader export, WikiLinkSink sink)
+			throws IOException {
+		WikiLinkScanner scanner = new WikiLinkScanner(sink);
+
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = export.read(buffer)) != -1) {
+			for (int i = 0; i < read; ++i) {
+				if (!scanner.next(buffer[i])) return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Scans the next character of the export data.
+	 * @param c The character.
+	 * @return False if the sink has stopped the scan. True otherwise.
+	 */
+	private boolean next(char c) {
+		boolean carryOn = true;
+
+		switch (this.state) {
+		case SEEK_TEXT:
+			// Match the start of the text tag, one character at a time
+			if (c == TEXT_START.charAt(this.matched)) ++this.matched;
+			else this.matched = (c == '<') ? 1 : 0;
+
+			if (this.matched == TEXT_START.length()) {
+				this.matched = 0;
+				this.state = TEXT_TAG;
+			}
+			break;
+		case TEXT_TAG:
+			// An empty text element is written as a self closing tag
+			if (c == '>') this.state = (this.previous == '/') ?
+					SEEK_TEXT : TEXT;
+			break;
+		case TEXT:
+			// In the wikitext, the '<' character is always written as an
+			// entity, so a raw '<' is the start of the end tag.
+			if (c == '<') {
+				this.state = SEEK_TEXT;
+			} else if (c == '[' && this.previous == '[') {
+				this.startLink();
+				c = '\0'; // So that "[[[" does not start two links
+			}
+			break;
+		case LINK:
+			carryOn = this.nextInLink(c);
+			break;
+		case ENTITY:
+			this.nextInEntity(c);
+			break;
+		}
+
+		this.previous = c;
+		return carryOn;
+	}
+
+	/**
+	 * Scans the next character inside of a link.
+	 * @param c The character.
+	 * @return False if the sink has stopped the scan. True otherwise.
+	 */
+	private boolean nextInLink(char c) {
+		if (c == ']') {
+			if (this.pendingClose) return this.endLink();
+
+			this.flushOpen();
+			this.pendingClose = true;
+			return true;
+		}
+		if (c == '[') {
+			// A '[' at the very start of a link, as in "[[[Title]]]", moves
+			// the start of the link forward by one character.
+			if (this.link.length() == 0 && !this.pendingOpen) return true;
+			
+			// A nested link, as in the caption of a file, restarts the link
+			// so that the innermost link is the one which is found.
+			if (this.pendingOpen) this.startLink();
+			else this.pendingOpen = true;
+
+			this.flushClose();
+			return true;
+		}
+
+		this.flushOpen();
+		this.flushClose();
+
+		if (c == '\n') {
+			this.state = TEXT; // Links never span multiple lines
+		} else if (c == '<') {
+			this.state = SEEK_TEXT; // End of the text element
+		} else if (c == '&') {
+			this.entity.setLength(0);
+			this.state = ENTITY;
+		} else {
+			if (c == '|' && this.pipe < 0) this.pipe = this.link.length();
+			this.append(c);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Scans the next character of an entity inside of a link. Once the
+	 * entity ends, it is decoded and appended to the link.
+	 * @param c The character.
+	 */
+	private void nextInEntity(char c) {
+		if (c == ';') {
+			this.state = LINK;
+			this.append(WikiLinkScanner.decode(this.entity));
+		} else if (this.entity.length() < MAX_ENTITY_LENGTH &&
+				c != '&' && c != '[' && c != ']' && c != '\n' && c != '<') {
+			this.entity.append(c);
+		} else {
+			// Not an entity after all, so keep the raw characters and scan
+			// the current character as part of the link.
+			this.link.append('&').append(this.entity);
+			this.state = LINK;
+			this.nextInLink(c);
+		}
+	}
+
+	/**
+	 * Starts a new link, discarding any link which was being scanned.
+	 */
+	private void startLink() {
+		this.link.setLength(0);
+		this.pipe = -1;
+		this.pendingOpen = false;
+		this.pendingClose = false;
+		this.state = LINK;
+	}
+
+	/**
+	 * Ends the current link and passes it to the sink.
+	 * @return False if the sink has stopped the scan. True otherwise.
+	 */
+	private boolean endLink() {
+		this.state = TEXT;
+
+		String target;
+		String anchor;
+		if (this.pipe >= 0) {
+			target = this.link.substring(0, this.pipe);
+			anchor = this.link.substring(this.pipe + 1);
+		} else {
+			target = this.link.toString();
+			anchor = target;
+		}
+
+		if (target.isEmpty()) return true;
+		return this.sink.accept(target, anchor);
+	}
+
+	/**
+	 * Appends the specified text to the current link, abandoning the link if
+	 * it has grown too long.
+	 * @param s The text.
+	 */
+	private void append(CharSequence s) {
+		this.link.append(s);
+		if (this.link.length() > MAX_LINK_LENGTH) this.state = TEXT;
+	}
+
+	/**
+	 * Appends the specified character to the current link, abandoning the
+	 * link if it has grown too long.
+	 * @param c The character.
+	 */
+	private void append(char c) {
+		this.link.append(c);
+		if (this.link.length() > MAX_LINK_LENGTH) this.state = TEXT;
+	}
+
+	/**
+	 * Appends a single '[' which did not start a nested link to the link.
+	 */
+	private void flushOpen() {
+		if (!this.pendingOpen) return;
+
+		this.pendingOpen = false;
+		this.append('[');
+	}
+
+	/**
+	 * Appends a single ']' which did not end the link to the link.
+	 */
+	private void flushClose() {
+		if (!this.pendingClose) return;
+
+		this.pendingClose = false;
+		this.append(']');
+	}
+
+	/**
+	 * Decodes the specified XML entity, without its '&' and ';' characters.
+	 * @param entity The name of the entity.
+	 * @return The decoded text of the entity, or the entity as it was
+	 *         written if it is not known.
+	 */
+	private static String decode(CharSequence entity) {
+		String name = entity.toString();
+		switch (name) {
+		case "amp":  return "&";
+		case "lt":   return "<";
+		case "gt":   return ">";
+		case "quot": return "\"";
+		case "apos": return "'";
+		}
+
+		// Numeric character references, in decimal or hexadecimal
+		try {
+			if (name.startsWith("#x") || name.startsWith("#X"))
+				return new String(Character.toChars(
+						Integer.parseInt(name.substring(2), 16)));
+			if (name.startsWith("#"))
+				return new String(Character.toChars(
+						Integer.parseInt(name.substring(1))));
+		} catch (IllegalArgumentException e) {
+			// Not a valid character reference, fall through
+		}
+
+		return "&" + name + ";";
+	}
+}
@@ -0,0 +1,73 @@
+package com.antverdovsky.wikideg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Basic Testing of the WikiLinkScanner class.
+ */
+public class WikiLinkScannerTest {
+	// Export data of an article, as returned by Special:Export
+	private static final String EXPORT =
+			"<mediawiki><page><title>Lembarg [[Not A Link]]</title>" +
+			"<revision><text xml:space=\"preserve\" bytes=\"120\">" +
+			"'''Lembarg''' is a village in the [[Voivodeships of Poland|" +
+			"Voivodeship]] of [[AT&amp;T]].\n[[File:Map.png|thumb|A map of " +
+			"[[Poland]]]] and [[Broken\nlink]] [[[Triple]]]" +
+			"</text></revision></page></mediawiki>";
+
+	/**
+	 * Scans the export data and returns each link as "target|anchor".
+	 * @param export The export data.
+	 * @param stopAt The target at which the scan is to be stopped.
+	 * @return The list of links.
+	 * @throws IOException If the export data could not be read.
+	 */
+	private static List<String> scan(String export, String stopAt)
+			throws IOException {
+		List<String> links = new ArrayList<String>();
+		WikiLinkScanner.scan(new StringReader(export), (target, anchor) -> {
+			links.add(target + "|" + anchor);
+			return !target.equals(stopAt);
+		});
+
+		return links;
+	}
+
+	@Test
+	/**
+	 * Tests that the targets and anchors of each link in the text of the
+	 * export data are found, and that nothing outside of it is.
+	 */
+	public void testScan() throws IOException {
+		List<String> links = WikiLinkScannerTest.scan(EXPORT, null);
+
+		assertEquals(4, links.size());
+		assertEquals("Voivodeships of Poland|Voivodeship", links.get(0));
+		assertEquals("AT&T|AT&T", links.get(1));
+		assertEquals("Poland|Poland", links.get(2));
+		assertEquals("Triple|Triple", links.get(3));
+	}
+
+	@Test
+	/**
+	 * Tests that the scan stops as soon as the sink asks it to.
+	 */
+	public void testStop() throws IOException {
+		List<String> links = WikiLinkScannerTest.scan(EXPORT, "AT&T");
+		assertEquals(2, links.size());
+
+		assertTrue(WikiLinkScanner.scan(new StringReader(EXPORT),
+				(target, anchor) -> false));
+		assertFalse(WikiLinkScanner.scan(new StringReader(EXPORT),
+				(target, anchor) -> true));
+	}
+}
@@ -0,0 +1,17 @@
+package com.antverdovsky.wikideg.util;
+
+/**
+ * Receives each of the links found by a {@link WikiLinkScanner}.
+ */
+public interface WikiLinkSink {
+	/**
+	 * Accepts a single link found in the wikitext of an article.
+	 * @param target The title of the article to which the link points, as it
+	 *               is written in the wikitext.
+	 * @param anchor The text of the link as it is displayed in the article.
+	 *               If the link is not piped, this is the target itself.
+	 * @return True if the scanner should continue scanning. False if it
+	 *         should stop immediately.
+	 */
+	public boolean accept(String target, String anchor);
+}